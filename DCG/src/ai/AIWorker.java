@@ -0,0 +1,94 @@
+/**
+ * One of the threads of the AI worker pool. Takes requests from the
+ * PathService over and over, and sleeps a little when there are none. So a
+ * long search only holds up its own worker, and the others get on with the
+ * rest. Keeps the numbers shown by the aistat console command.
+ */
+package ai;
+
+import java.util.Arrays;
+
+import threadMessaging.MTMsgAIStat;
+
+public class AIWorker implements Runnable {
+
+	private static final int LATENCY_SAMPLES = 256;
+	// How long to sleep when there was no request to take (ms)
+	private static final int IDLE_SLEEP = 2;
+
+	private AIWorkerMain workerMain;
+	private volatile boolean running = true;
+
+	private float cps;
+	private int queueDepth;
+	private int requests;
+	private int[] latencies = new int[LATENCY_SAMPLES];
+	private int numLatencies;
+	private int nextLatency;
+
+	public AIWorker(AIWorkerMain workerMain) {
+		this.workerMain = workerMain;
+	}
+
+	@Override
+	public void run() {
+		int cpsc = 0;
+		long cpst = System.currentTimeMillis();
+		while (this.running) {
+			int pending = 0;
+			if (this.workerMain.getPathService().work(this)) {
+				pending = 1 + this.workerMain.getPathService().getQueued();
+			}
+			this.queueDepth = pending;
+
+			if (pending == 0) {
+				try {
+					Thread.sleep(IDLE_SLEEP);
+				} catch (InterruptedException e) {
+					// TODO Auto-generated catch block
+					e.printStackTrace();
+				}
+			}
+
+			cpsc++;
+			if (System.currentTimeMillis() >= cpst + 1000) {
+				this.cps = cpsc;
+				cpsc = 0;
+				cpst = System.currentTimeMillis();
+			}
+		}
+	}
+
+	public void stop() {
+		this.running = false;
+	}
+
+	/**
+	 * Notes the time from a path request was sent until the path was ready.
+	 */
+	public synchronized void recordPathLatency(long nanos) {
+		this.latencies[this.nextLatency] = (int) Math.min(nanos / 1000, Integer.MAX_VALUE);
+		this.nextLatency = (this.nextLatency + 1) % LATENCY_SAMPLES;
+		this.numLatencies = Math.min(this.numLatencies + 1, LATENCY_SAMPLES);
+		this.requests++;
+	}
+
+	/**
+	 * Gathers the numbers for this worker, with latency percentiles over the
+	 * last LATENCY_SAMPLES path requests.
+	 */
+	public synchronized MTMsgAIStat.Worker getStat() {
+		int[] sorted = Arrays.copyOf(this.latencies, this.numLatencies);
+		Arrays.sort(sorted);
+
+		return new MTMsgAIStat.Worker(this.cps, this.queueDepth, this.requests, percentile(sorted, 50), percentile(
+				sorted, 90), percentile(sorted, 99));
+	}
+
+	private static float percentile(int[] sorted, int p) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+		return sorted[Math.min(sorted.length - 1, (sorted.length * p) / 100)] / 1000f;
+	}
+}
@@ -1,55 +1,72 @@
 /**
- * The main class of the Ai thread. Calls update on each
- * cell that is attached to it, yielding to other threads
- * after each update call. Is also connected with the Game
- * class in order to receive messages from it, for now
- * only pathing map and stat request.
+ * The main class of the Ai thread. Starts a pool of AIWorker
+ * threads, one for each core unless set otherwise with the
+ * aiworkers setting, which share the paths of the PathService.
+ * Is also connected with the Game class in order to receive
+ * messages from it, for now only pathing map and stat request.
  */
 package ai;
 
-import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Map.Entry;
+
+import map.PathingGrid;
 
 import threadMessaging.MTMessage;
 import threadMessaging.MTMessageQueue;
 import threadMessaging.MTMsgAIStat;
+import threadMessaging.MTMsgPathDelta;
 import threadMessaging.MTMsgPathMap;
 import threadMessaging.MTMessage.MessageType;
 
-import entities.actors.NPC;
+import engine.Settings;
+import engine.Settings.Fields;
 
-public class AIWorkerMain implements Runnable {
+public class AIWorkerMain implements Runnable, PathService.MapSource {
 
 	private MTMessageQueue msgq;
-	private ArrayList<AIWorkerCell> cells;
-	private HashMap<Integer, int[][]> pathingMaps;
+	private HashMap<Integer, PathingGrid> pathingMaps;
+	private HashMap<Integer, PathingReplica> replicas;
 	private Boolean running = true;
+	private AIWorker[] workers;
 	private float cps;
 	private float cpsavg = 100;
+	private PathService pathService;
+	private long nextFieldPrune;
 
 	public AIWorkerMain(MTMessageQueue msgq) {
 		this.msgq = msgq;
-		this.cells = new ArrayList<AIWorkerCell>();
-		this.pathingMaps = new HashMap<Integer, int[][]>();
+		this.pathingMaps = new HashMap<Integer, PathingGrid>();
+		this.replicas = new HashMap<Integer, PathingReplica>();
+		this.pathService = new PathService(this);
+
+		int numWorkers = Settings.get(Fields.AI_WORKERS).i;
+		if (numWorkers <= 0) {
+			// Leave a core for the render thread
+			numWorkers = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+		}
+		this.workers = new AIWorker[numWorkers];
+		for (int i = 0; i < numWorkers; i++) {
+			this.workers[i] = new AIWorker(this);
+		}
 	}
 
 	@Override
 	public void run() {
-		System.out.println("AI thread running.");
+		System.out.println("AI thread running with " + this.workers.length + " workers.");
+
+		Thread[] threads = new Thread[this.workers.length];
+		for (int i = 0; i < this.workers.length; i++) {
+			threads[i] = new Thread(this.workers[i], "AIWorker-" + i);
+			threads[i].setDaemon(true);
+			threads[i].start();
+		}
 
 		int cpsc = 0;
 		long cpst = System.currentTimeMillis();
 		while (running) {
 			parseIncommingMessages();
 
-			synchronized (this.cells) {
-				for (AIWorkerCell cell : this.cells) {
-					cell.update();
-					Thread.yield();
-				}
-			}
-
-			// Thread.yield();
 			try {
 				Thread.sleep(10);
 			} catch (InterruptedException e) {
@@ -64,6 +81,22 @@ public class AIWorkerMain implements Runnable {
 				cpsc = 0;
 				cpst = System.currentTimeMillis();
 			}
+
+			if (System.currentTimeMillis() > this.nextFieldPrune) {
+				this.pathService.prune();
+				this.nextFieldPrune = System.currentTimeMillis() + 1000;
+			}
+		}
+
+		for (int i = 0; i < this.workers.length; i++) {
+			this.workers[i].stop();
+		}
+		for (int i = 0; i < threads.length; i++) {
+			try {
+				threads[i].join();
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			}
 		}
 
 		System.out.println("AI thread terminating.");
@@ -75,34 +108,73 @@ public class AIWorkerMain implements Runnable {
 
 			switch (msg.type) {
 				case PATHMAP :
-					this.pathingMaps.put(((MTMsgPathMap) msg.obj).getLevel(), ((MTMsgPathMap) msg.obj).getMap());
+					MTMsgPathMap full = (MTMsgPathMap) msg.obj;
+					this.replicas.put(full.getLevel(), new PathingReplica(full));
+					break;
+				case PATHDELTA :
+					MTMsgPathDelta delta = (MTMsgPathDelta) msg.obj;
+					PathingReplica replica = this.replicas.get(delta.getLevel());
+					if (replica == null || replica.isAwaitingResync()) {
+						break;
+					}
+					if (!replica.apply(delta)) {
+						// Missed a delta somewhere, so ask for the whole map
+						// and drop deltas until it arrives
+						replica.awaitResync();
+						this.msgq.addA(new MTMessage(MessageType.PATHRESYNC, (Integer) delta.getLevel()));
+					}
 					break;
 				case KILL :
 					this.running = false;
 					break;
 				case SENDSTAT :
-					this.msgq.addA(new MTMessage(MessageType.AISTAT, new MTMsgAIStat(this.cps, this.cpsavg, this.cells
-							.size(), this.pathingMaps.size(), this.running)));
+					MTMsgAIStat.Worker[] workerStats = new MTMsgAIStat.Worker[this.workers.length];
+					for (int i = 0; i < this.workers.length; i++) {
+						workerStats[i] = this.workers[i].getStat();
+					}
+					int numMaps;
+					synchronized (this.pathingMaps) {
+						numMaps = this.pathingMaps.size();
+					}
+					this.msgq.addA(new MTMessage(MessageType.AISTAT, new MTMsgAIStat(this.cps, this.cpsavg,
+							this.pathService.getQueued(), numMaps, this.running, this.pathService.getReplans(),
+							this.pathService.getReplanExpansions(), workerStats)));
 					break;
 			}
 		}
+
+		publishPathingMaps();
 	}
 
-	public MTMessageQueue addNPC(NPC npc) {
-		AIWorkerCell cell = new AIWorkerCell(npc, this);
-		synchronized (this.cells) {
-			this.cells.add(cell);
+	/**
+	 * Hands the workers a new snapshot of each replica changed since the last
+	 * call.
+	 */
+	private void publishPathingMaps() {
+		for (Entry<Integer, PathingReplica> e : this.replicas.entrySet()) {
+			PathingGrid snapshot = e.getValue().getSnapshot();
+			synchronized (this.pathingMaps) {
+				this.pathingMaps.put(e.getKey(), snapshot);
+			}
 		}
-		return cell.getMsgQueue();
 	}
 
-	public int[][] getPathingMap(int level) {
-		if (this.pathingMaps.containsKey(level)) {
-			return this.pathingMaps.get(level);
-		} else {
-			System.out.println("NO PATHING MAP FOR LEVEL " + level);
-			return null;
+	public PathService getPathService() {
+		return this.pathService;
+	}
+
+	/**
+	 * Returns the latest snapshot of the pathing map for a level. Snapshots
+	 * are never written to, so workers may read them without locking.
+	 */
+	public PathingGrid getPathingMap(int level) {
+		synchronized (this.pathingMaps) {
+			if (this.pathingMaps.containsKey(level)) {
+				return this.pathingMaps.get(level);
+			}
 		}
+		System.out.println("NO PATHING MAP FOR LEVEL " + level);
+		return null;
 	}
 
 }
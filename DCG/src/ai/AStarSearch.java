@@ -0,0 +1,817 @@
+/**
+ * The shared A* engine used by the PathService and the RoomGraph. The open
+ * set is an indexed binary heap keyed on F with decrease-key, the closed set
+ * is a bitmap and the G-scores are kept in a flat int array indexed by
+ * px * height + py.
+ *
+ * The scratch arrays are sized to a pathing map and reused between searches,
+ * so instances should be obtained with acquire() and handed back with
+ * release(). A search is started with begin() and can either be run to the
+ * end in one go or advanced in slices by calling step() repeatedly.
+ *
+ * Searches for square footprints can optionally use Jump Point Search, which
+ * skips over the large open areas of room interiors by jumping along straight
+ * lines and only putting the jump points found on the open set. Since only
+ * four neighbours are used, horizontal moves play the part of the diagonal
+ * moves of the usual eight-neighbour Jump Point Search and branch into
+ * vertical jumps at every cell. The jumps look at the spots 64 at a time: the
+ * first time a search comes to a column, the spots of the column the
+ * footprint fits on are worked out into a bit set from the wall and entity
+ * planes of the pathing map, so a vertical jump is a scan over a few words.
+ */
+package ai;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+
+import map.Map;
+import map.PathingGrid;
+
+import com.jme.math.Vector2f;
+
+import engine.World;
+import entities.Entity;
+
+public class AStarSearch {
+	public enum Status {
+		SEARCHING, FOUND, FAILED
+	};
+
+	private static final int MIN_ITERS = 1000;
+	private static final int CELLS_PER_ITER = 8;
+	private static final int POOL_SIZE = 4;
+
+	// Offsets to the four neighbours, and the index of the opposite direction
+	private static final int[] DX = {1, -1, 0, 0};
+	private static final int[] DY = {0, 0, 1, -1};
+	private static final byte[] BACK = {1, 0, 3, 2};
+	private static final byte DIR_NONE = 4;
+
+	private static LinkedList<AStarSearch> pool = new LinkedList<AStarSearch>();
+
+	private int width;
+	private int height;
+
+	private int[] g;
+	private int[] f;
+	private byte[] parentDir;
+	private int[] stamp;
+	private int[] heap;
+	private int[] heapPos;
+	private long[] closed;
+	private int heapSize;
+	private int curStamp;
+
+	// Only allocated once a jump point search has been run. The spots the
+	// footprint fits on, a column of words per pathing column, and the spots
+	// that are not free, with a word of blocked spots below and above each
+	// column for the footprint to reach into.
+	private int words;
+	private long[] open;
+	private long[] blocked;
+	private int[] openStamp;
+	private int[] blockedStamp;
+	private int[] parentIdx;
+	private int[][] hJumpResult;
+	private int[][] hJumpStamp;
+	private int footX;
+	private int footY;
+
+	private PathingGrid pathingMap;
+	private boolean[][] footprint;
+	private int entId;
+	private int ignoreId;
+	private boolean wallsOnly;
+
+	private int startIdx;
+	private int destIdx;
+	private int destX;
+	private int destY;
+	private int iters;
+	private int maxIters;
+	private boolean jumpPoints;
+	private Status status = Status.FAILED;
+	private ArrayList<Point> visited;
+
+	private int[] regionTiles;
+	private int regionHeight;
+	private boolean[] regionAllowed;
+
+	private AStarSearch(int width, int height) {
+		int cells = width * height;
+
+		this.width = width;
+		this.height = height;
+		this.g = new int[cells];
+		this.f = new int[cells];
+		this.parentDir = new byte[cells];
+		this.stamp = new int[cells];
+		this.heap = new int[cells];
+		this.heapPos = new int[cells];
+		this.closed = new long[(cells + 63) >> 6];
+		this.maxIters = Math.max(MIN_ITERS, cells / CELLS_PER_ITER);
+	}
+
+	/**
+	 * Hands out a search with scratch arrays for a pathing map of the given
+	 * size, reusing a released one if possible.
+	 */
+	public static synchronized AStarSearch acquire(int width, int height) {
+		Iterator<AStarSearch> it = pool.iterator();
+		while (it.hasNext()) {
+			AStarSearch s = it.next();
+			if (s.width == width && s.height == height) {
+				it.remove();
+				return s;
+			}
+		}
+		return new AStarSearch(width, height);
+	}
+
+	/**
+	 * Returns a search to the pool. The search must not be used afterwards.
+	 */
+	public static synchronized void release(AStarSearch s) {
+		s.pathingMap = null;
+		s.footprint = null;
+		s.visited = null;
+		s.regionTiles = null;
+		s.regionAllowed = null;
+
+		if (pool.size() >= POOL_SIZE) {
+			pool.removeFirst();
+		}
+		pool.addLast(s);
+	}
+
+	public static AStarSearch acquire(PathingGrid pathingMap) {
+		return acquire(pathingMap.getWidth(), pathingMap.getHeight());
+	}
+
+	/**
+	 * Prepares a new search. Any previous search state is discarded.
+	 *
+	 * @return False if start or destination lies outside the map, in which
+	 *         case the search is already marked as failed.
+	 */
+	public boolean begin(PathingGrid pathingMap, Vector2f origin, Vector2f dest, boolean[][] footprint, int entId,
+			int ignoreId) {
+		return begin(pathingMap, origin, dest, footprint, entId, ignoreId, false);
+	}
+
+	/**
+	 * Prepares a new search, optionally as a Jump Point Search. Jump Point
+	 * Search is only used for square footprints, others fall back to plain A*
+	 * as the footprint of those changes with the rotation of the entity.
+	 *
+	 * @return False if start or destination lies outside the map, in which
+	 *         case the search is already marked as failed.
+	 */
+	public boolean begin(PathingGrid pathingMap, Vector2f origin, Vector2f dest, boolean[][] footprint, int entId,
+			int ignoreId, boolean jumpPoints) {
+		this.jumpPoints = jumpPoints && footprint.length == footprint[0].length;
+		if (this.jumpPoints && this.parentIdx == null) {
+			int cells = this.g.length;
+			this.words = (this.height + 63) >> 6;
+			this.open = new long[this.width * this.words];
+			this.blocked = new long[this.width * (this.words + 2)];
+			this.openStamp = new int[this.width];
+			this.blockedStamp = new int[this.width];
+			this.parentIdx = new int[cells];
+			this.hJumpResult = new int[2][cells];
+			this.hJumpStamp = new int[2][cells];
+		}
+		// Where the footprint starts below and left of the spot, as
+		// Entity.walkablePathSpot has it away from the lower edges
+		this.footX = (int) Math.ceil((footprint.length - 1) * World.PATHING_BLOCKSIZE / 2);
+		this.footY = (int) Math.ceil((footprint[0].length - 1) * World.PATHING_BLOCKSIZE / 2);
+
+		this.pathingMap = pathingMap;
+		this.footprint = footprint;
+		this.entId = entId;
+		this.ignoreId = ignoreId;
+		this.wallsOnly = false;
+		this.regionTiles = null;
+		this.iters = 0;
+		this.heapSize = 0;
+
+		if (this.visited != null) {
+			this.visited.clear();
+		}
+
+		int sx = World.worldToPathing(origin.x);
+		int sy = World.worldToPathing(origin.y);
+		this.destX = World.worldToPathing(dest.x);
+		this.destY = World.worldToPathing(dest.y);
+
+		if (!inBounds(sx, sy) || !inBounds(this.destX, this.destY)) {
+			this.status = Status.FAILED;
+			return false;
+		}
+
+		this.curStamp++;
+		if (this.curStamp == Integer.MAX_VALUE) {
+			Arrays.fill(this.stamp, 0);
+			if (this.parentIdx != null) {
+				Arrays.fill(this.openStamp, 0);
+				Arrays.fill(this.blockedStamp, 0);
+				Arrays.fill(this.hJumpStamp[0], 0);
+				Arrays.fill(this.hJumpStamp[1], 0);
+			}
+			this.curStamp = 1;
+		}
+		Arrays.fill(this.closed, 0L);
+
+		this.startIdx = sx * this.height + sy;
+		this.destIdx = this.destX * this.height + this.destY;
+
+		this.stamp[this.startIdx] = this.curStamp;
+		this.g[this.startIdx] = 0;
+		this.f[this.startIdx] = heuristic(sx, sy);
+		this.parentDir[this.startIdx] = DIR_NONE;
+		push(this.startIdx);
+
+		this.status = Status.SEARCHING;
+		return true;
+	}
+
+	/**
+	 * Restricts the search started with begin() to the tiles whose region in
+	 * the given tile map is marked as allowed. Used for searching only a few
+	 * rooms of the map at a time. Must be called before the first step.
+	 *
+	 * @param tiles
+	 *            Region index per tile, stored as tx * tileHeight + ty. Tiles
+	 *            with a negative index are never allowed.
+	 */
+	public void restrictTo(int[] tiles, int tileHeight, boolean[] allowed) {
+		this.regionTiles = tiles;
+		this.regionHeight = tileHeight;
+		this.regionAllowed = allowed;
+	}
+
+	/**
+	 * Makes the search started with begin() go through the spots entities
+	 * stand on, so only walls are in the way. Used for costs that should not
+	 * change when the entities move. Must be called before the first step.
+	 */
+	public void ignoreEntities() {
+		this.wallsOnly = true;
+	}
+
+	/**
+	 * Advances the search by at most the given number of iterations, one
+	 * iteration being the expansion of one node.
+	 *
+	 * @return The number of iterations used
+	 */
+	public int step(int maxSteps) {
+		int used = 0;
+
+		while (this.status == Status.SEARCHING && used < maxSteps) {
+			if (this.heapSize == 0 || this.iters >= this.maxIters) {
+				this.status = Status.FAILED;
+				break;
+			}
+
+			used++;
+			this.iters++;
+
+			int cur = pop();
+			int px = cur / this.height;
+			int py = cur - px * this.height;
+
+			if (this.visited != null) {
+				this.visited.add(new Point(px, py));
+			}
+
+			if (cur == this.destIdx) {
+				this.status = Status.FOUND;
+				break;
+			}
+
+			setClosed(cur);
+
+			if (this.jumpPoints) {
+				expandJumpPoints(cur, px, py);
+			} else {
+				for (int d = 0; d < 4; d++) {
+					expand(cur, px + DX[d], py + DY[d], BACK[d]);
+				}
+			}
+		}
+
+		return used;
+	}
+
+	/**
+	 * Runs the search until it either finds the destination or fails.
+	 */
+	public Status run() {
+		this.step(Integer.MAX_VALUE);
+		return this.status;
+	}
+
+	private void expand(int cur, int nx, int ny, byte back) {
+		if (!inBounds(nx, ny)) {
+			return;
+		}
+
+		int idx = nx * this.height + ny;
+		if (isClosed(idx)) {
+			return;
+		}
+
+		int ng = this.g[cur] + 1;
+
+		if (this.stamp[idx] != this.curStamp) {
+			if (!walkable(nx, ny)) {
+				// Never test this spot again during this search
+				setClosed(idx);
+				return;
+			}
+			this.stamp[idx] = this.curStamp;
+			this.g[idx] = ng;
+			this.f[idx] = ng + heuristic(nx, ny);
+			this.parentDir[idx] = back;
+			push(idx);
+		} else if (ng < this.g[idx]) {
+			this.f[idx] -= this.g[idx] - ng;
+			this.g[idx] = ng;
+			this.parentDir[idx] = back;
+			siftUp(this.heapPos[idx]);
+		}
+	}
+
+	private void expandJumpPoints(int cur, int px, int py) {
+		int d = this.parentDir[cur];
+
+		for (int c = 0; c < 4; c++) {
+			if (d != DIR_NONE && c == BACK[d]) {
+				continue;
+			}
+
+			if (d == 2 || d == 3) {
+				// Arrived vertically, only turn if the side spot is a forced
+				// neighbour
+				if (c < 2 && !(isOpen(px + DX[c], py) && !isOpen(px + DX[c], py - DY[d]))) {
+					continue;
+				}
+			}
+
+			int jp = c < 2 ? jumpHorizontal(px + DX[c], py, c) : jumpVertical(px, py + DY[c], c);
+			if (jp >= 0) {
+				int jx = jp / this.height;
+				int jy = jp - jx * this.height;
+				addJumpPoint(cur, jp, jx, jy, c, Math.abs(jx - px) + Math.abs(jy - py));
+			}
+		}
+	}
+
+	/**
+	 * Jumps from the given spot in direction c until reaching the
+	 * destination, a spot from which a vertical jump finds a jump point or an
+	 * obstacle. A jump from any spot passed ends at the same place, so that
+	 * is remembered for every spot passed.
+	 *
+	 * @return The index of the jump point or -1 if none was found
+	 */
+	private int jumpHorizontal(int x, int y, int c) {
+		int[] result = this.hJumpResult[c];
+		int[] stamps = this.hJumpStamp[c];
+		int sx = x;
+		int found = -1;
+
+		while (isOpen(x, y)) {
+			int idx = x * this.height + y;
+
+			if (stamps[idx] == this.curStamp) {
+				found = result[idx];
+				break;
+			}
+
+			if ((x == this.destX && y == this.destY) || jumpVertical(x, y + 1, 2) >= 0
+					|| jumpVertical(x, y - 1, 3) >= 0) {
+				found = idx;
+				break;
+			}
+
+			x += DX[c];
+		}
+
+		for (int i = sx; i != x; i += DX[c]) {
+			int idx = i * this.height + y;
+			stamps[idx] = this.curStamp;
+			result[idx] = found;
+		}
+
+		return found;
+	}
+
+	/**
+	 * Jumps from the given spot in direction c until reaching the
+	 * destination, a spot with a forced neighbour or an obstacle, whichever
+	 * comes first in the words of the column.
+	 *
+	 * @return The index of the jump point or -1 if none was found
+	 */
+	private int jumpVertical(int x, int y, int c) {
+		if (x < 0 || x >= this.width || y < 0 || y >= this.height) {
+			return -1;
+		}
+
+		int col = openColumn(x);
+		int left = x > 0 ? openColumn(x - 1) : -1;
+		int right = x + 1 < this.width ? openColumn(x + 1) : -1;
+		int destWord = x == this.destX ? this.destY >> 6 : -1;
+
+		if (c == 2) {
+			long from = -1L << y;
+			for (int j = y >> 6; j < this.words; j++) {
+				long stop = ~this.open[col + j] | forcedUp(left, j) | forcedUp(right, j);
+				if (j == destWord) {
+					stop |= 1L << this.destY;
+				}
+				stop &= from;
+				if (stop != 0) {
+					return jumpPoint(x, col, (j << 6) + Long.numberOfTrailingZeros(stop));
+				}
+				from = -1L;
+			}
+		} else {
+			long from = -1L >>> (63 - (y & 63));
+			for (int j = y >> 6; j >= 0; j--) {
+				long stop = ~this.open[col + j] | forcedDown(left, j) | forcedDown(right, j);
+				if (j == destWord) {
+					stop |= 1L << this.destY;
+				}
+				stop &= from;
+				if (stop != 0) {
+					return jumpPoint(x, col, (j << 6) + 63 - Long.numberOfLeadingZeros(stop));
+				}
+				from = -1L;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * The spot a vertical jump stopped at, or -1 if it stopped because the
+	 * footprint does not fit there.
+	 */
+	private int jumpPoint(int x, int col, int y) {
+		if (y >= this.height || (this.open[col + (y >> 6)] & (1L << y)) == 0) {
+			return -1;
+		}
+		return x * this.height + y;
+	}
+
+	// Open spots of the column whose spot below is not open, and so are
+	// forced neighbours of a jump upwards, and the same for downwards
+
+	private long forcedUp(int col, int j) {
+		if (col < 0) {
+			return 0;
+		}
+		long w = this.open[col + j];
+		long below = w << 1;
+		if (j > 0) {
+			below |= this.open[col + j - 1] >>> 63;
+		}
+		return w & ~below;
+	}
+
+	private long forcedDown(int col, int j) {
+		if (col < 0) {
+			return 0;
+		}
+		long w = this.open[col + j];
+		long above = w >>> 1;
+		if (j + 1 < this.words) {
+			above |= this.open[col + j + 1] << 63;
+		}
+		return w & ~above;
+	}
+
+	private void addJumpPoint(int cur, int idx, int jx, int jy, int c, int cost) {
+		if (isClosed(idx)) {
+			return;
+		}
+
+		int ng = this.g[cur] + cost;
+
+		if (this.stamp[idx] != this.curStamp) {
+			this.stamp[idx] = this.curStamp;
+			this.g[idx] = ng;
+			this.f[idx] = ng + heuristic(jx, jy);
+			this.parentIdx[idx] = cur;
+			this.parentDir[idx] = (byte) c;
+			push(idx);
+		} else if (ng < this.g[idx]) {
+			this.f[idx] -= this.g[idx] - ng;
+			this.g[idx] = ng;
+			this.parentIdx[idx] = cur;
+			this.parentDir[idx] = (byte) c;
+			siftUp(this.heapPos[idx]);
+		}
+	}
+
+	private boolean isOpen(int px, int py) {
+		if (!inBounds(px, py)) {
+			return false;
+		}
+		return (this.open[openColumn(px) + (py >> 6)] & (1L << py)) != 0;
+	}
+
+	/**
+	 * Works out which spots of column x the footprint fits on, the first time
+	 * the search comes to the column, and gives where the column starts in
+	 * the open words. Spot py is open if no spot of the footprint placed as
+	 * walkable() places it is blocked, which comes down to clearing the bits
+	 * of the blocked columns under the footprint, shifted by the rows of the
+	 * footprint.
+	 */
+	private int openColumn(int x) {
+		int col = x * this.words;
+		if (this.openStamp[x] == this.curStamp) {
+			return col;
+		}
+		this.openStamp[x] = this.curStamp;
+
+		Arrays.fill(this.open, col, col + this.words, -1L);
+		for (int fx = 0; fx < this.footprint.length; fx++) {
+			int b = blockedColumn(x - this.footX + fx);
+			for (int fy = 0; fy < this.footprint[0].length; fy++) {
+				if (!this.footprint[fx][fy]) {
+					continue;
+				}
+				for (int j = 0; j < this.words; j++) {
+					if (b < 0) {
+						this.open[col + j] = 0;
+						continue;
+					}
+					int p = ((j + 1) << 6) + fy - this.footY;
+					int w = b + (p >> 6);
+					int r = p & 63;
+					long bits = this.blocked[w] >>> r;
+					if (r != 0) {
+						bits |= this.blocked[w + 1] << (64 - r);
+					}
+					this.open[col + j] &= ~bits;
+				}
+			}
+		}
+		if ((this.height & 63) != 0) {
+			this.open[col + this.words - 1] &= (1L << this.height) - 1;
+		}
+
+		if (this.regionTiles != null) {
+			int tiles = this.regionTiles.length / this.regionHeight;
+			int tx = x / World.PATHING_GRANULARITY;
+			for (int ty = 0; ty < this.regionHeight; ty++) {
+				int r = tx < tiles ? this.regionTiles[tx * this.regionHeight + ty] : -1;
+				if (r < 0 || !this.regionAllowed[r]) {
+					int y0 = ty * World.PATHING_GRANULARITY;
+					for (int y = y0; y < y0 + World.PATHING_GRANULARITY && y < this.height; y++) {
+						this.open[col + (y >> 6)] &= ~(1L << y);
+					}
+				}
+			}
+		}
+
+		// Near the lower edges walkable() rounds the start of the footprint
+		// towards the spot, so those spots are asked one by one
+		for (int y = 0; y < this.height; y++) {
+			if (x >= this.footX && y >= this.footY) {
+				break;
+			}
+			if (walkable(x, y)) {
+				this.open[col + (y >> 6)] |= 1L << y;
+			} else {
+				this.open[col + (y >> 6)] &= ~(1L << y);
+			}
+		}
+
+		return col;
+	}
+
+	/**
+	 * Where column x starts in the blocked words, filling them in the first
+	 * time, or -1 if x is off the map and all of the column is blocked.
+	 */
+	private int blockedColumn(int x) {
+		if (x < 0 || x >= this.width) {
+			return -1;
+		}
+		int col = x * (this.words + 2);
+		if (this.blockedStamp[x] == this.curStamp) {
+			return col;
+		}
+		this.blockedStamp[x] = this.curStamp;
+
+		this.blocked[col] = -1L;
+		Arrays.fill(this.blocked, col + 1, col + this.words + 1, 0L);
+		this.blocked[col + this.words + 1] = -1L;
+		this.pathingMap.markBlocked(x, this.entId, this.ignoreId == 0 ? this.entId : this.ignoreId, this.wallsOnly,
+				this.blocked, col + 1);
+		if ((this.height & 63) != 0) {
+			this.blocked[col + this.words] |= -1L << this.height;
+		}
+		return col;
+	}
+
+	protected boolean walkable(int px, int py) {
+		if (this.regionTiles != null) {
+			int r = this.regionTiles[(px / World.PATHING_GRANULARITY) * this.regionHeight + py
+					/ World.PATHING_GRANULARITY];
+			if (r < 0 || !this.regionAllowed[r]) {
+				return false;
+			}
+		}
+		if (this.wallsOnly) {
+			return Entity.clearOfWalls(px, py, this.footprint, this.pathingMap);
+		}
+		return Entity.walkablePathSpot(px, py, this.footprint, this.pathingMap, this.entId, this.ignoreId);
+	}
+
+	private int heuristic(int px, int py) {
+		return Math.abs(px - this.destX) + Math.abs(py - this.destY);
+	}
+
+	private boolean inBounds(int px, int py) {
+		return px >= 0 && py >= 0 && px < this.width && py < this.height;
+	}
+
+	private boolean isClosed(int idx) {
+		return (this.closed[idx >> 6] & (1L << idx)) != 0;
+	}
+
+	private void setClosed(int idx) {
+		this.closed[idx >> 6] |= 1L << idx;
+	}
+
+	/**
+	 * Builds the found path in world coordinates and removes the points that
+	 * can be skipped by walking in a straight line.
+	 *
+	 * @return The path, or null if no path was found or origin is the
+	 *         destination.
+	 */
+	public LinkedList<Vector2f> buildPath(Vector2f origin) {
+		if (this.status != Status.FOUND) {
+			return null;
+		}
+
+		LinkedList<Vector2f> path = new LinkedList<Vector2f>();
+
+		int cur = this.destIdx;
+		while (cur != this.startIdx) {
+			int px = cur / this.height;
+			int py = cur - px * this.height;
+
+			if (this.jumpPoints) {
+				// Fill in the straight line back to the previous jump point
+				int d = this.parentDir[cur];
+				int parent = this.parentIdx[cur];
+				while (cur != parent) {
+					path.addFirst(new Vector2f(World.pathingToWorld(px), World.pathingToWorld(py)));
+					px -= DX[d];
+					py -= DY[d];
+					cur = px * this.height + py;
+				}
+			} else {
+				path.addFirst(new Vector2f(World.pathingToWorld(px), World.pathingToWorld(py)));
+
+				int d = this.parentDir[cur];
+				cur = (px + DX[d]) * this.height + py + DY[d];
+			}
+		}
+
+		if (path.size() == 0) {
+			return null;
+		}
+
+		return simplifyPath(origin.clone(), path);
+	}
+
+	private LinkedList<Vector2f> simplifyPath(Vector2f origin, LinkedList<Vector2f> path) {
+		LinkedList<Vector2f> newList = new LinkedList<Vector2f>();
+
+		Vector2f prev = origin;
+		newList.addLast(prev);
+
+		for (Vector2f cur : path) {
+			if (!Map.lineOfWalk(newList.getLast(), cur, this.footprint, this.pathingMap, this.entId, this.ignoreId)) {
+				newList.addLast(prev);
+			}
+			prev = cur;
+		}
+
+		newList.addLast(path.getLast());
+
+		newList.removeFirst();
+
+		return newList;
+	}
+
+	// Binary heap on cell indices, ties on F are broken towards the deepest
+	// node, which is what the old linked list scan ended up doing.
+
+	private boolean less(int a, int b) {
+		return this.f[a] < this.f[b] || (this.f[a] == this.f[b] && this.g[a] > this.g[b]);
+	}
+
+	private void push(int idx) {
+		this.heap[this.heapSize] = idx;
+		this.heapPos[idx] = this.heapSize;
+		this.heapSize++;
+		siftUp(this.heapSize - 1);
+	}
+
+	private int pop() {
+		int top = this.heap[0];
+		this.heapSize--;
+		if (this.heapSize > 0) {
+			this.heap[0] = this.heap[this.heapSize];
+			this.heapPos[this.heap[0]] = 0;
+			siftDown(0);
+		}
+		return top;
+	}
+
+	private void siftUp(int pos) {
+		int idx = this.heap[pos];
+		while (pos > 0) {
+			int parent = (pos - 1) >> 1;
+			if (!less(idx, this.heap[parent])) {
+				break;
+			}
+			this.heap[pos] = this.heap[parent];
+			this.heapPos[this.heap[pos]] = pos;
+			pos = parent;
+		}
+		this.heap[pos] = idx;
+		this.heapPos[idx] = pos;
+	}
+
+	private void siftDown(int pos) {
+		int idx = this.heap[pos];
+		int half = this.heapSize >> 1;
+		while (pos < half) {
+			int child = 2 * pos + 1;
+			if (child + 1 < this.heapSize && less(this.heap[child + 1], this.heap[child])) {
+				child++;
+			}
+			if (!less(this.heap[child], idx)) {
+				break;
+			}
+			this.heap[pos] = this.heap[child];
+			this.heapPos[this.heap[pos]] = pos;
+			pos = child;
+		}
+		this.heap[pos] = idx;
+		this.heapPos[idx] = pos;
+	}
+
+	/**
+	 * Makes the search record every expanded point, used for showing the
+	 * searched area when Game.markPathing is on.
+	 */
+	public void recordVisited() {
+		if (this.visited == null) {
+			this.visited = new ArrayList<Point>();
+		}
+	}
+
+	public ArrayList<Point> getVisited() {
+		return this.visited;
+	}
+
+	public Status getStatus() {
+		return this.status;
+	}
+
+	public int getIterations() {
+		return this.iters;
+	}
+
+	public boolean isJumpPointSearch() {
+		return this.jumpPoints;
+	}
+
+	public int getMaxIterations() {
+		return this.maxIters;
+	}
+
+	/**
+	 * @return The length of the found path in pathing cells, before
+	 *         simplification.
+	 */
+	public int getPathCost() {
+		return this.status == Status.FOUND ? this.g[this.destIdx] : 0;
+	}
+}
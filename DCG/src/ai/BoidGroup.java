@@ -14,6 +14,7 @@ import java.util.LinkedList;
 
 import map.AbstractRoom;
 import map.Map;
+import map.SpatialIndex;
 
 import com.jme.math.FastMath;
 import com.jme.math.Vector2f;
@@ -23,7 +24,9 @@ import engine.Profiler;
 import engine.World;
 import entities.actors.NPC.NPCType;
 
-public class BoidGroup {
+public class BoidGroup implements SpatialIndex.Indexed {
+	private static final int PROBE_UPDATE = Profiler.register("BoidGroup.update");
+
 	public enum GroupState {
 		REGROUPING, MOVING, WAITING_FOR_PATH, IDLE
 	};
@@ -33,6 +36,7 @@ public class BoidGroup {
 	private long nextAcqCheckTime;
 	private Vector2f pos;
 	private float radius;
+	private float maxUnitRadius;
 	private LinkedList<BoidUnit> units;
 	private Map map;
 	protected int grpId = 0;
@@ -40,6 +44,8 @@ public class BoidGroup {
 	private HashMap<NPCType, HashMap<Point, LinkedList<ANode>>> goalPaths;
 	private int numMelee, numRanged, numSupport;
 	private ArrayList<BoidUnit> unitsToAdd;
+	private int spatialCell = -1;
+	private int spatialSlot;
 
 	public int getNumMelee() {
 		return numMelee;
@@ -75,6 +81,7 @@ public class BoidGroup {
 			area += FastMath.PI * FastMath.sqr(u.getRadius());
 		}
 		this.radius = FastMath.sqrt(area) * 4;
+		this.maxUnitRadius = Math.max(this.maxUnitRadius, unit.getRadius());
 
 		switch (unit.getAlignType()) {
 			case MELEE :
@@ -90,15 +97,15 @@ public class BoidGroup {
 	}
 
 	public void update(float t) {
-		Profiler.start("BoidGroup.update");
+		Profiler.start(PROBE_UPDATE);
 
-		if (System.currentTimeMillis() > this.nextAcqCheckTime) {
+		if (World.getTimeMillis() > this.nextAcqCheckTime) {
 			if (this.pos.distance(this.map.getWorld().getLocalPlayer().getPosition()) < this.acquisitionRange) {
 				Vector2f lineToPlayer = this.pos.subtract(this.map.getWorld().getLocalPlayer().getPosition());
 				this.pos.set(this.map.getWorld().getLocalPlayer().getPosition().add(lineToPlayer.normalize().mult(5f)));
 			}
 
-			this.nextAcqCheckTime = System.currentTimeMillis() + 500;
+			this.nextAcqCheckTime = World.getTimeMillis() + 500;
 		}
 
 		if (this.unitsToAdd != null && this.unitsToAdd.size() > 0) {
@@ -108,7 +115,7 @@ public class BoidGroup {
 			this.unitsToAdd.clear();
 		}
 
-		Profiler.stop("BoidGroup.update");
+		Profiler.stop(PROBE_UPDATE);
 	}
 
 	public Vector2f getPos() {
@@ -131,8 +138,31 @@ public class BoidGroup {
 		return this.grpId;
 	}
 
+	/**
+	 * The radius of the largest unit in the group.
+	 */
+	public float getMaxUnitRadius() {
+		return this.maxUnitRadius;
+	}
+
+	public int getSpatialCell() {
+		return this.spatialCell;
+	}
+
+	public int getSpatialSlot() {
+		return this.spatialSlot;
+	}
+
+	public void setSpatialSlot(int cell, int slot) {
+		this.spatialCell = cell;
+		this.spatialSlot = slot;
+	}
+
 	public void setPos(Vector2f pos) {
 		this.pos = pos;
+		if (this.spatialCell >= 0) {
+			this.map.getGroupIndex().move(this, pos.x, pos.y);
+		}
 		this.goalPaths.get(NPCType.MELEE).clear();
 		this.goalPaths.get(NPCType.RANGED).clear();
 		this.goalPaths.get(NPCType.MAGIC).clear();
@@ -7,16 +7,13 @@
  */
 package ai;
 
-import java.awt.Point;
-import java.util.ArrayList;
 import java.util.LinkedList;
 
-import threadMessaging.MTMessage;
-import threadMessaging.MTMessageQueue;
-import threadMessaging.MTMessage.MessageType;
+import map.SpatialIndex;
 
 import com.jme.math.Vector2f;
 
+import engine.RandomStream;
 import engine.World;
 import entities.Entity;
 import entities.actors.NPC;
@@ -37,23 +34,43 @@ public class BoidUnit {
 	private int pushTime;
 	private long lastPathingTime;
 	private float lastStepVelocity;
-	private MTMessageQueue msgq; // A is brain -> npc, B is npc -> brain
+	private PathRequest pathRequest;
 
 	private int uid;
 	private NPC npc;
 	private int hadCollision;
+	private RandomStream rnd;
+	private float avoidReach;
+	private SpatialIndex.Visitor<Entity> groupAvoider = new SpatialIndex.Visitor<Entity>() {
+		public void visit(Entity e) {
+			if (e instanceof NPC && e != BoidUnit.this.npc) {
+				BoidUnit other = ((NPC) e).getBoidController();
+				if (other != null && other.group == BoidUnit.this.group) {
+					BoidUnit.this.avoidUnit(other);
+				}
+			}
+		}
+	};
 
-	public BoidUnit(NPC npc, MTMessageQueue msgq) {
+	public BoidUnit(NPC npc) {
 		this.npc = npc;
 		this.speed = npc.getMovementSpeed();
 		this.alignType = npc.getNPCType();
-		this.msgq = msgq;
 		this.hadCollision = 0;
+		this.rnd = npc.getMap().getWorld().newBoidRnd();
+		// The npc takes the id of its group, so the unit needs one of its own
+		this.uid = npc.getMap().getWorld().getNextUid();
 	}
 
 	public void update(float t) {
-		if (this.msgq.hasNextA()) {
-			parseBrainMessage(this.msgq.nextA());
+		if (this.pathRequest != null && this.pathRequest.isDone()) {
+			if (!this.pathRequest.isCancelled()) {
+				if (this.pathRequest.getVisited() != null) {
+					this.npc.markSearchedPath(this.pathRequest.getVisited());
+				}
+				pathFound(this.pathRequest.getPath());
+			}
+			this.pathRequest = null;
 		}
 
 		updateState();
@@ -98,7 +115,7 @@ public class BoidUnit {
 	}
 
 	private long timeInState() {
-		return System.currentTimeMillis() - this.stateTime;
+		return World.getTimeMillis() - this.stateTime;
 	}
 
 	protected void act() {
@@ -138,14 +155,18 @@ public class BoidUnit {
 	}
 
 	private void avoidGroupCollision(float t) {
-		for (BoidUnit other : this.group.getUnits()) {
-			if (!other.equals(this)) {
-				if (this.getPos().distance(other.getPos()) < (this.getRadius() + other.getRadius()) + this.speed * t) {
-					avoid(other.getPos());
-					this.receivePush(this.getPos().subtract(other.getPos()).mult(other.getLastStepVelocity()));
-					other.receivePush(other.getPos().subtract(this.getPos()).mult(this.getLastStepVelocity()));
-				}
-			}
+		// Only units close enough to touch the largest unit of the group are
+		// looked at, and the exact test is done per unit in avoidUnit
+		this.avoidReach = this.speed * t;
+		this.npc.getMap().getActorIndex().queryRadius(this.getPos().x, this.getPos().y,
+				this.getRadius() + this.group.getMaxUnitRadius() + this.avoidReach, this.groupAvoider);
+	}
+
+	private void avoidUnit(BoidUnit other) {
+		if (this.getPos().distance(other.getPos()) < (this.getRadius() + other.getRadius()) + this.avoidReach) {
+			avoid(other.getPos());
+			this.receivePush(this.getPos().subtract(other.getPos()).mult(other.getLastStepVelocity()));
+			other.receivePush(other.getPos().subtract(this.getPos()).mult(this.getLastStepVelocity()));
 		}
 	}
 
@@ -157,8 +178,8 @@ public class BoidUnit {
 		if (this.curPush == null) {
 			this.curPush = new Vector2f(vec).normalize();
 
-			this.curPush.rotateAroundOrigin(this.group.getWorld().getRndFloat(-0.5f, 0.5f), false);
-			this.pushTime = 300 + this.group.getWorld().getRndInt(0, 200);
+			this.curPush.rotateAroundOrigin(this.rnd.getRndFloat(-0.5f, 0.5f), false);
+			this.pushTime = 300 + this.rnd.getRndInt(0, 200);
 			this.setState(BoidUnitState.PUSH_REACT);
 			this.npc.setPath(null);
 		}
@@ -177,7 +198,7 @@ public class BoidUnit {
 	private void setState(BoidUnitState state) {
 		if (!this.state.equals(state)) {
 			this.state = state;
-			this.stateTime = System.currentTimeMillis();
+			this.stateTime = World.getTimeMillis();
 		}
 	}
 
@@ -239,18 +260,10 @@ public class BoidUnit {
 
 	protected void makePathToGroup() {
 		if ((this.state.equals(BoidUnitState.WAITING_FOR_PATH_GROUP) && this.timeInState() < 1000)
-				|| (System.currentTimeMillis() < this.lastPathingTime + 1000)) {
+				|| (World.getTimeMillis() < this.lastPathingTime + 1000)) {
 			return;
 		}
 
-		this.sendMsgToAI(new MTMessage(MessageType.ENTID, (Integer) this.npc.getId()));
-		this.sendMsgToAI(new MTMessage(MessageType.TARGETID, (Integer) this.npc.getTarget().getId()));
-		this.sendMsgToAI(new MTMessage(MessageType.FOOTPRINT, this.npc.getFootprint()));
-		this.sendMsgToAI(new MTMessage(MessageType.CURPOS, this.getPos()));
-		this.sendMsgToAI(new MTMessage(MessageType.MAPLEVEL, this.npc.getMap().getLevel()));
-		// this.sendMsgToAI(new MTMessage(MessageType.FINDPATH,
-		// this.getGroup().getAlignPoint(this.alignType)));
-
 		Vector2f spot = null;
 
 		if (this.npc.walkablePathSpot(this.npc.getTarget().getPosition().x, this.npc.getTarget().getPosition().y,
@@ -280,19 +293,19 @@ public class BoidUnit {
 		}
 
 		if (spot != null) {
-			this.sendMsgToAI(new MTMessage(MessageType.FINDPATH, spot));
+			this.requestPath(this.alignType.ordinal(), spot);
 
 			this.setState(BoidUnitState.WAITING_FOR_PATH_GROUP);
 		} else {
 			System.out.println("No free spot in target room!");
 		}
 
-		this.lastPathingTime = System.currentTimeMillis();
+		this.lastPathingTime = World.getTimeMillis();
 	}
 
 	protected void makePathToTarget() {
 		if ((this.state.equals(BoidUnitState.WAITING_FOR_PATH_TARGET) && this.timeInState() < 1000)
-				|| (System.currentTimeMillis() < this.lastPathingTime + 1000)) {
+				|| (World.getTimeMillis() < this.lastPathingTime + 1000)) {
 			return;
 		}
 
@@ -329,22 +342,40 @@ public class BoidUnit {
 		}
 
 		if (spot != null) {
-			this.sendMsgToAI(new MTMessage(MessageType.ENTID, (Integer) this.npc.getId()));
-			this.sendMsgToAI(new MTMessage(MessageType.TARGETID, (Integer) this.npc.getTarget().getId()));
-			this.sendMsgToAI(new MTMessage(MessageType.FOOTPRINT, this.npc.getFootprint()));
-			this.sendMsgToAI(new MTMessage(MessageType.CURPOS, this.getPos()));
-			this.sendMsgToAI(new MTMessage(MessageType.MAPLEVEL, this.npc.getMap().getLevel()));
-			// this.sendMsgToAI(new MTMessage(MessageType.FINDPATH,
-			// this.getGroup().getAlignPoint(this.alignType)));
-
-			this.sendMsgToAI(new MTMessage(MessageType.FINDPATH, spot));
+			this.requestChase(spot);
 
 			this.setState(BoidUnitState.WAITING_FOR_PATH_TARGET);
 		} else {
 			System.out.println("No way to get to target, no free spot in room.");
 		}
 
-		this.lastPathingTime = System.currentTimeMillis();
+		this.lastPathingTime = World.getTimeMillis();
+	}
+
+	private void requestPath(int goalKind, Vector2f goal) {
+		PathRequest req = new PathRequest(this.npc.getMap().getLevel(), this.getPos(), goal, this.npc.getFootprint(),
+				this.npc.getId(), this.npc.getTarget().getId());
+		req.forUnit(this.uid);
+		req.followFlowField(this.group.getId(), goalKind);
+		this.pathRequest = this.npc.getMap().getWorld().getPathService().submit(req, false);
+	}
+
+	private void requestChase(Vector2f goal) {
+		PathRequest req = new PathRequest(this.npc.getMap().getLevel(), this.getPos(), goal, this.npc.getFootprint(),
+				this.npc.getId(), this.npc.getTarget().getId());
+		req.forUnit(this.uid);
+		req.replanChase();
+		this.pathRequest = this.npc.getMap().getWorld().getPathService().submit(req, false);
+	}
+
+	private void pathFound(LinkedList<Vector2f> path) {
+		this.npc.setPath(path);
+		// System.out.println("path: " + path);
+		if (this.state.equals(BoidUnitState.WAITING_FOR_PATH_GROUP)) {
+			this.setState(BoidUnitState.CATCHING_UP);
+		} else if (this.state.equals(BoidUnitState.WAITING_FOR_PATH_TARGET)) {
+			this.setState(BoidUnitState.TARGET_HUNTING_PATH);
+		}
 	}
 
 	public void addStepInfluence(Vector2f influence) {
@@ -367,32 +398,6 @@ public class BoidUnit {
 		return this.state;
 	}
 
-	private void parseBrainMessage(MTMessage msg) {
-		switch (msg.type) {
-			case PATHLIST :
-				LinkedList<Vector2f> path = (LinkedList<Vector2f>) msg.obj;
-				this.npc.setPath(path);
-				// System.out.println("path: " + path);
-				if (this.state.equals(BoidUnitState.WAITING_FOR_PATH_GROUP)) {
-					this.setState(BoidUnitState.CATCHING_UP);
-				} else if (this.state.equals(BoidUnitState.WAITING_FOR_PATH_TARGET)) {
-					this.setState(BoidUnitState.TARGET_HUNTING_PATH);
-				}
-				break;
-			// case STATE :
-			// this.npc.setCurState((EntityState) msg.obj);
-			// break;
-			case SEARCHEDPATH :
-				this.npc.markSearchedPath((ArrayList<Point>) msg.obj);
-				break;
-		}
-	}
-
-	public void sendMsgToAI(MTMessage msg) {
-		// System.out.println("Sending :" + msg);
-		this.msgq.addB(msg);
-	}
-
 	public NPC getNpc() {
 		return this.npc;
 	}
@@ -0,0 +1,544 @@
+/**
+ * An incremental planner for chasing a moving target, after D* Lite. The
+ * search runs backwards from the goal, so the hunter walking along only adds
+ * to the key modifier. Between replans the spots that changed in the pathing
+ * map are found by comparing the columns of the old and the new snapshot, and
+ * only those are repaired.
+ *
+ * Moving the goal changes the distance of every spot, which costs about as
+ * much as a new search, so the goal is left where it is for as long as the
+ * target can be walked to in a straight line from it, and that last bit is
+ * added to the end of the path. A chase therefore mostly expands only the
+ * spots around what has changed instead of searching the whole way again.
+ *
+ * The planner covers a window of the pathing map around the hunter and the
+ * target, so it stays small enough to keep one for each hunting unit. It is
+ * built again if either of them leaves the window, the target jumps too far
+ * or too much of the map has changed. Moves are to the four neighbours at a
+ * cost of one, as in the FlowField.
+ */
+package ai;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+
+import map.Map;
+import map.PathingGrid;
+
+import com.jme.math.Vector2f;
+
+import engine.World;
+import entities.Entity;
+
+public class DStarLite {
+	// Width and height of the window, in pathing spots
+	private static final int WINDOW = 256;
+	// How close to the edge of the window the hunter and target may get
+	private static final int MARGIN = 16;
+	// How far (in steps) the target may get from the goal before the goal is
+	// moved to it, and before the planner is built again
+	private static final int GOAL_SLACK = World.PATHING_GRANULARITY;
+	private static final int MAX_SHIFT = 3 * World.PATHING_GRANULARITY;
+	private static final int MAX_EXPANSIONS = 4 * WINDOW * WINDOW;
+	private static final int POOL_SIZE = 8;
+	private static final int INF = Integer.MAX_VALUE / 2;
+
+	private static final int[] DX = {1, -1, 0, 0};
+	private static final int[] DY = {0, 0, 1, -1};
+
+	private static LinkedList<DStarLite> pool = new LinkedList<DStarLite>();
+
+	// The window, in pathing spots of the map
+	private int x0;
+	private int y0;
+	private int width;
+	private int height;
+
+	private int[] g;
+	private int[] rhs;
+	private int[] stamp;
+	private int[] walkCache;
+	private int[] heapPos;
+	private int[] dirty;
+	private int curStamp;
+	private int curDirty;
+
+	private long[] heapKey;
+	private int[] heapCell;
+	private int heapSize;
+
+	private PathingGrid pathingMap;
+	private boolean[][] footprint;
+	private int entId;
+	private int ignoreId;
+
+	private int start = -1;
+	private int goal = -1;
+	private int km;
+	private int expansions;
+	private volatile long lastUsed;
+
+	private int[] changed = new int[64];
+
+	private DStarLite() {
+		int cells = WINDOW * WINDOW;
+
+		this.g = new int[cells];
+		this.rhs = new int[cells];
+		this.stamp = new int[cells];
+		this.walkCache = new int[cells];
+		this.heapPos = new int[cells];
+		this.dirty = new int[cells];
+		this.heapKey = new long[256];
+		this.heapCell = new int[256];
+	}
+
+	public static synchronized DStarLite acquire() {
+		if (pool.isEmpty()) {
+			return new DStarLite();
+		}
+		return pool.removeFirst();
+	}
+
+	/**
+	 * Returns a planner to the pool. The planner must not be used afterwards.
+	 */
+	public static synchronized void release(DStarLite p) {
+		p.pathingMap = null;
+		p.footprint = null;
+		p.goal = -1;
+
+		if (pool.size() < POOL_SIZE) {
+			pool.addLast(p);
+		}
+	}
+
+	/**
+	 * Finds the way from the hunter to the target, reusing what is left of
+	 * the last search. Returns the turning points of the path, or null if the
+	 * target cannot be reached inside the window.
+	 */
+	public LinkedList<Vector2f> replan(PathingGrid pathingMap, Vector2f origin, Vector2f target, boolean[][] footprint,
+			int entId, int ignoreId) {
+		this.lastUsed = System.currentTimeMillis();
+		this.expansions = 0;
+
+		int sx = clamp(World.worldToPathing(origin.x), pathingMap.getWidth());
+		int sy = clamp(World.worldToPathing(origin.y), pathingMap.getHeight());
+		int gx = clamp(World.worldToPathing(target.x), pathingMap.getWidth());
+		int gy = clamp(World.worldToPathing(target.y), pathingMap.getHeight());
+
+		if (Math.abs(sx - gx) > WINDOW - 2 * MARGIN || Math.abs(sy - gy) > WINDOW - 2 * MARGIN) {
+			return null;
+		}
+
+		boolean rebuild = this.goal < 0 || pathingMap.getWidth() != this.pathingMap.getWidth()
+				|| pathingMap.getHeight() != this.pathingMap.getHeight() || entId != this.entId
+				|| ignoreId != this.ignoreId || footprint.length != this.footprint.length
+				|| footprint[0].length != this.footprint[0].length || !inWindow(sx, sy) || !inWindow(gx, gy)
+				|| distance(local(gx, gy), this.goal) > MAX_SHIFT;
+
+		if (!rebuild) {
+			// The hunter has moved, which lowers the keys of everything queued
+			// by up to the distance moved
+			int newStart = local(sx, sy);
+			this.km += distance(this.start, newStart);
+			this.start = newStart;
+
+			if (pathingMap != this.pathingMap) {
+				rebuild = !applyChanges(pathingMap);
+			}
+		}
+
+		if (rebuild) {
+			build(pathingMap, sx, sy, gx, gy, footprint, entId, ignoreId);
+		} else {
+			int newGoal = local(gx, gy);
+			if (newGoal != this.goal
+					&& (distance(newGoal, this.goal) > GOAL_SLACK || !Map.lineOfWalk(position(this.goal), target,
+							footprint, pathingMap, entId, ignoreId))) {
+				int oldGoal = this.goal;
+				this.goal = newGoal;
+				updateVertex(oldGoal);
+				updateVertex(newGoal);
+			}
+		}
+
+		if (!computeShortestPath()) {
+			return null;
+		}
+
+		LinkedList<Vector2f> path = buildPath();
+		if (path == null) {
+			return null;
+		}
+		if (this.goal != local(gx, gy)) {
+			path.addLast(target.clone());
+		}
+		if (path.size() == 0) {
+			return null;
+		}
+
+		return FlowField.simplifyPath(origin.clone(), path, this.footprint, this.pathingMap, this.entId,
+				this.ignoreId);
+	}
+
+	public long getLastUsed() {
+		return this.lastUsed;
+	}
+
+	/**
+	 * The number of spots expanded by the last replan.
+	 */
+	public int getExpansions() {
+		return this.expansions;
+	}
+
+	private void build(PathingGrid pathingMap, int sx, int sy, int gx, int gy, boolean[][] footprint, int entId,
+			int ignoreId) {
+		this.pathingMap = pathingMap;
+		this.footprint = footprint;
+		this.entId = entId;
+		this.ignoreId = ignoreId;
+
+		this.width = Math.min(WINDOW, pathingMap.getWidth());
+		this.height = Math.min(WINDOW, pathingMap.getHeight());
+		this.x0 = Math.max(0, Math.min(pathingMap.getWidth() - this.width, (sx + gx) / 2 - this.width / 2));
+		this.y0 = Math.max(0, Math.min(pathingMap.getHeight() - this.height, (sy + gy) / 2 - this.height / 2));
+
+		if (this.curStamp == Integer.MAX_VALUE) {
+			Arrays.fill(this.stamp, 0);
+			this.curStamp = 0;
+		}
+		this.curStamp++;
+
+		this.heapSize = 0;
+		this.km = 0;
+		this.start = local(sx, sy);
+		this.goal = local(gx, gy);
+		touch(this.goal);
+		this.rhs[this.goal] = 0;
+		push(this.goal, key(this.goal));
+	}
+
+	/**
+	 * Repairs the planner for the spots that differ between the snapshot it
+	 * was using and the given one. Snapshots share the columns that have not
+	 * been written to, so only the columns that are not the same array are
+	 * looked at. Returns false if so much has changed that building the
+	 * planner again is cheaper.
+	 */
+	private boolean applyChanges(PathingGrid pathingMap) {
+		PathingGrid old = this.pathingMap;
+		int rx = this.footprint.length;
+		int ry = this.footprint[0].length;
+		int numChanged = 0;
+
+		// A spot changing affects whether a footprint on any spot near it fits
+		int xs = Math.max(0, this.x0 - rx), xe = Math.min(old.getWidth(), this.x0 + this.width + rx);
+		int ys = Math.max(0, this.y0 - ry), ye = Math.min(old.getHeight(), this.y0 + this.height + ry);
+		for (int x = xs; x < xe; x++) {
+			if (old.sharesColumn(pathingMap, x)) {
+				continue;
+			}
+			for (int y = ys; y < ye; y++) {
+				if (old.get(x, y) != pathingMap.get(x, y)) {
+					if (numChanged == this.changed.length) {
+						this.changed = Arrays.copyOf(this.changed, numChanged * 2);
+					}
+					this.changed[numChanged++] = x * old.getHeight() + y;
+				}
+			}
+		}
+
+		this.pathingMap = pathingMap;
+		if (numChanged == 0) {
+			return true;
+		}
+
+		if (this.curDirty == Integer.MAX_VALUE) {
+			Arrays.fill(this.dirty, 0);
+			this.curDirty = 0;
+		}
+		this.curDirty++;
+
+		// Forget whether the spots near the changes are walkable, and collect
+		// those that had been reached
+		int numDirty = 0;
+		int[] repair = this.changed;
+		int numRepair = numChanged;
+		for (int c = 0; c < numRepair; c++) {
+			int cx = repair[c] / old.getHeight();
+			int cy = repair[c] - cx * old.getHeight();
+			for (int x = Math.max(this.x0, cx - rx); x <= Math.min(this.x0 + this.width - 1, cx + rx); x++) {
+				for (int y = Math.max(this.y0, cy - ry); y <= Math.min(this.y0 + this.height - 1, cy + ry); y++) {
+					int i = local(x, y);
+					if (this.stamp[i] == this.curStamp && this.dirty[i] != this.curDirty) {
+						this.dirty[i] = this.curDirty;
+						this.walkCache[i] = 0;
+						numDirty++;
+					}
+				}
+			}
+		}
+
+		if (numDirty > this.width * this.height / 4) {
+			return false;
+		}
+
+		// The edges to and from each of them may have changed, so their
+		// neighbours are updated as well
+		for (int c = 0; c < numRepair; c++) {
+			int cx = repair[c] / old.getHeight();
+			int cy = repair[c] - cx * old.getHeight();
+			for (int x = Math.max(this.x0, cx - rx); x <= Math.min(this.x0 + this.width - 1, cx + rx); x++) {
+				for (int y = Math.max(this.y0, cy - ry); y <= Math.min(this.y0 + this.height - 1, cy + ry); y++) {
+					int i = local(x, y);
+					if (this.dirty[i] == this.curDirty) {
+						// Only once per spot
+						this.dirty[i] = -this.curDirty;
+						updateVertex(i);
+						for (int d = 0; d < 4; d++) {
+							int n = neighbour(i, d);
+							if (n >= 0 && this.dirty[n] != -this.curDirty) {
+								updateVertex(n);
+							}
+						}
+					}
+				}
+			}
+		}
+
+		return true;
+	}
+
+	private boolean computeShortestPath() {
+		touch(this.start);
+
+		while (this.heapSize > 0
+				&& (this.heapKey[0] < key(this.start) || this.rhs[this.start] != this.g[this.start])) {
+			if (this.expansions++ >= MAX_EXPANSIONS) {
+				return false;
+			}
+
+			int u = this.heapCell[0];
+			long kOld = this.heapKey[0];
+			long kNew = key(u);
+
+			if (kOld < kNew) {
+				remove(u);
+				push(u, kNew);
+			} else if (this.g[u] > this.rhs[u]) {
+				remove(u);
+				this.g[u] = this.rhs[u];
+				for (int d = 0; d < 4; d++) {
+					int n = neighbour(u, d);
+					if (n >= 0) {
+						updateVertex(n);
+					}
+				}
+			} else {
+				this.g[u] = INF;
+				updateVertex(u);
+				for (int d = 0; d < 4; d++) {
+					int n = neighbour(u, d);
+					if (n >= 0) {
+						updateVertex(n);
+					}
+				}
+			}
+		}
+
+		return this.g[this.start] < INF;
+	}
+
+	private void updateVertex(int u) {
+		touch(u);
+
+		if (u == this.goal) {
+			this.rhs[u] = 0;
+		} else {
+			int best = INF;
+			if (walkable(u)) {
+				for (int d = 0; d < 4; d++) {
+					int n = neighbour(u, d);
+					if (n >= 0 && this.stamp[n] == this.curStamp && this.g[n] + 1 < best && walkable(n)) {
+						best = this.g[n] + 1;
+					}
+				}
+			}
+			this.rhs[u] = best;
+		}
+
+		if (this.heapPos[u] >= 0) {
+			remove(u);
+		}
+		if (this.g[u] != this.rhs[u]) {
+			push(u, key(u));
+		}
+	}
+
+	/**
+	 * Walks downhill from the hunter to the goal.
+	 */
+	private LinkedList<Vector2f> buildPath() {
+		LinkedList<Vector2f> path = new LinkedList<Vector2f>();
+		int cur = this.start;
+		int steps = 0;
+
+		while (cur != this.goal) {
+			int next = -1;
+			for (int d = 0; d < 4; d++) {
+				int n = neighbour(cur, d);
+				if (n >= 0 && this.stamp[n] == this.curStamp && this.g[n] < this.g[cur]
+						&& (next < 0 || this.g[n] < this.g[next]) && walkable(n)) {
+					next = n;
+				}
+			}
+
+			if (next < 0 || ++steps > this.width * this.height) {
+				return null;
+			}
+
+			cur = next;
+			path.addLast(position(cur));
+		}
+
+		return path;
+	}
+
+	private long key(int u) {
+		int m = Math.min(this.g[u], this.rhs[u]);
+		return ((long) (m + distance(this.start, u) + this.km) << 32) | m;
+	}
+
+	private void touch(int i) {
+		if (this.stamp[i] != this.curStamp) {
+			this.stamp[i] = this.curStamp;
+			this.g[i] = INF;
+			this.rhs[i] = INF;
+			this.heapPos[i] = -1;
+			this.walkCache[i] = 0;
+		}
+	}
+
+	private boolean walkable(int i) {
+		// Both ends are where the hunter and target already are
+		if (i == this.start || i == this.goal) {
+			return true;
+		}
+
+		int c = this.walkCache[i];
+		if (c != 0) {
+			return c > 0;
+		}
+
+		int lx = i / this.height;
+		boolean w = Entity.walkablePathSpot(this.x0 + lx, this.y0 + i - lx * this.height, this.footprint,
+				this.pathingMap, this.entId, this.ignoreId);
+		this.walkCache[i] = w ? 1 : -1;
+		return w;
+	}
+
+	private boolean inWindow(int x, int y) {
+		return x >= this.x0 && y >= this.y0 && x < this.x0 + this.width && y < this.y0 + this.height
+				&& (x - this.x0 >= MARGIN || this.x0 == 0) && (y - this.y0 >= MARGIN || this.y0 == 0)
+				&& (this.x0 + this.width - x > MARGIN || this.x0 + this.width == this.pathingMap.getWidth())
+				&& (this.y0 + this.height - y > MARGIN || this.y0 + this.height == this.pathingMap.getHeight());
+	}
+
+	private Vector2f position(int i) {
+		int lx = i / this.height;
+		return new Vector2f(World.pathingToWorld(this.x0 + lx), World.pathingToWorld(this.y0 + i - lx * this.height));
+	}
+
+	private int local(int x, int y) {
+		return (x - this.x0) * this.height + (y - this.y0);
+	}
+
+	private int neighbour(int i, int d) {
+		int lx = i / this.height;
+		int nx = lx + DX[d];
+		int ny = i - lx * this.height + DY[d];
+		if (nx < 0 || ny < 0 || nx >= this.width || ny >= this.height) {
+			return -1;
+		}
+		return nx * this.height + ny;
+	}
+
+	private int distance(int a, int b) {
+		int ax = a / this.height;
+		int bx = b / this.height;
+		return Math.abs(ax - bx) + Math.abs(a - ax * this.height - (b - bx * this.height));
+	}
+
+	private static int clamp(int p, int size) {
+		return Math.max(0, Math.min(size - 1, p));
+	}
+
+	// Indexed binary min-heap of cells, keyed on the two part D* Lite key
+	// packed into a long
+
+	private void push(int cell, long key) {
+		if (this.heapSize == this.heapKey.length) {
+			this.heapKey = Arrays.copyOf(this.heapKey, this.heapSize * 2);
+			this.heapCell = Arrays.copyOf(this.heapCell, this.heapSize * 2);
+		}
+		siftUp(this.heapSize++, cell, key);
+	}
+
+	private void remove(int cell) {
+		int i = this.heapPos[cell];
+		this.heapPos[cell] = -1;
+		this.heapSize--;
+		if (i == this.heapSize) {
+			return;
+		}
+
+		int last = this.heapCell[this.heapSize];
+		long key = this.heapKey[this.heapSize];
+		if (i > 0 && this.heapKey[(i - 1) >> 1] > key) {
+			siftUp(i, last, key);
+		} else {
+			siftDown(i, last, key);
+		}
+	}
+
+	private void siftUp(int i, int cell, long key) {
+		while (i > 0) {
+			int parent = (i - 1) >> 1;
+			if (this.heapKey[parent] <= key) {
+				break;
+			}
+			this.heapKey[i] = this.heapKey[parent];
+			this.heapCell[i] = this.heapCell[parent];
+			this.heapPos[this.heapCell[i]] = i;
+			i = parent;
+		}
+		this.heapKey[i] = key;
+		this.heapCell[i] = cell;
+		this.heapPos[cell] = i;
+	}
+
+	private void siftDown(int i, int cell, long key) {
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= this.heapSize) {
+				break;
+			}
+			if (child + 1 < this.heapSize && this.heapKey[child + 1] < this.heapKey[child]) {
+				child++;
+			}
+			if (this.heapKey[child] >= key) {
+				break;
+			}
+			this.heapKey[i] = this.heapKey[child];
+			this.heapCell[i] = this.heapCell[child];
+			this.heapPos[this.heapCell[i]] = i;
+			i = child;
+		}
+		this.heapKey[i] = key;
+		this.heapCell[i] = cell;
+		this.heapPos[cell] = i;
+	}
+}
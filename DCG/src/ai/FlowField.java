@@ -0,0 +1,415 @@
+/**
+ * An integration field over a pathing map, holding the walking distance from
+ * every reached pathing spot to a goal. Units of a boid group all sample the
+ * same field by walking downhill from their own position, so a group chasing
+ * a goal costs one search instead of one A* per unit.
+ *
+ * The field is filled in lazily by a Dijkstra expansion from the goal, which
+ * only runs as far as the spots that have been sampled so far. Only walls are
+ * in the way of the field, so it does not depend on which unit of the group
+ * asks or where the units stand. When the goal moves no further than
+ * GOAL_SLACK and can be walked to in a straight line from the goal the field
+ * was built for, the field is kept and the units walk downhill to the old
+ * goal and on to the new one, as in DStarLite. Otherwise the field is
+ * expanded again from the new goal, keeping what it found out about which
+ * spots the footprint fits on if the snapshot is the same.
+ */
+package ai;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+
+import map.Map;
+import map.PathingGrid;
+
+import com.jme.math.Vector2f;
+
+import engine.World;
+import entities.Entity;
+
+public class FlowField {
+	// A field keeps using the snapshot it was built from until it is this
+	// old (ms), as new snapshots arrive every frame that something moves
+	private static final int MAX_AGE = 500;
+	private static final int POOL_SIZE = 4;
+	// Longest straight line tried when smoothing a path, in world units
+	private static final float MAX_SEGMENT = 4f;
+	// Furthest the goal may move from the goal the field was built for
+	// before the field is expanded again, in pathing spots
+	private static final int GOAL_SLACK = World.PATHING_GRANULARITY;
+
+	private static final int[] DX = {1, -1, 0, 0};
+	private static final int[] DY = {0, 0, 1, -1};
+
+	private static LinkedList<FlowField> pool = new LinkedList<FlowField>();
+
+	private int width;
+	private int height;
+
+	private int[] value;
+	private int[] stamp;
+	private int[] walkCache;
+	private int curStamp;
+	private int walkStamp;
+
+	private int[] heapKey;
+	private int[] heapCell;
+	private int heapSize;
+
+	private PathingGrid pathingMap;
+	private boolean[][] footprint;
+	private int entId;
+	private int ignoreId;
+
+	private int goalIdx = -1;
+	private int targetIdx;
+	private Vector2f target;
+	private long buildTime;
+	private volatile long lastUsed;
+	private int expansions;
+
+	private FlowField(int width, int height) {
+		int cells = width * height;
+
+		this.width = width;
+		this.height = height;
+		this.value = new int[cells];
+		this.stamp = new int[cells];
+		this.walkCache = new int[cells];
+		this.heapKey = new int[256];
+		this.heapCell = new int[256];
+	}
+
+	/**
+	 * Hands out a field for a pathing map of the given size, reusing a
+	 * released one if possible.
+	 */
+	public static synchronized FlowField acquire(PathingGrid pathingMap) {
+		Iterator<FlowField> it = pool.iterator();
+		while (it.hasNext()) {
+			FlowField f = it.next();
+			if (f.fits(pathingMap)) {
+				it.remove();
+				return f;
+			}
+		}
+		return new FlowField(pathingMap.getWidth(), pathingMap.getHeight());
+	}
+
+	/**
+	 * Returns a field to the pool. The field must not be used afterwards.
+	 */
+	public static synchronized void release(FlowField f) {
+		f.pathingMap = null;
+		f.footprint = null;
+		f.goalIdx = -1;
+
+		if (pool.size() >= POOL_SIZE) {
+			pool.removeFirst();
+		}
+		pool.addLast(f);
+	}
+
+	public boolean fits(PathingGrid pathingMap) {
+		return pathingMap.getWidth() == this.width && pathingMap.getHeight() == this.height;
+	}
+
+	/**
+	 * Points the field at a goal for the given entity. If the field was built
+	 * for the same footprint not too long ago and for a goal near enough to
+	 * this one it is kept, otherwise it is built anew from the given pathing
+	 * map snapshot.
+	 */
+	public void setGoal(PathingGrid pathingMap, Vector2f goal, boolean[][] footprint, int entId, int ignoreId) {
+		this.lastUsed = System.currentTimeMillis();
+
+		int gx = clamp(World.worldToPathing(goal.x), this.width);
+		int gy = clamp(World.worldToPathing(goal.y), this.height);
+		int idx = gx * this.height + gy;
+
+		this.entId = entId;
+		this.ignoreId = ignoreId;
+		this.target = goal.clone();
+		this.targetIdx = idx;
+
+		if (this.goalIdx < 0 || (pathingMap != this.pathingMap && this.lastUsed > this.buildTime + MAX_AGE)
+				|| !fits(pathingMap) || footprint.length != this.footprint.length
+				|| footprint[0].length != this.footprint[0].length) {
+			build(pathingMap, idx, footprint);
+		} else if (idx != this.goalIdx
+				&& (distance(idx, this.goalIdx) > GOAL_SLACK || !Map.lineOfWalk(position(this.goalIdx), goal,
+						footprint, pathingMap, entId, ignoreId))) {
+			build(pathingMap, idx, footprint);
+		}
+	}
+
+	/**
+	 * Walks downhill from the given position to the goal the field was built
+	 * for and on to the goal it was last pointed at, and returns the turning
+	 * points of the walk. Returns null if the goal cannot be reached.
+	 */
+	public LinkedList<Vector2f> pathFrom(Vector2f origin) {
+		this.lastUsed = System.currentTimeMillis();
+
+		int px = clamp(World.worldToPathing(origin.x), this.width);
+		int py = clamp(World.worldToPathing(origin.y), this.height);
+		int cur = px * this.height + py;
+
+		if (!settle(cur)) {
+			// Standing on a spot the footprint does not fit on, start from
+			// the best neighbour instead
+			int best = -1;
+			for (int d = 0; d < 4; d++) {
+				int nx = px + DX[d];
+				int ny = py + DY[d];
+				if (nx >= 0 && ny >= 0 && nx < this.width && ny < this.height) {
+					int n = nx * this.height + ny;
+					if (settle(n) && (best < 0 || this.value[n] < this.value[best])) {
+						best = n;
+					}
+				}
+			}
+			if (best < 0) {
+				return null;
+			}
+			cur = best;
+		}
+
+		LinkedList<Vector2f> path = new LinkedList<Vector2f>();
+		while (cur != this.goalIdx) {
+			int cx = cur / this.height;
+			int cy = cur - cx * this.height;
+
+			int next = -1;
+			for (int d = 0; d < 4; d++) {
+				int nx = cx + DX[d];
+				int ny = cy + DY[d];
+				if (nx >= 0 && ny >= 0 && nx < this.width && ny < this.height) {
+					int n = nx * this.height + ny;
+					if (this.stamp[n] == this.curStamp && this.value[n] < this.value[cur]
+							&& (next < 0 || this.value[n] < this.value[next])) {
+						next = n;
+					}
+				}
+			}
+
+			if (next < 0) {
+				// Stuck in a dip that is not the goal, should not happen
+				return null;
+			}
+
+			cur = next;
+			path.addLast(position(cur));
+		}
+		if (this.targetIdx != this.goalIdx) {
+			path.addLast(this.target.clone());
+		}
+
+		if (path.size() == 0) {
+			return null;
+		}
+
+		return simplifyPath(origin.clone(), path, this.footprint, this.pathingMap, this.entId, this.ignoreId);
+	}
+
+	public void touch() {
+		this.lastUsed = System.currentTimeMillis();
+	}
+
+	public long getLastUsed() {
+		return this.lastUsed;
+	}
+
+	/**
+	 * The number of spots expanded since the field was last built, which is
+	 * not when the goal moves within GOAL_SLACK.
+	 */
+	public int getExpansions() {
+		return this.expansions;
+	}
+
+	private void build(PathingGrid pathingMap, int goal, boolean[][] footprint) {
+		if (pathingMap != this.pathingMap || this.footprint == null || footprint.length != this.footprint.length
+				|| footprint[0].length != this.footprint[0].length) {
+			// Which spots the footprint fits on is only known for the snapshot
+			// and footprint size it was found out for
+			if (this.walkStamp == Integer.MAX_VALUE) {
+				Arrays.fill(this.walkCache, 0);
+				this.walkStamp = 0;
+			}
+			this.walkStamp++;
+		}
+
+		this.pathingMap = pathingMap;
+		this.footprint = footprint;
+		this.buildTime = this.lastUsed;
+		this.expansions = 0;
+
+		if (this.curStamp == Integer.MAX_VALUE) {
+			Arrays.fill(this.stamp, 0);
+			this.curStamp = 0;
+		}
+		this.curStamp++;
+
+		this.heapSize = 0;
+		this.goalIdx = goal;
+		this.stamp[goal] = this.curStamp;
+		this.value[goal] = 0;
+		push(0, goal);
+	}
+
+	/**
+	 * Expands the field until the value of the given spot is final. Returns
+	 * false if the spot cannot be reached.
+	 */
+	private boolean settle(int idx) {
+		while (this.heapSize > 0) {
+			if (this.stamp[idx] == this.curStamp && this.heapKey[0] >= this.value[idx]) {
+				return true;
+			}
+
+			int key = this.heapKey[0];
+			int cur = this.heapCell[0];
+			pop();
+
+			if (key > this.value[cur]) {
+				// Lowered after being queued
+				continue;
+			}
+
+			this.expansions++;
+			int cx = cur / this.height;
+			int cy = cur - cx * this.height;
+			int nv = key + 1;
+
+			for (int d = 0; d < 4; d++) {
+				int nx = cx + DX[d];
+				int ny = cy + DY[d];
+				if (nx < 0 || ny < 0 || nx >= this.width || ny >= this.height) {
+					continue;
+				}
+
+				int n = nx * this.height + ny;
+				if (this.stamp[n] == this.curStamp) {
+					if (nv < this.value[n]) {
+						this.value[n] = nv;
+						push(nv, n);
+					}
+				} else if (walkable(nx, ny, n)) {
+					this.stamp[n] = this.curStamp;
+					this.value[n] = nv;
+					push(nv, n);
+				}
+			}
+		}
+
+		return this.stamp[idx] == this.curStamp;
+	}
+
+	private boolean walkable(int px, int py, int idx) {
+		int c = this.walkCache[idx];
+		if (c == this.walkStamp) {
+			return true;
+		} else if (c == -this.walkStamp) {
+			return false;
+		}
+
+		boolean w = Entity.clearOfWalls(px, py, this.footprint, this.pathingMap);
+		this.walkCache[idx] = w ? this.walkStamp : -this.walkStamp;
+		return w;
+	}
+
+	private Vector2f position(int idx) {
+		int x = idx / this.height;
+		return new Vector2f(World.pathingToWorld(x), World.pathingToWorld(idx - x * this.height));
+	}
+
+	private int distance(int a, int b) {
+		int ax = a / this.height;
+		int bx = b / this.height;
+		return Math.abs(ax - bx) + Math.abs(a - ax * this.height - (b - bx * this.height));
+	}
+
+	/**
+	 * Drops the turning points that can be walked past in a straight line.
+	 */
+	static LinkedList<Vector2f> simplifyPath(Vector2f origin, LinkedList<Vector2f> path, boolean[][] footprint,
+			PathingGrid pathingMap, int entId, int ignoreId) {
+		LinkedList<Vector2f> newList = new LinkedList<Vector2f>();
+
+		Vector2f prev = origin;
+		newList.addLast(prev);
+
+		// Segments are kept short, so smoothing a long walk stays linear in its
+		// length rather than testing ever longer lines from the last corner
+		for (Vector2f cur : path) {
+			if (newList.getLast().distance(cur) > MAX_SEGMENT
+					|| !Map.lineOfWalk(newList.getLast(), cur, footprint, pathingMap, entId, ignoreId)) {
+				newList.addLast(prev);
+			}
+			prev = cur;
+		}
+
+		newList.addLast(path.getLast());
+
+		newList.removeFirst();
+
+		return newList;
+	}
+
+	private static int clamp(int p, int size) {
+		return Math.max(0, Math.min(size - 1, p));
+	}
+
+	// Binary min-heap of (key, cell) pairs. A cell is queued again when it is
+	// lowered, and the stale entry is skipped when it is popped.
+
+	private void push(int key, int cell) {
+		if (this.heapSize == this.heapKey.length) {
+			this.heapKey = Arrays.copyOf(this.heapKey, this.heapSize * 2);
+			this.heapCell = Arrays.copyOf(this.heapCell, this.heapSize * 2);
+		}
+
+		int i = this.heapSize++;
+		while (i > 0) {
+			int parent = (i - 1) >> 1;
+			if (this.heapKey[parent] <= key) {
+				break;
+			}
+			this.heapKey[i] = this.heapKey[parent];
+			this.heapCell[i] = this.heapCell[parent];
+			i = parent;
+		}
+		this.heapKey[i] = key;
+		this.heapCell[i] = cell;
+	}
+
+	private void pop() {
+		this.heapSize--;
+		if (this.heapSize == 0) {
+			return;
+		}
+
+		int key = this.heapKey[this.heapSize];
+		int cell = this.heapCell[this.heapSize];
+		int i = 0;
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= this.heapSize) {
+				break;
+			}
+			if (child + 1 < this.heapSize && this.heapKey[child + 1] < this.heapKey[child]) {
+				child++;
+			}
+			if (this.heapKey[child] >= key) {
+				break;
+			}
+			this.heapKey[i] = this.heapKey[child];
+			this.heapCell[i] = this.heapCell[child];
+			i = child;
+		}
+		this.heapKey[i] = key;
+		this.heapCell[i] = cell;
+	}
+}
@@ -0,0 +1,180 @@
+/**
+ * A request for a path, handed to the PathService and polled by whoever made
+ * it until isDone() returns true. Holds everything the search needs to know
+ * about the entity, so the search never looks at the entity itself.
+ *
+ * A request is either a plain search, which may be restricted to some rooms
+ * or planned through the room graph first, and may look for somewhere close
+ * by if the destination cannot be reached,
+ * a walk along the flow field of a boid group, or a replan of the entity's
+ * chase after a moving target.
+ */
+package ai;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.LinkedList;
+
+import map.RoomGraph;
+
+import com.jme.math.Vector2f;
+
+public class PathRequest {
+	public enum Status {
+		QUEUED, SEARCHING, DONE, CANCELLED
+	};
+
+	int level;
+	Vector2f origin;
+	Vector2f dest;
+	boolean[][] footprint;
+	int entId;
+	int unitId;
+	int targetId;
+	boolean urgent;
+	boolean fallback;
+
+	int[] regionTiles;
+	int regionHeight;
+	boolean[] regionAllowed;
+
+	RoomGraph roomGraph;
+	private volatile RoomGraph.Route route;
+
+	boolean flow;
+	int groupId;
+	int goalKind;
+
+	boolean chase;
+
+	long sentTime;
+	volatile Status status = Status.QUEUED;
+	private volatile LinkedList<Vector2f> path;
+	private volatile ArrayList<Point> visited;
+
+	public PathRequest(int level, Vector2f origin, Vector2f dest, boolean[][] footprint, int entId, int targetId) {
+		this.level = level;
+		this.origin = origin.clone();
+		this.dest = dest.clone();
+		this.footprint = footprint;
+		this.entId = entId;
+		this.unitId = entId;
+		this.targetId = targetId;
+	}
+
+	/**
+	 * Sets the unit the request is for, when several units share the entity
+	 * id, as those of a boid group do. A unit has one request pending at a
+	 * time, and one chase planner. Defaults to the entity id. Must be called
+	 * before the request is submitted.
+	 */
+	public void forUnit(int unitId) {
+		this.unitId = unitId;
+	}
+
+	/**
+	 * Restricts the search to some of the tiles of the map, see
+	 * AStarSearch.restrictTo(). Must be called before the request is
+	 * submitted.
+	 */
+	public void restrictTo(int[] tiles, int tileHeight, boolean[] allowed) {
+		this.regionTiles = tiles;
+		this.regionHeight = tileHeight;
+		this.regionAllowed = allowed;
+	}
+
+	/**
+	 * Makes the worker plan a route through the rooms of the graph first, see
+	 * RoomGraph.plan(), and only search the first segment of the route if
+	 * there is one. Must be called before the request is submitted.
+	 */
+	public void planRoute(RoomGraph graph) {
+		this.roomGraph = graph;
+	}
+
+	/**
+	 * Makes the search try spots between the origin and the destination if
+	 * the destination cannot be reached. Must be called before the request is
+	 * submitted.
+	 */
+	public void tryAlternatives() {
+		this.fallback = true;
+	}
+
+	/**
+	 * Makes the request walk the flow field of the given group towards the
+	 * destination, with a plain search only if the field cannot get there.
+	 * Must be called before the request is submitted.
+	 */
+	public void followFlowField(int groupId, int goalKind) {
+		this.flow = true;
+		this.groupId = groupId;
+		this.goalKind = goalKind;
+	}
+
+	/**
+	 * Makes the request repair the path the entity found last time it chased
+	 * the same target, see DStarLite, with a plain search only if that fails.
+	 * Must be called before the request is submitted.
+	 */
+	public void replanChase() {
+		this.chase = true;
+	}
+
+	public Status getStatus() {
+		return this.status;
+	}
+
+	/**
+	 * True once the search is over, whether or not a path was found, or if
+	 * the request was cancelled.
+	 */
+	public boolean isDone() {
+		return this.status == Status.DONE || this.status == Status.CANCELLED;
+	}
+
+	public boolean isCancelled() {
+		return this.status == Status.CANCELLED;
+	}
+
+	/**
+	 * The path found, or null if there is none or the search is not done.
+	 */
+	public LinkedList<Vector2f> getPath() {
+		return this.path;
+	}
+
+	/**
+	 * The pathing spots the search looked at, if Game.markPathing was set
+	 * when it ran.
+	 */
+	public ArrayList<Point> getVisited() {
+		return this.visited;
+	}
+
+	/**
+	 * The route planned through the rooms, its first segment already handed
+	 * out and searched, or null if the destination was searched for directly.
+	 */
+	public RoomGraph.Route getRoute() {
+		return this.route;
+	}
+
+	void setRoute(RoomGraph.Route route) {
+		this.route = route;
+	}
+
+	public int getEntId() {
+		return this.entId;
+	}
+
+	void setResult(LinkedList<Vector2f> path, ArrayList<Point> visited) {
+		this.path = path;
+		this.visited = visited;
+	}
+
+	@Override
+	public String toString() {
+		return "PathRequest(" + this.entId + ", " + this.origin + " -> " + this.dest + ", " + this.status + ")";
+	}
+}
@@ -0,0 +1,407 @@
+/**
+ * Finds paths off the game thread. The game thread submits a PathRequest and
+ * polls it, and the AI workers take requests from the service and run them
+ * against the AI thread's snapshots of the pathing maps.
+ *
+ * Urgent requests, those of the local player, are taken before the others.
+ * A unit has at most one request pending, so a new request from the same
+ * unit cancels the old one, also if it is being searched. The queue is
+ * bounded, and when it is full the oldest request is dropped to make room,
+ * a normal one if there is any.
+ *
+ * Also keeps the flow fields shared by the units of a boid group, and the
+ * planners of the units chasing a target.
+ */
+package ai;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+
+import map.PathingGrid;
+import map.RoomGraph;
+import ai.AStarSearch.Status;
+
+import com.jme.math.Vector2f;
+
+import engine.Game;
+import engine.World;
+import entities.Entity;
+
+public class PathService {
+
+	/**
+	 * Where the service gets its pathing maps from. The maps handed out must
+	 * never be written to.
+	 */
+	public interface MapSource {
+		public PathingGrid getPathingMap(int level);
+	}
+
+	private static final int QUEUE_CAPACITY = 256;
+	// A* iterations between checks for cancellation
+	private static final int SEARCH_STEP = 500;
+	// Flow fields and planners not used for this long (ms) are dropped
+	private static final int FLOW_FIELD_TIMEOUT = 5000;
+	private static final int PLANNER_TIMEOUT = 5000;
+	// Planners kept at most, the least recently used is dropped beyond that
+	private static final int MAX_PLANNERS = 16;
+
+	private MapSource maps;
+	private LinkedList<PathRequest> urgent = new LinkedList<PathRequest>();
+	private LinkedList<PathRequest> normal = new LinkedList<PathRequest>();
+	private HashMap<Integer, PathRequest> pending = new HashMap<Integer, PathRequest>();
+	private HashMap<Long, FlowField> flowFields = new HashMap<Long, FlowField>();
+	private HashMap<Integer, DStarLite> planners = new HashMap<Integer, DStarLite>();
+
+	private int dropped;
+	private int cancelled;
+	private int replans;
+	private long replanExpansions;
+
+	public PathService(MapSource maps) {
+		this.maps = maps;
+	}
+
+	/**
+	 * Queues a request, cancelling any other request pending for the same
+	 * unit.
+	 *
+	 * @param urgent
+	 *            True to have the request searched before any normal ones
+	 */
+	public synchronized PathRequest submit(PathRequest req, boolean urgent) {
+		PathRequest old = this.pending.get(req.unitId);
+		if (old != null) {
+			cancel(old);
+		}
+
+		if (this.urgent.size() + this.normal.size() >= QUEUE_CAPACITY) {
+			PathRequest drop = this.normal.isEmpty() ? this.urgent.getFirst() : this.normal.getFirst();
+			cancel(drop);
+			this.dropped++;
+		}
+
+		req.urgent = urgent;
+		req.sentTime = System.nanoTime();
+		req.status = PathRequest.Status.QUEUED;
+		this.pending.put(req.unitId, req);
+		if (urgent) {
+			this.urgent.addLast(req);
+		} else {
+			this.normal.addLast(req);
+		}
+
+		return req;
+	}
+
+	/**
+	 * Cancels a request. If it is being searched, the search stops shortly
+	 * after.
+	 */
+	public synchronized void cancel(PathRequest req) {
+		if (req.isDone()) {
+			return;
+		}
+
+		if (req.status == PathRequest.Status.QUEUED) {
+			(req.urgent ? this.urgent : this.normal).remove(req);
+		}
+		if (this.pending.get(req.unitId) == req) {
+			this.pending.remove(req.unitId);
+		}
+		req.status = PathRequest.Status.CANCELLED;
+		this.cancelled++;
+	}
+
+	/**
+	 * Runs the next request on the calling thread.
+	 *
+	 * @param worker
+	 *            The worker to record the latency with, may be null
+	 * @return False if there was nothing to do
+	 */
+	public boolean work(AIWorker worker) {
+		PathRequest req;
+		synchronized (this) {
+			req = this.urgent.isEmpty() ? this.normal.pollFirst() : this.urgent.pollFirst();
+			if (req == null) {
+				return false;
+			}
+			req.status = PathRequest.Status.SEARCHING;
+		}
+
+		PathingGrid pmap = this.maps.getPathingMap(req.level);
+		ArrayList<Point> visited = Game.markPathing ? new ArrayList<Point>() : null;
+		LinkedList<Vector2f> path = null;
+
+		if (pmap != null) {
+			if (req.roomGraph != null) {
+				planRoute(req, pmap);
+			}
+			if (req.chase) {
+				path = replanChase(req, pmap);
+			} else if (req.flow) {
+				path = findFlowPath(req, pmap);
+			}
+			if (path == null) {
+				path = search(req, pmap, req.getRoute() != null ? req.getRoute().getSegmentTarget() : req.dest,
+						visited);
+			}
+			if (path == null && req.fallback && req.getRoute() == null && !req.isCancelled()) {
+				path = searchAlternatives(req, pmap, visited);
+			}
+		}
+
+		synchronized (this) {
+			if (this.pending.get(req.unitId) == req) {
+				this.pending.remove(req.unitId);
+			}
+			if (req.isCancelled()) {
+				return true;
+			}
+			req.setResult(path, visited);
+			req.status = PathRequest.Status.DONE;
+		}
+
+		if (worker != null) {
+			worker.recordPathLatency(System.nanoTime() - req.sentTime);
+		}
+
+		return true;
+	}
+
+	public synchronized int getQueued() {
+		return this.urgent.size() + this.normal.size();
+	}
+
+	/**
+	 * The number of requests dropped because the queue was full.
+	 */
+	public synchronized int getDropped() {
+		return this.dropped;
+	}
+
+	/**
+	 * The number of requests cancelled, by newer requests or otherwise.
+	 */
+	public synchronized int getCancelled() {
+		return this.cancelled;
+	}
+
+	/**
+	 * The number of chases replanned.
+	 */
+	public synchronized int getReplans() {
+		return this.replans;
+	}
+
+	/**
+	 * The number of spots expanded by all chases replanned.
+	 */
+	public synchronized long getReplanExpansions() {
+		return this.replanExpansions;
+	}
+
+	/**
+	 * Searches for a path in steps, giving up if the request is cancelled.
+	 */
+	private LinkedList<Vector2f> search(PathRequest req, PathingGrid pmap, Vector2f dest, ArrayList<Point> visited) {
+		AStarSearch search = AStarSearch.acquire(pmap);
+		if (visited != null) {
+			search.recordVisited();
+		}
+
+		search.begin(pmap, req.origin, dest, req.footprint, req.entId, req.targetId);
+		if (req.regionTiles != null) {
+			search.restrictTo(req.regionTiles, req.regionHeight, req.regionAllowed);
+		}
+
+		while (search.getStatus() == Status.SEARCHING && !req.isCancelled()) {
+			search.step(SEARCH_STEP);
+		}
+
+		LinkedList<Vector2f> path = null;
+		if (search.getStatus() == Status.FOUND) {
+			path = search.buildPath(req.origin);
+		}
+		if (visited != null) {
+			visited.addAll(search.getVisited());
+		}
+
+		AStarSearch.release(search);
+		return path;
+	}
+
+	/**
+	 * Plans the route through the rooms, and restricts the search to its
+	 * first segment if there is one.
+	 */
+	private void planRoute(PathRequest req, PathingGrid pmap) {
+		RoomGraph.Route route = req.roomGraph.plan(pmap, req.origin, req.dest, req.footprint);
+		if (route != null) {
+			boolean[] allowed = route.nextSegment();
+			req.restrictTo(req.roomGraph.getTileRooms(), req.roomGraph.getTileHeight(), allowed);
+			req.setRoute(route);
+		}
+	}
+
+	/**
+	 * Tries somewhere else when the destination cannot be reached. First the
+	 * spot nearest the destination on the straight line back to the origin,
+	 * and failing that the last spot before the line from the origin is
+	 * blocked.
+	 */
+	private LinkedList<Vector2f> searchAlternatives(PathRequest req, PathingGrid pmap, ArrayList<Point> visited) {
+		Vector2f v = new Vector2f(req.origin.x - req.dest.x, req.origin.y - req.dest.y);
+		Vector2f stepV = v.clone().divideLocal(v.length() / World.PATHING_BLOCKSIZE);
+
+		// Optimistic, go from spot towards actor
+		Vector2f p = new Vector2f(req.dest.x, req.dest.y);
+		for (int t = 0; t < v.length(); t += World.PATHING_BLOCKSIZE) {
+			p.addLocal(stepV);
+			if (walkable(req, pmap, p)) {
+				LinkedList<Vector2f> path = search(req, pmap, p, visited);
+				if (path != null || req.isCancelled()) {
+					return path;
+				}
+				break;
+			}
+		}
+
+		// Pessimistic, go from actor towards spot
+		p = new Vector2f(req.origin.x, req.origin.y);
+		boolean hasValid = false;
+		for (int t = 0; t < v.length(); t += World.PATHING_BLOCKSIZE) {
+			p.subtractLocal(stepV);
+			if (walkable(req, pmap, p)) {
+				hasValid = true;
+			} else if (hasValid) {
+				p.addLocal(stepV);
+				return search(req, pmap, p, visited);
+			}
+		}
+
+		return null;
+	}
+
+	private boolean walkable(PathRequest req, PathingGrid pmap, Vector2f p) {
+		return Entity.walkablePathSpot(World.worldToPathing(p.x), World.worldToPathing(p.y), req.footprint, pmap,
+				req.entId, 0);
+	}
+
+	/**
+	 * Walks the group's flow field towards the requested goal.
+	 */
+	private LinkedList<Vector2f> findFlowPath(PathRequest req, PathingGrid pmap) {
+		FlowField field = getFlowField(req.groupId, req.goalKind, pmap, req.footprint);
+		synchronized (field) {
+			field.setGoal(pmap, req.dest, req.footprint, req.entId, req.targetId);
+			return field.pathFrom(req.origin);
+		}
+	}
+
+	/**
+	 * Repairs the unit's last path to its target.
+	 */
+	private LinkedList<Vector2f> replanChase(PathRequest req, PathingGrid pmap) {
+		DStarLite planner = getPlanner(req.unitId);
+		LinkedList<Vector2f> path;
+		int expansions;
+		synchronized (planner) {
+			path = planner.replan(pmap, req.origin, req.dest, req.footprint, req.entId, req.targetId);
+			expansions = planner.getExpansions();
+		}
+
+		synchronized (this) {
+			this.replans++;
+			this.replanExpansions += expansions;
+		}
+		return path;
+	}
+
+	/**
+	 * Returns the planner of a unit, dropping the one used least recently if
+	 * there are too many. The planner must be synchronized on while it is
+	 * used, as an older request from the same unit may still be running.
+	 */
+	private synchronized DStarLite getPlanner(int unitId) {
+		DStarLite planner = this.planners.get(unitId);
+		if (planner == null) {
+			if (this.planners.size() >= MAX_PLANNERS) {
+				Integer oldest = null;
+				long oldestTime = Long.MAX_VALUE;
+				for (Map.Entry<Integer, DStarLite> e : this.planners.entrySet()) {
+					if (e.getValue().getLastUsed() < oldestTime) {
+						oldest = e.getKey();
+						oldestTime = e.getValue().getLastUsed();
+					}
+				}
+				releasePlanner(this.planners.remove(oldest));
+			}
+
+			planner = DStarLite.acquire();
+			this.planners.put(unitId, planner);
+		}
+
+		return planner;
+	}
+
+	/**
+	 * Returns the flow field shared by all units of a group heading for the
+	 * same goal with the same footprint. The field must be synchronized on
+	 * while it is used, since it may be shared between workers.
+	 */
+	private synchronized FlowField getFlowField(int groupId, int goalKind, PathingGrid pathingMap,
+			boolean[][] footprint) {
+		long key = ((long) groupId << 24) | ((goalKind + 1) << 16) | (footprint.length << 8) | footprint[0].length;
+
+		FlowField field = this.flowFields.get(key);
+		if (field == null || !field.fits(pathingMap)) {
+			// A field for an old level is left to the garbage collector
+			// rather than pooled, as a worker could still be using it
+			field = FlowField.acquire(pathingMap);
+			this.flowFields.put(key, field);
+		}
+		field.touch();
+
+		return field;
+	}
+
+	/**
+	 * Drops the flow fields and planners that have not been used for a while.
+	 */
+	public synchronized void prune() {
+		Iterator<FlowField> it = this.flowFields.values().iterator();
+		while (it.hasNext()) {
+			FlowField field = it.next();
+			if (System.currentTimeMillis() > field.getLastUsed() + FLOW_FIELD_TIMEOUT) {
+				FlowField.release(field);
+				it.remove();
+			}
+		}
+
+		Iterator<DStarLite> pit = this.planners.values().iterator();
+		while (pit.hasNext()) {
+			DStarLite planner = pit.next();
+			if (System.currentTimeMillis() > planner.getLastUsed() + PLANNER_TIMEOUT) {
+				releasePlanner(planner);
+				pit.remove();
+			}
+		}
+	}
+
+	/**
+	 * A worker that got the planner just before it was released may still
+	 * use it, but as it is then set up for another entity it is only built
+	 * again.
+	 */
+	private void releasePlanner(DStarLite planner) {
+		synchronized (planner) {
+			DStarLite.release(planner);
+		}
+	}
+}
@@ -0,0 +1,72 @@
+/**
+ * The AI thread's own copy of the pathing map of a level. Starts out from
+ * a full snapshot sent by the map and is then kept up to date by applying
+ * the deltas sent each frame. The AI workers never see the replica itself,
+ * only snapshots of it, which share columns with the replica until the
+ * replica writes to them.
+ */
+package ai;
+
+import map.PathingGrid;
+import threadMessaging.MTMsgPathDelta;
+import threadMessaging.MTMsgPathMap;
+
+public class PathingReplica {
+	private PathingGrid map;
+	private int version;
+	private PathingGrid snapshot;
+	private boolean changed;
+	private boolean awaitingResync;
+
+	public PathingReplica(MTMsgPathMap msg) {
+		this.snapshot = msg.getMap();
+		this.map = new PathingGrid(this.snapshot);
+		this.version = msg.getVersion();
+	}
+
+	/**
+	 * Applies a delta to the replica. Returns false without changing
+	 * anything if the delta was not made from the version the replica is at.
+	 */
+	public boolean apply(MTMsgPathDelta delta) {
+		if (delta.getFromVersion() != this.version) {
+			return false;
+		}
+
+		int[] runs = delta.getRuns();
+		for (int i = 0; i < runs.length; i += 4) {
+			this.map.fill(runs[i], runs[i + 1], runs[i + 2], runs[i + 3]);
+		}
+
+		this.version = delta.getToVersion();
+		this.changed = true;
+		return true;
+	}
+
+	/**
+	 * Returns a snapshot of the replica that will never change. A new one is
+	 * only made if deltas have been applied since the last one.
+	 */
+	public PathingGrid getSnapshot() {
+		if (this.changed) {
+			this.snapshot = this.map.snapshot();
+			this.changed = false;
+		}
+		return this.snapshot;
+	}
+
+	public int getVersion() {
+		return this.version;
+	}
+
+	/**
+	 * Marks the replica as out of date until a full map replaces it.
+	 */
+	public void awaitResync() {
+		this.awaitingResync = true;
+	}
+
+	public boolean isAwaitingResync() {
+		return this.awaitingResync;
+	}
+}
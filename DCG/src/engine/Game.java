@@ -69,6 +69,19 @@ import entities.actors.Monster;
 import entities.actors.Player;
 
 public class Game extends CameraGameState {
+	private static final int PROBE_STATE_UPDATE = Profiler.register("Game.stateUpdate");
+	private static final int PROBE_STATE_RENDER = Profiler.register("Game.stateRender");
+	private static final int PROBE_INIT_SYSTEM = Profiler.register("Game.initSystem");
+	private static final int PROBE_INIT_INPUT = Profiler.register("Game.initInput");
+	private static final int PROBE_INIT_MOUSE = Profiler.register("Game.initMouse");
+	private static final int PROBE_INIT_MAP = Profiler.register("Game.initMap");
+	private static final int PROBE_INIT_PLAYER = Profiler.register("Game.initPlayer");
+	private static final int PROBE_INIT_MONSTERS = Profiler.register("Game.initMonsters");
+	private static final int PROBE_INIT_DOODADS = Profiler.register("Game.initDoodads");
+	private static final int PROBE_INIT_GFX = Profiler.register("Game.initGfx");
+	private static final int PROBE_INIT_LIGHTS = Profiler.register("Game.initLights");
+	private static final int PROBE_INIT_FINAL = Profiler.register("Game.initFinal");
+
 	public static final Logger logger = Logger.getLogger(Game.class.getName());
 
 	private static final boolean CHASE_CAM = true;
@@ -113,8 +126,6 @@ public class Game extends CameraGameState {
 	private boolean mapOverlayOn;
 
 	private Thread aiBrainThread;
-	private MTMessageQueue aiBrainMsgq = new MTMessageQueue();
-	private AIWorkerMain aiBrain = new AIWorkerMain(aiBrainMsgq);
 
 	private Elevation elevatePlayer = Elevation.NOWHERE;
 
@@ -212,7 +223,7 @@ public class Game extends CameraGameState {
 	}
 
 	private void initAI() {
-		this.aiBrainThread = new Thread(this.aiBrain);
+		this.aiBrainThread = new Thread(this.world.getAIBrain());
 		this.aiBrainThread.start();
 	}
 
@@ -221,7 +232,7 @@ public class Game extends CameraGameState {
 	}
 
 	public void stateUpdate(float interpolation) {
-		Profiler.start("Game.stateUpdate");
+		Profiler.start(PROBE_STATE_UPDATE);
 
 		Game.tpf = interpolation;
 
@@ -434,13 +445,13 @@ public class Game extends CameraGameState {
 			}
 		}
 
-		Profiler.stop("Game.stateUpdate");
+		Profiler.stop(PROBE_STATE_UPDATE);
 
 	}
 
 	private void parseAIThreadMessages() {
-		if (this.aiBrainMsgq.hasNextA()) {
-			MTMessage msg = this.aiBrainMsgq.nextA();
+		if (this.world.getAIBrainMsgq().hasNextA()) {
+			MTMessage msg = this.world.getAIBrainMsgq().nextA();
 
 			switch (msg.type) {
 				case AISTAT :
@@ -448,8 +459,19 @@ public class Game extends CameraGameState {
 					ConsoleLog.addLine("Live Flag: " + stat.isLiveFlag());
 					ConsoleLog.addLine("Cycles/second: " + stat.getCps());
 					ConsoleLog.addLine("Cycles/second (average): " + stat.getCpsAvg());
-					ConsoleLog.addLine("Number of cells: " + stat.getCells());
+					ConsoleLog.addLine("Queued path requests: " + stat.getQueuedPaths());
 					ConsoleLog.addLine("Number of pathing maps: " + stat.getPathingMaps());
+					ConsoleLog.addLine("Chase replans: " + stat.getReplans() + ", expansions per replan "
+							+ (stat.getReplans() > 0 ? stat.getReplanExpansions() / stat.getReplans() : 0));
+					for (int i = 0; i < stat.getWorkers().length; i++) {
+						MTMsgAIStat.Worker w = stat.getWorkers()[i];
+						ConsoleLog.addLine("Worker " + i + ": " + w.getCps() + " cycles/s, queue " + w.getQueueDepth()
+								+ ", " + w.getRequests() + " paths, latency p50/p90/p99 " + w.getLatencyP50() + "/"
+								+ w.getLatencyP90() + "/" + w.getLatencyP99() + " ms");
+					}
+					break;
+				case PATHRESYNC :
+					this.world.requestPathingResync((Integer) msg.obj);
 					break;
 			}
 		}
@@ -484,13 +506,13 @@ public class Game extends CameraGameState {
 	}
 
 	public void stateRender(float interpolation) {
-		Profiler.start("Game.stateRender");
+		Profiler.start(PROBE_STATE_RENDER);
 		this.fps = Game.timer.getFrameRate();
-		Profiler.stop("Game.stateRender");
+		Profiler.stop(PROBE_STATE_RENDER);
 	}
 
 	protected void initSystem() {
-		Profiler.start("Game.initSystem");
+		Profiler.start(PROBE_INIT_SYSTEM);
 
 		SkillTree.init();
 
@@ -503,11 +525,11 @@ public class Game extends CameraGameState {
 		/** Get a high resolution timer for FPS updates. */
 		Game.timer = Timer.getTimer();
 
-		Profiler.stop("Game.initSystem");
+		Profiler.stop(PROBE_INIT_SYSTEM);
 	}
 
 	private void initInput() {
-		Profiler.start("Game.initInput");
+		Profiler.start(PROBE_INIT_INPUT);
 
 		KeyBindingManager.getKeyBindingManager().set("exit", KeyInput.KEY_ESCAPE);
 		KeyBindingManager.getKeyBindingManager().set("scrUp", KeyInput.KEY_UP);
@@ -541,31 +563,31 @@ public class Game extends CameraGameState {
 		KeyBindingManager.getKeyBindingManager().set("debugDumpInfo", KeyInput.KEY_F8);
 		KeyBindingManager.getKeyBindingManager().set("debugMapOverlay", KeyInput.KEY_F7);
 
-		Profiler.stop("Game.initInput");
+		Profiler.stop(PROBE_INIT_INPUT);
 	}
 
 	private void initMouse() {
-		Profiler.start("Game.initMouse");
+		Profiler.start(PROBE_INIT_MOUSE);
 
 		MouseInput.get().setCursorVisible(true);
 
 		MouseInput.get().setHardwareCursor(Game.class.getClassLoader().getResource("dcg/data/cursors/1.png"));
 
-		Profiler.stop("Game.initMouse");
+		Profiler.stop(PROBE_INIT_MOUSE);
 	}
 
 	private void initWorld() {
-		Profiler.start("Game.initMap");
+		Profiler.start(PROBE_INIT_MAP);
 
 		this.world = new World();
 
 		this.rootNode = new Node("Scene graph node");
 
-		Profiler.stop("Game.initMap");
+		Profiler.stop(PROBE_INIT_MAP);
 	}
 
 	private void initPlayer(Map map) {
-		Profiler.start("Game.initPlayer");
+		Profiler.start(PROBE_INIT_PLAYER);
 
 		this.player = new Player(map, "Player 1");
 		this.player.setCaption("Player");
@@ -576,27 +598,27 @@ public class Game extends CameraGameState {
 		this.world.setLocalPlayer(this.player);
 		this.player.setNoPicking(true);
 
-		Profiler.stop("Game.initPlayer");
+		Profiler.stop(PROBE_INIT_PLAYER);
 	}
 
 	private void initMonsters() {
-		Profiler.start("Game.initMonsters");
+		Profiler.start(PROBE_INIT_MONSTERS);
 		ModelFactory.preload(DataManager.findByNameAndType(DataType.MODEL_ID, "modelID_devildog"), 5);
 		ModelFactory.preload(DataManager.findByNameAndType(DataType.MODEL_ID, "modelID_seademon"), 5);
-		Profiler.stop("Game.initMonsters");
+		Profiler.stop(PROBE_INIT_MONSTERS);
 
 	}
 
 	private void initDoodads() {
-		Profiler.start("Game.initDoodads");
+		Profiler.start(PROBE_INIT_DOODADS);
 		ModelFactory.preload(DataManager.findByNameAndType(DataType.MODEL_ID, "modelID_gold"), 20);
 		ModelFactory.preload(DataManager.findByNameAndType(DataType.MODEL_ID, "modelID_bookshelf"), 20);
 		ModelFactory.preload(DataManager.findByNameAndType(DataType.MODEL_ID, "modelID_barrel"), 20);
-		Profiler.stop("Game.initDoodads");
+		Profiler.stop(PROBE_INIT_DOODADS);
 	}
 
 	private void initGfx(Map map) {
-		Profiler.start("Game.initGfx");
+		Profiler.start(PROBE_INIT_GFX);
 
 		EffectFactory.init(map.getEffectNode());
 		ModelFactory.init();
@@ -622,11 +644,11 @@ public class Game extends CameraGameState {
 		this.selectionMarker.getNode().setLocalTranslation(0, 0, 0.1f);
 		map.addEntity(this.selectionMarker);
 
-		Profiler.stop("Game.initGfx");
+		Profiler.stop(PROBE_INIT_GFX);
 	}
 
 	private void initLights() {
-		Profiler.start("Game.initLights");
+		Profiler.start(PROBE_INIT_LIGHTS);
 
 		this.lights = DisplaySystem.getDisplaySystem().getRenderer().createLightState();
 
@@ -666,11 +688,11 @@ public class Game extends CameraGameState {
 		this.rootNode.setRenderState(lights);
 		this.rootNode.setLightCombineMode(LightCombineMode.Replace);
 
-		Profiler.stop("Game.initLights");
+		Profiler.stop(PROBE_INIT_LIGHTS);
 	}
 
 	private void initFinal(Map map) {
-		Profiler.start("Game.initFinal");
+		Profiler.start(PROBE_INIT_FINAL);
 
 		this.rootNode.attachChild(this.world.getStartingMap().getSceneNode());
 
@@ -684,11 +706,11 @@ public class Game extends CameraGameState {
 
 		this.world.getSanctuary().generateVendorItems(this.world.getLocalPlayer());
 
-		Profiler.stop("Game.initFinal");
+		Profiler.stop(PROBE_INIT_FINAL);
 	}
 
 	public void cleanup() {
-		this.aiBrainMsgq.addB(new MTMessage(MessageType.KILL, null));
+		this.world.getAIBrainMsgq().addB(new MTMessage(MessageType.KILL, null));
 		System.out.println("Waiting for AI thread to terminate...");
 		try {
 			this.aiBrainThread.join();
@@ -719,6 +741,14 @@ public class Game extends CameraGameState {
 		return Game.timer;
 	}
 
+	/**
+	 * Replaces the timer that game time is read from, as done when the game
+	 * runs headless on simulated time.
+	 */
+	public static void setTimer(Timer timer) {
+		Game.timer = timer;
+	}
+
 	public float getFPS() {
 		return this.fps;
 	}
@@ -748,7 +778,7 @@ public class Game extends CameraGameState {
 	}
 
 	public AIWorkerMain getAIBrain() {
-		return this.aiBrain;
+		return this.world.getAIBrain();
 	}
 
 	public void queueElevatePlayer(Elevation el) {
@@ -808,7 +838,7 @@ public class Game extends CameraGameState {
 	}
 
 	public MTMessageQueue getAIBrainMsgq() {
-		return this.aiBrainMsgq;
+		return this.world.getAIBrainMsgq();
 	}
 
 	public void savePlayer() {
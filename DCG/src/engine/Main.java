@@ -30,9 +30,15 @@ import engine.hud.HUD;
 import engine.hud.MapOverlayState;
 
 public class Main extends BaseGame {
+	private static final int PROBE_UPDATE = Profiler.register("Main.update");
+	private static final int PROBE_UPDATE_GAME_STATE_MANAGER = Profiler.register("Main.update.GameStateManager");
+	private static final int PROBE_RENDER = Profiler.register("Main.render");
+
 	private static final Logger logger = Logger.getLogger(Main.class.getName());
 
 	private static AbstractGame instance;
+	private static long startTime;
+	private boolean firstFrame = true;
 
 	private Timer timer;
 	private float tpf;
@@ -46,6 +52,7 @@ public class Main extends BaseGame {
 	private Camera cam;
 
 	public static void main(String[] args) {
+		startTime = System.nanoTime();
 		System.out.println("Starting...");
 		Profiler.enable();
 		Profiler.init();
@@ -70,7 +77,7 @@ public class Main extends BaseGame {
 	}
 
 	protected final void update(float interpolation) {
-		Profiler.start("Main.update");
+		Profiler.start(PROBE_UPDATE);
 
 		timer.update();
 		tpf = timer.getTimePerFrame();
@@ -117,22 +124,27 @@ public class Main extends BaseGame {
 			}
 		}
 
-		Profiler.start("Main.update.GameStateManager");
+		Profiler.start(PROBE_UPDATE_GAME_STATE_MANAGER);
 		GameStateManager.getInstance().update(tpf);
-		Profiler.stop("Main.update.GameStateManager");
+		Profiler.stop(PROBE_UPDATE_GAME_STATE_MANAGER);
 
-		Profiler.stop("Main.update");
+		Profiler.stop(PROBE_UPDATE);
 
 		Profiler.lap();
 	}
 
 	protected final void render(float interpolation) {
-		Profiler.start("Main.render");
+		Profiler.start(PROBE_RENDER);
 
 		display.getRenderer().clearBuffers();
 		GameStateManager.getInstance().render(tpf);
 
-		Profiler.stop("Main.render");
+		if (this.firstFrame) {
+			this.firstFrame = false;
+			ConsoleLog.addLine("First frame after " + (System.nanoTime() - startTime) / 1000000 + " ms");
+		}
+
+		Profiler.stop(PROBE_RENDER);
 	}
 
 	protected final void initSystem() {
@@ -178,6 +190,7 @@ public class Main extends BaseGame {
 		MouseInput.destroyIfInitalized();
 		JoystickInput.destroyIfInitalized();
 
+		Profiler.stopTrace();
 		Profiler.dumpTotals();
 	}
 
@@ -1,103 +1,206 @@
 /**
  * This class is used for profiling the program, used for performance tests.
+ *
+ * Each measured piece of code is a probe, registered once by name up front,
+ * usually into a static field of the class it measures, and then started and
+ * stopped by its id. Probes may be nested, and the time of a probe is split
+ * into the time spent in itself and in the probes started inside it. The time
+ * of every probe in each frame (between calls to lap()) is kept for the last
+ * FRAMES frames, for the percentiles in dumpTotals().
+ *
+ * A trace of every probe run can also be written to a file in the Chrome
+ * trace event format, which can be opened in chrome://tracing or Perfetto.
+ *
+ * Only to be used from the game thread.
  */
 
 package engine;
 
-import java.util.ArrayList;
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
-import java.util.List;
-import java.util.TreeSet;
 
 import engine.hud.ConsoleLog;
 
 public class Profiler {
 
-	private static HashMap<String, Long> startTime;
-	private static HashMap<String, Long> lap;
-	private static HashMap<String, Boolean> running;
-	private static HashMap<String, Long> total;
+	private static final int MAX_PROBES = 256;
+	private static final int MAX_DEPTH = 64;
+	// Frames kept for the percentiles
+	private static final int FRAMES = 1024;
+	// Probe runs kept in memory before they are written to the trace file
+	private static final int TRACE_BUFFER = 1 << 16;
+
+	private static HashMap<String, Integer> ids = new HashMap<String, Integer>();
+	private static String[] names = new String[MAX_PROBES];
+	private static int numProbes = 0;
+
+	// Per probe
+	private static int[] parent = new int[MAX_PROBES];
+	private static int[] active = new int[MAX_PROBES];
+	private static long[] calls = new long[MAX_PROBES];
+	private static long[] total = new long[MAX_PROBES];
+	private static long[] self = new long[MAX_PROBES];
+	private static long[] frameTime = new long[MAX_PROBES];
+	private static long[][] frames = new long[MAX_PROBES][];
+
+	// Probes started and not yet stopped, innermost last
+	private static int[] stackProbe = new int[MAX_DEPTH];
+	private static long[] stackStart = new long[MAX_DEPTH];
+	private static long[] stackChildren = new long[MAX_DEPTH];
+	private static int depth = 0;
+
+	private static int frame = 0;
+	private static long[] frameLength = new long[FRAMES];
+	private static long lastLap;
 	private static long totalTime;
-	private static long totalTimeStart;
-	private static long cumulativeTime;
-	private static int numClocksRunning = 0;
-	private static boolean enabled = false;
 	private static long initTime;
+	// Cost of one start and stop pair, in ns
+	private static float overhead;
 
-	public static void init() {
-		initTime = System.nanoTime();
+	private static Writer trace;
+	private static int[] traceProbe;
+	private static long[] traceStart;
+	private static long[] traceLength;
+	private static int traceSize;
+	private static boolean traceFirst;
+
+	private static boolean enabled = false;
+
+	/**
+	 * Registers a probe and returns its id. Registering a name again returns
+	 * the id it already has.
+	 */
+	public static synchronized int register(String name) {
+		Integer id = Profiler.ids.get(name);
+		if (id != null) {
+			return id;
+		}
+		if (Profiler.numProbes == MAX_PROBES) {
+			System.out.println("Profiler.register: Too many probes, " + name + " not registered.");
+			return MAX_PROBES - 1;
+		}
+
+		int probe = Profiler.numProbes++;
+		Profiler.ids.put(name, probe);
+		Profiler.names[probe] = name;
+		Profiler.parent[probe] = -1;
+		Profiler.frames[probe] = new long[FRAMES];
+		return probe;
+	}
 
-		Profiler.startTime = new HashMap<String, Long>();
-		Profiler.total = new HashMap<String, Long>();
-		Profiler.lap = new HashMap<String, Long>();
-		Profiler.running = new HashMap<String, Boolean>();
+	public static void init() {
+		Profiler.initTime = System.nanoTime();
+		Profiler.lastLap = Profiler.initTime;
+		Profiler.totalTime = 0;
+		Profiler.frame = 0;
+		Profiler.depth = 0;
+
+		for (int p = 0; p < Profiler.numProbes; p++) {
+			Profiler.calls[p] = 0;
+			Profiler.total[p] = 0;
+			Profiler.self[p] = 0;
+			Profiler.frameTime[p] = 0;
+			Profiler.active[p] = 0;
+			Arrays.fill(Profiler.frames[p], 0);
+		}
 
-		lap();
+		calibrate();
 	}
 
+	/**
+	 * Ends a frame.
+	 */
 	public static void lap() {
 		if (!Profiler.enabled)
 			return;
 
-		if (Profiler.lap != null) {
-			for (String target : Profiler.lap.keySet()) {
-				if (Profiler.running.get(target)) {
-					System.out.println("Profiler.lap: Target " + target + " not stopped in all instances.");
-				} else {
-					if (Profiler.total.containsKey(target)) {
-						Profiler.total.put(target, Profiler.total.get(target) + Profiler.lap.get(target));
-					} else {
-						Profiler.total.put(target, Profiler.lap.get(target));
-					}
-					Profiler.cumulativeTime += Profiler.lap.get(target);
-				}
+		if (Profiler.depth > 0) {
+			System.out.println("Profiler.lap: Target " + Profiler.names[Profiler.stackProbe[Profiler.depth - 1]]
+					+ " not stopped in all instances.");
+		}
 
-				Profiler.running.put(target, false);
-			}
+		int slot = Profiler.frame % FRAMES;
+		for (int p = 0; p < Profiler.numProbes; p++) {
+			Profiler.frames[p][slot] = Profiler.frameTime[p];
+			Profiler.frameTime[p] = 0;
 		}
 
-		Profiler.lap.clear();
+		long now = System.nanoTime();
+		Profiler.frameLength[slot] = now - Profiler.lastLap;
+		Profiler.lastLap = now;
+		Profiler.frame++;
 	}
 
-	public static void start(String target) {
+	public static void start(int probe) {
 		if (!Profiler.enabled)
 			return;
 
-		if (Profiler.numClocksRunning == 0) {
-			Profiler.totalTimeStart = System.nanoTime();
+		if (Profiler.depth == MAX_DEPTH) {
+			System.out.println("Profiler.start: Target " + Profiler.names[probe] + " nested too deep.");
+			return;
 		}
 
-		Profiler.numClocksRunning++;
-
-		if (Profiler.running.containsKey(target) && Profiler.running.get(target)) {
-			System.out.println("Profiler.start: Target " + target + " added recursively.");
-		} else {
-			Profiler.startTime.put(target, System.nanoTime());
-
-			Profiler.running.put(target, true);
+		if (Profiler.depth > 0 && Profiler.parent[probe] < 0) {
+			Profiler.parent[probe] = Profiler.stackProbe[Profiler.depth - 1];
 		}
+
+		Profiler.stackProbe[Profiler.depth] = probe;
+		Profiler.stackChildren[Profiler.depth] = 0;
+		Profiler.active[probe]++;
+		Profiler.stackStart[Profiler.depth++] = System.nanoTime();
 	}
 
-	public static void stop(String target) {
+	public static void stop(int probe) {
 		if (!Profiler.enabled)
 			return;
 
-		Profiler.numClocksRunning--;
+		long now = System.nanoTime();
 
-		if (!Profiler.startTime.containsKey(target)) {
-			System.out.println("Profiler.stop: Target " + target + " stopped but not started this lap.");
-		} else {
-			if (Profiler.lap.containsKey(target)) {
-				Profiler.lap.put(target, Profiler.lap.get(target) + System.nanoTime() - Profiler.startTime.get(target));
-			} else {
-				Profiler.lap.put(target, System.nanoTime() - Profiler.startTime.get(target));
+		if (Profiler.depth == 0 || Profiler.stackProbe[Profiler.depth - 1] != probe) {
+			System.out.println("Profiler.stop: Target " + Profiler.names[probe]
+					+ " stopped but not the last one started.");
+			// Stop what was started inside it, if it was started at all
+			int d = Profiler.depth - 1;
+			while (d >= 0 && Profiler.stackProbe[d] != probe) {
+				d--;
+			}
+			if (d < 0) {
+				return;
+			}
+			while (Profiler.depth - 1 > d) {
+				stop(Profiler.stackProbe[Profiler.depth - 1]);
 			}
-			Profiler.running.put(target, false);
 		}
 
-		if (Profiler.numClocksRunning == 0) {
-			Profiler.totalTime += System.nanoTime() - Profiler.totalTimeStart;
+		int d = --Profiler.depth;
+		long length = now - Profiler.stackStart[d];
+
+		Profiler.calls[probe]++;
+		Profiler.self[probe] += length - Profiler.stackChildren[d];
+		// Recursive runs are only counted once, by the outermost one
+		if (--Profiler.active[probe] == 0) {
+			Profiler.total[probe] += length;
+			Profiler.frameTime[probe] += length;
+		}
+
+		if (d > 0) {
+			Profiler.stackChildren[d - 1] += length;
+		} else {
+			Profiler.totalTime += length;
+		}
+
+		if (Profiler.trace != null) {
+			Profiler.traceProbe[Profiler.traceSize] = probe;
+			Profiler.traceStart[Profiler.traceSize] = Profiler.stackStart[d];
+			Profiler.traceLength[Profiler.traceSize] = length;
+			if (++Profiler.traceSize == TRACE_BUFFER) {
+				flushTrace();
+			}
 		}
 	}
 
@@ -109,48 +212,180 @@ public class Profiler {
 		Profiler.enabled = false;
 	}
 
-	public static void dumpTotals() {
-		if (Profiler.total.size() == 0 || !Profiler.enabled)
+	public static boolean isEnabled() {
+		return Profiler.enabled;
+	}
+
+	/**
+	 * Starts writing every probe run to the given file, as Chrome trace
+	 * events, until stopTrace() is called.
+	 */
+	public static void startTrace(String filename) {
+		stopTrace();
+
+		try {
+			Profiler.trace = new BufferedWriter(new FileWriter(filename));
+			Profiler.trace.write("{\"traceEvents\":[\n");
+		} catch (IOException e) {
+			out("Profiler.startTrace: Could not open " + filename + ": " + e.getMessage());
+			Profiler.trace = null;
 			return;
+		}
 
-		HashMap<String, Long> map = new LinkedHashMap<String, Long>();
+		if (Profiler.traceProbe == null) {
+			Profiler.traceProbe = new int[TRACE_BUFFER];
+			Profiler.traceStart = new long[TRACE_BUFFER];
+			Profiler.traceLength = new long[TRACE_BUFFER];
+		}
+		Profiler.traceSize = 0;
+		Profiler.traceFirst = true;
+		out("Tracing to " + filename);
+	}
 
-		List<String> keys = new ArrayList<String>(Profiler.total.keySet());
-		List<Long> values = new ArrayList<Long>(Profiler.total.values());
-		TreeSet<Long> sortedSet = new TreeSet<Long>(values);
-		Object[] sortedArray = sortedSet.toArray();
-		int size = sortedArray.length;
+	public static void stopTrace() {
+		if (Profiler.trace == null) {
+			return;
+		}
+
+		flushTrace();
+		try {
+			Profiler.trace.write("\n]}\n");
+			Profiler.trace.close();
+		} catch (IOException e) {
+			out("Profiler.stopTrace: " + e.getMessage());
+		}
+		Profiler.trace = null;
+	}
+
+	public static boolean isTracing() {
+		return Profiler.trace != null;
+	}
+
+	private static void flushTrace() {
+		try {
+			for (int i = 0; i < Profiler.traceSize; i++) {
+				if (!Profiler.traceFirst) {
+					Profiler.trace.write(",\n");
+				}
+				Profiler.traceFirst = false;
+
+				// Times are in microseconds from init()
+				long start = Profiler.traceStart[i] - Profiler.initTime;
+				long length = Profiler.traceLength[i];
+				Profiler.trace.write("{\"name\":\"" + Profiler.names[Profiler.traceProbe[i]]
+						+ "\",\"ph\":\"X\",\"pid\":1,\"tid\":1,\"ts\":" + start / 1000 + "." + pad3(start % 1000)
+						+ ",\"dur\":" + length / 1000 + "." + pad3(length % 1000) + "}");
+			}
+		} catch (IOException e) {
+			out("Profiler.flushTrace: " + e.getMessage());
+		}
+		Profiler.traceSize = 0;
+	}
+
+	private static String pad3(long v) {
+		return v < 10 ? "00" + v : (v < 100 ? "0" + v : "" + v);
+	}
+
+	public static void dumpTotals() {
+		if (!Profiler.enabled)
+			return;
 
-		for (int i = 0; i < size; i++) {
-			map.put(keys.get(values.indexOf(sortedArray[i])), (Long) sortedArray[i]);
+		Integer[] order = new Integer[Profiler.numProbes];
+		int n = 0;
+		for (int p = 0; p < Profiler.numProbes; p++) {
+			if (Profiler.calls[p] > 0) {
+				order[n++] = p;
+			}
 		}
+		if (n == 0)
+			return;
+
+		order = Arrays.copyOf(order, n);
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return Profiler.total[a] < Profiler.total[b] ? -1 : (Profiler.total[a] > Profiler.total[b] ? 1 : 0);
+			}
+		});
 
-		float tSecs = 0, tPerc = 0;
+		int numFrames = Math.min(Profiler.frame, FRAMES);
+		long[] scratch = new long[numFrames];
+		long calls = 0;
 
-		out("Time\t Percentage\t Target");
-		for (String target : map.keySet()) {
-			float secs = 1e-9f * Profiler.total.get(target);
-			float perc = 100f * Profiler.total.get(target) / Profiler.cumulativeTime;
-			out(String.format("%1$.1f", secs) + "\t " + String.format("%1$.1f", perc) + "\t " + target);
+		out("Time\t Percentage\t Self\t Calls\t p50/p95/p99 ms per frame\t Target (parent)");
+		for (int p : order) {
+			float secs = 1e-9f * Profiler.total[p];
+			float perc = Profiler.totalTime > 0 ? 100f * Profiler.total[p] / Profiler.totalTime : 0;
+			float selfSecs = 1e-9f * Profiler.self[p];
 
-			tSecs += secs;
-			tPerc += perc;
+			System.arraycopy(Profiler.frames[p], 0, scratch, 0, numFrames);
+			Arrays.sort(scratch);
+
+			out(String.format("%1$.1f", secs) + "\t " + String.format("%1$.1f", perc) + "\t "
+					+ String.format("%1$.1f", selfSecs) + "\t " + Profiler.calls[p] + "\t "
+					+ String.format("%1$.2f/%2$.2f/%3$.2f", 1e-6f * percentile(scratch, 50), 1e-6f
+							* percentile(scratch, 95), 1e-6f * percentile(scratch, 99)) + "\t " + Profiler.names[p]
+					+ (Profiler.parent[p] >= 0 ? " (" + Profiler.names[Profiler.parent[p]] + ")" : ""));
+
+			calls += Profiler.calls[p];
 		}
 
-		out("Profiled secs sum: " + String.format("%1$.1f", tSecs));
-		out("Profiled percent sum: " + String.format("%1$.1f", tPerc));
+		System.arraycopy(Profiler.frameLength, 0, scratch, 0, numFrames);
+		Arrays.sort(scratch);
+		out("Frame ms p50/p95/p99: "
+				+ String.format("%1$.2f/%2$.2f/%3$.2f", 1e-6f * percentile(scratch, 50), 1e-6f
+						* percentile(scratch, 95), 1e-6f * percentile(scratch, 99)) + " over the last " + numFrames
+				+ " frames");
 
 		float realtimeSecs = 1e-9f * (System.nanoTime() - Profiler.initTime);
 		float measuredSecs = 1e-9f * Profiler.totalTime;
 		float measuredPerc = 100f * measuredSecs / realtimeSecs;
+		float overheadPerc = 100f * 1e-9f * Profiler.overhead * calls / realtimeSecs;
 
 		out("Measured secs: " + String.format("%1$.1f", measuredSecs));
 		out("Actual runtime secs: " + String.format("%1$.1f", realtimeSecs));
 		out("Measured percent: " + String.format("%1$.1f", measuredPerc));
+		out("Profiler overhead percent (estimated): " + String.format("%1$.2f", overheadPerc));
+	}
+
+	private static long percentile(long[] sorted, int perc) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+		return sorted[Math.min(sorted.length - 1, sorted.length * perc / 100)];
+	}
+
+	/**
+	 * Measures what a start and stop pair costs, for the overhead estimate.
+	 */
+	private static void calibrate() {
+		final int rounds = 10000;
+		int probe = register("Profiler.calibrate");
+
+		boolean wasEnabled = Profiler.enabled;
+		Writer wasTracing = Profiler.trace;
+		Profiler.enabled = true;
+		Profiler.trace = null;
+
+		long t = System.nanoTime();
+		for (int i = 0; i < rounds; i++) {
+			start(probe);
+			stop(probe);
+		}
+		Profiler.overhead = (float) (System.nanoTime() - t) / rounds;
+
+		Profiler.enabled = wasEnabled;
+		Profiler.trace = wasTracing;
+		Profiler.calls[probe] = 0;
+		Profiler.total[probe] = 0;
+		Profiler.self[probe] = 0;
+		Profiler.frameTime[probe] = 0;
+		Profiler.totalTime = 0;
 	}
 
 	private static void out(String s) {
 		System.out.println(s);
-		ConsoleLog.addLine(s);
+		if (ConsoleLog.getLines() != null) {
+			ConsoleLog.addLine(s);
+		}
 	}
 }
@@ -0,0 +1,87 @@
+/**
+ * A stream of random numbers (SplitMix64) for one part of the game, so that
+ * the rolls of one part do not depend on how many the others have taken.
+ * Streams are made from the seed of the world: derive() gives a stream that
+ * depends only on the seed of this one and a key, however much this one has
+ * been rolled, and split() gives a new stream from the next roll.
+ *
+ * A stream is not safe to share between threads. Each thread rolling
+ * should have a stream of its own.
+ */
+package engine;
+
+public final class RandomStream {
+	private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+	private final long seed;
+	private long state;
+
+	public RandomStream(long seed) {
+		this.seed = seed;
+		this.state = seed;
+	}
+
+	/**
+	 * A stream that only depends on the seed of this stream and the key.
+	 */
+	public RandomStream derive(long key) {
+		return new RandomStream(mix(this.seed + mix(key + GOLDEN_GAMMA)));
+	}
+
+	/**
+	 * A new stream, seeded from the next roll of this one.
+	 */
+	public RandomStream split() {
+		return new RandomStream(mix(nextLong()));
+	}
+
+	public long nextLong() {
+		this.state += GOLDEN_GAMMA;
+		return mix(this.state);
+	}
+
+	/**
+	 * A number from 0 up to but not including bound, as
+	 * java.util.Random.nextInt(int).
+	 */
+	public int nextInt(int bound) {
+		if (bound <= 0) {
+			throw new IllegalArgumentException("bound must be positive");
+		}
+
+		int r = (int) (nextLong() >>> 33);
+		int m = bound - 1;
+		if ((bound & m) == 0) {
+			return (int) ((bound * (long) r) >> 31);
+		}
+		// Rolls in the last, partial run of bound numbers are thrown away so
+		// that every number is as likely
+		int u = r;
+		while (u - (r = u % bound) + m < 0) {
+			u = (int) (nextLong() >>> 33);
+		}
+		return r;
+	}
+
+	public float nextFloat() {
+		return (nextLong() >>> 40) / (float) (1 << 24);
+	}
+
+	public int getRndInt(int min, int max) {
+		return nextInt(max - min + 1) + min;
+	}
+
+	public boolean roll100(int chance) {
+		return nextInt(100) < chance;
+	}
+
+	public float getRndFloat(float min, float max) {
+		return (nextFloat() * (max - min)) + min;
+	}
+
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
@@ -18,7 +18,8 @@ public class Settings {
 	public enum Fields {
 		TEXTURE_QUALITY("texqual", Entry.Type.STRING), MODEL_TEXTURE_QUALITY("modeltexqual", Entry.Type.STRING), SCR_W(
 				"scrw", Entry.Type.INTEGER), SCR_H("scrh", Entry.Type.INTEGER), SCR_FULL("fullscreen",
-				Entry.Type.BOOLEAN), SCR_FREQ("frequency", Entry.Type.INTEGER), SCR_BITS("bitdepth", Entry.Type.INTEGER);
+				Entry.Type.BOOLEAN), SCR_FREQ("frequency", Entry.Type.INTEGER), SCR_BITS("bitdepth", Entry.Type.INTEGER), AI_WORKERS("aiworkers",
+				Entry.Type.INTEGER);
 
 		public String ident;
 		public Entry.Type type;
@@ -46,6 +47,7 @@ public class Settings {
 		Settings.data.put(Fields.SCR_FULL, new Entry(false));
 		Settings.data.put(Fields.SCR_FREQ, new Entry(60));
 		Settings.data.put(Fields.SCR_BITS, new Entry(32));
+		Settings.data.put(Fields.AI_WORKERS, new Entry(0));
 	}
 
 	public static void dump() {
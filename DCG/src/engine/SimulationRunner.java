@@ -0,0 +1,184 @@
+/**
+ * Runs the game without graphics, for load testing the AI, pathing and
+ * combat. Builds a World from a seed, generates a level, puts a player at
+ * its entrance and advances the world at a fixed timestep as fast as it can,
+ * reporting the ticks per second.
+ *
+ * The player fights the nearest monster on its own, so the monsters of the
+ * level have something to chase. The seed fixes the level and every roll
+ * made on the game thread, while the paths found by the AI thread arrive
+ * whenever they are done.
+ *
+ * Usage: SimulationRunner [level] [ticks] [seed] [timestep in seconds]
+ */
+
+package engine;
+
+import infostore.DataManager;
+import map.Map;
+import map.SpatialIndex;
+import skills.SkillTree;
+import threadMessaging.MTMessage;
+import threadMessaging.MTMessage.MessageType;
+import engine.hud.ConsoleLog;
+import entities.Entity;
+import entities.Entity.EntityState;
+import entities.Entity.EntitySubtype;
+import entities.actors.Player;
+
+public class SimulationRunner {
+	// How often progress is printed, in ticks
+	private static final int REPORT_INTERVAL = 1000;
+	// How far away the player looks for something to fight, in world units
+	private static final float HUNT_RADIUS = 60f;
+
+	private World world;
+	private Map map;
+	private Player player;
+	private SimulationTimer timer;
+	private Thread aiThread;
+	private float timestep;
+	private long ticks;
+
+	private Entity[] nearest = new Entity[1];
+	private SpatialIndex.Filter<Entity> monsterFilter = new SpatialIndex.Filter<Entity>() {
+		public boolean accept(Entity e) {
+			return e.isSubtype(EntitySubtype.MONSTER) && !e.getCurState().equals(EntityState.DYING)
+					&& !e.getCurState().equals(EntityState.PURGED);
+		}
+	};
+
+	/**
+	 * Sets up everything the game needs to run without a display. Must be
+	 * called once before any runner is created.
+	 */
+	public static void initHeadless() {
+		Settings.NOGFX = true;
+		Settings.init();
+		ConsoleLog.init();
+		DataManager.load();
+		SkillTree.init();
+	}
+
+	public SimulationRunner(long seed, float timestep) {
+		this.timestep = timestep;
+		this.timer = new SimulationTimer();
+		Game.setTimer(this.timer);
+		this.world = new World(seed);
+	}
+
+	/**
+	 * Generates the given level, places the player at its entrance and
+	 * starts the AI thread.
+	 */
+	public void start(int level) {
+		this.map = this.world.getMap(level);
+		this.map.generateMap();
+
+		this.player = new Player(this.map, "Simulated player");
+		this.player.setPos(World.tileToWorld(this.map.getEntrance().getCenter().x), World.tileToWorld(this.map
+				.getEntrance().getCenter().y));
+		this.map.getEntrance().addActor(this.player);
+		this.world.setLocalPlayer(this.player);
+		this.map.pruneAndGrowTask.fullPrune();
+
+		this.aiThread = new Thread(this.world.getAIBrain());
+		this.aiThread.setDaemon(true);
+		this.aiThread.start();
+	}
+
+	/**
+	 * Advances the world by one timestep.
+	 */
+	public void tick() {
+		this.timer.advance(this.timestep);
+
+		if (this.player.getInteractionTarget() == null && !this.player.getCurState().equals(EntityState.DYING)) {
+			if (this.map.getActorIndex().nearestK(this.player.getPosition().x, this.player.getPosition().y, 1,
+					HUNT_RADIUS, this.monsterFilter, this.nearest) > 0) {
+				this.player.setInteractionTarget(this.nearest[0]);
+			}
+			this.nearest[0] = null;
+		}
+
+		this.world.update(this.timestep);
+		this.parseAIThreadMessages();
+		this.ticks++;
+	}
+
+	public void stop() {
+		this.world.getAIBrainMsgq().addB(new MTMessage(MessageType.KILL, null));
+		try {
+			this.aiThread.join();
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		}
+	}
+
+	public World getWorld() {
+		return this.world;
+	}
+
+	public long getTicks() {
+		return this.ticks;
+	}
+
+	private void parseAIThreadMessages() {
+		while (this.world.getAIBrainMsgq().hasNextA()) {
+			MTMessage msg = this.world.getAIBrainMsgq().nextA();
+			if (msg.type.equals(MessageType.PATHRESYNC)) {
+				this.world.requestPathingResync((Integer) msg.obj);
+			}
+		}
+	}
+
+	private int countMonsters() {
+		int count = 0;
+		for (Entity e : this.map.getAllRoomActors()) {
+			if (this.monsterFilter.accept(e)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		int level = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+		int ticks = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+		float timestep = args.length > 3 ? Float.parseFloat(args[3]) : 1f / 60f;
+
+		initHeadless();
+
+		SimulationRunner runner = new SimulationRunner(seed, timestep);
+
+		long t = System.nanoTime();
+		runner.start(level);
+		System.out.println("Level " + level + " (seed " + seed + ") generated in "
+				+ String.format("%1$.1f", 1e-6 * (System.nanoTime() - t)) + " ms, " + runner.countMonsters()
+				+ " monsters");
+
+		long start = System.nanoTime();
+		long last = start;
+		for (int i = 1; i <= ticks; i++) {
+			runner.tick();
+
+			if (i % REPORT_INTERVAL == 0) {
+				long now = System.nanoTime();
+				System.out.println("Tick " + i + ": " + String.format("%1$.0f", REPORT_INTERVAL * 1e9 / (now - last))
+						+ " ticks/s, " + runner.countMonsters() + " monsters left");
+				last = now;
+			}
+		}
+		double seconds = 1e-9 * (System.nanoTime() - start);
+
+		runner.stop();
+
+		System.out.println(ticks + " ticks (" + String.format("%1$.1f", ticks * timestep) + " s simulated) in "
+				+ String.format("%1$.2f", seconds) + " s: " + String.format("%1$.0f", ticks / seconds)
+				+ " ticks/s, " + String.format("%1$.1f", ticks * timestep / seconds) + "x real time");
+	}
+}
@@ -0,0 +1,51 @@
+/**
+ * A timer that only moves when told to, used as the game timer when the game
+ * runs headless, so that everything timed follows the simulated time rather
+ * than the wall clock.
+ */
+
+package engine;
+
+import com.jme.util.Timer;
+
+public class SimulationTimer extends Timer {
+	private static final long RESOLUTION = 1000000000L;
+
+	private long time;
+	private float timePerFrame;
+
+	public void advance(float seconds) {
+		this.time += (long) (seconds * RESOLUTION);
+		this.timePerFrame = seconds;
+	}
+
+	@Override
+	public long getTime() {
+		return this.time;
+	}
+
+	@Override
+	public long getResolution() {
+		return RESOLUTION;
+	}
+
+	@Override
+	public float getFrameRate() {
+		return this.timePerFrame > 0 ? 1f / this.timePerFrame : 0;
+	}
+
+	@Override
+	public float getTimePerFrame() {
+		return this.timePerFrame;
+	}
+
+	@Override
+	public void update() {
+	}
+
+	@Override
+	public void reset() {
+		this.time = 0;
+		this.timePerFrame = 0;
+	}
+}
@@ -15,16 +15,22 @@ import java.awt.Point;
 import java.util.LinkedList;
 import java.util.Random;
 
+import map.AbstractRoom;
+import map.LevelPregenerator;
 import map.Map;
 import map.Sanctuary;
 import misc.Attack;
 import tasks.TaskScheduler;
+import threadMessaging.MTMessageQueue;
+import ai.AIWorkerMain;
+import ai.PathService;
 
 import com.jme.math.Vector2f;
 
 import entities.actors.Player;
 
 public class World {
+	private static final int PROBE_UPDATE = Profiler.register("World.update");
 
 	public static final int BLOCKSIZE = 5;
 	public static final int PATHING_GRANULARITY = 10;
@@ -34,12 +40,32 @@ public class World {
 	public static final int LEVELS_PER_STYLE = 5;
 	public static final int LEVELS = 20 + 1;
 
+	// Time given to the task scheduler each frame, in ns
+	public static final long TASK_BUDGET = 2000000L;
+	// Keys of the random streams derived from the seed
+	private static final int STREAM_GAME = 0;
+	private static final int STREAM_LEVELS = 1;
+	private static final int STREAM_LOOT = 2;
+	private static final int STREAM_COMBAT = 3;
+	private static final int STREAM_BOIDS = 4;
+
+	// How many rooms from the stairs the player may be for the level beyond
+	// them to be made in the background
+	public static final int PREGENERATE_ROOMS = 3;
+
 	private Map[] maps;
 	private Map activeMap;
 
 	private int nextUid = 10;
 	private Player localPlayer;
-	private Random rnd;
+
+	private long seed;
+	// Rolls of the main thread that belong to none of the other streams
+	private RandomStream rnd;
+	private RandomStream levelRnd;
+	private RandomStream lootRnd;
+	private RandomStream combatRnd;
+	private RandomStream boidRnd;
 
 	private TaskScheduler taskScheduler;
 	private long curFrame = 0;
@@ -48,9 +74,32 @@ public class World {
 	private LinkedList<Attack> attacksToRemove;
 	private Sanctuary sanctuary;
 
+	private MTMessageQueue aiBrainMsgq;
+	private AIWorkerMain aiBrain;
+
+	private LevelPregenerator pregenerator;
+	private AbstractRoom pregenerateRoom;
+
 	public World() {
+		this(new Random().nextLong());
+	}
+
+	/**
+	 * Creates a world whose levels and rolls all come from the given seed.
+	 * Each part of the game rolls from a stream of its own derived from the
+	 * seed, so a level only depends on the seed and its number, and the
+	 * combat rolls only on the attacks made.
+	 */
+	public World(long seed) {
 		this.taskScheduler = new TaskScheduler();
-		this.rnd = new Random();
+		this.seed = seed;
+
+		RandomStream root = new RandomStream(seed);
+		this.rnd = root.derive(STREAM_GAME);
+		this.levelRnd = root.derive(STREAM_LEVELS);
+		this.lootRnd = root.derive(STREAM_LOOT);
+		this.combatRnd = root.derive(STREAM_COMBAT);
+		this.boidRnd = root.derive(STREAM_BOIDS);
 
 		this.maps = new Map[LEVELS];
 		// this.maps[0] = new Sanctuary(this);
@@ -60,7 +109,7 @@ public class World {
 	}
 
 	public void update(float t) {
-		Profiler.start("World.update");
+		Profiler.start(PROBE_UPDATE);
 
 		// for (Map m : this.activeMaps) {
 		// if (m != null) {
@@ -78,11 +127,78 @@ public class World {
 		this.attacks.removeAll(this.attacksToRemove);
 		this.attacksToRemove.clear();
 
-		this.taskScheduler.run(500, 50, 10);
+		this.taskScheduler.run(TASK_BUDGET);
+
+		this.checkPregeneration();
 
 		this.curFrame++;
 
-		Profiler.stop("World.update");
+		Profiler.stop(PROBE_UPDATE);
+	}
+
+	/**
+	 * When the player enters a room within PREGENERATE_ROOMS of the stairs
+	 * of the map, queues the layout of the level they lead to.
+	 */
+	private void checkPregeneration() {
+		if (this.localPlayer == null || this.localPlayer.getRoom() == null
+				|| this.localPlayer.getRoom() == this.pregenerateRoom) {
+			return;
+		}
+		this.pregenerateRoom = this.localPlayer.getRoom();
+
+		Map map = this.localPlayer.getMap();
+		LinkedList<AbstractRoom> near = new LinkedList<AbstractRoom>();
+		near.add(this.pregenerateRoom);
+		int reached = 0;
+		for (int dist = 0; dist < PREGENERATE_ROOMS; dist++) {
+			int end = near.size();
+			for (int i = reached; i < end; i++) {
+				for (AbstractRoom n : near.get(i).getNeighbours()) {
+					if (!near.contains(n)) {
+						near.add(n);
+					}
+				}
+			}
+			reached = end;
+		}
+
+		if (near.contains(map.getExit())) {
+			this.pregenerate(map.getLevel() + 1);
+		}
+		if (near.contains(map.getEntrance())) {
+			this.pregenerate(map.getLevel() - 1);
+		}
+	}
+
+	/**
+	 * Queues the layout of a level to be made on the pregenerator thread,
+	 * without making it the active map.
+	 */
+	public void pregenerate(int level) {
+		if (level < 0 || level >= LEVELS) {
+			return;
+		}
+		if (this.maps[level] == null) {
+			prepareMap(level);
+		}
+		if (!this.maps[level].isLayoutGenerated()) {
+			this.getPregenerator().queue(this.maps[level]);
+		}
+	}
+
+	/**
+	 * The thread making level layouts in the background, started the first
+	 * time it is asked for.
+	 */
+	public LevelPregenerator getPregenerator() {
+		if (this.pregenerator == null) {
+			this.pregenerator = new LevelPregenerator();
+			Thread thread = new Thread(this.pregenerator, "LevelPregenerator");
+			thread.setDaemon(true);
+			thread.start();
+		}
+		return this.pregenerator;
 	}
 
 	private void prepareMap(int level) {
@@ -121,6 +237,16 @@ public class World {
 		}
 	}
 
+	/**
+	 * Makes the map of a level send its whole pathing map to the AI thread
+	 * again, if the map exists.
+	 */
+	public void requestPathingResync(int level) {
+		if (level >= 0 && level < LEVELS && this.maps[level] != null) {
+			this.maps[level].requestPathingResync();
+		}
+	}
+
 	public Map getLowerMap(int currentLevel) {
 		if (this.maps[currentLevel + 1] == null) {
 			prepareMap(currentLevel + 1);
@@ -158,12 +284,21 @@ public class World {
 		return localPlayer;
 	}
 
+	public long getSeed() {
+		return this.seed;
+	}
+
+	/**
+	 * Rolls from the game's own stream, which like the world is only for the
+	 * main thread. The parts of the game with streams of their own roll from
+	 * those instead.
+	 */
 	public int getRndInt(int min, int max) {
-		return (this.rnd.nextInt(max - min + 1)) + min;
+		return this.rnd.getRndInt(min, max);
 	}
 
 	public boolean roll100(int chance) {
-		return (this.rnd.nextInt(100) < chance);
+		return this.rnd.roll100(chance);
 	}
 
 	public Map getLocalPlayerMap() {
@@ -171,13 +306,75 @@ public class World {
 	}
 
 	public float getRndFloat(float min, float max) {
-		return (this.rnd.nextFloat() * (max - min)) + min;
+		return this.rnd.getRndFloat(min, max);
+	}
+
+	/**
+	 * A new stream for a level, the same for the same seed and level
+	 * whenever it is asked for.
+	 */
+	public RandomStream getLevelRnd(int level) {
+		return this.levelRnd.derive(level);
+	}
+
+	/**
+	 * The stream items are generated from, on the main thread.
+	 */
+	public RandomStream getLootRnd() {
+		return this.lootRnd;
+	}
+
+	/**
+	 * The stream of hit, damage and skill rolls, on the main thread.
+	 */
+	public RandomStream getCombatRnd() {
+		return this.combatRnd;
+	}
+
+	/**
+	 * A new stream for a boid unit, so that its rolls do not depend on how
+	 * many the other units have taken.
+	 */
+	public RandomStream newBoidRnd() {
+		return this.boidRnd.split();
 	}
 
 	public TaskScheduler getTaskScheduler() {
 		return taskScheduler;
 	}
 
+	/**
+	 * The AI thread of this world, created the first time it is asked for.
+	 * It is not started here.
+	 */
+	public AIWorkerMain getAIBrain() {
+		if (this.aiBrain == null) {
+			this.aiBrainMsgq = new MTMessageQueue();
+			this.aiBrain = new AIWorkerMain(this.aiBrainMsgq);
+		}
+		return this.aiBrain;
+	}
+
+	/**
+	 * Where paths are found, on the AI thread.
+	 */
+	public PathService getPathService() {
+		return this.getAIBrain().getPathService();
+	}
+
+	public MTMessageQueue getAIBrainMsgq() {
+		this.getAIBrain();
+		return this.aiBrainMsgq;
+	}
+
+	/**
+	 * The game time in milliseconds, which is simulated time when running
+	 * headless.
+	 */
+	public static long getTimeMillis() {
+		return (long) (Game.getTimer().getTimeInSeconds() * 1000f);
+	}
+
 	public long getCurFrame() {
 		return curFrame;
 	}
@@ -31,7 +31,11 @@ import engine.Settings;
 import engine.Settings.Fields;
 
 public class AnimatedNode {
+	// How long every animation of a headless node takes, in seconds
+	private static final float HEADLESS_ANIMATION_LENGTH = 1f;
+
 	private Node n;
+	private boolean headless = false;
 	private boolean isReusable = false;
 	private MeshAnimationController animControl;
 	private String curAnimationName;
@@ -128,6 +132,18 @@ public class AnimatedNode {
 	public AnimatedNode() {
 	}
 
+	/**
+	 * Creates a node without a model, for running without graphics. Its
+	 * animations all last the same time and follow the game timer, so that
+	 * what waits for an animation to finish still does so.
+	 */
+	public static AnimatedNode createHeadless() {
+		AnimatedNode result = new AnimatedNode();
+		result.n = new Node();
+		result.headless = true;
+		return result;
+	}
+
 	public void attachToBone(BoneType bone, Node child) {
 		if (bone == null || this.animControl == null || this.animControl.getBone(bone.name) == null) {
 			return;
@@ -141,6 +157,13 @@ public class AnimatedNode {
 	}
 
 	public void doAnimation(String name, float speed) {
+		if (this.headless) {
+			if (!name.equals(this.curAnimationName)) {
+				this.curAnimationName = name;
+				this.startTime = Game.getTimer().getTimeInSeconds();
+			}
+			return;
+		}
 		if (this.animControl == null)
 			return;
 		if (!name.equals(this.curAnimationName)) {
@@ -167,10 +190,14 @@ public class AnimatedNode {
 	}
 
 	public boolean hasAnimation(String name) {
+		if (this.animControl == null)
+			return false;
 		return this.animControl.getAnimationNames().contains(name);
 	}
 
 	public float animPercentage() {
+		if (this.headless)
+			return (Game.getTimer().getTimeInSeconds() - this.startTime) / HEADLESS_ANIMATION_LENGTH;
 		if (this.animControl == null)
 			return 0;
 		return ((AnimatedNode.timer.getTimeInSeconds() - this.startTime) / this.animControl
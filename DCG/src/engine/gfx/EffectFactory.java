@@ -28,8 +28,12 @@ import com.jmex.effects.particles.SimpleParticleInfluenceFactory;
 
 import engine.Game;
 import engine.Profiler;
+import engine.Settings;
 
 public class EffectFactory {
+	private static final int PROBE_SPAWN_EFFECT = Profiler.register("EffectFactory.spawnEffect");
+	private static final int PROBE_GET_EFFECT = Profiler.register("EffectFactory.getEffect");
+
 	public enum EffectType {
 		DESTRUCTION(3), HIT_BLOOD(10), LEVEL_UP(3), HEAL(3);
 
@@ -56,7 +60,11 @@ public class EffectFactory {
 	}
 
 	public static void spawnEffect(EffectType type, Vector3f pos, float angle, float scale, String tex) {
-		Profiler.start("EffectFactory.spawnEffect");
+		if (Settings.NOGFX) {
+			return;
+		}
+
+		Profiler.start(PROBE_SPAWN_EFFECT);
 
 		ParticleMesh m = getEffect(type);
 
@@ -79,7 +87,7 @@ public class EffectFactory {
 		m.updateGeometricState(0, true);
 		m.forceRespawn();
 
-		Profiler.stop("EffectFactory.spawnEffect");
+		Profiler.stop(PROBE_SPAWN_EFFECT);
 	}
 
 	public static void preload() {
@@ -92,11 +100,11 @@ public class EffectFactory {
 	}
 
 	public static ParticleMesh getEffect(EffectType type) {
-		Profiler.start("EffectFactory.getEffect");
+		Profiler.start(PROBE_GET_EFFECT);
 
 		for (ParticleMesh m : EffectFactory.pool.get(type)) {
 			if (!m.isActive()) {
-				Profiler.stop("EffectFactory.getEffect");
+				Profiler.stop(PROBE_GET_EFFECT);
 				return m;
 			}
 		}
@@ -104,7 +112,7 @@ public class EffectFactory {
 		ParticleMesh newEffect = constructEffect(type);
 		EffectFactory.pool.get(type).add(newEffect);
 
-		Profiler.stop("EffectFactory.getEffect");
+		Profiler.stop(PROBE_GET_EFFECT);
 		return newEffect;
 	}
 
@@ -43,7 +43,7 @@ public class ModelFactory {
 
 	public static AnimatedNode getModel(DataNode m) {
 		if (Settings.NOGFX)
-			return null;
+			return AnimatedNode.createHeadless();
 
 		for (AnimatedNode n : ModelFactory.reusePool.get(m.getProp("name"))) {
 			if (n.isReusable()) {
@@ -190,6 +190,14 @@ public class ConsoleWindow extends Pane implements GuiMouseListener, KeyInputLis
 		if (parts[0].equals("profile")) {
 			Profiler.dumpTotals();
 		}
+		if (parts[0].equals("trace")) {
+			if (parts.length == 2 && parts[1].equals("off")) {
+				Profiler.stopTrace();
+				ConsoleLog.addLine("Trace stopped.");
+			} else {
+				Profiler.startTrace(parts.length == 2 ? parts[1] : "trace.json");
+			}
+		}
 		if (parts[0].equals("exit") || parts[0].equals("quit") || parts[0].equals("q")) {
 			Main.exit();
 		}
@@ -300,7 +308,7 @@ public class ConsoleWindow extends Pane implements GuiMouseListener, KeyInputLis
 	private void printHelp() {
 		ConsoleLog.addLine("Type a command and press enter. Use PGUP/PGDN to scroll.");
 		ConsoleLog
-				.addLine("Commands: help, clear (or c), exit (or q), caminfo, killmobs (or km), profile, gotomap [all | #] (or gm), iampjaske");
+				.addLine("Commands: help, clear (or c), exit (or q), caminfo, killmobs (or km), profile, trace [file | off], gotomap [all | #] (or gm), iampjaske");
 		ConsoleLog
 				.addLine("          gotoloc # # (or gl), shake (or s), markpathing [off] (or mp), aistat, high, low, slim, joy, fps, hax");
 	}
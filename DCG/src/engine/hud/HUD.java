@@ -32,6 +32,9 @@ import com.jmex.angelfont.BitmapFont.Align;
 import com.jmex.game.state.GameState;
 
 public class HUD extends GameState implements GuiMouseListener {
+	private static final int PROBE_RENDER = Profiler.register("HUD.render");
+	private static final int PROBE_UPDATE = Profiler.register("HUD.update");
+	private static final int PROBE_GUI_CLICK_EVENT = Profiler.register("HUD.guiClickEvent");
 
 	private Node rootNode;
 	private Text txtSelection;
@@ -224,19 +227,23 @@ public class HUD extends GameState implements GuiMouseListener {
 
 	@Override
 	public void render(float tpf) {
-		Profiler.start("HUD.render");
+		Profiler.start(PROBE_RENDER);
 		DisplaySystem.getDisplaySystem().getRenderer().draw(this.rootNode);
-		Profiler.stop("HUD.render");
+		Profiler.stop(PROBE_RENDER);
 	}
 
 	@Override
 	public void update(float tpf) {
-		Profiler.start("HUD.update");
+		Profiler.start(PROBE_UPDATE);
 
 		if (lblFps.isVisible()) {
 			lblFps.fastCaption("FPS: " + String.format("%1$.1f", this.game.getFPS()));
-			lblTaskLoad.fastCaption("Task Load: " + String.format("%1$.0f", TaskScheduler.load * 100f) + "%");
-			lblTasks.fastCaption("Tasks: " + TaskScheduler.running + "/" + TaskScheduler.total);
+			TaskScheduler ts = Game.getInstance().getWorld().getTaskScheduler();
+			lblTaskLoad.fastCaption("Task Time: " + String.format("%1$.2f", 1e-6f * ts.getUsed()) + "/"
+					+ String.format("%1$.2f", 1e-6f * ts.getBudget()) + " ms"
+					+ (ts.getOverrun() > 0 ? ", over by " + String.format("%1$.2f", 1e-6f * ts.getOverrun()) : "")
+					+ " (" + ts.getOverrunRuns() + " overruns)");
+			lblTasks.fastCaption("Tasks: " + ts.getRunning() + "/" + ts.getTotal());
 		}
 
 		gui.update(tpf);
@@ -268,7 +275,7 @@ public class HUD extends GameState implements GuiMouseListener {
 			this.txtSelSpell.rebuild();
 		}
 
-		Profiler.stop("HUD.update");
+		Profiler.stop(PROBE_UPDATE);
 	}
 
 	public void setGame(Game game) {
@@ -281,7 +288,7 @@ public class HUD extends GameState implements GuiMouseListener {
 
 	@Override
 	public void guiMouseClickEvent(AbstractElement element, MouseEvent e) {
-		Profiler.start("HUD.guiClickEvent");
+		Profiler.start(PROBE_GUI_CLICK_EVENT);
 
 		if (element.getId().equals("textStoryBox")) {
 			paneStoryBox.hide();
@@ -295,7 +302,7 @@ public class HUD extends GameState implements GuiMouseListener {
 			toggleMagics();
 		}
 
-		Profiler.stop("HUD.guiClickEvent");
+		Profiler.stop(PROBE_GUI_CLICK_EVENT);
 	}
 
 	@Override
@@ -11,9 +11,9 @@ package engine.hud;
 import java.awt.AlphaComposite;
 import java.awt.Color;
 import java.awt.Graphics2D;
-import java.util.LinkedList;
 
 import map.Map;
+import map.SpatialIndex;
 import engine.Game;
 import engine.Profiler;
 import engine.Settings;
@@ -23,9 +23,25 @@ import entities.Entity;
 import entities.Entity.EntitySubtype;
 
 public class MapOverlay extends thirdParty.PaintableImage {
+	private static final int PROBE_PAINT = Profiler.register("MapOverlay.paint");
+
 	private static final long serialVersionUID = 576232659997516698L;
 
 	private Game game;
+	private MonsterPainter monsterPainter = new MonsterPainter();
+
+	private static class MonsterPainter implements SpatialIndex.Visitor<Entity> {
+		Graphics2D g;
+		float bw, bh;
+
+		public void visit(Entity e) {
+			if (e.isSubtype(EntitySubtype.MONSTER)) {
+				float ex = e.getPosition().x * this.bw;
+				float ey = e.getPosition().y * this.bh;
+				this.g.fillOval((int) ex - 5, (int) ey - 5, (int) 10, (int) 10);
+			}
+		}
+	}
 
 	public MapOverlay(int width, int height, boolean hasAlpha, Game game) {
 		super(width, height, hasAlpha);
@@ -35,7 +51,7 @@ public class MapOverlay extends thirdParty.PaintableImage {
 
 	@Override
 	public void paint(Graphics2D g) {
-		Profiler.start("MapOverlay.paint");
+		Profiler.start(PROBE_PAINT);
 
 		g.setBackground(new Color(0, 0, 0, 0));
 		g.clearRect(0, 0, getWidth(), getHeight());
@@ -70,18 +86,15 @@ public class MapOverlay extends thirdParty.PaintableImage {
 		g.setColor(Color.BLUE);
 		g.fillOval((int) plx - 5, (int) ply - 5, (int) 10, (int) 10);
 
-		LinkedList<Entity> ents = this.game.getWorld().getLocalPlayerMap().getAllRoomActors();
-		for (Entity e : ents) {
-			float ex = e.getPosition().x * bw;
-			float ey = e.getPosition().y * bh;
-
-			if (e.isSubtype(EntitySubtype.MONSTER)) {
-				g.setColor(Color.RED);
-				g.fillOval((int) ex - 5, (int) ey - 5, (int) 10, (int) 10);
-			}
-		}
+		g.setColor(Color.RED);
+		this.monsterPainter.g = g;
+		this.monsterPainter.bw = bw;
+		this.monsterPainter.bh = bh;
+		map.getActorIndex().queryRect(0, 0, map.getWidth() * World.PATHING_GRANULARITY,
+				map.getHeight() * World.PATHING_GRANULARITY, this.monsterPainter);
+		this.monsterPainter.g = null;
 
-		Profiler.stop("MapOverlay.paint");
+		Profiler.stop(PROBE_PAINT);
 
 	}
 
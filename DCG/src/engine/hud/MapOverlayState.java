@@ -30,6 +30,8 @@ import engine.Settings;
 import engine.Settings.Fields;
 
 public class MapOverlayState extends GameState {
+	private static final int PROBE_RENDER = Profiler.register("MapOverlayState.render");
+	private static final int PROBE_UPDATE = Profiler.register("MapOverlayState.update");
 
 	private Node rootNode;
 	private Game game;
@@ -61,14 +63,14 @@ public class MapOverlayState extends GameState {
 
 	@Override
 	public void render(float tpf) {
-		Profiler.start("MapOverlayState.render");
+		Profiler.start(PROBE_RENDER);
 		DisplaySystem.getDisplaySystem().getRenderer().draw(this.rootNode);
-		Profiler.stop("MapOverlayState.render");
+		Profiler.stop(PROBE_RENDER);
 	}
 
 	@Override
 	public void update(float tpf) {
-		Profiler.start("MapOverlayState.update");
+		Profiler.start(PROBE_UPDATE);
 
 		if (!this.inited) {
 			init();
@@ -81,7 +83,7 @@ public class MapOverlayState extends GameState {
 			}
 		}
 
-		Profiler.stop("MapOverlayState.update");
+		Profiler.stop(PROBE_UPDATE);
 	}
 
 	private void init() {
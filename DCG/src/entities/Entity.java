@@ -16,7 +16,10 @@ import java.io.IOException;
 import java.util.LinkedList;
 
 import map.AbstractRoom;
+import map.ClearanceMap;
 import map.Map;
+import map.PathingGrid;
+import map.SpatialIndex;
 
 import com.jme.math.FastMath;
 import com.jme.math.Quaternion;
@@ -29,12 +32,14 @@ import com.jme.util.export.Savable;
 
 import engine.Game;
 import engine.Profiler;
-import engine.Settings;
 import engine.World;
 import engine.gfx.AnimatedNode;
 import engine.gfx.ModelFactory;
 
-public abstract class Entity {
+public abstract class Entity implements SpatialIndex.Indexed {
+	private static final int PROBE_ROTATE = Profiler.register("Entity.rotate");
+	private static final int PROBE_CREATE_PATHING_FOOTPRINT = Profiler.register("Entity.createPathingFootprint");
+	private static final int PROBE_REMOVE_PATHING_FOOTPRINT = Profiler.register("Entity.removePathingFootprint");
 
 	private static final long serialVersionUID = -3087571736914444742L;
 
@@ -68,6 +73,9 @@ public abstract class Entity {
 
 	private boolean locked = false;
 
+	private int spatialCell = -1;
+	private int spatialSlot;
+
 	public Entity() {
 		this.n = new Node();
 		this.n.setUserData("entity", new EntityPtr(this));
@@ -83,7 +91,7 @@ public abstract class Entity {
 		this.id = this.world.getNextUid();
 		this.velocity = new Vector3f(0, 0, 0);
 
-		if (m != null && !Settings.NOGFX) {
+		if (m != null) {
 			this.an = ModelFactory.getModel(m);
 			this.an.setReusable(false);
 			this.n.attachChild(this.an.getNode());
@@ -104,7 +112,7 @@ public abstract class Entity {
 		if (!this.noPathing) {
 			this.removePathingFootprint();
 		}
-		if (this.name != null && this.name.equals("monster_boss")) {
+		if (this.name != null && this.name.equals("monster_boss") && Game.getInstance() != null) {
 			Game.getInstance().getHUD().gameWon();
 		}
 	}
@@ -167,7 +175,7 @@ public abstract class Entity {
 	}
 
 	public void rotate(float angle) {
-		Profiler.start("Entity.rotate");
+		Profiler.start(PROBE_ROTATE);
 
 		if (angle < 0)
 			angle += FastMath.TWO_PI;
@@ -196,7 +204,7 @@ public abstract class Entity {
 			this.createPathingFootprint();
 		}
 
-		Profiler.stop("Entity.rotate");
+		Profiler.stop(PROBE_ROTATE);
 	}
 
 	public int getId() {
@@ -226,6 +234,19 @@ public abstract class Entity {
 		return curState;
 	}
 
+	public int getSpatialCell() {
+		return this.spatialCell;
+	}
+
+	public int getSpatialSlot() {
+		return this.spatialSlot;
+	}
+
+	public void setSpatialSlot(int cell, int slot) {
+		this.spatialCell = cell;
+		this.spatialSlot = slot;
+	}
+
 	public boolean isSubtype(EntitySubtype st) {
 		return this.subtypes.contains(st);
 	}
@@ -249,6 +270,9 @@ public abstract class Entity {
 			this.removePathingFootprint();
 			this.getNode().setLocalTranslation(newPos);
 			this.createPathingFootprint();
+			if (this.spatialCell >= 0 && this.map != null) {
+				this.map.getActorIndex().move(this, x, y);
+			}
 			if (this.room != null) {
 				AbstractRoom curRoom = this.map.getRoom((int) x / World.PATHING_GRANULARITY, (int) y
 						/ World.PATHING_GRANULARITY);
@@ -269,7 +293,7 @@ public abstract class Entity {
 	 */
 	protected void createPathingFootprint() {
 		if (!this.noPathing) {
-			Profiler.start("Entity.createPathingFootprint");
+			Profiler.start(PROBE_CREATE_PATHING_FOOTPRINT);
 
 			int sx = World.worldToPathing(this.getPosition().x
 					- ((float) (this.pathingFootprint.length - 1) * World.PATHING_BLOCKSIZE) / 2);
@@ -286,7 +310,7 @@ public abstract class Entity {
 				}
 			}
 
-			Profiler.stop("Entity.createPathingFootprint");
+			Profiler.stop(PROBE_CREATE_PATHING_FOOTPRINT);
 		}
 	}
 	/**
@@ -295,7 +319,7 @@ public abstract class Entity {
 	 */
 	protected void removePathingFootprint() {
 		if (!this.noPathing) {
-			Profiler.start("Entity.removePathingFootprint");
+			Profiler.start(PROBE_REMOVE_PATHING_FOOTPRINT);
 
 			int sx = World.worldToPathing(this.getPosition().x
 					- ((float) (this.pathingFootprint.length - 1) * World.PATHING_BLOCKSIZE) / 2);
@@ -312,7 +336,7 @@ public abstract class Entity {
 				}
 			}
 
-			Profiler.stop("Entity.removePathingFootprint");
+			Profiler.stop(PROBE_REMOVE_PATHING_FOOTPRINT);
 		}
 	}
 
@@ -332,11 +356,26 @@ public abstract class Entity {
 		if (this.noPathing) {
 			return true;
 		} else {
-			return walkablePathSpot(px, py, this.pathingFootprint, this.map.getPathingMap(), this.id, ignoreId);
+			return walkablePathSpot(px, py, this.pathingFootprint, this.map.getPathingMap(), this.map.getClearance(),
+					this.id, ignoreId);
 		}
 	}
 
-	public static boolean walkablePathSpot(int px, int py, boolean[][] footprint, int[][] pmap, int entId, int ignoreId) {
+	public static boolean walkablePathSpot(int px, int py, boolean[][] footprint, PathingGrid pmap, int entId,
+			int ignoreId) {
+		return walkablePathSpot(px, py, footprint, pmap, null, entId, ignoreId);
+	}
+
+	/**
+	 * As walkablePathSpot, but asking the clearance map of the pathing map
+	 * first, so the footprint is only looked at spot by spot when it is
+	 * larger than the clearance map can answer for or reaches off the map.
+	 *
+	 * @param clearance
+	 *            The clearance map of pmap, or null
+	 */
+	public static boolean walkablePathSpot(int px, int py, boolean[][] footprint, PathingGrid pmap,
+			ClearanceMap clearance, int entId, int ignoreId) {
 		int sx = World.worldToPathing(px - ((float) (footprint.length - 1) * World.PATHING_BLOCKSIZE) / 2);
 		int sy = World.worldToPathing(py - ((float) (footprint[0].length - 1) * World.PATHING_BLOCKSIZE) / 2);
 
@@ -344,10 +383,34 @@ public abstract class Entity {
 			ignoreId = entId; // dirty
 		}
 
+		if (clearance != null) {
+			int c = clearance.check(sx, sy, footprint.length, footprint[0].length, entId, ignoreId);
+			if (c != ClearanceMap.UNKNOWN) {
+				return c == ClearanceMap.FITS;
+			}
+		}
+
 		for (int x = 0; x < (footprint.length); x++) {
 			for (int y = 0; y < (footprint[0].length); y++) {
-				int pval = Map.getPathingValue(sx + x, sy + y, pmap);
-				if (footprint[x][y] && (pval < 0 && pval != -entId && pval != -ignoreId)) {
+				if (footprint[x][y] && (pmap == null || !pmap.isFree(sx + x, sy + y, entId, ignoreId))) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * As walkablePathSpot, but only looking for walls, for paths that should
+	 * not change when the entities move.
+	 */
+	public static boolean clearOfWalls(int px, int py, boolean[][] footprint, PathingGrid pmap) {
+		int sx = World.worldToPathing(px - ((float) (footprint.length - 1) * World.PATHING_BLOCKSIZE) / 2);
+		int sy = World.worldToPathing(py - ((float) (footprint[0].length - 1) * World.PATHING_BLOCKSIZE) / 2);
+
+		for (int x = 0; x < footprint.length; x++) {
+			for (int y = 0; y < footprint[0].length; y++) {
+				if (footprint[x][y] && pmap.isWall(sx + x, sy + y)) {
 					return false;
 				}
 			}
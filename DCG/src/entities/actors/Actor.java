@@ -13,11 +13,13 @@ package entities.actors;
 import infostore.DataNode;
 
 import java.awt.Color;
+import java.awt.Point;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
 
 import map.Map;
+import map.RoomGraph;
 import misc.Attack;
 import misc.Magic;
 import misc.Stats;
@@ -28,8 +30,8 @@ import skills.OffensiveSkill;
 import skills.Skill;
 import skills.SkillTree;
 import skills.StatsSkill;
-import tasks.PathFinderTask;
 import thirdParty.TextLabel2D;
+import ai.PathRequest;
 
 import com.jme.math.FastMath;
 import com.jme.math.Quaternion;
@@ -39,6 +41,7 @@ import com.jme.scene.BillboardNode;
 import com.jme.scene.Node;
 
 import engine.Game;
+import engine.Settings;
 import engine.Profiler;
 import engine.gfx.AnimatedNode.BoneType;
 import engine.gfx.AnimatedNode.RepeatMode;
@@ -47,12 +50,22 @@ import entities.Entity;
 import entities.doodads.Doodad;
 import entities.items.Armor;
 import entities.items.Item;
+import entities.items.ItemDescriptor;
 import entities.items.Weapon;
 import entities.items.WearableItem;
 import entities.items.Weapon.RangeType;
 import entities.items.WearableItem.WearableType;
 
 public abstract class Actor extends Entity {
+	private static final int PROBE_SET_ANIMATION = Profiler.register("Actor.setAnimation");
+	private static final int PROBE_UPDATE = Profiler.register("Actor.update");
+	private static final int PROBE_UPDATE_WALK = Profiler.register("Actor.updateWalk");
+	private static final int PROBE_UPDATE_ANGLE = Profiler.register("Actor.updateAngle");
+	private static final int PROBE_UPDATE_ATTACK = Profiler.register("Actor.updateAttack");
+	private static final int PROBE_ATTACK = Profiler.register("Actor.attack");
+	private static final int PROBE_CAST_SPELL = Profiler.register("Actor.castSpell");
+	private static final int PROBE_CREATE_PATH_TO = Profiler.register("Actor.createPathTo");
+
 	private static final long serialVersionUID = 5042625376381354713L;
 	private final static float MOVEMENT_PRECISION_THRESHOLD = 1f;
 
@@ -107,11 +120,14 @@ public abstract class Actor extends Entity {
 	public long lastTimeSpellTarget;
 
 	protected LinkedList<Item> items;
+	// Made into items when they are dropped
+	protected LinkedList<ItemDescriptor> loot;
 
 	protected HashMap<AttachPoint, WearableItem> wearingItems;
 	protected HashMap<AttachPoint, Node> wearingNodes;
 
-	private PathFinderTask pathingTask = null;
+	private PathRequest pathRequest = null;
+	private RoomGraph.Route roomRoute = null;
 
 	public abstract void updateAI(float t);
 
@@ -128,6 +144,7 @@ public abstract class Actor extends Entity {
 		this.lookTowards = new Vector2f(0, 0);
 
 		this.items = new LinkedList<Item>();
+		this.loot = new LinkedList<ItemDescriptor>();
 		this.nextAttackTime = Game.getTimer().getTimeInSeconds();
 
 		this.wearingItems = new HashMap<AttachPoint, WearableItem>();
@@ -163,7 +180,7 @@ public abstract class Actor extends Entity {
 	}
 
 	public void setAnimation(Animation anim) {
-		Profiler.start("Actor.setAnimation");
+		Profiler.start(PROBE_SET_ANIMATION);
 
 		switch (anim) {
 			default :
@@ -196,7 +213,7 @@ public abstract class Actor extends Entity {
 				this.an.doAnimation("Die");
 		}
 
-		Profiler.stop("Actor.setAnimation");
+		Profiler.stop(PROBE_SET_ANIMATION);
 	}
 
 	public Vector2f getMoveTowards() {
@@ -211,11 +228,9 @@ public abstract class Actor extends Entity {
 		this.moveTowards = moveTowards;
 	}
 
-	// We are certain on the objects type
-	@SuppressWarnings("unchecked")
 	@Override
 	public void update(float t) {
-		Profiler.start("Actor.update");
+		Profiler.start(PROBE_UPDATE);
 
 		super.update(t);
 
@@ -231,18 +246,32 @@ public abstract class Actor extends Entity {
 		} else {
 			updateAI(t);
 
-			if (this.pathingTask != null) {
-				if (this.pathingTask.isComplete()) {
-					this.path = (LinkedList<Vector2f>) this.pathingTask.getResult();
+			if (this.pathRequest != null) {
+				if (this.pathRequest.isDone()) {
+					this.path = this.pathRequest.getPath();
+					if (this.pathRequest.getRoute() != null) {
+						this.roomRoute = this.pathRequest.getRoute();
+					}
+
+					if (this.pathRequest.getVisited() != null) {
+						this.map.clearShowPathing(this);
+						for (Point p : this.pathRequest.getVisited()) {
+							this.map.markExploredPathing(this, p.x, p.y);
+						}
+					}
 
 					// Debug.dumpPathingMap(this.map.getWorld(), this);
+					this.pathRequest = null;
 					if (this.path != null && this.path.size() > 0) {
 						this.moveTowards = this.path.getFirst();
 						this.curState = EntityState.MOVE;
+					} else if (this.roomRoute != null) {
+						// Segment could not be refined, search the whole way
+						this.requestPath(this.roomRoute.getDestination(), null, false);
+						this.roomRoute = null;
 					} else {
 						this.moveTowards = null;
 					}
-					this.pathingTask = null;
 					// System.out.println(this.getIdent() + " " +
 					// this.world.getCurFrame() + " Path calced.");
 				}
@@ -278,7 +307,7 @@ public abstract class Actor extends Entity {
 
 		updateFloatingTexts(t);
 
-		Profiler.stop("Actor.update");
+		Profiler.stop(PROBE_UPDATE);
 		/*
 		 * float newZ = -
 		 * ((BoundingBox)this.an.getNode().getWorldBound()).zExtent / 2;
@@ -294,6 +323,10 @@ public abstract class Actor extends Entity {
 			this.setCurState(EntityState.DYING);
 			this.setAnimation(Animation.DIE);
 			if (this.room != null) {
+				for (ItemDescriptor d : this.loot) {
+					this.items.add(d.materialize(this.world));
+				}
+				this.loot.clear();
 				for (Item item : this.items) {
 					this.room.addEntity(item);
 					item.setPos(this.getPosition().x, this.getPosition().y);
@@ -307,14 +340,19 @@ public abstract class Actor extends Entity {
 	}
 
 	protected void updateWalk(float t) {
-		Profiler.start("Actor.updateWalk");
+		Profiler.start(PROBE_UPDATE_WALK);
 
 		Vector2f curPos = new Vector2f(this.getNode().getLocalTranslation().x, this.getNode().getLocalTranslation().y);
 
 		if (this.moveTowards == null && this.path != null) {
 			if (this.path.size() == 0) {
 				this.path = null;
-				this.setCurState(EntityState.IDLE);
+				if (this.roomRoute != null && this.roomRoute.hasNext()) {
+					this.createNextRouteSegment();
+				} else {
+					this.roomRoute = null;
+					this.setCurState(EntityState.IDLE);
+				}
 			} else {
 				this.moveTowards = this.path.removeFirst();
 			}
@@ -357,11 +395,11 @@ public abstract class Actor extends Entity {
 
 		this.lastPos = curPos;
 
-		Profiler.stop("Actor.updateWalk");
+		Profiler.stop(PROBE_UPDATE_WALK);
 	}
 
 	public void updateAngle(float t) {
-		Profiler.start("Actor.updateAngle");
+		Profiler.start(PROBE_UPDATE_ANGLE);
 
 		float da = FastMath.atan2(this.lookTowards.y - this.getPosition().y, this.lookTowards.x - this.getPosition().x)
 				+ FastMath.HALF_PI;
@@ -381,11 +419,11 @@ public abstract class Actor extends Entity {
 			this.getNode().setLocalRotation(rot);
 		}
 
-		Profiler.stop("Actor.updateAngle");
+		Profiler.stop(PROBE_UPDATE_ANGLE);
 	}
 
 	public void updateAttackAndCast() {
-		Profiler.start("Actor.updateAttack");
+		Profiler.start(PROBE_UPDATE_ATTACK);
 
 		switch (this.curState) {
 			case ATTACK_PRE :
@@ -447,7 +485,7 @@ public abstract class Actor extends Entity {
 				break;
 		}
 
-		Profiler.stop("Actor.updateAttack");
+		Profiler.stop(PROBE_UPDATE_ATTACK);
 	}
 
 	public boolean isInAttackRange(Entity target) {
@@ -473,7 +511,7 @@ public abstract class Actor extends Entity {
 	}
 
 	public void attack(Entity target) {
-		Profiler.start("Actor.attack");
+		Profiler.start(PROBE_ATTACK);
 		if (isInAttackRange(target) && (Game.getTimer().getTimeInSeconds() > this.nextAttackTime)) {
 			this.path = null;
 			this.moveTowards = null;
@@ -483,11 +521,11 @@ public abstract class Actor extends Entity {
 			this.nextAttackTime = Game.getTimer().getTimeInSeconds() + this.getAttackCooldown();
 		}
 
-		Profiler.stop("Actor.attack");
+		Profiler.stop(PROBE_ATTACK);
 	}
 
 	public void castMagic(Entity target) {
-		Profiler.start("Actor.castSpell");
+		Profiler.start(PROBE_CAST_SPELL);
 		if (Game.getTimer().getTimeInSeconds() > this.nextAttackTime) {
 			if (this.curMagic != null && this.curMagic.isValidTarget(this, target)) {
 				this.path = null;
@@ -499,20 +537,55 @@ public abstract class Actor extends Entity {
 			}
 		}
 
-		Profiler.stop("Actor.castSpell");
+		Profiler.stop(PROBE_CAST_SPELL);
 	}
 
+	/**
+	 * Finds a path to the destination. A search still running for an earlier
+	 * destination is cancelled by the path service, so the latest click wins.
+	 */
 	public void createPathTo(Vector2f destWorld) {
-		if (this.pathingTask == null) {
-			Profiler.start("Actor.createPathTo");
+		if (destWorld != null) {
+			Profiler.start(PROBE_CREATE_PATH_TO);
 
 			// System.out.println(this.getIdent() + " " +
 			// this.world.getCurFrame() + " Path requested.");
-			this.pathingTask = new PathFinderTask(this.map, this.getPosition(), destWorld, this);
-			this.world.getTaskScheduler().addTask(this.pathingTask, this.isSubtype(EntitySubtype.PLAYER));
+			this.roomRoute = null;
+			this.requestPath(destWorld, null, true);
+
+			Profiler.stop(PROBE_CREATE_PATH_TO);
+		}
+	}
 
-			Profiler.stop("Actor.createPathTo");
+	/**
+	 * Starts pathfinding through the next rooms of the planned room route.
+	 */
+	private void createNextRouteSegment() {
+		boolean[] allowed = this.roomRoute.nextSegment();
+		this.requestPath(this.roomRoute.getSegmentTarget(), allowed, false);
+	}
+
+	/**
+	 * Hands a search to the path service, restricted to the allowed rooms of
+	 * the room graph if they are given, or planned through the room graph on
+	 * the worker if planRoute is set. The player's searches go first, and
+	 * look for somewhere close by if the destination cannot be reached.
+	 */
+	private void requestPath(Vector2f dest, boolean[] allowedRooms, boolean planRoute) {
+		PathRequest req = new PathRequest(this.map.getLevel(), this.getPosition(), dest, this.getFootprint(), this
+				.getId(), 0);
+		if (allowedRooms != null) {
+			RoomGraph graph = this.map.getRoomGraph();
+			req.restrictTo(graph.getTileRooms(), graph.getTileHeight(), allowedRooms);
+		} else if (planRoute && this.map.getRoomGraph() != null) {
+			req.planRoute(this.map.getRoomGraph());
 		}
+
+		boolean player = this.isSubtype(EntitySubtype.PLAYER);
+		if (player) {
+			req.tryAlternatives();
+		}
+		this.pathRequest = this.world.getPathService().submit(req, player);
 	}
 
 	public void updateStats() {
@@ -540,7 +613,7 @@ public abstract class Actor extends Entity {
 		if (this.curStats.getMana() > this.totalStats.getMana()) {
 			this.curStats.setMana(this.totalStats.getMana());
 		}
-		if (Game.getInstance().getHUD() != null) {
+		if (Game.getInstance() != null && Game.getInstance().getHUD() != null) {
 			Game.getInstance().getHUD().updateHpAndMana();
 		}
 		this.updateAttack();
@@ -609,6 +682,14 @@ public abstract class Actor extends Entity {
 		this.items.addAll(linkedList);
 	}
 
+	public void giveAllLoot(LinkedList<ItemDescriptor> linkedList) {
+		this.loot.addAll(linkedList);
+	}
+
+	public LinkedList<ItemDescriptor> getLoot() {
+		return this.loot;
+	}
+
 	public Stats getTotalStats() {
 		return this.totalStats;
 	}
@@ -669,7 +750,7 @@ public abstract class Actor extends Entity {
 	}
 
 	public int getPhysicalRndDmg() {
-		return this.world.getRndInt(this.getPhysicalMinDmg(), this.getPhysicalMaxDmg());
+		return this.world.getCombatRnd().getRndInt(this.getPhysicalMinDmg(), this.getPhysicalMaxDmg());
 	}
 
 	public int getPhysicalMinDmg() {
@@ -923,6 +1004,9 @@ public abstract class Actor extends Entity {
 	}
 
 	public void addFloatingText(FloatingTextInfo info) {
+		if (Settings.NOGFX) {
+			return;
+		}
 		TextLabel2D label = new TextLabel2D(info.text);
 		label.setBackground(info.bg);
 		label.setForeground(info.fg);
@@ -38,8 +38,8 @@ public class Monster extends NPC {
 				Point rs = room.getPathingCoords()[0];
 				Point re = room.getPathingCoords()[1];
 
-				x = this.world.getRndFloat(rs.x, re.x);
-				y = this.world.getRndFloat(rs.y, re.y);
+				x = r.getRnd().getRndFloat(rs.x, re.x);
+				y = r.getRnd().getRndFloat(rs.y, re.y);
 
 			} else if (r.getClass().equals(Corridor.class)) {
 				// TODO implement this
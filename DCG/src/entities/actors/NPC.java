@@ -15,6 +15,7 @@ import java.awt.Point;
 import java.util.ArrayList;
 
 import map.Map;
+import map.SpatialIndex;
 import misc.Magic;
 import misc.Stats;
 import misc.Magic.MagicType;
@@ -44,6 +45,19 @@ public abstract class NPC extends Actor {
 	protected NPCType npcType;
 
 	private BoidUnit boidController;
+	private Magic healSpell;
+	private Entity[] healTarget = new Entity[1];
+	private SpatialIndex.Filter<Entity> healFilter = new SpatialIndex.Filter<Entity>() {
+		public boolean accept(Entity e) {
+			if (!(e instanceof NPC) || ((NPC) e).getBoidController() == null
+					|| ((NPC) e).getBoidController().getGroup() != NPC.this.boidController.getGroup()) {
+				return false;
+			}
+			NPC n = (NPC) e;
+			return NPC.this.healSpell.isValidTarget(NPC.this, n) && n.getCurStats().getTotalHp() > 0
+					&& 100f * n.getCurStats().getTotalHp() / n.getTotalStats().getTotalHp() < 50f;
+		}
+	};
 
 	private float size;
 	private Entity target;
@@ -52,7 +66,7 @@ public abstract class NPC extends Actor {
 
 	public NPC(Map map, DataNode node) {
 		super(map, DataManager.findByNameAndType(DataType.MODEL_ID, node.getProp("modelID")), new Stats(node
-				.getChild("stats"), map.getWorld().getRndInt(map.getLevel() - 2, map.getLevel())), map.getLevel());
+				.getChild("stats"), map.getRnd().getRndInt(map.getLevel() - 2, map.getLevel())), map.getLevel());
 
 		// TODO: implement/remove ai
 		node.getProp("ai");
@@ -159,14 +173,13 @@ public abstract class NPC extends Actor {
 			}
 
 			if (healSpell != null) {
-				for (BoidUnit bu : this.boidController.getGroup().getUnits()) {
-					if (healSpell.isValidTarget(this, bu.getNpc())
-							&& bu.getNpc().getCurStats().getTotalHp() > 0
-							&& 100f * bu.getNpc().getCurStats().getTotalHp() / bu.getNpc().getTotalStats().getTotalHp() < 50f) {
-						healSpell.cast(this, bu.getNpc());
-						break;
-					}
+				// The nearest wounded unit of the group within range of the spell
+				this.healSpell = healSpell;
+				if (this.getMap().getActorIndex().nearestK(this.getPosition().x, this.getPosition().y, 1,
+						(float) Math.sqrt(healSpell.getRangeSquared()), this.healFilter, this.healTarget) > 0) {
+					healSpell.cast(this, (Actor) this.healTarget[0]);
 				}
+				this.healTarget[0] = null;
 			}
 		}
 	}
@@ -140,7 +140,9 @@ public class Player extends Actor {
 		this.getNode().getLocalTranslation().z = 0f;
 		this.curStats.setHp(this.totalStats.getHp());
 		this.curState = EntityState.IDLE;
-		Game.getInstance().movePlayerToMap(0);
+		if (Game.getInstance() != null) {
+			Game.getInstance().movePlayerToMap(0);
+		}
 	}
 
 	private static int calcXp(int level) {
@@ -175,7 +177,9 @@ public class Player extends Actor {
 			this.availableSkillPoints++;
 			this.availableStatPoints += 5;
 
-			Game.getInstance().getHUD().requireSkillSheetUpdate();
+			if (Game.getInstance() != null) {
+				Game.getInstance().getHUD().requireSkillSheetUpdate();
+			}
 		}
 	}
 	public int getXpForNextLevel() {
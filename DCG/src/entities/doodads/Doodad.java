@@ -30,12 +30,15 @@ import engine.gfx.EffectFactory.EffectType;
 import entities.Entity;
 import entities.actors.Actor;
 import entities.items.Item;
+import entities.items.ItemDescriptor;
 
 public class Doodad extends Entity {
 
 	private static final long serialVersionUID = -51929794185660405L;
 	private boolean destructible = false;
 	private LinkedList<Entity> contains;
+	// Made into items when the doodad is opened
+	private LinkedList<ItemDescriptor> loot;
 	private DataNode info;
 	private float size;
 
@@ -43,6 +46,7 @@ public class Doodad extends Entity {
 		super(map.getWorld(), DataManager.findByNameAndType(DataType.MODEL_ID, node.getProp("modelID")));
 		this.map = map;
 		this.contains = new LinkedList<Entity>();
+		this.loot = new LinkedList<ItemDescriptor>();
 		this.addSubtype(EntitySubtype.DOODAD);
 		this.setCaption(node.getProp("caption"));
 		this.info = node;
@@ -60,6 +64,11 @@ public class Doodad extends Entity {
 	}
 
 	public void interactReact(Actor interactor) {
+		for (ItemDescriptor d : this.loot) {
+			this.contains.add(d.materialize(this.world));
+		}
+		this.loot.clear();
+
 		if (this.getCurState() == EntityState.DYING) {
 			EffectFactory.spawnEffect(EffectType.DESTRUCTION, this.getNode().getWorldTranslation().addLocal(0, 0, 2),
 					0, 1.0f, "barrel_planks02.jpg");
@@ -108,6 +117,14 @@ public class Doodad extends Entity {
 
 	}
 
+	public void addAllLoot(LinkedList<ItemDescriptor> linkedList) {
+		this.loot.addAll(linkedList);
+	}
+
+	public LinkedList<ItemDescriptor> getLoot() {
+		return this.loot;
+	}
+
 	public void placeInRoom(AbstractRoom r) {
 		if (this.info.getChild("placement").getProp("type").equals("cluster")) {
 			placeInRoomCluster(r, Integer.parseInt(this.info.getChild("placement").getProp("typeParameters")));
@@ -130,29 +147,29 @@ public class Doodad extends Entity {
 				Point rs = room.getPathingCoords()[0];
 				Point re = room.getPathingCoords()[1];
 
-				int side = this.world.getRndInt(1, 4);
+				int side = r.getRnd().getRndInt(1, 4);
 
 				switch (side) {
 					case 1 :
 						y = (int) (re.y + World.PATHING_GRANULARITY - World.PATHING_BLOCKSIZE);
-						x = this.world.getRndInt(rs.x, re.x);
+						x = r.getRnd().getRndInt(rs.x, re.x);
 						angle = 0;
 						backToNeighbour = room.neighboursContain(new Point(x / 10, y / 10 + 1));
 						break;
 					case 2 :
 						y = (int) (rs.y + World.PATHING_BLOCKSIZE);
-						x = this.world.getRndInt(rs.x, re.x);
+						x = r.getRnd().getRndInt(rs.x, re.x);
 						angle = FastMath.PI;
 						backToNeighbour = room.neighboursContain(new Point(x / 10, y / 10 - 1));
 						break;
 					case 3 :
-						y = this.world.getRndInt(rs.y, re.y);
+						y = r.getRnd().getRndInt(rs.y, re.y);
 						x = (int) (rs.x + World.PATHING_BLOCKSIZE);
 						angle = FastMath.HALF_PI;
 						backToNeighbour = room.neighboursContain(new Point(rs.x / 10 - 1, y / 10));
 						break;
 					case 4 :
-						y = this.world.getRndInt(rs.y, re.y);
+						y = r.getRnd().getRndInt(rs.y, re.y);
 						x = (int) (re.x + World.PATHING_GRANULARITY - World.PATHING_BLOCKSIZE);
 						backToNeighbour = room.neighboursContain(new Point(re.x / 10 + 1, y / 10));
 						angle = -FastMath.HALF_PI;
@@ -187,8 +204,8 @@ public class Doodad extends Entity {
 				Vector2f pos = new Vector2f(0, 0);
 
 				clusterFinderLoop : for (int i = 0; i < tries; i++) {
-					pos.x = this.world.getRndFloat(rs.x, re.x);
-					pos.y = this.world.getRndFloat(rs.y, re.y);
+					pos.x = r.getRnd().getRndFloat(rs.x, re.x);
+					pos.y = r.getRnd().getRndFloat(rs.y, re.y);
 
 					for (Entity ent : r.getEntities()) {
 						if (ent.isSubtype(EntitySubtype.DOODAD)) {
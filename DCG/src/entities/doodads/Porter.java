@@ -58,7 +58,7 @@ public class Porter extends Doodad {
 		int c = 0;
 		do {
 			c++;
-			r = map.getRooms().get(this.world.getRndInt(0, map.getRooms().size() - 1));
+			r = map.getRooms().get(map.getRnd().getRndInt(0, map.getRooms().size() - 1));
 
 			if (c > 100) {
 				return;
@@ -0,0 +1,73 @@
+/**
+ * The prefixes and postfixes an item can get, sorted by quality and slot
+ * once so that making an item only has to pick from an array. The arrays keep
+ * the order of the files, so the same roll picks the same affix as when the
+ * lists were filtered for each item. The arrays are made again when the
+ * DataManager has compiled a new database since they were made.
+ */
+
+package entities.items;
+
+import infostore.AffixRecord;
+import infostore.DataManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import entities.items.Item.Quality;
+import entities.items.WearableItem.WearableType;
+
+class AffixPool {
+	private static AffixRecord[][][] prefixes;
+	private static AffixRecord[][][] surfixes;
+	// The lists of the database the arrays were made from. DataManager
+	// makes new lists each time it compiles.
+	private static List<AffixRecord> prefixesFrom;
+	private static List<AffixRecord> surfixesFrom;
+
+	static AffixRecord[] getPrefixes(Quality quality, WearableType slot) {
+		List<AffixRecord> all = DataManager.getPrefixes();
+		if (prefixesFrom != all) {
+			prefixes = build(all);
+			prefixesFrom = all;
+		}
+		return prefixes[quality.ordinal()][slot.ordinal()];
+	}
+
+	static AffixRecord[] getSurfixes(Quality quality, WearableType slot) {
+		List<AffixRecord> all = DataManager.getSurfixes();
+		if (surfixesFrom != all) {
+			surfixes = build(all);
+			surfixesFrom = all;
+		}
+		return surfixes[quality.ordinal()][slot.ordinal()];
+	}
+
+	private static AffixRecord[][][] build(List<AffixRecord> affixes) {
+		AffixRecord[][][] pool = new AffixRecord[Quality.values().length][WearableType.values().length][];
+
+		for (Quality quality : Quality.values()) {
+			String name = quality.name().toLowerCase();
+			for (WearableType slot : WearableType.values()) {
+				ArrayList<AffixRecord> list = new ArrayList<AffixRecord>();
+				for (AffixRecord affix : affixes) {
+					if (affix.hasQuality(name) && hasSlot(affix, slot)) {
+						list.add(affix);
+					}
+				}
+				pool[quality.ordinal()][slot.ordinal()] = list.toArray(new AffixRecord[list.size()]);
+			}
+		}
+
+		return pool;
+	}
+
+	private static boolean hasSlot(AffixRecord affix, WearableType slot) {
+		for (int i = 0; i < affix.getNumSlots(); i++) {
+			if (slot == WearableType.valueOf(affix.getSlot(i).toUpperCase())) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
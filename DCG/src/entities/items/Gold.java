@@ -11,6 +11,7 @@ import infostore.DataManager.DataType;
 
 import com.jme.math.FastMath;
 
+import engine.RandomStream;
 import engine.World;
 
 public class Gold extends Item {
@@ -28,8 +29,13 @@ public class Gold extends Item {
 	}
 
 	public Gold(World world, DataNode n, int level) {
-		super(world, ItemType.GOLD, (int) ((FastMath.pow(level, 3) + world.getRndInt(0, 20))), n.getProp("caption"),
-				DataManager.findByNameAndType(DataType.MODEL_ID, n.getProp("modelID")), Quality.COMMON, n);
+		this(world, n, level, world.getLootRnd());
+	}
+
+	public Gold(World world, DataNode n, int level, RandomStream rnd) {
+		super(world, ItemType.GOLD, (int) ((FastMath.pow(level, 3) + rnd.getRndInt(0, 20))), n
+				.getProp("caption"), DataManager.findByNameAndType(DataType.MODEL_ID, n.getProp("modelID")),
+				Quality.COMMON, n);
 		this.quantity = this.getMonetaryValue();
 	}
 
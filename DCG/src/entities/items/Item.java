@@ -3,15 +3,21 @@
  * It contains information on type, size and quility of the item.
  * 
  * This class contains some very important methods used for items generation. These are 
- * generateFromNode() and generateFromLootTable().
+ * generateFromNode() and generateFromLootTable(). Loot that is carried until it
+ * drops is rolled with rollLootTable() into ItemDescriptors instead.
  */
 
 package entities.items;
 
+import infostore.AffixRecord;
 import infostore.DataManager;
 import infostore.DataNode;
+import infostore.ItemRecord;
+import infostore.LootTableRecord;
 import infostore.DataManager.DataType;
 
+import java.lang.reflect.Constructor;
+import java.util.HashMap;
 import java.util.LinkedList;
 
 import map.Map;
@@ -21,10 +27,10 @@ import com.jme.math.FastMath;
 import com.jme.renderer.ColorRGBA;
 
 import engine.Game;
+import engine.RandomStream;
 import engine.World;
 import entities.Entity;
 import entities.actors.Player;
-import entities.items.WearableItem.WearableType;
 
 public abstract class Item extends Entity {
 	private static final long serialVersionUID = 1890079766447739263L;
@@ -36,6 +42,38 @@ public abstract class Item extends Entity {
 		POOR, COMMON, MAGIC, RARE, EPIC, UNIQUE, QUEST
 	};
 
+	/**
+	 * Makes the items of one class from their nodes, in place of looking up
+	 * the constructor of the class named by the node for each item.
+	 */
+	private interface ItemFactory {
+		Item create(World world, DataNode n, int level, RandomStream rnd) throws Exception;
+	}
+
+	private static HashMap<String, ItemFactory> factories = new HashMap<String, ItemFactory>();
+	static {
+		factories.put("Weapon", new ItemFactory() {
+			public Item create(World world, DataNode n, int level, RandomStream rnd) {
+				return new Weapon(world, n, level);
+			}
+		});
+		factories.put("Armor", new ItemFactory() {
+			public Item create(World world, DataNode n, int level, RandomStream rnd) {
+				return new Armor(world, n, level);
+			}
+		});
+		factories.put("ConsumableItem", new ItemFactory() {
+			public Item create(World world, DataNode n, int level, RandomStream rnd) {
+				return new ConsumableItem(world, n, level);
+			}
+		});
+		factories.put("Gold", new ItemFactory() {
+			public Item create(World world, DataNode n, int level, RandomStream rnd) {
+				return new Gold(world, n, level, rnd);
+			}
+		});
+	}
+
 	private ItemType type;
 	private int monetaryValue;
 	private int level;
@@ -156,7 +194,11 @@ public abstract class Item extends Entity {
 	// }
 
 	public static Quality getRndQuality(int bonusChance, World w) {
-		int roll = w.getRndInt(0, 99);
+		return getRndQuality(bonusChance, w.getLootRnd());
+	}
+
+	public static Quality getRndQuality(int bonusChance, RandomStream rnd) {
+		int roll = rnd.getRndInt(0, 99);
 		if (roll <= 0 + bonusChance) {
 			return Quality.EPIC;
 		} else if (roll < 10 + bonusChance) {
@@ -170,14 +212,38 @@ public abstract class Item extends Entity {
 		}
 	}
 
-	public static LinkedList<Item> generateFromLootTable(DataNode tableData, int bonusQualityChance, Map map) {
+	public static LinkedList<Item> generateFromLootTable(LootTableRecord table, int bonusQualityChance, Map map) {
 		LinkedList<Item> result = new LinkedList<Item>();
-		LinkedList<DataNode> itemsInTable = tableData.getList("entry");
+		for (ItemDescriptor loot : rollLootTable(table, bonusQualityChance, map)) {
+			result.add(loot.materialize(map.getWorld()));
+		}
+		return result;
+	}
+
+	/**
+	 * Rolls a loot table as generateFromLootTable does, but leaves the items
+	 * as descriptors to be made when they are dropped.
+	 */
+	public static LinkedList<ItemDescriptor> rollLootTable(LootTableRecord table, int bonusQualityChance, Map map) {
+		return rollLootTable(table, bonusQualityChance, map, map.getWorld().getLootRnd());
+	}
+
+	/**
+	 * Rolls a loot table from the given stream. Loot rolled while a level is
+	 * made is rolled from the stream of its room, so it only depends on the
+	 * seed and the level, not on what has been rolled in the game before.
+	 */
+	public static LinkedList<ItemDescriptor> rollLootTable(LootTableRecord table, int bonusQualityChance, Map map,
+			RandomStream rnd) {
+		LinkedList<ItemDescriptor> result = new LinkedList<ItemDescriptor>();
+		if (table == null) {
+			return result;
+		}
 
-		for (DataNode tableEntry : itemsInTable) {
-			if (map.getWorld().roll100(tableEntry.getPropI("chance"))) {
+		for (int i = 0; i < table.size(); i++) {
+			if (rnd.roll100(table.getChance(i))) {
 				int level = map.getLevel();
-				int roll = map.getWorld().getRndInt(0, 100);
+				int roll = rnd.getRndInt(0, 100);
 
 				if (roll < 30) {
 					level++;
@@ -185,100 +251,92 @@ public abstract class Item extends Entity {
 					level--;
 				}
 
-				result.add(generateFromNode(DataManager.findByNameAndType(DataType.ITEM, tableEntry.getProp("item")),
-						level, bonusQualityChance, map.getWorld()));
+				Quality qual = Item.getRndQuality(bonusQualityChance, rnd);
+				result.add(new ItemDescriptor(table.getItem(i), level, qual, rnd.nextLong()));
 			}
 		}
 		return result;
 	}
 
+	/**
+	 * The factory of an item class. Classes not made by one of the factories
+	 * above are made by reflection, with the constructor looked up once.
+	 */
+	private static ItemFactory getFactory(String itemClass) throws Exception {
+		ItemFactory factory = factories.get(itemClass);
+		if (factory == null) {
+			final Constructor<?> constructor = Item.class.getClassLoader().loadClass("entities.items." + itemClass)
+					.getConstructor(new Class[]{World.class, DataNode.class, int.class});
+			factory = new ItemFactory() {
+				public Item create(World world, DataNode n, int level, RandomStream rnd) throws Exception {
+					return (Item) constructor.newInstance(new Object[]{world, n, level});
+				}
+			};
+			factories.put(itemClass, factory);
+		}
+		return factory;
+	}
+
 	public static Item generateFromNode(DataNode n, int level, int bonusQualityChance, World world) {
 		return generateFromNode(n, level, Item.getRndQuality(bonusQualityChance, world), world);
 	}
 
 	public static Item generateFromNode(DataNode n, int level, Quality qual, World world) {
+		return generateFromNode(n, level, qual, world, world.getLootRnd());
+	}
+
+	/**
+	 * Makes an item, with the rolls for its affixes and anything else left to
+	 * chance taken from the given stream.
+	 */
+	public static Item generateFromNode(DataNode n, int level, Quality qual, World world, RandomStream rnd) {
 		Item item = null;
-		ClassLoader loader = Item.class.getClassLoader();
+		ItemRecord rec = (ItemRecord) n.getRecord();
 
 		try {
-			item = (Item) loader.loadClass("entities.items." + n.getProp("class")).getConstructor(
-					new Class[]{World.class, DataNode.class, int.class}).newInstance(
-					new Object[]{world, n, (int) (level)});
+			item = getFactory(rec.getItemClass()).create(world, n, level, rnd);
 		} catch (Exception e) {
-			System.out.println("Item.generateFromNode: Error loading class " + n.getProp("class"));
+			System.out.println("Item.generateFromNode: Error loading class " + rec.getItemClass());
 			e.printStackTrace();
 			System.exit(-1);
 		}
 
 		item.quality = qual;
-		item.monetaryValue = (int) (n.getPropI("price") * (0.25f * level) * Stats.qualityMultiplier(qual));
-		item.setCaption(n.getProp("caption"));
+		item.monetaryValue = (int) (rec.getPrice() * (0.25f * level) * Stats.qualityMultiplier(qual));
+		item.setCaption(rec.getCaption());
 		item.level = level;
-		item.bagW = n.getChild("bag").getPropI("w");
-		item.bagH = n.getChild("bag").getPropI("h");
-		item.bagImage = n.getChild("bag").getProp("image");
+		item.bagW = rec.getBagW();
+		item.bagH = rec.getBagH();
+		item.bagImage = rec.getBagImage();
 
 		if (WearableItem.class.isAssignableFrom(item.getClass())) {
 			WearableItem witem = (WearableItem) item;
 			witem.setStats(new Stats());
 
-			LinkedList<DataNode> prefixes = DataManager.findAllByTypeWhereContains(DataType.PREFIX, "quality", qual
-					.name().toLowerCase());
+			AffixRecord[] prefixes = AffixPool.getPrefixes(qual, witem.getWearableType());
+			if (prefixes.length > 0) {
+				int element = rnd.getRndInt(0, prefixes.length - 1);
 
-			LinkedList<DataNode> remove = new LinkedList<DataNode>();
-			for (DataNode pre : prefixes) {
-				boolean keep = false;
-				for (String string : pre.getProp("slot").split(",")) {
-					if (witem.getWearableType().equals(WearableType.valueOf(string.trim().toUpperCase()))) {
-						keep = true;
-					}
-				}
-				if (!keep) {
-					remove.add(pre);
-				}
-			}
-			prefixes.removeAll(remove);
+				AffixRecord prefix = prefixes[element];
+				witem.setCaption(prefix.getCaption() + " " + witem.getCaption());
 
-			if (prefixes.size() > 0) {
-
-				int element = world.getRndInt(0, prefixes.size() - 1);
-
-				DataNode prefix = prefixes.get(element);
-				witem.setCaption(prefix.getProp("caption") + " " + witem.getCaption());
-
-				Stats stats = new Stats(prefix.getChild("stats"));
-				Stats scale = new Stats(prefix.getChild("stats").getChild("scale"), level);
+				Stats stats = new Stats(prefix.getStats());
+				Stats scale = new Stats(prefix.getScale(), level);
 				stats.addStatsToThis(scale);
 				stats.applyQulity(qual);
 
 				witem.getStats().addStatsToThis(stats);
 			}
 
-			LinkedList<DataNode> surfixes = DataManager.findAllByTypeWhereContains(DataType.SURFIX, "quality", qual
-					.name().toLowerCase());
-
-			remove.clear();
-			for (DataNode sur : surfixes) {
-				boolean keep = false;
-				for (String string : sur.getProp("slot").split(",")) {
-					if (witem.getWearableType().equals(WearableType.valueOf(string.trim().toUpperCase()))) {
-						keep = true;
-					}
-				}
-				if (!keep) {
-					remove.add(sur);
-				}
-			}
-			surfixes.removeAll(remove);
-
-			if (surfixes.size() > 0) {
-				int element = world.getRndInt(0, surfixes.size() - 1);
+			AffixRecord[] surfixes = AffixPool.getSurfixes(qual, witem.getWearableType());
+			if (surfixes.length > 0) {
+				int element = rnd.getRndInt(0, surfixes.length - 1);
 
-				DataNode surfix = surfixes.get(element);
-				witem.setCaption(witem.getCaption() + " " + surfix.getProp("caption"));
+				AffixRecord surfix = surfixes[element];
+				witem.setCaption(witem.getCaption() + " " + surfix.getCaption());
 
-				Stats stats = new Stats(surfix.getChild("stats"));
-				Stats scale = new Stats(surfix.getChild("stats").getChild("scale"), level);
+				Stats stats = new Stats(surfix.getStats());
+				Stats scale = new Stats(surfix.getScale(), level);
 				stats.addStatsToThis(scale);
 				stats.applyQulity(qual);
 
@@ -287,7 +345,7 @@ public abstract class Item extends Entity {
 		} else if (ConsumableItem.class.equals(item.getClass())) {
 			if (item.getCaption().equals("Book")) {
 				LinkedList<DataNode> bookfixes = DataManager.findAllByType(DataType.BOOKFIX);
-				int element = world.getRndInt(0, bookfixes.size() - 1);
+				int element = rnd.getRndInt(0, bookfixes.size() - 1);
 				ConsumableItem citem = (ConsumableItem) item;
 				citem.addConsumeEffect(bookfixes.get(element));
 				item.quality = Quality.COMMON;
@@ -0,0 +1,54 @@
+/**
+ * An item that has been rolled from a loot table but not yet made. Monsters
+ * and doodads carry their loot as descriptors, which are much smaller than
+ * items with their nodes and models, and only make the items when they drop
+ * them. The seed gives the stream the rest of the item is rolled from, so it
+ * comes out the same whenever it is made.
+ */
+
+package entities.items;
+
+import infostore.ItemRecord;
+
+import engine.RandomStream;
+import engine.World;
+import entities.items.Item.Quality;
+
+public final class ItemDescriptor {
+	private final ItemRecord record;
+	private final int level;
+	private final Quality quality;
+	private final long seed;
+
+	public ItemDescriptor(ItemRecord record, int level, Quality quality, long seed) {
+		this.record = record;
+		this.level = level;
+		this.quality = quality;
+		this.seed = seed;
+	}
+
+	public Item materialize(World world) {
+		return Item.generateFromNode(this.record.getNode(), this.level, this.quality, world, new RandomStream(
+				this.seed));
+	}
+
+	public ItemRecord getRecord() {
+		return this.record;
+	}
+
+	public int getLevel() {
+		return this.level;
+	}
+
+	public Quality getQuality() {
+		return this.quality;
+	}
+
+	public long getSeed() {
+		return this.seed;
+	}
+
+	public String toString() {
+		return this.record.getName() + " (lvl " + this.level + ", " + this.quality.toString().toLowerCase() + ")";
+	}
+}
@@ -0,0 +1,59 @@
+/**
+ * A prefix or postfix of wearable items, which adds to the caption and stats
+ * of items of its qualities and slots.
+ */
+
+package infostore;
+
+import infostore.DataManager.DataType;
+
+public final class AffixRecord extends DataRecord {
+	private final String caption;
+	private final String quality;
+	private final String[] slots;
+	private final StatsRecord stats;
+	private final StatsRecord scale;
+
+	AffixRecord(DataType type, DataNode n) {
+		super(type, n);
+		this.caption = n.getProp("caption");
+		this.quality = n.getProp("quality");
+
+		this.slots = n.getProp("slot").split(",");
+		for (int i = 0; i < this.slots.length; i++) {
+			this.slots[i] = this.slots[i].trim();
+		}
+
+		DataNode stats = n.getChild("stats");
+		this.stats = stats != null ? StatsRecord.of(stats) : null;
+		this.scale = stats != null && stats.isChild("scale") ? StatsRecord.of(stats.getChild("scale")) : null;
+	}
+
+	public String getCaption() {
+		return this.caption;
+	}
+
+	/**
+	 * If the quality is among the qualities of this affix, matched as the
+	 * DataManager.findAllByTypeWhereContains lookup of them did.
+	 */
+	public boolean hasQuality(String quality) {
+		return this.quality.contains(quality);
+	}
+
+	public int getNumSlots() {
+		return this.slots.length;
+	}
+
+	public String getSlot(int i) {
+		return this.slots[i];
+	}
+
+	public StatsRecord getStats() {
+		return this.stats;
+	}
+
+	public StatsRecord getScale() {
+		return this.scale;
+	}
+}
@@ -0,0 +1,138 @@
+/**
+ * Keeps the DataNode tree built from the xml-files in a binary file, so that
+ * later starts can map the file into memory and read the tree back instead of
+ * parsing the xml again. The file holds a hash of the xml it was made from,
+ * and is only read if the hash matches that of the xml being loaded, so it is
+ * made again whenever a file changes. The version is raised when the format
+ * changes, which makes old files be ignored.
+ *
+ * The file holds a table of all keys and values, each written once, and then
+ * the tree with keys and values as indexes into the table.
+ */
+
+package infostore;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+public class DataCache {
+	public final static String FILENAME = "database.cache";
+
+	private final static int MAGIC = 0x44434744; // "DCGD"
+	private final static int VERSION = 1;
+	private final static int HASH_LENGTH = 16;
+	private final static int HEADER_LENGTH = 8 + HASH_LENGTH;
+
+	/**
+	 * The tree kept in the file, or null if there is no file, it was made
+	 * from other xml or another version, or it could not be read.
+	 */
+	static DataNode read(byte[] hash) {
+		File file = new File(FILENAME);
+		if (!file.isFile()) {
+			return null;
+		}
+
+		FileInputStream in = null;
+		try {
+			in = new FileInputStream(file);
+			FileChannel channel = in.getChannel();
+
+			// The header is checked before mapping, as a mapped file can not
+			// be written over on some systems until it is collected
+			ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+			int read = 0;
+			while (header.hasRemaining() && read >= 0) {
+				read = channel.read(header);
+			}
+			header.flip();
+			if (header.remaining() < HEADER_LENGTH || header.getInt() != MAGIC || header.getInt() != VERSION) {
+				return null;
+			}
+			byte[] fileHash = new byte[HASH_LENGTH];
+			header.get(fileHash);
+			if (!Arrays.equals(hash, fileHash)) {
+				return null;
+			}
+
+			MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_LENGTH, channel.size()
+					- HEADER_LENGTH);
+
+			String[] strings = new String[buf.getInt()];
+			byte[] bytes = new byte[64];
+			for (int i = 0; i < strings.length; i++) {
+				int length = buf.getInt();
+				if (bytes.length < length) {
+					bytes = new byte[length];
+				}
+				buf.get(bytes, 0, length);
+				strings[i] = new String(bytes, 0, length, "UTF-8").intern();
+			}
+
+			return DataNode.read(buf, strings);
+		} catch (IOException e) {
+			System.out.println("DataCache: Failed reading " + FILENAME + ". " + e.toString());
+		} catch (RuntimeException e) {
+			// A broken or cut off file, which is made again from the xml
+			System.out.println("DataCache: Failed reading " + FILENAME + ". " + e.toString());
+		} finally {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Writes the tree to the file, with the hash of the xml it was made from.
+	 */
+	static void write(DataNode root, byte[] hash) {
+		HashMap<String, Integer> stringIndex = new HashMap<String, Integer>();
+		ArrayList<String> strings = new ArrayList<String>();
+
+		DataOutputStream out = null;
+		try {
+			// The tree is written first, as it fills the string table
+			ByteArrayOutputStream tree = new ByteArrayOutputStream();
+			root.write(new DataOutputStream(tree), stringIndex, strings);
+
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(FILENAME)));
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.write(hash);
+			out.writeInt(strings.size());
+			for (String s : strings) {
+				byte[] bytes = s.getBytes("UTF-8");
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+			tree.writeTo(out);
+		} catch (IOException e) {
+			System.out.println("DataCache: Failed writing " + FILENAME + ". " + e.toString());
+		} finally {
+			if (out != null) {
+				try {
+					out.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+}
@@ -1,29 +1,67 @@
 /**
  * The DataManager first retrieves all xml data, and stores it in DataNode. It 
  * then supplies methods for retrieving single or lists of DataNodes with different filters.
+ * 
+ * After loading, the data is compiled: the nodes are indexed by type and name,
+ * and monsters, doodads, items, loot tables, skills and affixes are made into
+ * typed records with their numbers parsed, which the game should use where it
+ * reads them often.
+ * 
+ * The files are streamed with StAX, several at a time, and the nodes built
+ * as the elements are read. The tree built from the xml is kept in a
+ * DataCache, which later starts read instead of the xml for as long as the
+ * xml is the same.
  */
 
 package infostore;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.URL;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import engine.hud.ConsoleLog;
 
 public class DataManager {
 
+	private static final int LOAD_THREADS = 4;
+
 	private static DataNode root = new DataNode();
 
+	// Filled in by compile()
+	private static HashMap<DataType, HashMap<String, DataNode>> index
+			= new HashMap<DataType, HashMap<String, DataNode>>();
+	private static HashMap<String, DataNode> nameIndex = new HashMap<String, DataNode>();
+	private static HashMap<String, LinkedList<DataNode>> containsCache = new HashMap<String, LinkedList<DataNode>>();
+	private static HashMap<String, ItemRecord> items = new HashMap<String, ItemRecord>();
+	private static HashMap<String, LootTableRecord> lootTables = new HashMap<String, LootTableRecord>();
+	private static HashMap<String, MonsterRecord> monsters = new HashMap<String, MonsterRecord>();
+	private static HashMap<String, DoodadRecord> doodads = new HashMap<String, DoodadRecord>();
+	private static HashMap<String, SkillRecord> skills = new HashMap<String, SkillRecord>();
+	// In the order of the files, which is the order rooms roll for them in
+	private static List<MonsterRecord> monsterList = Collections.emptyList();
+	private static List<DoodadRecord> doodadList = Collections.emptyList();
+	private static List<AffixRecord> prefixList = Collections.emptyList();
+	private static List<AffixRecord> surfixList = Collections.emptyList();
+
 	public enum DataType {
 		DOODAD("doodad"), ITEM("item"), LOOT_TABLE("lootTable"), MODEL_ID("modelID"), MONSTER("monster"), PREFIX(
 				"prefix"), SURFIX("postfix"), MAGIC("magic"), OFFENSIVE_SKILL("offensiveskill"), DEFENSIVE_SKILL(
@@ -41,114 +79,328 @@ public class DataManager {
 	}
 
 	public static DataNode findByNameAndType(DataType type, String name) {
-		LinkedList<DataNode> list = root.getList(type.ident);
-		for (DataNode n : list) {
-			if (name.equals(n.getProp("name"))) {
-				return n;
-			}
-		}
-
-		return null;
+		HashMap<String, DataNode> byName = index.get(type);
+		return byName != null ? byName.get(name) : null;
 	}
 
 	public static DataNode findByName(String name) {
-		for (String k : root.getKeys()) {
-			if (!root.isProp(k)) {
-				LinkedList<DataNode> list = root.getList(k);
-				for (DataNode n : list) {
-					if (name.equals(n.getProp("name"))) {
-						return n;
-					}
+		return nameIndex.get(name);
+	}
+
+	/**
+	 * The nodes of a type whose attr contains the given string. The answers
+	 * are kept, and a new list of them is returned each time, so the caller
+	 * may change it.
+	 */
+	public static LinkedList<DataNode> findAllByTypeWhereContains(DataType type, String attr, String contains) {
+		String key = type.ident + "\0" + attr.toLowerCase() + "\0" + contains;
+		LinkedList<DataNode> result = containsCache.get(key);
+
+		if (result == null) {
+			result = new LinkedList<DataNode>();
+			LinkedList<DataNode> all = root.getList(type.ident);
+			for (DataNode n : all) {
+				if (n.getProp(attr).contains(contains)) {
+					result.add(n);
 				}
 			}
+			containsCache.put(key, result);
 		}
 
-		return null;
+		return new LinkedList<DataNode>(result);
 	}
 
-	public static LinkedList<DataNode> findAllByTypeWhereContains(DataType type, String attr, String contains) {
-		LinkedList<DataNode> all = null;
-		LinkedList<DataNode> result = new LinkedList<DataNode>();
+	public static ItemRecord getItem(String name) {
+		return items.get(name);
+	}
 
-		all = root.getList(type.ident);
+	public static LootTableRecord getLootTable(String name) {
+		return lootTables.get(name);
+	}
 
-		for (DataNode n : all) {
-			if (n.getProp(attr).contains(contains)) {
-				result.add(n);
-			}
-		}
+	public static MonsterRecord getMonster(String name) {
+		return monsters.get(name);
+	}
 
-		return result;
+	public static DoodadRecord getDoodad(String name) {
+		return doodads.get(name);
+	}
+
+	public static SkillRecord getSkill(String name) {
+		return skills.get(name);
+	}
+
+	/**
+	 * All monsters, in the order they are in the files.
+	 */
+	public static List<MonsterRecord> getMonsters() {
+		return monsterList;
+	}
+
+	/**
+	 * All doodads, in the order they are in the files.
+	 */
+	public static List<DoodadRecord> getDoodads() {
+		return doodadList;
+	}
+
+	/**
+	 * All prefixes, in the order they are in the files. A new list is made each
+	 * time the database is compiled.
+	 */
+	public static List<AffixRecord> getPrefixes() {
+		return prefixList;
+	}
+
+	/**
+	 * All postfixes, in the order they are in the files. A new list is made each
+	 * time the database is compiled.
+	 */
+	public static List<AffixRecord> getSurfixes() {
+		return surfixList;
 	}
 
 	public static void load() {
+		load(Thread.currentThread().getContextClassLoader().getResource("dcg/data/info/files.lst"));
+	}
+
+	/**
+	 * Loads the files listed in the given file, which are looked for next to
+	 * it, and compiles them.
+	 */
+	public static void load(URL masterfile) {
+		long start = System.nanoTime();
+
 		try {
-			URL masterfile = Thread.currentThread().getContextClassLoader().getResource("dcg/data/info/files.lst");
 			BufferedReader in = new BufferedReader(new InputStreamReader(masterfile.openStream()));
 			String str;
 
+			// The files are read and hashed first, to see if the cache was
+			// made from them
+			MessageDigest digest = MessageDigest.getInstance("MD5");
+			ArrayList<URL> urls = new ArrayList<URL>();
+			ArrayList<byte[]> contents = new ArrayList<byte[]>();
 			while ((str = in.readLine()) != null) {
-				loadXML(Thread.currentThread().getContextClassLoader().getResource("dcg/data/info/" + str));
+				URL url = new URL(masterfile, str);
+				byte[] content = readFully(url);
+				digest.update((str + "\n").getBytes("UTF-8"));
+				digest.update(content);
+				urls.add(url);
+				contents.add(content);
 			}
 
 			in.close();
+
+			byte[] hash = digest.digest();
+			DataNode cached = DataCache.read(hash);
+			if (cached != null) {
+				root = cached;
+				ConsoleLog.addLine("DataManager: Loaded " + DataCache.FILENAME);
+			} else {
+				root = loadXML(urls, contents);
+				DataCache.write(root, hash);
+			}
 		} catch (Exception e) {
 			System.out.println("Failed loading files. " + e.toString());
 			e.printStackTrace();
 		}
 
+		compile();
+
 		System.out.println("Database size: " + DataManager.root.bytesize() + " bytes.");
+		System.out.println("DataManager: Loaded in " + (System.nanoTime() - start) / 1000000 + " ms");
 	}
 
-	public static void dump() {
-		System.out.println(root);
+	private static byte[] readFully(URL url) throws IOException {
+		InputStream in = url.openStream();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buf = new byte[8192];
+		int read;
+		while ((read = in.read(buf)) >= 0) {
+			out.write(buf, 0, read);
+		}
+		in.close();
+		return out.toByteArray();
 	}
 
-	private static void loadXML(URL url) {
-		System.out.println("DataManager: Loading " + url.toString());
+	/**
+	 * Indexes the loaded nodes and makes the records. Items are made before
+	 * the loot tables that list them, and loot tables before the monsters
+	 * and doodads that drop from them.
+	 */
+	private static void compile() {
+		root.compile();
+
+		index.clear();
+		nameIndex.clear();
+		containsCache.clear();
+		for (DataType type : DataType.values()) {
+			HashMap<String, DataNode> byName = new HashMap<String, DataNode>();
+			LinkedList<DataNode> list = root.getList(type.ident);
+			if (list != null) {
+				for (DataNode n : list) {
+					// The first of a name wins, as when the lists were searched
+					if (!byName.containsKey(n.getProp("name"))) {
+						byName.put(n.getProp("name"), n);
+					}
+				}
+			}
+			index.put(type, byName);
+		}
+		for (String k : root.getKeys()) {
+			if (!root.isProp(k)) {
+				for (DataNode n : root.getList(k)) {
+					if (!nameIndex.containsKey(n.getProp("name"))) {
+						nameIndex.put(n.getProp("name"), n);
+					}
+				}
+			}
+		}
 
-		DocumentBuilder builder = null;
-		try {
-			builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-		} catch (ParserConfigurationException e1) {
-			e1.printStackTrace();
+		items.clear();
+		for (DataNode n : nodes(DataType.ITEM)) {
+			ItemRecord r = new ItemRecord(n);
+			n.setRecord(r);
+			items.put(r.getName(), r);
 		}
 
-		Document document = null;
-		try {
-			document = builder.parse(url.openStream());
-		} catch (Exception e) {
-			e.printStackTrace();
+		lootTables.clear();
+		for (DataNode n : nodes(DataType.LOOT_TABLE)) {
+			LootTableRecord r = new LootTableRecord(n, items);
+			n.setRecord(r);
+			lootTables.put(r.getName(), r);
 		}
 
-		NodeList nodes_i = document.getDocumentElement().getChildNodes();
-		for (int i = 0; i < nodes_i.getLength(); i++) {
-			Node node_i = nodes_i.item(i);
-			parseXMLnode(node_i, root);
+		monsters.clear();
+		ArrayList<MonsterRecord> monsterList = new ArrayList<MonsterRecord>();
+		for (DataNode n : nodes(DataType.MONSTER)) {
+			MonsterRecord r = new MonsterRecord(n, lootTables);
+			n.setRecord(r);
+			monsters.put(r.getName(), r);
+			monsterList.add(r);
+		}
+		DataManager.monsterList = Collections.unmodifiableList(monsterList);
+
+		doodads.clear();
+		ArrayList<DoodadRecord> doodadList = new ArrayList<DoodadRecord>();
+		for (DataNode n : nodes(DataType.DOODAD)) {
+			DoodadRecord r = new DoodadRecord(n, lootTables);
+			n.setRecord(r);
+			doodads.put(r.getName(), r);
+			doodadList.add(r);
+		}
+		DataManager.doodadList = Collections.unmodifiableList(doodadList);
+
+		DataManager.prefixList = Collections.unmodifiableList(affixes(DataType.PREFIX));
+		DataManager.surfixList = Collections.unmodifiableList(affixes(DataType.SURFIX));
+
+		skills.clear();
+		for (DataType type : new DataType[]{DataType.OFFENSIVE_SKILL, DataType.DEFENSIVE_SKILL,
+				DataType.STATS_SKILL, DataType.MAGIC_SKILL}) {
+			for (DataNode n : nodes(type)) {
+				SkillRecord r = new SkillRecord(type, n);
+				n.setRecord(r);
+				skills.put(r.getName(), r);
+			}
 		}
 
-		ConsoleLog.addLine("DataManager: Loaded " + url.toString());
+		System.out.println("DataManager: Compiled " + items.size() + " items, " + lootTables.size()
+				+ " loot tables, " + monsters.size() + " monsters, " + doodads.size() + " doodads, " + skills.size()
+				+ " skills, " + (prefixList.size() + surfixList.size()) + " affixes");
+	}
 
+	private static ArrayList<AffixRecord> affixes(DataType type) {
+		ArrayList<AffixRecord> list = new ArrayList<AffixRecord>();
+		for (DataNode n : nodes(type)) {
+			AffixRecord r = new AffixRecord(type, n);
+			n.setRecord(r);
+			list.add(r);
+		}
+		return list;
 	}
 
-	private static void parseXMLnode(Node xmlNode, DataNode dataNode) {
-		switch (xmlNode.getNodeType()) {
-			case Node.ELEMENT_NODE :
-				DataNode elemDataNode = new DataNode();
-				elemDataNode.setProp("_self", xmlNode.getNodeName());
-				dataNode.addChild(xmlNode.getNodeName(), elemDataNode);
-				for (int i = 0; i < xmlNode.getChildNodes().getLength(); i++) {
-					parseXMLnode(xmlNode.getChildNodes().item(i), elemDataNode);
-				}
-				for (int i = 0; i < xmlNode.getAttributes().getLength(); i++) {
-					parseXMLnode(xmlNode.getAttributes().item(i), elemDataNode);
-				}
+	private static LinkedList<DataNode> nodes(DataType type) {
+		LinkedList<DataNode> list = root.getList(type.ident);
+		return list != null ? list : new LinkedList<DataNode>();
+	}
+
+	public static void dump() {
+		System.out.println(root);
+	}
+
+	/**
+	 * Parses the files on a small pool of threads, each into a tree of its
+	 * own, and adds the trees to a new root in the order of the files, so the
+	 * lists end up in the same order however the parsing was scheduled.
+	 */
+	private static DataNode loadXML(final List<URL> urls, final List<byte[]> contents) throws Exception {
+		int threads = Math.min(urls.size(), Math.min(LOAD_THREADS, Runtime.getRuntime().availableProcessors()));
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(threads, 1));
+
+		try {
+			ArrayList<Future<DataNode>> parsed = new ArrayList<Future<DataNode>>();
+			for (int i = 0; i < urls.size(); i++) {
+				final int file = i;
+				parsed.add(pool.submit(new Callable<DataNode>() {
+					@Override
+					public DataNode call() throws Exception {
+						System.out.println("DataManager: Loading " + urls.get(file).toString());
+						return parseXML(contents.get(file));
+					}
+				}));
+			}
+
+			DataNode result = new DataNode();
+			for (int i = 0; i < urls.size(); i++) {
+				result.addAllChildren(parsed.get(i).get());
+				ConsoleLog.addLine("DataManager: Loaded " + urls.get(i).toString());
+			}
+			return result;
+		} finally {
+			pool.shutdown();
+		}
+	}
 
-				break;
-			case Node.ATTRIBUTE_NODE :
-				dataNode.setProp(xmlNode.getNodeName(), xmlNode.getNodeValue());
-				break;
+	/**
+	 * Streams through a file and builds its nodes as the elements are read,
+	 * without building a document first. The elements inside the document
+	 * element are added to the node returned.
+	 */
+	private static DataNode parseXML(byte[] content) throws XMLStreamException {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		// Names are kept with their prefixes, as the DOM parser gave them
+		factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+		XMLStreamReader reader = factory.createXMLStreamReader(new ByteArrayInputStream(content));
+
+		DataNode fileRoot = new DataNode();
+		LinkedList<DataNode> open = new LinkedList<DataNode>();
+
+		try {
+			while (reader.hasNext()) {
+				switch (reader.next()) {
+					case XMLStreamConstants.START_ELEMENT :
+						if (open.isEmpty()) {
+							// The document element itself is not kept
+							open.push(fileRoot);
+							break;
+						}
+						DataNode elemDataNode = new DataNode();
+						elemDataNode.setProp("_self", reader.getLocalName());
+						for (int i = 0; i < reader.getAttributeCount(); i++) {
+							elemDataNode.setProp(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+						}
+						open.peek().addChild(reader.getLocalName(), elemDataNode);
+						open.push(elemDataNode);
+						break;
+					case XMLStreamConstants.END_ELEMENT :
+						open.pop();
+						break;
+				}
+			}
+		} finally {
+			reader.close();
 		}
 
+		return fileRoot;
 	}
 }
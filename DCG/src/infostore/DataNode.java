@@ -2,17 +2,30 @@
  * This class in used by the DataManager to store the data loaded from the xml-files.
  * A DataNode can has any number of children, but just one parent. The general structure
  * resembles the xml structure.
+ * 
+ * Once everything is loaded the DataManager compiles the nodes: numbers among
+ * the props are parsed once and kept, so getPropI and getPropF do not parse
+ * them again on every call, and stats and scale nodes get a StatsRecord.
+ * Keys and values are interned as they are set.
  */
 
 package infostore;
 
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.List;
 
 public class DataNode {
 	private HashMap<String, String> props = new HashMap<String, String>();
 	private HashMap<String, DataNode> children = new HashMap<String, DataNode>();
 	private HashMap<String, LinkedList<DataNode>> lists = new HashMap<String, LinkedList<DataNode>>();
+	private HashMap<String, Integer> ints;
+	private HashMap<String, Float> floats;
+	private StatsRecord statsRecord;
+	private DataRecord record;
 	private DataNode parent = null;
 	private boolean ignoreErrors = true;
 
@@ -54,8 +67,9 @@ public class DataNode {
 
 	public String getProp(String key) {
 		key = key.toLowerCase();
-		if (isProp(key)) {
-			return this.props.get(key);
+		String value = this.props.get(key);
+		if (value != null) {
+			return value;
 		}
 		if (!this.ignoreErrors) {
 			System.out.println("DataNode: No prop " + key + " (Tree: " + dumpParent() + ")");
@@ -79,6 +93,12 @@ public class DataNode {
 	}
 
 	public Float getPropF(String key) {
+		if (this.floats != null) {
+			Float value = this.floats.get(key.toLowerCase());
+			if (value != null) {
+				return value;
+			}
+		}
 		if (this.ignoreErrors && !isProp(key)) {
 			return 0f;
 		}
@@ -86,6 +106,12 @@ public class DataNode {
 	}
 
 	public Integer getPropI(String key) {
+		if (this.ints != null) {
+			Integer value = this.ints.get(key.toLowerCase());
+			if (value != null) {
+				return value;
+			}
+		}
 		if (this.ignoreErrors && !isProp(key)) {
 			return 0;
 		}
@@ -130,12 +156,12 @@ public class DataNode {
 	}
 
 	public void setProp(String key, String value) {
-		key = key.toLowerCase();
-		this.props.put(key, value);
+		key = key.toLowerCase().intern();
+		this.props.put(key, value != null ? value.intern() : null);
 	}
 
 	public void addChild(String key, DataNode value) {
-		key = key.toLowerCase();
+		key = key.toLowerCase().intern();
 		value.parent = this;
 		if (isChild(key)) {
 			this.lists.put(key, new LinkedList<DataNode>());
@@ -149,7 +175,7 @@ public class DataNode {
 	}
 
 	public void addList(String key, LinkedList<DataNode> values) {
-		key = key.toLowerCase();
+		key = key.toLowerCase().intern();
 		for (DataNode n : values) {
 			n.parent = this;
 		}
@@ -166,6 +192,21 @@ public class DataNode {
 		}
 	}
 
+	/**
+	 * Adds the children and lists of another node to this one, as if each
+	 * had been added with addChild in the order they were added there.
+	 */
+	void addAllChildren(DataNode other) {
+		for (String key : other.children.keySet()) {
+			addChild(key, other.children.get(key));
+		}
+		for (String key : other.lists.keySet()) {
+			for (DataNode n : other.lists.get(key)) {
+				addChild(key, n);
+			}
+		}
+	}
+
 	public String toString() {
 		return this.dump(0);
 	}
@@ -199,6 +240,151 @@ public class DataNode {
 		return this.parent;
 	}
 
+	/**
+	 * The record compiled from this node, if it is an entry of one of the
+	 * types the DataManager makes records of.
+	 */
+	public DataRecord getRecord() {
+		return this.record;
+	}
+
+	void setRecord(DataRecord record) {
+		this.record = record;
+	}
+
+	StatsRecord getStatsRecord() {
+		return this.statsRecord;
+	}
+
+	/**
+	 * Parses the numbers among the props of this node and its children.
+	 */
+	void compile() {
+		for (String key : this.props.keySet()) {
+			String value = this.props.get(key);
+			// Most props are not numbers, and are not tried, as a failed parse
+			// costs an exception. getPropI and getPropF parse them if asked.
+			if (!isNumberStart(value)) {
+				continue;
+			}
+			if (this.ints == null) {
+				this.ints = new HashMap<String, Integer>();
+				this.floats = new HashMap<String, Float>();
+			}
+			if (value.indexOf('.') < 0) {
+				try {
+					this.ints.put(key, Integer.parseInt(value));
+				} catch (NumberFormatException e) {
+					// Not an int, which getPropI says when asked
+				}
+			}
+			try {
+				this.floats.put(key, Float.parseFloat(value));
+			} catch (NumberFormatException e) {
+				// Not a float, which getPropF says when asked
+			}
+		}
+
+		String self = this.props.get("_self");
+		if ("stats".equals(self) || "scale".equals(self)) {
+			this.statsRecord = new StatsRecord(this);
+		}
+
+		for (DataNode n : this.children.values()) {
+			n.compile();
+		}
+		for (LinkedList<DataNode> list : this.lists.values()) {
+			for (DataNode n : list) {
+				n.compile();
+			}
+		}
+	}
+
+	/**
+	 * Writes this node and the nodes below it for the DataCache. Keys and
+	 * values are written as indexes into the string table, which strings
+	 * not seen before are added to.
+	 */
+	void write(DataOutputStream out, HashMap<String, Integer> stringIndex, List<String> strings) throws IOException {
+		out.writeInt(this.props.size());
+		for (String key : this.props.keySet()) {
+			out.writeInt(stringIndex(key, stringIndex, strings));
+			String value = this.props.get(key);
+			out.writeInt(value != null ? stringIndex(value, stringIndex, strings) : -1);
+		}
+
+		out.writeInt(this.children.size());
+		for (String key : this.children.keySet()) {
+			out.writeInt(stringIndex(key, stringIndex, strings));
+			this.children.get(key).write(out, stringIndex, strings);
+		}
+
+		out.writeInt(this.lists.size());
+		for (String key : this.lists.keySet()) {
+			out.writeInt(stringIndex(key, stringIndex, strings));
+			LinkedList<DataNode> list = this.lists.get(key);
+			out.writeInt(list.size());
+			for (DataNode n : list) {
+				n.write(out, stringIndex, strings);
+			}
+		}
+	}
+
+	private static int stringIndex(String s, HashMap<String, Integer> stringIndex, List<String> strings) {
+		Integer i = stringIndex.get(s);
+		if (i == null) {
+			i = strings.size();
+			strings.add(s);
+			stringIndex.put(s, i);
+		}
+		return i;
+	}
+
+	/**
+	 * Reads a node written by write(), and the nodes below it.
+	 */
+	static DataNode read(ByteBuffer in, String[] strings) {
+		DataNode n = new DataNode();
+
+		int props = in.getInt();
+		for (int i = 0; i < props; i++) {
+			String key = strings[in.getInt()];
+			int value = in.getInt();
+			n.props.put(key, value >= 0 ? strings[value] : null);
+		}
+
+		int children = in.getInt();
+		for (int i = 0; i < children; i++) {
+			String key = strings[in.getInt()];
+			DataNode child = read(in, strings);
+			child.parent = n;
+			n.children.put(key, child);
+		}
+
+		int lists = in.getInt();
+		for (int i = 0; i < lists; i++) {
+			String key = strings[in.getInt()];
+			int size = in.getInt();
+			LinkedList<DataNode> list = new LinkedList<DataNode>();
+			for (int j = 0; j < size; j++) {
+				DataNode child = read(in, strings);
+				child.parent = n;
+				list.add(child);
+			}
+			n.lists.put(key, list);
+		}
+
+		return n;
+	}
+
+	private static boolean isNumberStart(String value) {
+		if (value == null || value.length() == 0) {
+			return false;
+		}
+		char c = value.charAt(0);
+		return (c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.';
+	}
+
 	public void setIgnoreErrors(boolean b) {
 		this.ignoreErrors = b;
 	}
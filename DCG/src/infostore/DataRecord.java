@@ -0,0 +1,38 @@
+/**
+ * A typed record of one entry of the database, compiled from its DataNode
+ * when the data is loaded. The fields the game reads often are parsed once
+ * here, and the records never change after they are made. The node is kept
+ * for everything else.
+ */
+
+package infostore;
+
+import infostore.DataManager.DataType;
+
+public abstract class DataRecord {
+	private final DataType type;
+	private final String name;
+	private final DataNode node;
+
+	DataRecord(DataType type, DataNode node) {
+		this.type = type;
+		this.name = node.getProp("name");
+		this.node = node;
+	}
+
+	public DataType getType() {
+		return this.type;
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	public DataNode getNode() {
+		return this.node;
+	}
+
+	public String toString() {
+		return this.type.ident + " " + this.name;
+	}
+}
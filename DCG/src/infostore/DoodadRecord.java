@@ -0,0 +1,22 @@
+/**
+ * A doodad of the database.
+ */
+
+package infostore;
+
+import infostore.DataManager.DataType;
+
+import java.util.HashMap;
+
+public final class DoodadRecord extends PlacedRecord {
+	private final boolean destructible;
+
+	DoodadRecord(DataNode n, HashMap<String, LootTableRecord> lootTables) {
+		super(DataType.DOODAD, n, lootTables);
+		this.destructible = n.getPropB("destructible");
+	}
+
+	public boolean isDestructible() {
+		return this.destructible;
+	}
+}
@@ -0,0 +1,60 @@
+/**
+ * An item of the database.
+ */
+
+package infostore;
+
+import infostore.DataManager.DataType;
+
+public final class ItemRecord extends DataRecord {
+	private final String itemClass;
+	private final String caption;
+	private final String modelId;
+	private final int price;
+	private final int bagW;
+	private final int bagH;
+	private final String bagImage;
+
+	ItemRecord(DataNode n) {
+		super(DataType.ITEM, n);
+		this.itemClass = n.getProp("class");
+		this.caption = n.getProp("caption");
+		this.modelId = n.getProp("modelID");
+		this.price = n.getPropI("price");
+		DataNode bag = n.getChild("bag");
+		this.bagW = bag != null ? bag.getPropI("w") : 0;
+		this.bagH = bag != null ? bag.getPropI("h") : 0;
+		this.bagImage = bag != null ? bag.getProp("image") : "";
+	}
+
+	/**
+	 * The name of the class in entities.items the item is made as.
+	 */
+	public String getItemClass() {
+		return this.itemClass;
+	}
+
+	public String getCaption() {
+		return this.caption;
+	}
+
+	public String getModelId() {
+		return this.modelId;
+	}
+
+	public int getPrice() {
+		return this.price;
+	}
+
+	public int getBagW() {
+		return this.bagW;
+	}
+
+	public int getBagH() {
+		return this.bagH;
+	}
+
+	public String getBagImage() {
+		return this.bagImage;
+	}
+}
@@ -0,0 +1,55 @@
+/**
+ * A loot table of the database: the items that may drop and the chance in
+ * 100 of each, with the items looked up when the data is loaded. Entries
+ * naming an item that does not exist are left out.
+ */
+
+package infostore;
+
+import infostore.DataManager.DataType;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+
+public final class LootTableRecord extends DataRecord {
+	private final ItemRecord[] items;
+	private final int[] chances;
+
+	LootTableRecord(DataNode n, HashMap<String, ItemRecord> allItems) {
+		super(DataType.LOOT_TABLE, n);
+
+		ArrayList<ItemRecord> items = new ArrayList<ItemRecord>();
+		ArrayList<Integer> chances = new ArrayList<Integer>();
+		LinkedList<DataNode> entries = n.getList("entry");
+		if (entries != null) {
+			for (DataNode entry : entries) {
+				ItemRecord item = allItems.get(entry.getProp("item"));
+				if (item != null) {
+					items.add(item);
+					chances.add(entry.getPropI("chance"));
+				} else {
+					System.out.println("LootTableRecord: No item " + entry.getProp("item") + " in " + this.getName());
+				}
+			}
+		}
+
+		this.items = items.toArray(new ItemRecord[items.size()]);
+		this.chances = new int[chances.size()];
+		for (int i = 0; i < this.chances.length; i++) {
+			this.chances[i] = chances.get(i);
+		}
+	}
+
+	public int size() {
+		return this.items.length;
+	}
+
+	public ItemRecord getItem(int i) {
+		return this.items[i];
+	}
+
+	public int getChance(int i) {
+		return this.chances[i];
+	}
+}
@@ -0,0 +1,40 @@
+/**
+ * A monster of the database.
+ */
+
+package infostore;
+
+import infostore.DataManager.DataType;
+
+import java.util.HashMap;
+
+public final class MonsterRecord extends PlacedRecord {
+	private final float speed;
+	private final int minDmg;
+	private final int maxDmg;
+	private final StatsRecord stats;
+
+	MonsterRecord(DataNode n, HashMap<String, LootTableRecord> lootTables) {
+		super(DataType.MONSTER, n, lootTables);
+		this.speed = n.getPropF("speed");
+		this.minDmg = n.getPropI("mindmg");
+		this.maxDmg = n.getPropI("maxdmg");
+		this.stats = n.isChild("stats") ? StatsRecord.of(n.getChild("stats")) : null;
+	}
+
+	public float getSpeed() {
+		return this.speed;
+	}
+
+	public int getMinDmg() {
+		return this.minDmg;
+	}
+
+	public int getMaxDmg() {
+		return this.maxDmg;
+	}
+
+	public StatsRecord getStats() {
+		return this.stats;
+	}
+}
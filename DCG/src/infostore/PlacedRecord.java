@@ -0,0 +1,79 @@
+/**
+ * A record of something that is put in rooms when they are filled, which
+ * it is if its node has a placement child: with a chance in 100 for each
+ * room, between countMin and countMax of them for each 9 tiles of room.
+ */
+
+package infostore;
+
+import infostore.DataManager.DataType;
+
+import java.util.HashMap;
+
+public abstract class PlacedRecord extends DataRecord {
+	private final String caption;
+	private final String modelId;
+	private final LootTableRecord lootTable;
+	private final boolean placed;
+	private final int placementChance;
+	private final int placementCountMin;
+	private final int placementCountMax;
+	private final int collisionW;
+	private final int collisionH;
+
+	PlacedRecord(DataType type, DataNode n, HashMap<String, LootTableRecord> lootTables) {
+		super(type, n);
+		this.caption = n.getProp("caption");
+		this.modelId = n.getProp("modelID");
+		this.lootTable = lootTables.get(n.getProp("lootTable"));
+
+		DataNode placement = n.getChild("placement");
+		this.placed = placement != null;
+		this.placementChance = this.placed ? placement.getPropI("chance") : 0;
+		this.placementCountMin = this.placed ? placement.getPropI("countMin") : 0;
+		this.placementCountMax = this.placed ? placement.getPropI("countMax") : 0;
+
+		DataNode collision = n.getChild("collision");
+		this.collisionW = collision != null ? collision.getPropI("w") : 0;
+		this.collisionH = collision != null ? collision.getPropI("h") : 0;
+	}
+
+	public String getCaption() {
+		return this.caption;
+	}
+
+	public String getModelId() {
+		return this.modelId;
+	}
+
+	/**
+	 * The loot table, or null if the record names none that exists.
+	 */
+	public LootTableRecord getLootTable() {
+		return this.lootTable;
+	}
+
+	public boolean isPlaced() {
+		return this.placed;
+	}
+
+	public int getPlacementChance() {
+		return this.placementChance;
+	}
+
+	public int getPlacementCountMin() {
+		return this.placementCountMin;
+	}
+
+	public int getPlacementCountMax() {
+		return this.placementCountMax;
+	}
+
+	public int getCollisionW() {
+		return this.collisionW;
+	}
+
+	public int getCollisionH() {
+		return this.collisionH;
+	}
+}
@@ -0,0 +1,58 @@
+/**
+ * A skill of the database, of any of the skill types.
+ */
+
+package infostore;
+
+import infostore.DataManager.DataType;
+
+public final class SkillRecord extends DataRecord {
+	private final String skillClass;
+	private final int maxLevel;
+	private final int tier;
+	private final String[] prerequisites;
+	private final StatsRecord stats;
+	private final StatsRecord scale;
+
+	SkillRecord(DataType type, DataNode n) {
+		super(type, n);
+		this.skillClass = n.getProp("skillclass");
+		this.maxLevel = n.getPropI("maxlevel");
+		this.tier = n.getPropI("tier");
+
+		String prereq = n.getProp("prerequisites");
+		this.prerequisites = prereq.length() > 0 ? prereq.split(",\\s*") : new String[0];
+
+		DataNode stats = n.getChild("stats");
+		this.stats = stats != null ? StatsRecord.of(stats) : null;
+		this.scale = stats != null && stats.isChild("scale") ? StatsRecord.of(stats.getChild("scale")) : null;
+	}
+
+	public String getSkillClass() {
+		return this.skillClass;
+	}
+
+	public int getMaxLevel() {
+		return this.maxLevel;
+	}
+
+	public int getTier() {
+		return this.tier;
+	}
+
+	public int getNumPrerequisites() {
+		return this.prerequisites.length;
+	}
+
+	public String getPrerequisite(int i) {
+		return this.prerequisites[i];
+	}
+
+	public StatsRecord getStats() {
+		return this.stats;
+	}
+
+	public StatsRecord getScale() {
+		return this.scale;
+	}
+}
@@ -0,0 +1,105 @@
+/**
+ * The stats of a stats or scale node, parsed once so that making a Stats
+ * from the node does not parse them again.
+ */
+
+package infostore;
+
+public final class StatsRecord {
+	private final int str;
+	private final int mag;
+	private final int vit;
+	private final int agi;
+	private final int hp;
+	private final int mana;
+	private final int bonusDmg;
+	private final int bonusHit;
+	private final int bonusEva;
+	private final int bonusArmor;
+	private final int lifeSteal;
+	private final int manaSteal;
+	private final int bonusMovementSpeed;
+	private final int bonusAttackSpeed;
+
+	StatsRecord(DataNode n) {
+		this.str = n.getPropI("str");
+		this.mag = n.getPropI("mag");
+		this.vit = n.getPropI("vit");
+		this.agi = n.getPropI("agi");
+		this.hp = n.getPropI("hp");
+		this.mana = n.getPropI("mana");
+		this.bonusDmg = n.getPropI("bonusdmg");
+		this.bonusHit = n.getPropI("bonushit");
+		this.bonusEva = n.getPropI("bonuseva");
+		this.bonusArmor = n.getPropI("bonusarmor");
+		this.lifeSteal = n.getPropI("lifesteal");
+		this.manaSteal = n.getPropI("manasteal");
+		this.bonusMovementSpeed = n.getPropI("bonusmovementspeed");
+		this.bonusAttackSpeed = n.getPropI("bonusattackspeed");
+	}
+
+	/**
+	 * The stats of a node, compiled when the data was loaded if it is a
+	 * stats or scale node, or else parsed now.
+	 */
+	public static StatsRecord of(DataNode n) {
+		StatsRecord s = n.getStatsRecord();
+		return s != null ? s : new StatsRecord(n);
+	}
+
+	public int getStr() {
+		return this.str;
+	}
+
+	public int getMag() {
+		return this.mag;
+	}
+
+	public int getVit() {
+		return this.vit;
+	}
+
+	public int getAgi() {
+		return this.agi;
+	}
+
+	public int getHp() {
+		return this.hp;
+	}
+
+	public int getMana() {
+		return this.mana;
+	}
+
+	public int getBonusDmg() {
+		return this.bonusDmg;
+	}
+
+	public int getBonusHit() {
+		return this.bonusHit;
+	}
+
+	public int getBonusEva() {
+		return this.bonusEva;
+	}
+
+	public int getBonusArmor() {
+		return this.bonusArmor;
+	}
+
+	public int getLifeSteal() {
+		return this.lifeSteal;
+	}
+
+	public int getManaSteal() {
+		return this.manaSteal;
+	}
+
+	public int getBonusMovementSpeed() {
+		return this.bonusMovementSpeed;
+	}
+
+	public int getBonusAttackSpeed() {
+		return this.bonusAttackSpeed;
+	}
+}
@@ -10,19 +10,18 @@
 package map;
 
 import infostore.DataManager;
-import infostore.DataNode;
-import infostore.DataManager.DataType;
+import infostore.DoodadRecord;
+import infostore.MonsterRecord;
 
 import java.awt.Point;
 import java.util.LinkedList;
 
-import threadMessaging.MTMessageQueue;
 
 import com.jme.math.Vector2f;
 
 import ai.BoidGroup;
 import ai.BoidUnit;
-import engine.Game;
+import engine.RandomStream;
 import engine.World;
 import entities.Entity;
 import entities.Entity.EntityState;
@@ -33,6 +32,10 @@ import entities.doodads.Doodad;
 import entities.items.Item;
 
 public abstract class AbstractRoom {
+	// Key of the stream the loot of the room's doodads and monsters is rolled
+	// from, derived from the room's, so the loot does not depend on what else
+	// the room rolls
+	private static final int RND_LOOT = 0;
 
 	private boolean locked;
 	private boolean doodadsGenerated;
@@ -44,6 +47,8 @@ public abstract class AbstractRoom {
 	protected Map map;
 
 	private LinkedList<Entity> entitiesToMove;
+	private RandomStream rnd;
+	private RandomStream lootRnd;
 
 	AbstractRoom(Map map) {
 		this.locked = false;
@@ -55,6 +60,8 @@ public abstract class AbstractRoom {
 		this.entities = new LinkedList<Entity>();
 		this.actors = new LinkedList<Entity>();
 		this.neighbours = new LinkedList<AbstractRoom>();
+		this.rnd = map.newRoomRnd();
+		this.lootRnd = this.rnd.derive(RND_LOOT);
 	}
 
 	void addNeighbour(AbstractRoom room) {
@@ -93,6 +100,13 @@ public abstract class AbstractRoom {
 		}
 	}
 
+	/**
+	 * The stream what is put in the room is rolled from, on the main thread.
+	 */
+	public RandomStream getRnd() {
+		return this.rnd;
+	}
+
 	public LinkedList<Entity> getEntities() {
 		return this.entities;
 	}
@@ -161,6 +175,7 @@ public abstract class AbstractRoom {
 		this.map.detachEntity(e);
 		this.entities.remove(e);
 		this.actors.remove(e);
+		this.map.getActorIndex().remove(e);
 		e.setRoom(null);
 		e.setMap(null);
 	}
@@ -181,6 +196,7 @@ public abstract class AbstractRoom {
 		a.setRoom(this);
 		a.setMap(this.map);
 		this.actors.add(a);
+		this.map.getActorIndex().insert(a, a.getPosition().x, a.getPosition().y);
 		this.map.attachEntity(a);
 		if (this.locked) {
 			a.lock();
@@ -225,19 +241,16 @@ public abstract class AbstractRoom {
 	}
 
 	public void generateDoodads() {
-		LinkedList<DataNode> types = DataManager.findAllByType(DataType.DOODAD);
 		if (!this.isDoodadsGenerated()) {
-			for (DataNode n : types) {
-				if (n.isChild("placement")) {
-					if (this.world.roll100(n.getChild("placement").getPropI("chance"))) {
-						int count = this.world.getRndInt(n.getChild("placement").getPropI("countMin"), n.getChild(
-								"placement").getPropI("countMax"))
+			for (DoodadRecord rec : DataManager.getDoodads()) {
+				if (rec.isPlaced()) {
+					if (this.rnd.roll100(rec.getPlacementChance())) {
+						int count = this.rnd.getRndInt(rec.getPlacementCountMin(), rec.getPlacementCountMax())
 								* this.getSize() / 9;
 						for (int c = 0; c < count; c++) {
-							Doodad d = new Doodad(this.map, n);
+							Doodad d = new Doodad(this.map, rec.getNode());
 							// TODO: remove bonus chance again
-							d.addAllContents(Item.generateFromLootTable(DataManager.findByNameAndType(
-									DataType.LOOT_TABLE, n.getProp("lootTable")), 20, this.map));
+							d.addAllLoot(Item.rollLootTable(rec.getLootTable(), 20, this.map, this.lootRnd));
 							d.placeInRoom(this);
 							this.addEntity(d);
 						}
@@ -256,15 +269,13 @@ public abstract class AbstractRoom {
 
 				this.map.addBoidGroup(boidg);
 
-				LinkedList<DataNode> types = DataManager.findAllByType(DataType.MONSTER);
 				if (!this.isMonstersGenerated()) {
-					for (DataNode n : types) {
-						if (this.world.roll100(n.getChild("placement").getPropI("chance"))) {
-							int count = this.world.getRndInt(n.getChild("placement").getPropI("countMin"), n.getChild(
-									"placement").getPropI("countMax"))
+					for (MonsterRecord rec : DataManager.getMonsters()) {
+						if (this.rnd.roll100(rec.getPlacementChance())) {
+							int count = this.rnd.getRndInt(rec.getPlacementCountMin(), rec.getPlacementCountMax())
 									* this.getSize() / 9;
 							for (int c = 0; c < count; c++) {
-								spawnMonster(n, boidg);
+								spawnMonster(rec, boidg);
 							}
 						}
 					}
@@ -274,16 +285,14 @@ public abstract class AbstractRoom {
 		}
 	}
 
-	public Monster spawnMonster(DataNode n, BoidGroup boidg) {
-		Monster m = new Monster(this.map, n);
+	public Monster spawnMonster(MonsterRecord rec, BoidGroup boidg) {
+		Monster m = new Monster(this.map, rec.getNode());
 		m.setId(boidg.getId());
-		MTMessageQueue msgq = Game.getInstance().getAIBrain().addNPC(m);
-		m.giveAllItems(Item.generateFromLootTable(DataManager.findByNameAndType(DataType.LOOT_TABLE, n
-				.getProp("lootTable")), 0, this.map));
+		m.giveAllLoot(Item.rollLootTable(rec.getLootTable(), 0, this.map, this.lootRnd));
 		m.placeInRoom(this);
 		this.addActor(m);
 
-		BoidUnit boidu = new BoidUnit(m, msgq);
+		BoidUnit boidu = new BoidUnit(m);
 		boidg.addUnit(boidu);
 		m.setBoidController(boidu);
 
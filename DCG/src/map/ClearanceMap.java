@@ -0,0 +1,291 @@
+/**
+ * How far the free space reaches from each spot of a pathing map, so that
+ * whether a footprint fits on a spot can mostly be told from one number
+ * instead of looking at every spot it covers. For each spot it holds the size
+ * of the largest square of free spots that has the spot as its corner with
+ * the lowest x and y, up to MAX_CLEARANCE. This is kept twice, once counting
+ * anything that blocks and once counting only walls.
+ *
+ * Writes to the pathing map are recorded with touch() and worked in the next
+ * time the map is asked, so an entity stamping its footprint somewhere else
+ * only costs one update of the spots around where it was and where it is.
+ *
+ * A footprint that covers entities but no walls fits if those entities are
+ * all ones to be ignored, such as the entity itself. For that the map also
+ * counts the spots entities stand on, in a Fenwick tree so any box can be
+ * counted, and keeps for each entity id how many spots it has and the box
+ * around them. As an id is mostly one solid footprint, the spots of the id
+ * under a footprint are then just the overlap of the two boxes.
+ */
+package map;
+
+import java.util.HashMap;
+
+public class ClearanceMap {
+	// The largest footprint the map can answer for, the rest are looked at
+	// spot by spot
+	public static final int MAX_CLEARANCE = 16;
+
+	public static final int FITS = 1;
+	public static final int BLOCKED = -1;
+	public static final int UNKNOWN = 0;
+
+	// Boxes of changed spots kept apart before they are merged into one
+	private static final int MAX_DIRTY = 32;
+
+	private PathingGrid pathingMap;
+	private int width;
+	private int height;
+	private byte[][] clearance;
+	private byte[][] wallClearance;
+
+	private int[] dirty = new int[MAX_DIRTY * 4];
+	private int numDirty;
+
+	// Fenwick tree of the spots entities stand on, 1-based
+	private int[][] entitySpots;
+	// For each entity id the number of spots and the box around them, as
+	// {count, x0, y0, x1, y1}. The box only grows until the count is 0.
+	private HashMap<Integer, int[]> idSpots = new HashMap<Integer, int[]>();
+
+	public ClearanceMap(PathingGrid pathingMap) {
+		this.pathingMap = pathingMap;
+		this.width = pathingMap.getWidth();
+		this.height = pathingMap.getHeight();
+		this.clearance = new byte[this.width][this.height];
+		this.wallClearance = new byte[this.width][this.height];
+		this.entitySpots = new int[this.width + 1][this.height + 1];
+
+		for (int x = 0; x < this.width; x++) {
+			for (int y = 0; y < this.height; y++) {
+				changed(x, y, 0, pathingMap.get(x, y));
+			}
+		}
+		touchAll();
+	}
+
+	/**
+	 * Records that a spot of the pathing map has changed from one value to
+	 * another.
+	 */
+	public void touch(int x, int y, int oldVal, int newVal) {
+		changed(x, y, oldVal, newVal);
+		touch(x, y);
+	}
+
+	private void changed(int x, int y, int oldVal, int newVal) {
+		if (oldVal < -1) {
+			countSpot(x, y, -1);
+			int[] s = this.idSpots.get(-oldVal);
+			if (s != null && --s[0] == 0) {
+				this.idSpots.remove(-oldVal);
+			}
+		}
+		if (newVal < -1) {
+			countSpot(x, y, 1);
+			int[] s = this.idSpots.get(-newVal);
+			if (s == null) {
+				this.idSpots.put(-newVal, new int[]{1, x, y, x, y});
+			} else {
+				s[0]++;
+				s[1] = Math.min(s[1], x);
+				s[2] = Math.min(s[2], y);
+				s[3] = Math.max(s[3], x);
+				s[4] = Math.max(s[4], y);
+			}
+		}
+	}
+
+	private void countSpot(int x, int y, int delta) {
+		for (int i = x + 1; i <= this.width; i += i & -i) {
+			int[] col = this.entitySpots[i];
+			for (int j = y + 1; j <= this.height; j += j & -j) {
+				col[j] += delta;
+			}
+		}
+	}
+
+	/**
+	 * The number of spots entities stand on with x below x1 and y below y1.
+	 */
+	private int spotsBelow(int x1, int y1) {
+		int n = 0;
+		for (int i = x1; i > 0; i -= i & -i) {
+			int[] col = this.entitySpots[i];
+			for (int j = y1; j > 0; j -= j & -j) {
+				n += col[j];
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * Adds a spot to the boxes of changed spots.
+	 */
+	private void touch(int x, int y) {
+		int n = this.numDirty * 4;
+		int[] d = this.dirty;
+
+		// Mostly the spot is next to the one touched before it
+		if (n > 0 && x >= d[n - 4] - 1 && x <= d[n - 2] + 1 && y >= d[n - 3] - 1 && y <= d[n - 1] + 1) {
+			d[n - 4] = Math.min(d[n - 4], x);
+			d[n - 3] = Math.min(d[n - 3], y);
+			d[n - 2] = Math.max(d[n - 2], x);
+			d[n - 1] = Math.max(d[n - 1], y);
+			return;
+		}
+
+		if (this.numDirty == MAX_DIRTY) {
+			mergeDirty();
+			touch(x, y);
+			return;
+		}
+
+		d[n] = x;
+		d[n + 1] = y;
+		d[n + 2] = x;
+		d[n + 3] = y;
+		this.numDirty++;
+	}
+
+	/**
+	 * Records that the whole pathing map has changed.
+	 */
+	public void touchAll() {
+		this.dirty[0] = 0;
+		this.dirty[1] = 0;
+		this.dirty[2] = this.width - 1;
+		this.dirty[3] = this.height - 1;
+		this.numDirty = 1;
+	}
+
+	/**
+	 * Tells whether a footprint of w by h spots with its lowest corner on the
+	 * given spot is clear of anything that blocks, FITS, or covers a wall,
+	 * BLOCKED. Otherwise the spots it covers must be looked at, as it covers
+	 * some entity that may be one of those ignored, or it is larger than
+	 * MAX_CLEARANCE or reaches outside the map, and UNKNOWN is returned.
+	 * Footprints are taken to be solid rectangles, as
+	 * Entity.makePathingFootprint makes them.
+	 */
+	public int check(int x, int y, int w, int h) {
+		if (x < 0 || y < 0 || x >= this.width || y >= this.height) {
+			return UNKNOWN;
+		}
+		if (this.numDirty > 0) {
+			update();
+		}
+
+		if (this.clearance[x][y] >= Math.max(w, h)) {
+			return FITS;
+		}
+		if (this.wallClearance[x][y] < Math.min(w, h) && this.wallClearance[x][y] < MAX_CLEARANCE) {
+			return BLOCKED;
+		}
+		return UNKNOWN;
+	}
+
+	/**
+	 * As check, but a footprint that covers no walls and only spots where
+	 * the given entities stand is found to fit, as Entity.walkablePathSpot
+	 * would find it. So UNKNOWN is only returned for footprints larger than
+	 * MAX_CLEARANCE or reaching outside the map.
+	 *
+	 * @param ignoreId
+	 *            Another entity to ignore, or 0
+	 */
+	public int check(int x, int y, int w, int h, int entId, int ignoreId) {
+		int c = check(x, y, w, h);
+		if (c != UNKNOWN || x < 0 || y < 0 || x >= this.width || y >= this.height
+				|| this.wallClearance[x][y] < Math.max(w, h)) {
+			return c;
+		}
+
+		int blocking = spotsBelow(x + w, y + h) - spotsBelow(x, y + h) - spotsBelow(x + w, y) + spotsBelow(x, y);
+		blocking -= spotsOf(entId, x, y, w, h);
+		if (ignoreId != 0 && ignoreId != entId) {
+			blocking -= spotsOf(ignoreId, x, y, w, h);
+		}
+		return blocking == 0 ? FITS : BLOCKED;
+	}
+
+	/**
+	 * The number of spots of the box where the entity stands.
+	 */
+	private int spotsOf(int id, int x, int y, int w, int h) {
+		int[] s = id > 0 ? this.idSpots.get(id) : null;
+		if (s == null) {
+			return 0;
+		}
+
+		int x0 = Math.max(x, s[1]);
+		int y0 = Math.max(y, s[2]);
+		int x1 = Math.min(x + w - 1, s[3]);
+		int y1 = Math.min(y + h - 1, s[4]);
+		if (x0 > x1 || y0 > y1) {
+			return 0;
+		}
+		if (s[0] == (s[3] - s[1] + 1) * (s[4] - s[2] + 1)) {
+			// The spots fill their box
+			return (x1 - x0 + 1) * (y1 - y0 + 1);
+		}
+
+		// Several footprints under one id, as a boid group has
+		int n = 0;
+		for (int i = x0; i <= x1; i++) {
+			int[] col = this.pathingMap.column(i);
+			for (int j = y0; j <= y1; j++) {
+				if (col[j] == -id) {
+					n++;
+				}
+			}
+		}
+		return n;
+	}
+
+	private void mergeDirty() {
+		int[] d = this.dirty;
+		for (int i = 4; i < this.numDirty * 4; i += 4) {
+			d[0] = Math.min(d[0], d[i]);
+			d[1] = Math.min(d[1], d[i + 1]);
+			d[2] = Math.max(d[2], d[i + 2]);
+			d[3] = Math.max(d[3], d[i + 3]);
+		}
+		this.numDirty = 1;
+	}
+
+	/**
+	 * Works in the changes. A spot only depends on the spots with a higher x
+	 * or y than its own within MAX_CLEARANCE, so those below and to the left
+	 * of each changed box are worked out again, from the far corner back.
+	 */
+	private void update() {
+		for (int i = 0; i < this.numDirty * 4; i += 4) {
+			int xs = Math.max(0, this.dirty[i] - MAX_CLEARANCE + 1);
+			int ys = Math.max(0, this.dirty[i + 1] - MAX_CLEARANCE + 1);
+			int xe = Math.min(this.width - 1, this.dirty[i + 2]);
+			int ye = Math.min(this.height - 1, this.dirty[i + 3]);
+
+			for (int x = xe; x >= xs; x--) {
+				int[] col = this.pathingMap.column(x);
+				byte[] c = this.clearance[x];
+				byte[] wc = this.wallClearance[x];
+				byte[] cNext = x + 1 < this.width ? this.clearance[x + 1] : null;
+				byte[] wcNext = x + 1 < this.width ? this.wallClearance[x + 1] : null;
+
+				for (int y = ye; y >= ys; y--) {
+					int v = col[y];
+					int r = 0, wr = 0;
+					if (cNext != null && y + 1 < this.height) {
+						r = Math.min(Math.min(c[y + 1], cNext[y]), cNext[y + 1]);
+						wr = Math.min(Math.min(wc[y + 1], wcNext[y]), wcNext[y + 1]);
+					}
+					c[y] = (byte) (v < 0 ? 0 : Math.min(MAX_CLEARANCE, r + 1));
+					wc[y] = (byte) (v == -1 ? 0 : Math.min(MAX_CLEARANCE, wr + 1));
+				}
+			}
+		}
+
+		this.numDirty = 0;
+	}
+}
@@ -53,7 +53,7 @@ public class Corridor extends AbstractRoom {
 			return 0;
 		}
 
-		if (this.world.roll100(50)) {
+		if (this.map.getLayoutRnd().roll100(50)) {
 			this.style = CorridorStyle.X_FIRST;
 		} else {
 			this.style = CorridorStyle.Y_FIRST;
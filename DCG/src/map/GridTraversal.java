@@ -0,0 +1,103 @@
+/**
+ * Walks the cells of a grid that a line segment passes through, in order from
+ * one end to the other, visiting each cell once (Amanatides and Woo). Where
+ * the line passes exactly through a corner the step is diagonal, so the two
+ * cells only touched at the corner are left out.
+ *
+ * One traversal is kept for each thread, so walking a line does not allocate.
+ */
+package map;
+
+public final class GridTraversal {
+	private static final ThreadLocal<GridTraversal> local = new ThreadLocal<GridTraversal>() {
+		@Override
+		protected GridTraversal initialValue() {
+			return new GridTraversal();
+		}
+	};
+
+	private int x;
+	private int y;
+	private int endX;
+	private int endY;
+	private int stepX;
+	private int stepY;
+	private float tMaxX;
+	private float tMaxY;
+	private float tDeltaX;
+	private float tDeltaY;
+
+	private GridTraversal() {
+	}
+
+	/**
+	 * Returns the traversal of the calling thread. It is only valid until the
+	 * thread begins another line.
+	 */
+	public static GridTraversal get() {
+		return local.get();
+	}
+
+	/**
+	 * Starts a line from (ax, ay) to (bx, by) on a grid of cells of the given
+	 * size. The current cell is then the one (ax, ay) is in.
+	 */
+	public GridTraversal begin(float ax, float ay, float bx, float by, float cellSize) {
+		float fx = ax / cellSize;
+		float fy = ay / cellSize;
+		float dx = bx / cellSize - fx;
+		float dy = by / cellSize - fy;
+
+		this.x = (int) Math.floor(fx);
+		this.y = (int) Math.floor(fy);
+		this.endX = (int) Math.floor(bx / cellSize);
+		this.endY = (int) Math.floor(by / cellSize);
+		this.stepX = dx > 0 ? 1 : (dx < 0 ? -1 : 0);
+		this.stepY = dy > 0 ? 1 : (dy < 0 ? -1 : 0);
+
+		// Distance along the line, as a fraction of its length, to the first
+		// cell border crossed on each axis and between borders after that
+		this.tDeltaX = dx != 0 ? Math.abs(1 / dx) : Float.POSITIVE_INFINITY;
+		this.tDeltaY = dy != 0 ? Math.abs(1 / dy) : Float.POSITIVE_INFINITY;
+		this.tMaxX = dx != 0 ? ((dx > 0 ? this.x + 1 : this.x) - fx) / dx : Float.POSITIVE_INFINITY;
+		this.tMaxY = dy != 0 ? ((dy > 0 ? this.y + 1 : this.y) - fy) / dy : Float.POSITIVE_INFINITY;
+
+		return this;
+	}
+
+	/**
+	 * Moves on to the next cell of the line. Returns false when the cell at
+	 * the end of the line has been reached.
+	 */
+	public boolean next() {
+		boolean moreX = this.x != this.endX;
+		boolean moreY = this.y != this.endY;
+		if (!moreX && !moreY) {
+			return false;
+		}
+
+		// Rounding may leave one axis finished before the other says so, in
+		// which case only the other is stepped
+		boolean sx = moreX && (!moreY || this.tMaxX <= this.tMaxY);
+		boolean sy = moreY && (!moreX || this.tMaxY <= this.tMaxX);
+
+		if (sx) {
+			this.x += this.stepX;
+			this.tMaxX += this.tDeltaX;
+		}
+		if (sy) {
+			this.y += this.stepY;
+			this.tMaxY += this.tDeltaY;
+		}
+
+		return true;
+	}
+
+	public int getX() {
+		return this.x;
+	}
+
+	public int getY() {
+		return this.y;
+	}
+}
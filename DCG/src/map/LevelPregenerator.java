@@ -0,0 +1,63 @@
+/**
+ * Makes the layout of levels the player is about to enter on a thread of its
+ * own, so that taking the stairs only leaves the entities and tiles of the
+ * level to be made. Maps are queued from the main thread and worked through
+ * one at a time with Map.generateLayout(), which the main thread also calls
+ * when it enters a level, and so waits on if the level is still being made.
+ */
+package map;
+
+import java.util.LinkedList;
+
+public class LevelPregenerator implements Runnable {
+
+	private LinkedList<Map> queue = new LinkedList<Map>();
+	private volatile boolean running = true;
+
+	/**
+	 * Queues the layout of a map to be made, unless it has been made or is
+	 * already queued.
+	 */
+	public synchronized void queue(Map map) {
+		if (!map.isLayoutGenerated() && !this.queue.contains(map)) {
+			this.queue.add(map);
+			this.notify();
+		}
+	}
+
+	@Override
+	public void run() {
+		while (this.running) {
+			Map map;
+			synchronized (this) {
+				while (this.running && this.queue.isEmpty()) {
+					try {
+						this.wait();
+					} catch (InterruptedException e) {
+						// TODO Auto-generated catch block
+						e.printStackTrace();
+					}
+				}
+				map = this.queue.poll();
+			}
+
+			if (map != null) {
+				long start = System.nanoTime();
+				try {
+					map.generateLayout();
+				} catch (RuntimeException e) {
+					// The map is left as it is, and the main thread runs
+					// into the same problem when it enters the level
+					e.printStackTrace();
+				}
+				System.out.println("Pregenerated level " + map.getLevel() + " in "
+						+ (System.nanoTime() - start) / 1000000 + " ms");
+			}
+		}
+	}
+
+	public synchronized void stop() {
+		this.running = false;
+		this.notify();
+	}
+}
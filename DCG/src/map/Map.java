@@ -14,10 +14,10 @@
 package map;
 
 import infostore.DataManager;
-import infostore.DataManager.DataType;
 
 import java.awt.Point;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedList;
 
@@ -26,6 +26,7 @@ import map.tiles.MapTile;
 import map.tiles.Wall;
 import tasks.GfxPruneAndGrowTask;
 import threadMessaging.MTMessage;
+import threadMessaging.MTMsgPathDelta;
 import threadMessaging.MTMsgPathMap;
 import threadMessaging.MTMessage.MessageType;
 import ai.BoidGroup;
@@ -37,6 +38,7 @@ import com.jme.scene.shape.Box;
 
 import engine.Game;
 import engine.Profiler;
+import engine.RandomStream;
 import engine.World;
 import entities.Entity;
 import entities.Entity.EntityState;
@@ -47,15 +49,36 @@ import entities.doodads.Porter;
 import entities.doodads.Trader;
 
 public class Map {
-
-	private int[][] pathingMap;
+	private static final int PROBE_UPDATE = Profiler.register("Map.update");
+
+	private PathingGrid pathingMap;
+	private ClearanceMap clearance;
+	private int pathingVersion;
+	private int sentPathingVersion;
+	// Changes since the pathing map was last sent, as (x, y, length, value)
+	// runs down a column. When set, the whole map is sent instead.
+	private int[] pathingDelta = new int[64];
+	private int pathingDeltaSize;
+	private boolean pathingResync = true;
+	private RoomGraph roomGraph;
+	private SpatialIndex<Entity> actorIndex;
+	private SpatialIndex<BoidGroup> groupIndex;
 	private Node sceneNode;
 	private Node entityNode;
 	private Node effectNode;
 	private HashMap<Actor, Node> showPathingMap;
 	private LinkedList<Entity> mapEntities;
 	private boolean generated;
-	private long sendPathMapTimer;
+	// Set once the rooms and pathing map are made, which may be on the
+	// pregenerator thread
+	private volatile boolean layoutGenerated;
+	// Rolls for the level, which only depend on the world's seed and the
+	// level, so that it comes out the same however the game got there. The
+	// layout has a stream of its own, as it may be made on the pregenerator
+	// thread, and so has each room for what is put in it.
+	private RandomStream layoutRnd;
+	private RandomStream rnd;
+	private int nextRoomKey;
 
 	public GfxPruneAndGrowTask pruneAndGrowTask;
 
@@ -63,6 +86,13 @@ public class Map {
 	int width = 1;
 	int height = 1;
 
+	// Keys of the random streams derived from the level's, rooms come after
+	private static final int RND_LAYOUT = 0;
+	private static final int RND_CONTENT = 1;
+
+	// Beyond this many runs, sending the whole map is about as cheap
+	private static final int MAX_DELTA_RUNS = 4096;
+
 	public static final int ORIENT_N = 1 << 0;
 	public static final int ORIENT_S = 1 << 1;
 	public static final int ORIENT_E = 1 << 2;
@@ -81,6 +111,18 @@ public class Map {
 	Point sectorSize;
 	Point minRoomSize;
 	private LinkedList<BoidGroup> boidGroups;
+	private ArrayList<BoidGroup> boidGroupRemove = new ArrayList<BoidGroup>();
+	private BoidGroup mergingGroup;
+	private SpatialIndex.Visitor<BoidGroup> groupMerger = new SpatialIndex.Visitor<BoidGroup>() {
+		public void visit(BoidGroup other) {
+			BoidGroup boidg = Map.this.mergingGroup;
+			if (boidg.getPos().distance(other.getPos()) < boidg.getRadius() + other.getRadius() && !boidg.equals(other)
+					&& !Map.this.boidGroupRemove.contains(other)) {
+				Map.this.boidGroupRemove.add(other);
+				boidg.consumeGroup(other);
+			}
+		}
+	};
 
 	public Map(World w, int level) {
 		this.generated = false;
@@ -103,6 +145,8 @@ public class Map {
 
 		setRoomParameters();
 		// createLevelStage1();
+		this.layoutRnd = w.getLevelRnd(level).derive(RND_LAYOUT);
+		this.rnd = w.getLevelRnd(level).derive(RND_CONTENT);
 
 		this.pruneAndGrowTask = new GfxPruneAndGrowTask(this, this.world.getLocalPlayer());
 		this.world.getTaskScheduler().addTask(this.pruneAndGrowTask, true);
@@ -111,19 +155,10 @@ public class Map {
 	}
 
 	public void generateMap() {
+		this.generateLayout();
+
 		if (this.level == 0) {
-			Room r = new Room(this, new Point(0, 0), new Point(1, 1), new Point(4, 4));
-			this.rooms.add(r);
-			this.width = 7;
-			this.height = 7;
-			this.entrance = r;
-			r.entrance = true;
-			this.exit = r;
-			r.exit = true;
-			this.roomMap = new AbstractRoom[this.getWidth()][this.getHeight()];
-			r.placeOnMap();
-			this.pathingMap = new int[this.getWidth() * World.PATHING_GRANULARITY][this.getHeight()
-					* World.PATHING_GRANULARITY];
+			Room r = this.entrance;
 
 			Trader trader = new Trader(this);
 			trader.placeInRoom(r);
@@ -136,40 +171,22 @@ public class Map {
 			this.exit.placeStairsDown();
 
 		} else if (this.level == 20) {
-			Room r = new Room(this, new Point(0, 0), new Point(1, 1), new Point(10, 10));
-			this.rooms.add(r);
-			this.width = 20;
-			this.height = 20;
-			this.entrance = r;
-			r.entrance = true;
-			this.exit = r;
-			r.exit = true;
-			this.roomMap = new AbstractRoom[this.getWidth()][this.getHeight()];
-			r.placeOnMap();
-			this.pathingMap = new int[this.getWidth() * World.PATHING_GRANULARITY][this.getHeight()
-					* World.PATHING_GRANULARITY];
+			Room r = this.entrance;
 
 			BoidGroup boidg = new BoidGroup(World.tileToWorld(r.getCenter()), this, 100f);
 			this.addBoidGroup(boidg);
 
-			Monster boss = r.spawnMonster(DataManager.findByNameAndType(DataType.MONSTER, "monster_boss"), boidg);
+			Monster boss = r.spawnMonster(DataManager.getMonster("monster_boss"), boidg);
 			boss.setPos(World.tileToWorld(r.getCenter().x + 3), World.tileToWorld(r.getCenter().y + 3));
 
 			for (int i = 0; i < 10; i++) {
-				r.spawnMonster(DataManager.findByNameAndType(DataType.MONSTER, "monster_melee"), boidg);
-				r.spawnMonster(DataManager.findByNameAndType(DataType.MONSTER, "monster_caster"), boidg);
+				r.spawnMonster(DataManager.getMonster("monster_melee"), boidg);
+				r.spawnMonster(DataManager.getMonster("monster_caster"), boidg);
 			}
 
 			this.entrance.placeStairsUp();
 
 		} else {
-			createRandomLevel();
-
-			this.pathingMap = new int[this.getWidth() * World.PATHING_GRANULARITY][this.getHeight()
-					* World.PATHING_GRANULARITY];
-
-			this.rebuildPathingMap();
-
 			this.exit.placeStairsDown();
 			this.entrance.placeStairsUp();
 
@@ -184,20 +201,71 @@ public class Map {
 			}
 		}
 
-		this.rebuildPathingMap();
+		this.rebuildFootprints();
 
 		this.createWallsAndFloor();
 
 		this.generated = true;
 	}
 
+	/**
+	 * Makes the rooms, corridors and pathing map of the level, unless that
+	 * has been done already. Nothing here touches the scene graph, entities
+	 * or the world's rolls, so it may run on the pregenerator thread while
+	 * the game goes on; generateMap() then waits for it if it has not
+	 * finished.
+	 */
+	public synchronized void generateLayout() {
+		if (this.layoutGenerated) {
+			return;
+		}
+
+		if (this.level == 0) {
+			Room r = new Room(this, new Point(0, 0), new Point(1, 1), new Point(4, 4));
+			this.rooms.add(r);
+			this.width = 7;
+			this.height = 7;
+			this.entrance = r;
+			r.entrance = true;
+			this.exit = r;
+			r.exit = true;
+			this.roomMap = new AbstractRoom[this.getWidth()][this.getHeight()];
+			r.placeOnMap();
+
+		} else if (this.level == 20) {
+			Room r = new Room(this, new Point(0, 0), new Point(1, 1), new Point(10, 10));
+			this.rooms.add(r);
+			this.width = 20;
+			this.height = 20;
+			this.entrance = r;
+			r.entrance = true;
+			this.exit = r;
+			r.exit = true;
+			this.roomMap = new AbstractRoom[this.getWidth()][this.getHeight()];
+			r.placeOnMap();
+
+		} else {
+			createRandomLevel();
+		}
+
+		this.allocatePathingMap();
+
+		this.rebuildPathingMap();
+
+		this.layoutGenerated = true;
+	}
+
+	public boolean isLayoutGenerated() {
+		return this.layoutGenerated;
+	}
+
 	private void createRandomLevel() {
 		int totalSize = 0;
 		int count = 0;
 		int over9000counter = 0;
 		Point sector = new Point(0, 0);
 		while (totalSize < this.totalRoomSpace) {
-			if (this.world.roll100(50)) {
+			if (this.layoutRnd.roll100(50)) {
 				Room r = new Room(this, new Point(sector.x, sector.y));
 				totalSize += r.generate();
 				this.rooms.add(r);
@@ -224,7 +292,7 @@ public class Map {
 			room.findAndSetNeighbours();
 			((Room) room).placeOnMap();
 		}
-		int roll = this.world.getRndInt(0, this.rooms.size() - 1);
+		int roll = this.layoutRnd.getRndInt(0, this.rooms.size() - 1);
 		Room room = (Room) this.rooms.get(roll);
 		this.entrance = room;
 		room.entrance = true;
@@ -373,7 +441,7 @@ public class Map {
 		int count = 0;
 		int dist = 1;
 		int over9000counter = 0;
-		int max = this.world.getRndInt(1, this.rooms.size() < 4 ? this.rooms.size() - 1 : 3);
+		int max = this.layoutRnd.getRndInt(1, this.rooms.size() < 4 ? this.rooms.size() - 1 : 3);
 		while (count < max) {
 			for (AbstractRoom n : this.rooms) {
 				if (dist == Math.abs(n.getCenter().x - r.getCenter().x) + Math.abs(n.getCenter().y - r.getCenter().y)) {
@@ -506,6 +574,26 @@ public class Map {
 		return this.world;
 	}
 
+	RandomStream getLayoutRnd() {
+		return this.layoutRnd;
+	}
+
+	/**
+	 * The stream for what is put on the map outside of the rooms' own, on
+	 * the main thread.
+	 */
+	public RandomStream getRnd() {
+		return this.rnd;
+	}
+
+	/**
+	 * A stream for a new room. Rooms are made in the same order for the same
+	 * level, so each gets the same stream whenever its contents are made.
+	 */
+	RandomStream newRoomRnd() {
+		return this.world.getLevelRnd(this.level).derive(RND_CONTENT + 1 + this.nextRoomKey++);
+	}
+
 	private void setRoomParameters() {
 		if (true) {
 			// this.sectorSize.x = 5;
@@ -566,7 +654,7 @@ public class Map {
 	}
 
 	public void update(float t) {
-		Profiler.start("Map.update");
+		Profiler.start(PROBE_UPDATE);
 		for (Entity e : this.mapEntities) {
 			e.update(t);
 			if (e.getCurState().equals(EntityState.PURGED)) {
@@ -578,30 +666,32 @@ public class Map {
 			room.update(t);
 		}
 
-		ArrayList<BoidGroup> boidGroupRemove = new ArrayList<BoidGroup>();
+		SpatialIndex<BoidGroup> groups = this.getGroupIndex();
+		float maxRadius = 0;
 		for (BoidGroup boidg : this.boidGroups) {
-			if (!boidGroupRemove.contains(boidg)) {
+			maxRadius = Math.max(maxRadius, boidg.getRadius());
+		}
+
+		this.boidGroupRemove.clear();
+		for (BoidGroup boidg : this.boidGroups) {
+			if (!this.boidGroupRemove.contains(boidg)) {
 				boidg.update(t);
+				groups.move(boidg, boidg.getPos().x, boidg.getPos().y);
 
-				for (BoidGroup boidg2 : this.boidGroups) {
-					if (boidg.getPos().distance(boidg2.getPos()) < boidg.getRadius() + boidg2.getRadius()
-							&& !boidg.equals(boidg2)) {
-						boidGroupRemove.add(boidg2);
-						boidg.consumeGroup(boidg2);
-					}
-				}
+				// Only groups within reach of the largest one can overlap
+				this.mergingGroup = boidg;
+				groups.queryRadius(boidg.getPos().x, boidg.getPos().y, boidg.getRadius() + maxRadius,
+						this.groupMerger);
 			}
 		}
-		this.boidGroups.removeAll(boidGroupRemove);
-
-		if (System.currentTimeMillis() > this.sendPathMapTimer + 500) {
-			this.sendPathMapTimer = System.currentTimeMillis();
-
-			Game.getInstance().getAIBrainMsgq().addB(
-					new MTMessage(MessageType.PATHMAP, new MTMsgPathMap(this.level, this.pathingMap)));
+		for (BoidGroup boidg : this.boidGroupRemove) {
+			groups.remove(boidg);
 		}
+		this.boidGroups.removeAll(this.boidGroupRemove);
 
-		Profiler.stop("Map.update");
+		sendPathingChanges();
+
+		Profiler.stop(PROBE_UPDATE);
 	}
 
 	public void addEntity(Entity e) {
@@ -613,6 +703,7 @@ public class Map {
 	public void removeEntity(Entity e) {
 		this.attachEntity(e);
 		this.mapEntities.remove(e);
+		this.getActorIndex().remove(e);
 		e.setMap(null);
 	}
 
@@ -633,14 +724,137 @@ public class Map {
 		return this.effectNode;
 	}
 
-	public int[][] getPathingMap() {
+	public PathingGrid getPathingMap() {
 		return pathingMap;
 	}
 
+	/**
+	 * The clearance map of the live pathing map.
+	 */
+	public ClearanceMap getClearance() {
+		return this.clearance;
+	}
+
+	/**
+	 * Returns a copy of the pathing map that will never change, for use by
+	 * other threads, see PathingGrid.snapshot().
+	 */
+	public PathingGrid getPathingSnapshot() {
+		return this.pathingMap.snapshot();
+	}
+
+	/**
+	 * Sends the changes made to the pathing map since the last call to the AI
+	 * thread, or the whole map if it has not been sent before or the AI thread
+	 * lost track of it.
+	 */
+	private void sendPathingChanges() {
+		if (this.pathingResync) {
+			this.world.getAIBrainMsgq().addB(
+					new MTMessage(MessageType.PATHMAP, new MTMsgPathMap(this.level, this.pathingVersion, this
+							.getPathingSnapshot())));
+		} else if (this.pathingDeltaSize > 0) {
+			this.world.getAIBrainMsgq().addB(
+					new MTMessage(MessageType.PATHDELTA, new MTMsgPathDelta(this.level, this.sentPathingVersion,
+							this.pathingVersion, Arrays.copyOf(this.pathingDelta, this.pathingDeltaSize))));
+		}
+
+		this.sentPathingVersion = this.pathingVersion;
+		this.pathingDeltaSize = 0;
+		this.pathingResync = false;
+	}
+
+	public void requestPathingResync() {
+		this.pathingResync = true;
+		this.pathingDeltaSize = 0;
+	}
+
+	private void logPathingChange(int x, int y, int val) {
+		if (this.pathingResync) {
+			return;
+		}
+
+		int n = this.pathingDeltaSize;
+		int[] d = this.pathingDelta;
+		if (n > 0 && d[n - 4] == x && d[n - 3] + d[n - 2] == y && d[n - 1] == val) {
+			d[n - 2]++;
+			return;
+		}
+
+		if (n == MAX_DELTA_RUNS * 4) {
+			requestPathingResync();
+			return;
+		}
+		if (n == d.length) {
+			this.pathingDelta = d = Arrays.copyOf(d, n * 2);
+		}
+		d[n] = x;
+		d[n + 1] = y;
+		d[n + 2] = 1;
+		d[n + 3] = val;
+		this.pathingDeltaSize = n + 4;
+	}
+
+	/**
+	 * Counts the changes made to the pathing map.
+	 */
+	public int getPathingVersion() {
+		return this.pathingVersion;
+	}
+
+	private void allocatePathingMap() {
+		this.pathingMap = new PathingGrid(this.getWidth() * World.PATHING_GRANULARITY, this.getHeight()
+				* World.PATHING_GRANULARITY);
+		this.clearance = new ClearanceMap(this.pathingMap);
+		this.pathingVersion++;
+		this.actorIndex = null;
+		this.groupIndex = null;
+		this.requestPathingResync();
+	}
+
+	/**
+	 * The actors in the rooms of the map, by position.
+	 */
+	public SpatialIndex<Entity> getActorIndex() {
+		if (this.actorIndex == null) {
+			this.actorIndex = new SpatialIndex<Entity>(this.getWidth(), this.getHeight());
+		}
+		return this.actorIndex;
+	}
+
+	/**
+	 * The boid groups of the map, by position.
+	 */
+	public SpatialIndex<BoidGroup> getGroupIndex() {
+		if (this.groupIndex == null) {
+			this.groupIndex = new SpatialIndex<BoidGroup>(this.getWidth(), this.getHeight());
+		}
+		return this.groupIndex;
+	}
+
+	/**
+	 * The room graph used for hierarchical pathfinding, built the first time
+	 * it is asked for after the map is generated.
+	 */
+	public RoomGraph getRoomGraph() {
+		if (this.roomGraph == null && this.generated) {
+			this.roomGraph = new RoomGraph(this);
+		}
+		return this.roomGraph;
+	}
+
 	public void setPathingMapAt(int x, int y, int val) {
-		if (x >= 0 && x < this.getWidth() * World.PATHING_GRANULARITY && y >= 0
-				&& y < this.getHeight() * World.PATHING_GRANULARITY) {
-			this.pathingMap[x][y] = val;
+		if (!this.pathingMap.contains(x, y)) {
+			return;
+		}
+		int old = this.pathingMap.get(x, y);
+		if (this.pathingMap.set(x, y, val)) {
+			this.clearance.touch(x, y, old, val);
+			this.pathingVersion++;
+			this.logPathingChange(x, y, val);
+			if (this.roomGraph != null && (old == -1) != (val == -1)) {
+				this.roomGraph.touch(x, y);
+			}
 		}
 	}
 
@@ -652,15 +866,19 @@ public class Map {
 		return getPathingValue(x, y, this.pathingMap);
 	}
 
-	public static int getPathingValue(int x, int y, int[][] pmap) {
-		if (pmap != null && x >= 0 && x < pmap.length && y >= 0 && y < pmap[0].length) {
-			return pmap[x][y];
+	public static int getPathingValue(int x, int y, PathingGrid pmap) {
+		if (pmap != null) {
+			return pmap.get(x, y);
 		} else {
 			return -1;
 		}
 	}
 
 	public void rebuildPathingMap() {
+		if (this.roomGraph != null) {
+			this.roomGraph.invalidateAll();
+		}
+
 		for (int x = -1; x < this.getWidth() * World.PATHING_GRANULARITY; x++) {
 			for (int y = -1; y < this.getHeight() * World.PATHING_GRANULARITY; y++) {
 				this.setPathingMapAt(x, y, 0);
@@ -682,6 +900,10 @@ public class Map {
 			}
 		}
 
+		this.rebuildFootprints();
+	}
+
+	private void rebuildFootprints() {
 		for (Entity e : this.mapEntities) {
 			e.rebuildPathingFootprint();
 		}
@@ -696,66 +918,150 @@ public class Map {
 	}
 
 	public boolean lineOfWalk(Vector2f a, Vector2f b, Entity ent, int ignoreId) {
-		return lineOfWalk(a, b, ent.getFootprint(), this.pathingMap, ent.getId(), ignoreId);
+		return lineOfWalk(a, b, ent.getFootprint(), this.pathingMap, this.clearance, ent.getId(), ignoreId);
 	}
 
-	public static boolean lineOfWalk(Vector2f a, Vector2f b, boolean[][] footprint, int[][] pmap, int entId,
+	/**
+	 * True if an entity with the given footprint can walk in a straight line
+	 * from a to b. The footprint is tested in full on the pathing spot b is
+	 * in, and then moved along the spots the line passes through, so each
+	 * step only tests the spots the footprint moves onto. This relies on
+	 * footprints being solid rectangles, as Entity.makePathingFootprint makes
+	 * them.
+	 */
+	public static boolean lineOfWalk(Vector2f a, Vector2f b, boolean[][] footprint, PathingGrid pmap, int entId,
 			int ignoreId) {
-		Vector2f stepV = new Vector2f(a.x - b.x, a.y - b.y);
-		float l = stepV.length();
-		stepV.normalizeLocal().divideLocal(20f);
-		Vector2f p = new Vector2f(b.x, b.y);
+		return lineOfWalk(a, b, footprint, pmap, null, entId, ignoreId);
+	}
 
-		for (float t = 0; t < l; t += stepV.length()) {
-			p.addLocal(stepV);
-			if (!Entity.walkablePathSpot(World.worldToPathing(p.x), World.worldToPathing(p.y), footprint, pmap, entId,
-					ignoreId)) {
+	/**
+	 * As lineOfWalk, but asking the clearance map of the pathing map before
+	 * looking at the spots the footprint moves onto.
+	 *
+	 * @param clearance
+	 *            The clearance map of pmap, or null
+	 */
+	public static boolean lineOfWalk(Vector2f a, Vector2f b, boolean[][] footprint, PathingGrid pmap,
+			ClearanceMap clearance, int entId, int ignoreId) {
+		if (a.x == b.x && a.y == b.y) {
+			return true;
+		}
+		if (ignoreId == 0) {
+			ignoreId = entId;
+		}
+
+		int w = footprint.length;
+		int h = footprint[0].length;
+		GridTraversal line = GridTraversal.get().begin(b.x, b.y, a.x, a.y, World.PATHING_BLOCKSIZE);
+		int ox = footprintOrigin(line.getX(), w);
+		int oy = footprintOrigin(line.getY(), h);
+		int c = clearance != null ? clearance.check(ox, oy, w, h, entId, ignoreId) : ClearanceMap.UNKNOWN;
+		if (c == ClearanceMap.BLOCKED
+				|| (c == ClearanceMap.UNKNOWN && blocked(ox, ox + w, oy, oy + h, pmap, entId, ignoreId))) {
+			return false;
+		}
+
+		while (line.next()) {
+			int nx = footprintOrigin(line.getX(), w);
+			int ny = footprintOrigin(line.getY(), h);
+
+			if (clearance != null) {
+				c = clearance.check(nx, ny, w, h, entId, ignoreId);
+				if (c == ClearanceMap.BLOCKED) {
+					return false;
+				} else if (c == ClearanceMap.FITS) {
+					ox = nx;
+					oy = ny;
+					continue;
+				}
+			}
+
+			// The columns moved onto, over the whole height of the footprint
+			if (blocked(nx > ox ? Math.max(ox + w, nx) : nx, nx > ox ? nx + w : Math.min(ox, nx + w), ny, ny + h,
+					pmap, entId, ignoreId)) {
 				return false;
 			}
+			// and the rows moved onto, over the columns it was already on
+			if (blocked(Math.max(nx, ox), Math.min(nx, ox) + w, ny > oy ? Math.max(oy + h, ny) : ny, ny > oy ? ny
+					+ h : Math.min(oy, ny + h), pmap, entId, ignoreId)) {
+				return false;
+			}
+
+			ox = nx;
+			oy = ny;
 		}
 		return true;
 	}
 
+	/**
+	 * The first pathing spot covered by a footprint of the given length
+	 * centered on a spot, the same as in Entity.walkablePathSpot.
+	 */
+	private static int footprintOrigin(int p, int length) {
+		return World.worldToPathing(p - ((float) (length - 1) * World.PATHING_BLOCKSIZE) / 2);
+	}
+
+	private static boolean blocked(int x0, int x1, int y0, int y1, PathingGrid pmap, int entId, int ignoreId) {
+		for (int x = x0; x < x1; x++) {
+			for (int y = y0; y < y1; y++) {
+				if (!pmap.isFree(x, y, entId, ignoreId)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
 	public boolean lineOfSight(Vector2f a, Vector2f b) {
-		Vector2f v = new Vector2f(a.x - b.x, a.y - b.y);
-		Vector2f stepV = v.clone().divideLocal(v.length() / World.PATHING_BLOCKSIZE);
-		Vector2f p = new Vector2f(b.x, b.y);
+		if (a.x == b.x && a.y == b.y) {
+			return true;
+		}
 
-		for (float t = 0; t < v.length(); t += stepV.length()) {
-			p.addLocal(stepV);
-			if (getPathingValue(p.x, p.y) < 0) {
+		GridTraversal line = GridTraversal.get().begin(b.x, b.y, a.x, a.y, World.PATHING_BLOCKSIZE);
+		do {
+			if (getPathingValue(line.getX(), line.getY()) < 0) {
 				return false;
 			}
-		}
+		} while (line.next());
 		return true;
 	}
 
+	/**
+	 * As lineOfSight(Vector2f, Vector2f), but looking through the footprints
+	 * of the two entities themselves.
+	 */
 	public boolean lineOfSight(Entity a, Entity b) {
-		Vector2f v = new Vector2f(a.getPosition().x - b.getPosition().x, a.getPosition().y - b.getPosition().y);
-		Vector2f stepV = v.clone().divideLocal(v.length() / World.PATHING_BLOCKSIZE);
-		Vector2f p = new Vector2f(b.getPosition().x, b.getPosition().y);
+		if (a.getPosition().x == b.getPosition().x && a.getPosition().y == b.getPosition().y) {
+			return true;
+		}
 
-		for (float t = 0; t < v.length(); t += stepV.length()) {
-			p.addLocal(stepV);
-			if (getPathingValue(p.x, p.y) < 0 && a.getId() != getPathingValue(p.x, p.y)
-					&& b.getId() != getPathingValue(p.x, p.y)) {
+		GridTraversal line = GridTraversal.get().begin(b.getPosition().x, b.getPosition().y, a.getPosition().x,
+				a.getPosition().y, World.PATHING_BLOCKSIZE);
+		do {
+			int pval = getPathingValue(line.getX(), line.getY());
+			if (pval < 0 && pval != -a.getId() && pval != -b.getId()) {
 				return false;
 			}
-		}
+		} while (line.next());
 		return true;
 	}
 
+	/**
+	 * True if the line from a to b only passes through tiles that are part of
+	 * a room.
+	 */
 	public boolean lineOfAttack(Vector2f a, Vector2f b) {
-		Vector2f v = new Vector2f(a.x - b.x, a.y - b.y);
-		Vector2f stepV = v.clone().divideLocal(v.length() / World.PATHING_BLOCKSIZE);
-		Vector2f p = new Vector2f(b.x, b.y);
+		if (a.x == b.x && a.y == b.y) {
+			return true;
+		}
 
-		for (float t = 0; t < v.length(); t += stepV.length()) {
-			p.addLocal(stepV);
-			if (this.getRoom(World.worldToTile(p.x), World.worldToTile(p.y)) == null) {
+		GridTraversal line = GridTraversal.get().begin(b.x, b.y, a.x, a.y,
+				World.PATHING_GRANULARITY * World.PATHING_BLOCKSIZE);
+		do {
+			if (this.getRoom(line.getX(), line.getY()) == null) {
 				return false;
 			}
-		}
+		} while (line.next());
 		return true;
 	}
 
@@ -795,6 +1101,7 @@ public class Map {
 			}
 		}
 		this.boidGroups.clear();
+		this.groupIndex = null;
 	}
 
 	public boolean isGenerated() {
@@ -803,6 +1110,7 @@ public class Map {
 
 	public void addBoidGroup(BoidGroup boidg) {
 		this.boidGroups.add(boidg);
+		this.getGroupIndex().insert(boidg, boidg.getPos().x, boidg.getPos().y);
 	}
 
 	public void clearShowPathing(Actor a) {
@@ -0,0 +1,224 @@
+/**
+ * The pathing map of a level: for each pathing spot 0 if it is free, -1 if
+ * it is a wall or an entity's negated id if the entity stands on it. Spots
+ * outside the grid read as walls.
+ *
+ * The spots are kept a column at a time, and a snapshot for another thread
+ * shares the columns with the grid it was taken from until the grid writes
+ * to them, at which point the grid gets its own copy of the column. Beside
+ * the spots is a plane with one bit for each spot that is a wall, so asking
+ * whether a spot is a wall only looks at the spots themselves when an entity
+ * could be standing there, and a plane with one bit for each spot an entity
+ * stands on.
+ */
+package map;
+
+import java.util.Arrays;
+
+public final class PathingGrid {
+	private final int width;
+	private final int height;
+	private final int[][] columns;
+	// Columns that a snapshot refers to, and so must be copied before they
+	// are written to
+	private final boolean[] shared;
+	private long[] walls;
+	private boolean wallsShared;
+	private long[] entities;
+	private boolean entitiesShared;
+	private final boolean readOnly;
+
+	public PathingGrid(int width, int height) {
+		this.width = width;
+		this.height = height;
+		this.columns = new int[width][height];
+		this.shared = new boolean[width];
+		this.walls = new long[(width * height + 63) >> 6];
+		this.entities = new long[this.walls.length];
+		this.readOnly = false;
+	}
+
+	/**
+	 * A grid that can be written to, starting out as a copy of another. The
+	 * columns are shared with the other grid, which must never be written to
+	 * again, so mostly a snapshot.
+	 */
+	public PathingGrid(PathingGrid other) {
+		this(other, false);
+		Arrays.fill(this.shared, true);
+		this.wallsShared = true;
+		this.entitiesShared = true;
+	}
+
+	private PathingGrid(PathingGrid other, boolean readOnly) {
+		this.width = other.width;
+		this.height = other.height;
+		this.columns = other.columns.clone();
+		this.shared = new boolean[this.width];
+		this.walls = other.walls;
+		this.entities = other.entities;
+		this.readOnly = readOnly;
+	}
+
+	/**
+	 * Returns a copy of the grid that will never change, for use by other
+	 * threads.
+	 */
+	public PathingGrid snapshot() {
+		Arrays.fill(this.shared, true);
+		this.wallsShared = true;
+		this.entitiesShared = true;
+		return new PathingGrid(this, true);
+	}
+
+	public int getWidth() {
+		return this.width;
+	}
+
+	public int getHeight() {
+		return this.height;
+	}
+
+	public boolean contains(int x, int y) {
+		return x >= 0 && y >= 0 && x < this.width && y < this.height;
+	}
+
+	public int get(int x, int y) {
+		if (x >= 0 && y >= 0 && x < this.width && y < this.height) {
+			return this.columns[x][y];
+		}
+		return -1;
+	}
+
+	public boolean isWall(int x, int y) {
+		if (x >= 0 && y >= 0 && x < this.width && y < this.height) {
+			int i = x * this.height + y;
+			return (this.walls[i >> 6] & (1L << i)) != 0;
+		}
+		return true;
+	}
+
+	/**
+	 * True if nothing is standing on the spot, or only one of the given
+	 * entities.
+	 */
+	public boolean isFree(int x, int y, int entId, int ignoreId) {
+		if (isWall(x, y)) {
+			return false;
+		}
+		int v = this.columns[x][y];
+		return v >= 0 || v == -entId || v == -ignoreId;
+	}
+
+	/**
+	 * Sets a spot inside the grid. Returns false if it already had the value.
+	 */
+	public boolean set(int x, int y, int val) {
+		int[] col = this.columns[x];
+		if (col[y] == val) {
+			return false;
+		}
+		if (this.readOnly) {
+			throw new IllegalStateException("Pathing grid snapshots are read only");
+		}
+
+		if (this.shared[x]) {
+			this.columns[x] = col = col.clone();
+			this.shared[x] = false;
+		}
+		if ((col[y] == -1) != (val == -1)) {
+			if (this.wallsShared) {
+				this.walls = this.walls.clone();
+				this.wallsShared = false;
+			}
+			int i = x * this.height + y;
+			this.walls[i >> 6] ^= 1L << i;
+		}
+		if ((col[y] < -1) != (val < -1)) {
+			if (this.entitiesShared) {
+				this.entities = this.entities.clone();
+				this.entitiesShared = false;
+			}
+			int i = x * this.height + y;
+			this.entities[i >> 6] ^= 1L << i;
+		}
+		col[y] = val;
+		return true;
+	}
+
+	/**
+	 * Sets a run of spots of a column inside the grid.
+	 */
+	public void fill(int x, int y, int length, int val) {
+		for (int i = y; i < y + length; i++) {
+			set(x, i, val);
+		}
+	}
+
+	/**
+	 * Sets a bit for each spot of column x that is not free for the given
+	 * entities, as isFree tells, spot y going to bit y of the words from
+	 * out[off] on. The other bits are left as they are.
+	 *
+	 * @param wallsOnly
+	 *            Only mark the walls, as if no entities stood on the grid
+	 */
+	public void markBlocked(int x, int entId, int ignoreId, boolean wallsOnly, long[] out, int off) {
+		int[] col = this.columns[x];
+		for (int y = 0; y < this.height; y += 64) {
+			long bits = columnBits(this.walls, x, y);
+			if (!wallsOnly) {
+				long standing = columnBits(this.entities, x, y);
+				while (standing != 0) {
+					long bit = Long.lowestOneBit(standing);
+					int v = col[y + Long.numberOfTrailingZeros(bit)];
+					if (v != -entId && v != -ignoreId) {
+						bits |= bit;
+					}
+					standing ^= bit;
+				}
+			}
+			out[off + (y >> 6)] |= bits;
+		}
+	}
+
+	/**
+	 * The bits of a plane for the spots of column x from y on, as many as
+	 * fit in a long and the column has.
+	 */
+	private long columnBits(long[] plane, int x, int y) {
+		int p = x * this.height + y;
+		int w = p >> 6;
+		int r = p & 63;
+		long bits = plane[w] >>> r;
+		if (r != 0 && w + 1 < plane.length) {
+			bits |= plane[w + 1] << (64 - r);
+		}
+		if (this.height - y < 64) {
+			bits &= (1L << (this.height - y)) - 1;
+		}
+		return bits;
+	}
+
+	/**
+	 * True if column x is the same in both grids because neither has written
+	 * to it since one was copied from the other. It may still be the same if
+	 * false.
+	 */
+	public boolean sharesColumn(PathingGrid other, int x) {
+		return this.columns[x] == other.columns[x];
+	}
+
+	/**
+	 * The bytes taken by the spots and the wall plane, not counting what is
+	 * shared with snapshots.
+	 */
+	public long getMemoryBytes() {
+		// An array header is about 16 bytes
+		return (long) this.width * (16 + 4L * this.height) + 16 + 2 * (16 + 8L * this.walls.length);
+	}
+
+	int[] column(int x) {
+		return this.columns[x];
+	}
+}
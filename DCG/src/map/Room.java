@@ -11,6 +11,7 @@ import java.awt.Point;
 
 import com.jme.math.Vector2f;
 
+import engine.RandomStream;
 import engine.World;
 import entities.Entity;
 import entities.doodads.Stairs;
@@ -41,13 +42,14 @@ public class Room extends AbstractRoom {
 
 	@Override
 	int generate() {
-		this.p0.x = this.world.getRndInt(this.sector.x * this.map.sectorSize.x, this.map.sectorSize.x
+		RandomStream rnd = this.map.getLayoutRnd();
+		this.p0.x = rnd.getRndInt(this.sector.x * this.map.sectorSize.x, this.map.sectorSize.x
 				- this.map.minRoomSize.x + this.sector.x * this.map.sectorSize.x);
-		this.p1.x = this.world.getRndInt(this.map.minRoomSize.x + this.p0.x, this.map.sectorSize.x + this.sector.x
+		this.p1.x = rnd.getRndInt(this.map.minRoomSize.x + this.p0.x, this.map.sectorSize.x + this.sector.x
 				* this.map.sectorSize.x) - 1;
-		this.p0.y = this.world.getRndInt(this.sector.y * this.map.sectorSize.y, this.map.sectorSize.y
+		this.p0.y = rnd.getRndInt(this.sector.y * this.map.sectorSize.y, this.map.sectorSize.y
 				- this.map.minRoomSize.y + this.sector.y * this.map.sectorSize.y);
-		this.p1.y = this.world.getRndInt(this.map.minRoomSize.y + this.p0.y, this.map.sectorSize.y + this.sector.y
+		this.p1.y = rnd.getRndInt(this.map.minRoomSize.y + this.p0.y, this.map.sectorSize.y + this.sector.y
 				* this.map.sectorSize.y) - 1;
 
 		// System.out.println("Room created: u" + this + " x0 = " + p0.x +
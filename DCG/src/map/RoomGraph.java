@@ -0,0 +1,418 @@
+/**
+ * Hierarchical pathfinding on top of the rooms of a Map. Neighbouring rooms and
+ * corridors are joined by portals, placed in the middle of each stretch of tiles
+ * where the two touch, which is exactly what makes them neighbours. The cost of
+ * walking between two portals of the same room is found with a search confined
+ * to that room and cached per room and footprint size. The costs only count
+ * walls, as the entities in the way will have moved by the time the actor gets
+ * there, and are walked around by the search of each segment.
+ *
+ * Long queries are answered by searching the graph of portals first. The result
+ * is a Route, which hands out one segment at a time covering the current and the
+ * next room, so the actual path is only refined as the actor walks.
+ *
+ * The Map reports every wall put up or taken down, which bumps the version of
+ * the room it happened in and so invalidates the cached costs of that room.
+ * Routes are planned by the path service's workers on their snapshots of the
+ * pathing map, so the cache is only used holding the graph's lock, and the
+ * versions can be bumped by the game thread without it.
+ */
+
+package map;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import ai.AStarSearch;
+import ai.AStarSearch.Status;
+
+import com.jme.math.Vector2f;
+
+import engine.World;
+
+public class RoomGraph {
+	private static final int G = World.PATHING_GRANULARITY;
+
+	private ArrayList<AbstractRoom> rooms;
+	private int[] tileRoom;
+	private int tileWidth;
+	private int tileHeight;
+	private AtomicIntegerArray version;
+
+	// Portal p has endpoint 2p inside room portalRoom[2p] at cell
+	// (portalX[2p], portalY[2p]), and endpoint 2p+1 on the other side.
+	private int[] portalRoom;
+	private int[] portalX;
+	private int[] portalY;
+	private int numEndpoints;
+	private ArrayList<ArrayList<Integer>> roomEndpoints;
+
+	private HashMap<Integer, RoomCosts> costCache;
+
+	private static class RoomCosts {
+		int version;
+		int[] costs;
+	}
+
+	RoomGraph(Map map) {
+		this.tileWidth = map.getWidth();
+		this.tileHeight = map.getHeight();
+		this.rooms = new ArrayList<AbstractRoom>(map.getRooms());
+		this.costCache = new HashMap<Integer, RoomCosts>();
+
+		HashMap<AbstractRoom, Integer> index = new HashMap<AbstractRoom, Integer>();
+		for (int i = 0; i < this.rooms.size(); i++) {
+			index.put(this.rooms.get(i), i);
+		}
+
+		this.tileRoom = new int[this.tileWidth * this.tileHeight];
+		for (int x = 0; x < this.tileWidth; x++) {
+			for (int y = 0; y < this.tileHeight; y++) {
+				AbstractRoom r = map.getRoom(x, y);
+				this.tileRoom[x * this.tileHeight + y] = (r == null || !index.containsKey(r)) ? -1 : index.get(r);
+			}
+		}
+
+		this.version = new AtomicIntegerArray(this.rooms.size());
+		this.roomEndpoints = new ArrayList<ArrayList<Integer>>();
+		for (int i = 0; i < this.rooms.size(); i++) {
+			this.roomEndpoints.add(new ArrayList<Integer>());
+		}
+
+		findPortals();
+	}
+
+	private int roomAt(int tx, int ty) {
+		if (tx < 0 || ty < 0 || tx >= this.tileWidth || ty >= this.tileHeight) {
+			return -1;
+		}
+		return this.tileRoom[tx * this.tileHeight + ty];
+	}
+
+	/**
+	 * Walks all borders between tiles of different rooms and places a portal
+	 * in the middle of each unbroken stretch of border between the same two
+	 * rooms.
+	 */
+	private void findPortals() {
+		ArrayList<int[]> found = new ArrayList<int[]>();
+
+		// Borders between (x, y) and (x + 1, y), stretching along y
+		for (int x = 0; x < this.tileWidth - 1; x++) {
+			int runStart = -1;
+			int runA = -1, runB = -1;
+			for (int y = 0; y <= this.tileHeight; y++) {
+				int a = roomAt(x, y);
+				int b = roomAt(x + 1, y);
+				boolean border = a >= 0 && b >= 0 && a != b;
+				if (runStart >= 0 && (!border || a != runA || b != runB)) {
+					int mid = (runStart + y - 1) / 2;
+					found.add(new int[]{runA, x * G + G - 1, mid * G + G / 2, runB, (x + 1) * G, mid * G + G / 2});
+					runStart = -1;
+				}
+				if (border && runStart < 0) {
+					runStart = y;
+					runA = a;
+					runB = b;
+				}
+			}
+		}
+
+		// Borders between (x, y) and (x, y + 1), stretching along x
+		for (int y = 0; y < this.tileHeight - 1; y++) {
+			int runStart = -1;
+			int runA = -1, runB = -1;
+			for (int x = 0; x <= this.tileWidth; x++) {
+				int a = roomAt(x, y);
+				int b = roomAt(x, y + 1);
+				boolean border = a >= 0 && b >= 0 && a != b;
+				if (runStart >= 0 && (!border || a != runA || b != runB)) {
+					int mid = (runStart + x - 1) / 2;
+					found.add(new int[]{runA, mid * G + G / 2, y * G + G - 1, runB, mid * G + G / 2, (y + 1) * G});
+					runStart = -1;
+				}
+				if (border && runStart < 0) {
+					runStart = x;
+					runA = a;
+					runB = b;
+				}
+			}
+		}
+
+		this.numEndpoints = found.size() * 2;
+		this.portalRoom = new int[this.numEndpoints];
+		this.portalX = new int[this.numEndpoints];
+		this.portalY = new int[this.numEndpoints];
+
+		for (int p = 0; p < found.size(); p++) {
+			int[] f = found.get(p);
+			for (int side = 0; side < 2; side++) {
+				int e = 2 * p + side;
+				this.portalRoom[e] = f[side * 3];
+				this.portalX[e] = f[side * 3 + 1];
+				this.portalY[e] = f[side * 3 + 2];
+				this.roomEndpoints.get(this.portalRoom[e]).add(e);
+			}
+		}
+	}
+
+	/**
+	 * Called by the Map whenever a pathing cell becomes or stops being a wall.
+	 */
+	void touch(int px, int py) {
+		int r = roomAt(px / G, py / G);
+		if (r >= 0) {
+			this.version.incrementAndGet(r);
+		}
+	}
+
+	void invalidateAll() {
+		for (int r = 0; r < this.version.length(); r++) {
+			this.version.incrementAndGet(r);
+		}
+	}
+
+	public int[] getTileRooms() {
+		return this.tileRoom;
+	}
+
+	public int getTileHeight() {
+		return this.tileHeight;
+	}
+
+	public int getNumRooms() {
+		return this.rooms.size();
+	}
+
+	/**
+	 * Plans a route between two world positions on the portal graph.
+	 *
+	 * @param pmap
+	 *            The pathing map to find the costs of the room crossings on,
+	 *            which is not written to while the route is planned
+	 * @return The route, or null if both positions are in the same or in
+	 *         neighbouring rooms, where a plain search is just as good, or if
+	 *         no route exists.
+	 */
+	public synchronized Route plan(PathingGrid pmap, Vector2f from, Vector2f to, boolean[][] footprint) {
+		int startRoom = roomAt(World.worldToTile(from.x), World.worldToTile(from.y));
+		int goalRoom = roomAt(World.worldToTile(to.x), World.worldToTile(to.y));
+
+		if (startRoom < 0 || goalRoom < 0 || startRoom == goalRoom
+				|| this.rooms.get(startRoom).isNeighbour(this.rooms.get(goalRoom))) {
+			return null;
+		}
+
+		int sx = World.worldToPathing(from.x);
+		int sy = World.worldToPathing(from.y);
+		int gx = World.worldToPathing(to.x);
+		int gy = World.worldToPathing(to.y);
+
+		int start = this.numEndpoints;
+		int goal = this.numEndpoints + 1;
+		int[] dist = new int[this.numEndpoints + 2];
+		int[] prev = new int[this.numEndpoints + 2];
+		boolean[] done = new boolean[this.numEndpoints + 2];
+		Arrays.fill(dist, Integer.MAX_VALUE);
+		Arrays.fill(prev, -1);
+
+		PriorityQueue<int[]> open = new PriorityQueue<int[]>(16, new Comparator<int[]>() {
+			@Override
+			public int compare(int[] a, int[] b) {
+				return a[0] - b[0];
+			}
+		});
+
+		dist[start] = 0;
+		open.add(new int[]{0, start});
+
+		while (!open.isEmpty()) {
+			int node = open.poll()[1];
+			if (done[node]) {
+				continue;
+			}
+			done[node] = true;
+
+			if (node == goal) {
+				break;
+			}
+
+			int room = node == start ? startRoom : this.portalRoom[node];
+			int x = node == start ? sx : this.portalX[node];
+			int y = node == start ? sy : this.portalY[node];
+			ArrayList<Integer> ends = this.roomEndpoints.get(room);
+
+			if (node == start) {
+				for (int e : ends) {
+					relax(open, dist, prev, node, e, segmentCost(pmap, x, y, this.portalX[e], this.portalY[e], room,
+							footprint), gx, gy);
+				}
+			} else {
+				// Crossing over to the other side of the portal
+				relax(open, dist, prev, node, node ^ 1, 1, gx, gy);
+
+				int[] costs = roomCosts(pmap, room, footprint);
+				int i = ends.indexOf(node);
+				for (int j = 0; j < ends.size(); j++) {
+					if (j != i) {
+						relax(open, dist, prev, node, ends.get(j), costs[i * ends.size() + j], gx, gy);
+					}
+				}
+
+				if (room == goalRoom) {
+					relax(open, dist, prev, node, goal, segmentCost(pmap, x, y, gx, gy, room, footprint), gx, gy);
+				}
+			}
+		}
+
+		if (prev[goal] < 0) {
+			return null;
+		}
+
+		// Every endpoint reached by crossing a portal is the entry into the
+		// next room of the route
+		Route route = new Route(startRoom);
+		route.destination = to;
+		route.add(to, goalRoom);
+		int node = prev[goal];
+		while (node != start) {
+			int p = prev[node];
+			if (p == (node ^ 1)) {
+				route.add(new Vector2f(World.pathingToWorld(this.portalX[node]), World
+						.pathingToWorld(this.portalY[node])), this.portalRoom[node]);
+			}
+			node = p;
+		}
+
+		return route;
+	}
+
+	private void relax(PriorityQueue<int[]> open, int[] dist, int[] prev, int from, int to, int cost, int gx, int gy) {
+		if (cost < 0) {
+			return;
+		}
+		int d = dist[from] + cost;
+		if (d < dist[to]) {
+			dist[to] = d;
+			prev[to] = from;
+			int h = to >= this.numEndpoints ? 0 : Math.abs(this.portalX[to] - gx) + Math.abs(this.portalY[to] - gy);
+			open.add(new int[]{d + h, to});
+		}
+	}
+
+	/**
+	 * Costs between all pairs of portal endpoints within a room, recomputed if
+	 * the walls of the room have changed since they were last found.
+	 */
+	private int[] roomCosts(PathingGrid pmap, int room, boolean[][] footprint) {
+		Integer key = (room << 10) | (footprint.length << 5) | footprint[0].length;
+		RoomCosts rc = this.costCache.get(key);
+
+		// Read before the costs are found, so a change made meanwhile has
+		// them found again next time
+		int version = this.version.get(room);
+		if (rc == null || rc.version != version) {
+			ArrayList<Integer> ends = this.roomEndpoints.get(room);
+			int n = ends.size();
+
+			if (rc == null) {
+				rc = new RoomCosts();
+				this.costCache.put(key, rc);
+			}
+			rc.costs = new int[n * n];
+			rc.version = version;
+
+			for (int i = 0; i < n; i++) {
+				for (int j = i + 1; j < n; j++) {
+					int a = ends.get(i);
+					int b = ends.get(j);
+					int c = segmentCost(pmap, this.portalX[a], this.portalY[a], this.portalX[b], this.portalY[b],
+							room, footprint);
+					rc.costs[i * n + j] = c;
+					rc.costs[j * n + i] = c;
+				}
+			}
+		}
+
+		return rc.costs;
+	}
+
+	/**
+	 * Length of the shortest path between two pathing cells that stays within
+	 * the given room and only goes around walls, or -1 if there is none.
+	 */
+	private int segmentCost(PathingGrid pmap, int x0, int y0, int x1, int y1, int room, boolean[][] footprint) {
+		boolean[] allowed = new boolean[this.rooms.size()];
+		allowed[room] = true;
+
+		AStarSearch search = AStarSearch.acquire(pmap);
+		search.begin(pmap, new Vector2f(World.pathingToWorld(x0), World.pathingToWorld(y0)), new Vector2f(World
+				.pathingToWorld(x1), World.pathingToWorld(y1)), footprint, 0, 0);
+		search.restrictTo(this.tileRoom, this.tileHeight, allowed);
+		search.ignoreEntities();
+		int cost = search.run() == Status.FOUND ? search.getPathCost() : -1;
+		AStarSearch.release(search);
+
+		return cost;
+	}
+
+	/**
+	 * A planned route through a list of rooms, kept as the point where each
+	 * room is entered and finally the destination itself.
+	 */
+	public class Route {
+		private LinkedList<Vector2f> waypoints;
+		private LinkedList<Integer> waypointRooms;
+		private int curRoom;
+		private Vector2f target;
+		private Vector2f destination;
+
+		private Route(int startRoom) {
+			this.waypoints = new LinkedList<Vector2f>();
+			this.waypointRooms = new LinkedList<Integer>();
+			this.curRoom = startRoom;
+		}
+
+		private void add(Vector2f p, int room) {
+			this.waypoints.addFirst(p);
+			this.waypointRooms.addFirst(room);
+		}
+
+		public boolean hasNext() {
+			return !this.waypoints.isEmpty();
+		}
+
+		public Vector2f getDestination() {
+			return this.destination;
+		}
+
+		/**
+		 * Hands out the next segment of the route, which leads through the
+		 * current and the next room to the entry of the room after that.
+		 *
+		 * @return The rooms the segment may use, indexed as in
+		 *         getTileRooms(). The target is found with getSegmentTarget().
+		 */
+		public boolean[] nextSegment() {
+			boolean[] allowed = new boolean[rooms.size()];
+			allowed[this.curRoom] = true;
+
+			for (int i = 0; i < 2 && !this.waypoints.isEmpty(); i++) {
+				this.target = this.waypoints.removeFirst();
+				this.curRoom = this.waypointRooms.removeFirst();
+				allowed[this.curRoom] = true;
+			}
+
+			return allowed;
+		}
+
+		public Vector2f getSegmentTarget() {
+			return this.target;
+		}
+	}
+}
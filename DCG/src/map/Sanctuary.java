@@ -103,21 +103,21 @@ public class Sanctuary extends Map {
 
 		for (DataNode node : allItems) {
 			if (node.getProp("class").equals("Weapon")) {
-				int roll = this.world.getRndInt(0, 2);
+				int roll = this.world.getLootRnd().getRndInt(0, 2);
 				for (int i = 1; i <= roll; i++) {
 					this.weapons.add((Weapon) Item.generateFromNode(node, p.getLevel(), Quality.COMMON, this.world));
 				}
-				roll = this.world.getRndInt(0, 2);
+				roll = this.world.getLootRnd().getRndInt(0, 2);
 				for (int i = 1; i <= roll; i++) {
 					this.weapons.add((Weapon) Item.generateFromNode(node, p.getLevel(), Quality.MAGIC, this.world));
 				}
 			}
 			if (node.getProp("class").equals("Armor")) {
-				int roll = this.world.getRndInt(0, 1);
+				int roll = this.world.getLootRnd().getRndInt(0, 1);
 				for (int i = 1; i <= roll; i++) {
 					this.armors.add((Armor) Item.generateFromNode(node, p.getLevel(), Quality.COMMON, this.world));
 				}
-				roll = this.world.getRndInt(0, 1);
+				roll = this.world.getLootRnd().getRndInt(0, 1);
 				for (int i = 1; i <= roll; i++) {
 					this.armors.add((Armor) Item.generateFromNode(node, p.getLevel(), Quality.MAGIC, this.world));
 				}
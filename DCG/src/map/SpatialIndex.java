@@ -0,0 +1,266 @@
+/**
+ * A uniform grid over a map, used to find the things near a point without
+ * looking at everything on the map. Each cell is a map tile, and keeps the
+ * things whose position is inside it in a bucket along with their
+ * positions. The things indexed keep their own cell and bucket slot, so
+ * moving and removing them is constant time.
+ *
+ * Queries hand their results to a visitor or write them to an array given
+ * by the caller, and so do not allocate. A visitor must not insert, move or
+ * remove anything in the index it is visiting.
+ */
+package map;
+
+import engine.World;
+
+public class SpatialIndex<T extends SpatialIndex.Indexed> {
+
+	/**
+	 * Implemented by what can be put in a SpatialIndex. The cell and slot are
+	 * only to be set by the index, and the cell should start out as -1.
+	 */
+	public interface Indexed {
+		public int getSpatialCell();
+
+		public int getSpatialSlot();
+
+		public void setSpatialSlot(int cell, int slot);
+	}
+
+	public interface Visitor<T> {
+		public void visit(T obj);
+	}
+
+	public interface Filter<T> {
+		public boolean accept(T obj);
+	}
+
+	private static final float CELL_SIZE = World.PATHING_GRANULARITY;
+
+	private int cols;
+	private int rows;
+	private Object[][] objs;
+	private float[][] xs;
+	private float[][] ys;
+	private int[] sizes;
+	private int count;
+
+	private float[] nearestDist = new float[8];
+
+	/**
+	 * @param cols
+	 *            Width of the map in tiles
+	 * @param rows
+	 *            Height of the map in tiles
+	 */
+	public SpatialIndex(int cols, int rows) {
+		this.cols = Math.max(1, cols);
+		this.rows = Math.max(1, rows);
+		int cells = this.cols * this.rows;
+		this.objs = new Object[cells][];
+		this.xs = new float[cells][];
+		this.ys = new float[cells][];
+		this.sizes = new int[cells];
+	}
+
+	public int size() {
+		return this.count;
+	}
+
+	public boolean contains(T obj) {
+		int cell = obj.getSpatialCell();
+		return cell >= 0 && cell < this.sizes.length && obj.getSpatialSlot() < this.sizes[cell]
+				&& this.objs[cell][obj.getSpatialSlot()] == obj;
+	}
+
+	public void insert(T obj, float x, float y) {
+		if (contains(obj)) {
+			move(obj, x, y);
+			return;
+		}
+
+		int cell = cellOf(x, y);
+		int n = this.sizes[cell];
+		if (this.objs[cell] == null) {
+			this.objs[cell] = new Object[4];
+			this.xs[cell] = new float[4];
+			this.ys[cell] = new float[4];
+		} else if (n == this.objs[cell].length) {
+			Object[] o = new Object[n * 2];
+			float[] fx = new float[n * 2];
+			float[] fy = new float[n * 2];
+			System.arraycopy(this.objs[cell], 0, o, 0, n);
+			System.arraycopy(this.xs[cell], 0, fx, 0, n);
+			System.arraycopy(this.ys[cell], 0, fy, 0, n);
+			this.objs[cell] = o;
+			this.xs[cell] = fx;
+			this.ys[cell] = fy;
+		}
+
+		this.objs[cell][n] = obj;
+		this.xs[cell][n] = x;
+		this.ys[cell][n] = y;
+		this.sizes[cell] = n + 1;
+		obj.setSpatialSlot(cell, n);
+		this.count++;
+	}
+
+	@SuppressWarnings("unchecked")
+	public void remove(T obj) {
+		if (!contains(obj)) {
+			return;
+		}
+
+		int cell = obj.getSpatialCell();
+		int slot = obj.getSpatialSlot();
+		int last = this.sizes[cell] - 1;
+
+		// Move the last one in the bucket into the hole
+		if (slot != last) {
+			T moved = (T) this.objs[cell][last];
+			this.objs[cell][slot] = moved;
+			this.xs[cell][slot] = this.xs[cell][last];
+			this.ys[cell][slot] = this.ys[cell][last];
+			moved.setSpatialSlot(cell, slot);
+		}
+		this.objs[cell][last] = null;
+		this.sizes[cell] = last;
+		obj.setSpatialSlot(-1, 0);
+		this.count--;
+	}
+
+	/**
+	 * Updates the position of something in the index, inserting it if it is
+	 * not there.
+	 */
+	public void move(T obj, float x, float y) {
+		if (!contains(obj)) {
+			insert(obj, x, y);
+			return;
+		}
+
+		int cell = cellOf(x, y);
+		if (cell == obj.getSpatialCell()) {
+			this.xs[cell][obj.getSpatialSlot()] = x;
+			this.ys[cell][obj.getSpatialSlot()] = y;
+		} else {
+			remove(obj);
+			insert(obj, x, y);
+		}
+	}
+
+	/**
+	 * Visits everything within the given distance of a point.
+	 */
+	@SuppressWarnings("unchecked")
+	public void queryRadius(float x, float y, float r, Visitor<? super T> visitor) {
+		float r2 = r * r;
+		int cx0 = col(x - r), cx1 = col(x + r);
+		int cy0 = row(y - r), cy1 = row(y + r);
+
+		for (int cx = cx0; cx <= cx1; cx++) {
+			for (int cy = cy0; cy <= cy1; cy++) {
+				int cell = cx * this.rows + cy;
+				float[] fx = this.xs[cell];
+				float[] fy = this.ys[cell];
+				for (int i = 0; i < this.sizes[cell]; i++) {
+					float dx = fx[i] - x;
+					float dy = fy[i] - y;
+					if (dx * dx + dy * dy <= r2) {
+						visitor.visit((T) this.objs[cell][i]);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Visits everything inside the given rectangle, edges included.
+	 */
+	@SuppressWarnings("unchecked")
+	public void queryRect(float x0, float y0, float x1, float y1, Visitor<? super T> visitor) {
+		int cx0 = col(x0), cx1 = col(x1);
+		int cy0 = row(y0), cy1 = row(y1);
+
+		for (int cx = cx0; cx <= cx1; cx++) {
+			for (int cy = cy0; cy <= cy1; cy++) {
+				int cell = cx * this.rows + cy;
+				float[] fx = this.xs[cell];
+				float[] fy = this.ys[cell];
+				for (int i = 0; i < this.sizes[cell]; i++) {
+					if (fx[i] >= x0 && fx[i] <= x1 && fy[i] >= y0 && fy[i] <= y1) {
+						visitor.visit((T) this.objs[cell][i]);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Finds up to k of the nearest things within maxRadius of a point that the
+	 * filter accepts, and writes them to out nearest first. The filter may be
+	 * null.
+	 *
+	 * @return The number of things written to out
+	 */
+	@SuppressWarnings("unchecked")
+	public int nearestK(float x, float y, int k, float maxRadius, Filter<? super T> filter, T[] out) {
+		k = Math.min(k, out.length);
+		if (k <= 0) {
+			return 0;
+		}
+		if (this.nearestDist.length < k) {
+			this.nearestDist = new float[k];
+		}
+
+		float r2 = maxRadius * maxRadius;
+		int cx0 = col(x - maxRadius), cx1 = col(x + maxRadius);
+		int cy0 = row(y - maxRadius), cy1 = row(y + maxRadius);
+		int found = 0;
+
+		for (int cx = cx0; cx <= cx1; cx++) {
+			for (int cy = cy0; cy <= cy1; cy++) {
+				int cell = cx * this.rows + cy;
+				float[] fx = this.xs[cell];
+				float[] fy = this.ys[cell];
+				for (int i = 0; i < this.sizes[cell]; i++) {
+					float dx = fx[i] - x;
+					float dy = fy[i] - y;
+					float d = dx * dx + dy * dy;
+					if (d > r2 || (found == k && d >= this.nearestDist[k - 1])) {
+						continue;
+					}
+
+					T obj = (T) this.objs[cell][i];
+					if (filter != null && !filter.accept(obj)) {
+						continue;
+					}
+
+					// Insertion into the sorted list of the best so far
+					int j = found < k ? found++ : k - 1;
+					while (j > 0 && this.nearestDist[j - 1] > d) {
+						this.nearestDist[j] = this.nearestDist[j - 1];
+						out[j] = out[j - 1];
+						j--;
+					}
+					this.nearestDist[j] = d;
+					out[j] = obj;
+				}
+			}
+		}
+
+		return found;
+	}
+
+	private int cellOf(float x, float y) {
+		return col(x) * this.rows + row(y);
+	}
+
+	private int col(float x) {
+		return Math.max(0, Math.min(this.cols - 1, (int) (x / CELL_SIZE)));
+	}
+
+	private int row(float y) {
+		return Math.max(0, Math.min(this.rows - 1, (int) (y / CELL_SIZE)));
+	}
+}
@@ -26,6 +26,11 @@ public class Floor extends MapTile {
 	public Floor(float x, float y, float blocksize, int tier) {
 		super();
 
+		this.n.setLocalTranslation(new Vector3f(x * blocksize * 2, y * blocksize * 2, -0.05f));
+		if (Settings.NOGFX) {
+			return;
+		}
+
 		b = new Box("Map block " + x + "x" + y, new Vector3f(0, 0, 0), blocksize, blocksize, 0.1f);
 
 		// s.rotateUpTo(new Vector3f(10, 15, 17));
@@ -46,7 +51,6 @@ public class Floor extends MapTile {
 		b.setRenderState(ms);
 
 		this.n.attachChild(b);
-		this.n.setLocalTranslation(new Vector3f(x * blocksize * 2, y * blocksize * 2, -0.05f));
 
 		// if (staticNode == null) {
 		// staticNode = new Node();
@@ -27,6 +27,11 @@ public class Wall extends MapTile {
 	public Wall(float x, float y, float blocksize, int orient, int tier) {
 		super();
 
+		this.n.setLocalTranslation(new Vector3f(x * blocksize * 2, y * blocksize * 2, -0.05f));
+		if (Settings.NOGFX) {
+			return;
+		}
+
 		TextureState ts = DisplaySystem.getDisplaySystem().getRenderer().createTextureState();
 		ts.setEnabled(true);
 		ts.setTexture(TextureManager.loadTexture(Game.class.getClassLoader().getResource(
@@ -64,7 +69,5 @@ public class Wall extends MapTile {
 			b4.setRenderState(ms);
 			n.attachChild(b4);
 		}
-
-		this.n.setLocalTranslation(new Vector3f(x * blocksize * 2, y * blocksize * 2, -0.05f));
 	}
 }
@@ -26,6 +26,7 @@ import com.jme.system.DisplaySystem;
 import com.jme.util.TextureManager;
 
 import engine.Game;
+import engine.Settings;
 import engine.World;
 import engine.gfx.EffectFactory;
 import engine.gfx.EffectFactory.EffectType;
@@ -125,13 +126,13 @@ public class Attack extends Entity {
 		this.targetHpChange = 0;
 		this.targetManaChange = 0;
 		this.target = target;
-		this.hitRoll = this.world.getRndInt(0, 99);
+		this.hitRoll = this.world.getCombatRnd().getRndInt(0, 99);
 		this.rangeSquared = this.attacker.getPosition().distanceSquared(target.getPosition());
 		if (this.type.equals(DamageType.PHYSICAL)) {
 			this.hitChance = this.attacker.getCurStats().getHitChance();
 			this.maxDmg = this.attacker.getPhysicalMaxDmg();
 			this.minDmg = this.attacker.getPhysicalMinDmg();
-			this.finalDmg = this.world.getRndInt(this.minDmg, this.maxDmg);
+			this.finalDmg = this.world.getCombatRnd().getRndInt(this.minDmg, this.maxDmg);
 			if (attacker.getAttackRangeType().equals(RangeType.MELEE)) {
 				this.damagePoint = Game.getTimer().getTimeInSeconds();
 				this.rangeModifyer = 1.0f;
@@ -147,9 +148,9 @@ public class Attack extends Entity {
 			this.maxDmg = this.magic.getMaxDmgHeal();
 			this.minDmg = this.magic.getMinDmgHeal();
 			if (this.magic.getMagicType().equals(MagicType.HEAL)) {
-				this.finalDmg = -this.world.getRndInt(this.minDmg, this.maxDmg);
+				this.finalDmg = -this.world.getCombatRnd().getRndInt(this.minDmg, this.maxDmg);
 			} else {
-				this.finalDmg = this.world.getRndInt(this.minDmg, this.maxDmg);
+				this.finalDmg = this.world.getCombatRnd().getRndInt(this.minDmg, this.maxDmg);
 			}
 			setRangedAttackValuesAndAnimation();
 			this.hitChance = (int) ((this.hitChance) * this.rangeModifyer);
@@ -163,7 +164,7 @@ public class Attack extends Entity {
 			ConsoleLog.addLine(attacker.getName() + " misses " + target.getName());
 			this.attacker.addFloatingText("*miss*", Color.white, Color.yellow, 4f);
 			if (!attacker.getAttackRangeType().equals(RangeType.MELEE)) {
-				int roll = this.world.getRndInt(1, 2);
+				int roll = this.world.getCombatRnd().getRndInt(1, 2);
 				float offset = roll == 1 ? -0.3f : 0.3f;
 				if (this.velocity.x < this.velocity.y) {
 					this.velocity.x += offset;
@@ -184,7 +185,9 @@ public class Attack extends Entity {
 		super.velocity.y = tmp.y * RANGED_VELOCITY;
 		this.map.getEffectNode().attachChild(this.n);
 		this.n.setLocalTranslation(attacker.getPosition().x, attacker.getPosition().y, 4);
-		if (this.type.equals(DamageType.PHYSICAL)) {
+		if (Settings.NOGFX) {
+			// Nothing to show
+		} else if (this.type.equals(DamageType.PHYSICAL)) {
 			Arrow ar = new Arrow("Arrow", 0.7f, 0.2f);
 			TextureState ts = DisplaySystem.getDisplaySystem().getRenderer().createTextureState();
 			ts.setTexture(TextureManager.loadTexture(Game.class.getClassLoader().getResource(
@@ -384,12 +387,14 @@ public class Attack extends Entity {
 					Player p = (Player) attacker;
 					p.addXp(target.getXpValue());
 				}
-				if (target.getClass().equals(Player.class)) {
+				if (target.getClass().equals(Player.class) && Game.getInstance() != null) {
 					Game.getInstance().getHUD().showDeathWindow();
 				}
 				ConsoleLog.addLine(attacker.getName() + " killed " + target.getName() + ".");
 			}
-			Game.getInstance().getHUD().updateHpAndMana();
+			if (Game.getInstance() != null) {
+				Game.getInstance().getHUD().updateHpAndMana();
+			}
 		}
 	}
 }
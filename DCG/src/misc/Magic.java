@@ -11,7 +11,7 @@ import infostore.DataNode;
 
 import java.util.LinkedList;
 
-import map.AbstractRoom;
+import map.SpatialIndex;
 import skills.Skill;
 import skills.SkillTree;
 
@@ -24,6 +24,7 @@ import com.jme.system.DisplaySystem;
 import com.jme.util.TextureManager;
 
 import engine.Game;
+import engine.Settings;
 import engine.hud.ConsoleLog;
 import entities.Entity;
 import entities.actors.Actor;
@@ -45,6 +46,14 @@ public class Magic {
 	private int minDmgHeal = 0;
 	private int maxDmgHeal = 0;
 	private float rangeSquared = 10000f;
+	private LinkedList<Actor> aoeTargets = new LinkedList<Actor>();
+	private SpatialIndex.Visitor<Entity> aoeCollector = new SpatialIndex.Visitor<Entity>() {
+		public void visit(Entity e) {
+			if (Monster.class.equals(e.getClass())) {
+				Magic.this.aoeTargets.add((Actor) e);
+			}
+		}
+	};
 	private float aoeRangeSquared = 0f;
 	private boolean noTarget = false;
 	private int manaCost = 0;
@@ -69,16 +78,18 @@ public class Magic {
 		this.type = MagicType.valueOf(node.getProp("magictype").toUpperCase());
 		this.level = level;
 		this.node = new Node();
-		Sphere sp = new Sphere("Magic Sphere", 8, 8, 0.5f);
-		TextureState ts = DisplaySystem.getDisplaySystem().getRenderer().createTextureState();
-		ts.setTexture(TextureManager.loadTexture(Game.class.getClassLoader().getResource(
-				"dcg/data/textures/" + "simple.png"), Texture.MinificationFilter.NearestNeighborLinearMipMap,
-				Texture.MagnificationFilter.Bilinear));
-		ts.setEnabled(true);
-		sp.setDefaultColor(new ColorRGBA(0.6f, 0.2f, 0f, 0.5f));
-		sp.setRenderState(ts);
-		sp.updateRenderState();
-		this.node.attachChild(sp);
+		if (!Settings.NOGFX) {
+			Sphere sp = new Sphere("Magic Sphere", 8, 8, 0.5f);
+			TextureState ts = DisplaySystem.getDisplaySystem().getRenderer().createTextureState();
+			ts.setTexture(TextureManager.loadTexture(Game.class.getClassLoader().getResource(
+					"dcg/data/textures/" + "simple.png"), Texture.MinificationFilter.NearestNeighborLinearMipMap,
+					Texture.MagnificationFilter.Bilinear));
+			ts.setEnabled(true);
+			sp.setDefaultColor(new ColorRGBA(0.6f, 0.2f, 0f, 0.5f));
+			sp.setRenderState(ts);
+			sp.updateRenderState();
+			this.node.attachChild(sp);
+		}
 		DataNode stats = node.getChild("stats");
 		if (!stats.getProp("skills").isEmpty()) {
 			for (String string : stats.getProp("skills").split(", ")) {
@@ -108,16 +119,13 @@ public class Magic {
 			if (this.aoeRangeSquared == 0f) {
 				apply(caster, target);
 			} else {
-				for (AbstractRoom r : target.getRoom().getNeighbours()) {
-					for (Entity e : r.getActors()) {
-						if (Monster.class.equals(e.getClass())) {
-							if (target.getPosition().distanceSquared(e.getPosition()) <= this.aoeRangeSquared) {
-								Actor a = ((Actor) e);
-								apply(caster, a);
-							}
-						}
-					}
+				this.aoeTargets.clear();
+				target.getMap().getActorIndex().queryRadius(target.getPosition().x, target.getPosition().y,
+						(float) Math.sqrt(this.aoeRangeSquared), this.aoeCollector);
+				for (Actor a : this.aoeTargets) {
+					apply(caster, a);
 				}
+				this.aoeTargets.clear();
 			}
 		}
 	}
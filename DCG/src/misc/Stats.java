@@ -9,6 +9,7 @@
 package misc;
 
 import infostore.DataNode;
+import infostore.StatsRecord;
 
 import java.lang.reflect.Field;
 
@@ -58,42 +59,50 @@ public class Stats {
 	}
 
 	public Stats(DataNode n) {
-		this.str = n.getPropI("str");
-		this.mag = n.getPropI("mag");
-		this.vit = n.getPropI("vit");
-		this.agi = n.getPropI("agi");
-		this.hp = n.getPropI("hp");
-		this.mana = n.getPropI("mana");
-		this.bonusDmg = n.getPropI("bonusDmg");
-		this.bonusHit = n.getPropI("bonusHit");
-		this.bonusEva = n.getPropI("bonusEva");
-		this.bonusArmor = n.getPropI("bonusArmor");
-		this.lifeSteal = n.getPropI("lifeSteal");
-		this.manaSteal = n.getPropI("manaSteal");
-		this.bonusMovementSpeed = n.getPropI("bonusmovementspeed");
-		this.bonusAttackSpeed = n.getPropI("bonusattackspeed");
+		this(StatsRecord.of(n));
 	}
 
 	public Stats(DataNode n, int mult) {
-		if (n == null) {
+		this(n != null ? StatsRecord.of(n) : null, mult);
+	}
+
+	public Stats(StatsRecord s) {
+		this.str = s.getStr();
+		this.mag = s.getMag();
+		this.vit = s.getVit();
+		this.agi = s.getAgi();
+		this.hp = s.getHp();
+		this.mana = s.getMana();
+		this.bonusDmg = s.getBonusDmg();
+		this.bonusHit = s.getBonusHit();
+		this.bonusEva = s.getBonusEva();
+		this.bonusArmor = s.getBonusArmor();
+		this.lifeSteal = s.getLifeSteal();
+		this.manaSteal = s.getManaSteal();
+		this.bonusMovementSpeed = s.getBonusMovementSpeed();
+		this.bonusAttackSpeed = s.getBonusAttackSpeed();
+	}
+
+	public Stats(StatsRecord s, int mult) {
+		if (s == null) {
 			// TODO: why?
 			return;
 		}
 		mult = mult < 1 ? 1 : mult;
-		this.str = n.getPropI("str") * mult;
-		this.mag = n.getPropI("mag") * mult;
-		this.vit = n.getPropI("vit") * mult;
-		this.agi = n.getPropI("agi") * mult;
-		this.hp = n.getPropI("hp") * mult;
-		this.mana = n.getPropI("mana") * mult;
-		this.bonusDmg = n.getPropI("bonusdmg") * mult;
-		this.bonusHit = n.getPropI("bonusHit") * mult;
-		this.bonusEva = n.getPropI("bonusEva") * mult;
-		this.bonusArmor = n.getPropI("bonusarmor") * mult;
-		this.lifeSteal = n.getPropI("lifeSteal") * mult;
-		this.manaSteal = n.getPropI("manaSteal") * mult;
-		this.bonusMovementSpeed = n.getPropI("bonusmovementspeed") * mult;
-		this.bonusAttackSpeed = n.getPropI("bonusattackspeed") * mult;
+		this.str = s.getStr() * mult;
+		this.mag = s.getMag() * mult;
+		this.vit = s.getVit() * mult;
+		this.agi = s.getAgi() * mult;
+		this.hp = s.getHp() * mult;
+		this.mana = s.getMana() * mult;
+		this.bonusDmg = s.getBonusDmg() * mult;
+		this.bonusHit = s.getBonusHit() * mult;
+		this.bonusEva = s.getBonusEva() * mult;
+		this.bonusArmor = s.getBonusArmor() * mult;
+		this.lifeSteal = s.getLifeSteal() * mult;
+		this.manaSteal = s.getManaSteal() * mult;
+		this.bonusMovementSpeed = s.getBonusMovementSpeed() * mult;
+		this.bonusAttackSpeed = s.getBonusAttackSpeed() * mult;
 	}
 
 	public void addStatsToThis(Stats s) {
@@ -68,7 +68,7 @@ public class DefensiveSkill extends Skill implements Cloneable {
 
 	public void apply(Attack attack) {
 		if (this.rangeType == null || this.rangeType.equals(attack.getAttacker().getAttackRangeType())) {
-			if (attack.getTarget().getMap().getWorld().roll100(this.chance)) {
+			if (attack.getTarget().getMap().getWorld().getCombatRnd().roll100(this.chance)) {
 				if (attack.getRangeSquared() >= this.minSquaredRangeReq
 						&& attack.getRangeSquared() <= this.maxSquaredRangeReq) {
 					if (this.returnDmg > 0) {
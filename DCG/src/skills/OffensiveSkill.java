@@ -59,7 +59,7 @@ public class OffensiveSkill extends Skill {
 
 	public void apply(Attack attack) {
 		if (this.rangeType == null || this.rangeType.equals(attack.getAttacker().getAttackRangeType())) {
-			if (attack.getAttacker().getMap().getWorld().roll100(this.chance)) {
+			if (attack.getAttacker().getMap().getWorld().getCombatRnd().roll100(this.chance)) {
 				if (attack.getRangeSquared() >= this.minSquaredRangeReq
 						&& attack.getRangeSquared() <= this.maxSquaredRangeReq) {
 					if (this.bonusDmg > 0) {
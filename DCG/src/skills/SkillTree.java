@@ -64,13 +64,23 @@ public class SkillTree {
 			}
 		}
 
+		// Every level of a skill is a prerequisite when the skill is named
+		HashMap<String, LinkedList<Skill>> skillsByName = new HashMap<String, LinkedList<Skill>>();
+		for (Skill skill : prerequisites.keySet()) {
+			LinkedList<Skill> levels = skillsByName.get(skill.getName());
+			if (levels == null) {
+				levels = new LinkedList<Skill>();
+				skillsByName.put(skill.getName(), levels);
+			}
+			levels.add(skill);
+		}
+
 		for (Skill skill1 : prerequisiteStrings.keySet()) {
 			LinkedList<Skill> list = new LinkedList<Skill>();
 			for (String string : prerequisiteStrings.get(skill1)) {
-				for (Skill skill2 : prerequisites.keySet()) {
-					if (string.trim().equals(skill2.getName())) {
-						list.add(skill2);
-					}
+				LinkedList<Skill> levels = skillsByName.get(string.trim());
+				if (levels != null) {
+					list.addAll(levels);
 				}
 			}
 			prerequisites.put(skill1, list);
@@ -1,5 +1,7 @@
 /**
- * Used as the node of the task queue in TaskScheduler.
+ * Used as the node of the task queues in TaskScheduler. The nodes link
+ * themselves into the queue of their priority, so a task is moved or removed
+ * without walking the queue.
  */
 package tasks;
 
@@ -8,8 +10,13 @@ public class TaskQueueNode {
 	public int id;
 
 	public AbstractTask task;
+	public TaskQueueNode prev;
 	public TaskQueueNode next;
-	public boolean highPrio;
+	public TaskScheduler.Priority priority;
+	// Stats shared by all tasks of the same class
+	public TaskScheduler.TaskType type;
+	// Runs of the scheduler since the task last had time
+	public int waited;
 
 	public TaskQueueNode() {
 		this.id = TaskQueueNode.nextId++;
@@ -1,179 +1,280 @@
 /**
  * The task scheduler. Accepts new tasks for queueing and
  * will run a number of tasks each time run() is called,
- * distributing available units among a number of tasks 
- * each time. Ensures that no task can block by running
- * for long times via putting tasks at the end of the queue
- * each time they have had execution time.
+ * sharing a time budget among them. Ensures that no task can
+ * block by running for long times via putting tasks at the end
+ * of their queue each time they have had execution time.
+ *
+ * Tasks count their work in units of their own, so the scheduler
+ * measures how long a unit of each task type takes and hands out as
+ * many units as fit in the time a task is given. Tasks are queued by
+ * priority, and a task that has been passed over for AGING_RUNS runs
+ * gets time even when the budget is spent, so low priority tasks are
+ * never starved.
  */
 package tasks;
 
+import java.util.HashMap;
+
 import engine.Profiler;
 
 public class TaskScheduler {
-	private TaskQueueNode queueHead;
-	private TaskQueueNode queueTail;
+	private static final int PROBE_RUN = Profiler.register("TaskScheduler.run");
+
+	public enum Priority {
+		HIGH, NORMAL, LOW
+	};
+
+	/**
+	 * What the scheduler knows about the tasks of one class.
+	 */
+	static class TaskType {
+		int probe;
+		// Estimated time of one unit of work, in ns
+		float nsPerUnit = INITIAL_NS_PER_UNIT;
+	}
+
+	// Smallest amount of work given to a task that is run at all
+	private static final int MIN_UNITS = 10;
+	private static final int MAX_UNITS = 1 << 20;
+	private static final float INITIAL_NS_PER_UNIT = 1000f;
+	// Weight of the latest measurement in the estimate of a unit's time
+	private static final float COST_SMOOTHING = 0.2f;
+	// Runs a task may be passed over before it is run regardless of budget
+	private static final int AGING_RUNS = 10;
+
+	private static HashMap<Class<?>, TaskType> taskTypes = new HashMap<Class<?>, TaskType>();
+
+	private TaskQueueNode[] queueHead = new TaskQueueNode[Priority.values().length];
+	private TaskQueueNode[] queueTail = new TaskQueueNode[Priority.values().length];
+	private int[] queueSize = new int[Priority.values().length];
 
-	public static float load = 0.0f;
-	public static int total = 0;
-	public static int running = 0;
+	private int total = 0;
+	private int running = 0;
+	private long budget;
+	private long used;
+	private long overrun;
+	private int overrunRuns;
 
 	public TaskScheduler() {
 	}
 
 	/**
-	 * Runs queued tasks. High priority tasks are run first, and if there are
-	 * any units left, low priority ones next. The given amount of units are
-	 * split equally within a priority grouping, however if there are too many
-	 * tasks some will be postponed to a later run, ensuring a minimum number of
-	 * units per task. When a task marks itself as completed, it is removed from
-	 * the task list.
-	 * 
-	 * @param availableUnits
-	 *            Maximum units to use
-	 * @param minUnitsPerTask
-	 *            Minimum units to give to a task
+	 * Runs queued tasks until the given time is used up. High priority tasks
+	 * are always run, the others are run in order of priority for as long as
+	 * there is time left, apart from those that have waited too long. The time
+	 * left is split equally among the tasks not yet run, and a task that gets
+	 * to run does at least MIN_UNITS of work. When a task marks itself as
+	 * completed, it is removed from the task list.
+	 *
+	 * @param budget
+	 *            Time to spend, in ns
 	 */
-	public void run(int availableUnits, int minUnitsPerHighPrioTask, int minUnitsPerTask) {
-		Profiler.start("TaskScheduler.run");
+	public void run(long budget) {
+		Profiler.start(PROBE_RUN);
 
-		TaskScheduler.running = 0;
+		long start = System.nanoTime();
+		long deadline = start + budget;
 
-		// queueDump();
+		this.running = 0;
+		int toRun = this.total;
 
-		int unitsLeft = availableUnits;
-		int unitsPerTask = (TaskScheduler.total == 0 ? 0 : availableUnits / TaskScheduler.total);
+		for (Priority prio : Priority.values()) {
+			int p = prio.ordinal();
+			int n = this.queueSize[p];
 
-		if (unitsPerTask < minUnitsPerTask) {
-			unitsPerTask = minUnitsPerTask;
-		}
+			while (n > 0) {
+				TaskQueueNode node = this.queueHead[p];
+				long now = System.nanoTime();
+				long left = deadline - now;
 
-		TaskQueueNode iter = this.queueHead;
-		while (iter != null) {
-			if (unitsLeft < minUnitsPerTask && !iter.highPrio) {
-				break;
-			}
+				if (left <= 0 && prio != Priority.HIGH && node.waited < AGING_RUNS) {
+					break;
+				}
 
-			int units = unitsPerTask;
+				long slice = Math.max(0, left / toRun);
+				int units = (int) Math.max(MIN_UNITS, Math.min(MAX_UNITS, slice / node.type.nsPerUnit));
 
-			if (iter.highPrio && units < minUnitsPerHighPrioTask) {
-				units = minUnitsPerHighPrioTask;
-			}
+				Profiler.start(node.type.probe);
+				int unitsUsed = node.task.run(units);
+				Profiler.stop(node.type.probe);
+
+				if (unitsUsed > 0) {
+					float nsPerUnit = (float) (System.nanoTime() - now) / unitsUsed;
+					node.type.nsPerUnit += COST_SMOOTHING * (nsPerUnit - node.type.nsPerUnit);
+				}
+
+				node.waited = 0;
+				this.running++;
+				toRun--;
+				n--;
 
-			Profiler.start(iter.task.getClass().getSimpleName() + ".run");
-			unitsLeft -= iter.task.run(units);
-			Profiler.stop(iter.task.getClass().getSimpleName() + ".run");
-			TaskScheduler.running++;
-
-			if (iter.task.isComplete()) {
-				// System.out.println("Task " + iter.id + " complete");
-				queueRemove(iter);
-				TaskScheduler.total--;
-			} else {
-				queueMoveLast(iter);
+				queueRemove(node);
+				if (node.task.isComplete()) {
+					this.total--;
+				} else {
+					queueAdd(node);
+				}
 			}
 
-			iter = iter.next;
+			// Those not reached this time are one run older
+			toRun -= n;
+			TaskQueueNode node = this.queueHead[p];
+			for (int i = 0; i < n; i++) {
+				node.waited++;
+				node = node.next;
+			}
 		}
 
-		TaskScheduler.load = Math
-				.max(TaskScheduler.load - 0.01f, (float) (availableUnits - unitsLeft) / availableUnits);
+		this.budget = budget;
+		this.used = System.nanoTime() - start;
+		this.overrun = Math.max(0, this.used - budget);
+		if (this.overrun > 0) {
+			this.overrunRuns++;
+		}
 
-		Profiler.stop("TaskScheduler.run");
+		Profiler.stop(PROBE_RUN);
 	}
 
 	/**
-	 * Adds a task to the low priority list.
-	 * 
+	 * Adds a task to the normal priority queue.
+	 *
 	 * @param task
 	 *            The task
 	 */
 	public void addTask(AbstractTask task) {
-		addTask(task, false);
+		addTask(task, Priority.NORMAL);
 	}
 
 	/**
-	 * Adds a task to either the low or high priority list
-	 * 
+	 * Adds a task to either the high or normal priority queue
+	 *
 	 * @param task
 	 *            The task
 	 * @param highPriority
-	 *            True to add to high priority list
+	 *            True to add to high priority queue
 	 */
 	public void addTask(AbstractTask task, boolean highPriority) {
+		addTask(task, highPriority ? Priority.HIGH : Priority.NORMAL);
+	}
+
+	/**
+	 * Adds a task to the queue of the given priority
+	 *
+	 * @param task
+	 *            The task
+	 * @param priority
+	 *            The priority
+	 */
+	public void addTask(AbstractTask task, Priority priority) {
 		if (task.init()) {
 			TaskQueueNode n = new TaskQueueNode();
 			n.task = task;
-			n.highPrio = highPriority;
+			n.priority = priority;
+			n.type = taskType(task);
 			// System.out.println("Task " + n.id + " inited.");
 			queueAdd(n);
-			TaskScheduler.total++;
+			this.total++;
 		} else {
 			// System.out.println("Task not added, init failed.");
 		}
 	}
 
-	private void queueAdd(TaskQueueNode n) {
-		if (this.queueHead == null) {
-			this.queueHead = n;
-			this.queueTail = n;
-		} else if (n.highPrio) {
-			n.next = this.queueHead;
-			this.queueHead = n;
-		} else {
-			this.queueTail.next = n;
-			this.queueTail = n;
-		}
+	/**
+	 * The number of tasks queued.
+	 */
+	public int getTotal() {
+		return this.total;
+	}
 
-		// System.out.println("Task " + n.id + " added to queue.");
+	/**
+	 * The number of tasks that were run by the last run().
+	 */
+	public int getRunning() {
+		return this.running;
 	}
 
-	private void queueMoveLast(TaskQueueNode n) {
-		if (n.highPrio) {
-			return;
-			// TODO move to end of high-prio part of queue?
+	/**
+	 * The time given to the last run(), in ns.
+	 */
+	public long getBudget() {
+		return this.budget;
+	}
+
+	/**
+	 * The time the last run() took, in ns.
+	 */
+	public long getUsed() {
+		return this.used;
+	}
+
+	/**
+	 * How much the last run() went over its time, in ns.
+	 */
+	public long getOverrun() {
+		return this.overrun;
+	}
+
+	/**
+	 * The number of runs that have gone over their time.
+	 */
+	public int getOverrunRuns() {
+		return this.overrunRuns;
+	}
+
+	private static synchronized TaskType taskType(AbstractTask task) {
+		TaskType type = TaskScheduler.taskTypes.get(task.getClass());
+		if (type == null) {
+			type = new TaskType();
+			type.probe = Profiler.register(task.getClass().getSimpleName() + ".run");
+			TaskScheduler.taskTypes.put(task.getClass(), type);
 		}
+		return type;
+	}
+
+	private void queueAdd(TaskQueueNode n) {
+		int p = n.priority.ordinal();
 
-		queueRemove(n);
+		n.prev = this.queueTail[p];
+		n.next = null;
+		if (this.queueTail[p] == null) {
+			this.queueHead[p] = n;
+		} else {
+			this.queueTail[p].next = n;
+		}
+		this.queueTail[p] = n;
+		this.queueSize[p]++;
 
-		this.queueTail.next = n;
-		this.queueTail = n;
-		this.queueTail.next = null;
+		// System.out.println("Task " + n.id + " added to queue.");
 	}
 
 	private void queueRemove(TaskQueueNode n) {
-		if (n.equals(this.queueHead)) {
-			this.queueHead = null;
-			if (n.next != null) {
-				this.queueHead = n.next;
-			} else {
-				this.queueTail = null;
-			}
+		int p = n.priority.ordinal();
+
+		if (n.prev == null) {
+			this.queueHead[p] = n.next;
 		} else {
-			TaskQueueNode it = this.queueHead;
-			while (it.next != null) {
-				if (it.next.equals(n)) {
-					if (it.next.next != null) {
-						it.next = it.next.next;
-					} else {
-						it.next = null;
-						this.queueTail = it;
-					}
-					break;
-				}
-				it = it.next;
-			}
+			n.prev.next = n.next;
 		}
+		if (n.next == null) {
+			this.queueTail[p] = n.prev;
+		} else {
+			n.next.prev = n.prev;
+		}
+		n.prev = null;
+		n.next = null;
+		this.queueSize[p]--;
 	}
 
 	private void queueDump() {
-		TaskQueueNode n = this.queueHead;
-
 		String r = "";
 
-		while (n != null) {
-			r += n.id + (n.highPrio ? "*" : "") + " ";
-			n = n.next;
+		for (Priority prio : Priority.values()) {
+			TaskQueueNode n = this.queueHead[prio.ordinal()];
+			while (n != null) {
+				r += n.id + (prio == Priority.HIGH ? "*" : "") + " ";
+				n = n.next;
+			}
 		}
 
 		System.out.println(r);
@@ -0,0 +1,187 @@
+/**
+ * Compares the D* Lite chase planner against a fresh A* search on a random
+ * chase. A hunter and its target wander over a pathing map with scattered
+ * walls, some of which are put up or taken down between replans, and after
+ * each step the planner repairs its path while AStarSearch searches the whole
+ * way again on the same snapshot.
+ *
+ * Prints how often the two disagree on whether the target can be reached,
+ * how often the planner's path is longer than the A* path by more than the
+ * straight last leg it may add, and the spots expanded and time taken per
+ * replan by the planner, by a new planner and by A*.
+ *
+ * Usage: testDStarLite [replans] [seed]
+ */
+
+package tests;
+
+import java.util.LinkedList;
+import java.util.Random;
+
+import map.PathingGrid;
+import ai.AStarSearch;
+import ai.DStarLite;
+import ai.AStarSearch.Status;
+
+import com.jme.math.Vector2f;
+
+import engine.World;
+import entities.Entity;
+
+public class testDStarLite {
+
+	private static final int SIZE = 200;
+	private static final int WALLS = 600;
+	// Spots flipped between wall and free before each replan
+	private static final int CHANGES = 5;
+	// Spots around the hunter and the target that are never flipped
+	private static final int KEEP_CLEAR = 3;
+	private static final boolean[][] FOOTPRINT = {{true, true}, {true, true}};
+	private static final int ENT_ID = 5;
+	// The planner keeps its goal while the target is this close to it, and
+	// walks the rest in a straight line, so its paths may be this much longer
+	private static final int SLACK = 2 * World.PATHING_GRANULARITY;
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		int replans = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+		Random rnd = new Random(seed);
+
+		PathingGrid live = new PathingGrid(SIZE, SIZE);
+		for (int i = 0; i < WALLS; i++) {
+			int x = rnd.nextInt(SIZE);
+			int y = rnd.nextInt(SIZE);
+			int length = rnd.nextInt(12);
+			for (int k = 0; k < length && x + k < SIZE; k++) {
+				live.set(x + k, y, -1);
+			}
+		}
+
+		int[] hunter = freeSpotNear(live, 20, 20);
+		int[] target = freeSpotNear(live, 80, 70);
+
+		DStarLite planner = DStarLite.acquire();
+		int reachMismatch = 0;
+		int longer = 0;
+		long extra = 0;
+		int compared = 0;
+		long incExpanded = 0, freshExpanded = 0, astarExpanded = 0;
+		long incTime = 0, freshTime = 0, astarTime = 0;
+
+		for (int i = 0; i < replans; i++) {
+			wander(live, hunter, rnd);
+			wander(live, target, rnd);
+			for (int c = 0; c < CHANGES; c++) {
+				int x = rnd.nextInt(SIZE);
+				int y = rnd.nextInt(SIZE);
+				if (!near(x, y, hunter) && !near(x, y, target)) {
+					live.set(x, y, live.get(x, y) == -1 ? 0 : -1);
+				}
+			}
+
+			PathingGrid snapshot = live.snapshot();
+			Vector2f from = new Vector2f(World.pathingToWorld(hunter[0]), World.pathingToWorld(hunter[1]));
+			Vector2f to = new Vector2f(World.pathingToWorld(target[0]), World.pathingToWorld(target[1]));
+
+			long start = System.nanoTime();
+			LinkedList<Vector2f> path = planner.replan(snapshot, from, to, FOOTPRINT, ENT_ID, 0);
+			long mid = System.nanoTime();
+
+			AStarSearch search = AStarSearch.acquire(snapshot);
+			search.begin(snapshot, from, to, FOOTPRINT, ENT_ID, 0);
+			Status status = search.run();
+			long end = System.nanoTime();
+			int cost = search.getPathCost();
+			int iterations = search.getIterations();
+			AStarSearch.release(search);
+
+			DStarLite fresh = DStarLite.acquire();
+			long freshStart = System.nanoTime();
+			fresh.replan(snapshot, from, to, FOOTPRINT, ENT_ID, 0);
+			freshTime += System.nanoTime() - freshStart;
+			freshExpanded += fresh.getExpansions();
+			DStarLite.release(fresh);
+
+			boolean standing = hunter[0] == target[0] && hunter[1] == target[1];
+			if (!standing && (path != null) != (status == Status.FOUND)) {
+				reachMismatch++;
+			} else if (path != null && status == Status.FOUND) {
+				int length = length(from, path);
+				if (length > cost + SLACK) {
+					longer++;
+				}
+				extra += length - cost;
+				compared++;
+			}
+
+			// The first replan builds the planner, so it is left out
+			if (i > 0) {
+				incExpanded += planner.getExpansions();
+				incTime += mid - start;
+				astarExpanded += iterations;
+				astarTime += end - mid;
+			}
+		}
+		DStarLite.release(planner);
+
+		int n = Math.max(1, replans - 1);
+		System.out.println("--------------------");
+		System.out.println(replans + " replans, " + compared + " paths compared");
+		System.out.println("Reachability differs: " + reachMismatch + ", longer than A* by more than " + SLACK
+				+ ": " + longer + ", average extra length " + (compared > 0 ? (float) extra / compared : 0));
+		System.out.println("D* Lite replan: " + incExpanded / n + " expanded, " + incTime / n / 1000 + " us");
+		System.out.println("D* Lite new:    " + freshExpanded / replans + " expanded, " + freshTime / replans / 1000
+				+ " us");
+		System.out.println("A*:             " + astarExpanded / n + " expanded, " + astarTime / n / 1000 + " us");
+	}
+
+	/**
+	 * Moves an entity up to three steps, each to a neighbouring spot its
+	 * footprint fits on.
+	 */
+	private static void wander(PathingGrid pmap, int[] pos, Random rnd) {
+		for (int t = 0; t < 3; t++) {
+			int x = Math.max(0, Math.min(SIZE - 1, pos[0] + rnd.nextInt(3) - 1));
+			int y = Math.max(0, Math.min(SIZE - 1, pos[1] + rnd.nextInt(3) - 1));
+			if (Entity.walkablePathSpot(x, y, FOOTPRINT, pmap, ENT_ID, 0)) {
+				pos[0] = x;
+				pos[1] = y;
+			}
+		}
+	}
+
+	private static int[] freeSpotNear(PathingGrid pmap, int x, int y) {
+		for (int r = 0; r < SIZE; r++) {
+			for (int dx = -r; dx <= r; dx++) {
+				for (int dy = -r; dy <= r; dy++) {
+					if (Entity.walkablePathSpot(x + dx, y + dy, FOOTPRINT, pmap, ENT_ID, 0)) {
+						return new int[]{x + dx, y + dy};
+					}
+				}
+			}
+		}
+		throw new IllegalStateException("No free spot on the map");
+	}
+
+	private static boolean near(int x, int y, int[] pos) {
+		return Math.abs(x - pos[0]) <= KEEP_CLEAR && Math.abs(y - pos[1]) <= KEEP_CLEAR;
+	}
+
+	/**
+	 * The length of a path in steps to the four neighbours, which a straight
+	 * stretch of the path takes as many of as its two sides together.
+	 */
+	private static int length(Vector2f from, LinkedList<Vector2f> path) {
+		int length = 0;
+		Vector2f prev = from;
+		for (Vector2f p : path) {
+			length += Math.abs(World.worldToPathing(p.x) - World.worldToPathing(prev.x))
+					+ Math.abs(World.worldToPathing(p.y) - World.worldToPathing(prev.y));
+			prev = p;
+		}
+		return length;
+	}
+}
@@ -0,0 +1,40 @@
+/**
+ * Times DataManager.load() and prints the time, to compare loading from the
+ * xml-files with loading from the DataCache. Run it once with "cold" to
+ * delete the cache first, which makes the load parse the xml and write the
+ * cache, and then without, which reads the cache. Each run should be a JVM
+ * of its own, as the second load in a JVM has the classes loaded and compiled.
+ *
+ * Usage: testDataCache [cold]
+ */
+
+package tests;
+
+import infostore.DataCache;
+import infostore.DataManager;
+import infostore.DataManager.DataType;
+
+import java.io.File;
+
+public class testDataCache {
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		boolean cold = args.length > 0 && args[0].equals("cold");
+		if (cold) {
+			new File(DataCache.FILENAME).delete();
+		}
+
+		long start = System.nanoTime();
+		DataManager.load();
+		long time = System.nanoTime() - start;
+
+		System.out.println("--------------------");
+		System.out.println((cold ? "Cold" : "Cached") + " load: " + time / 1000000 + " ms");
+		System.out.println(DataManager.findAllByType(DataType.ITEM).size() + " items, "
+				+ DataManager.findAllByType(DataType.MONSTER).size() + " monsters");
+	}
+
+}
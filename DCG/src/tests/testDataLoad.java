@@ -0,0 +1,126 @@
+/**
+ * Generates a large set of content files, with as many items and monsters as
+ * asked for spread over a number of files, and times loading them with
+ * DataManager.load(), printing the load time and the peak heap use. The
+ * files are written to a temporary folder, and the cache written by the load
+ * is deleted afterwards, so the load always parses the xml.
+ *
+ * Usage: testDataLoad [items] [monsters] [files]
+ */
+
+package tests;
+
+import infostore.DataCache;
+import infostore.DataManager;
+import infostore.DataManager.DataType;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
+public class testDataLoad {
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) throws Exception {
+		int items = args.length > 0 ? Integer.parseInt(args[0]) : 30000;
+		int monsters = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+		int files = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+
+		File dir = File.createTempFile("dcgdata", "");
+		dir.delete();
+		dir.mkdir();
+		generate(dir, items, monsters, files);
+		new File(DataCache.FILENAME).delete();
+
+		System.gc();
+		long heapBefore = heapUsed();
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			pool.resetPeakUsage();
+		}
+
+		long start = System.nanoTime();
+		DataManager.load(new File(dir, "files.lst").toURI().toURL());
+		long time = System.nanoTime() - start;
+
+		long peak = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				peak += pool.getPeakUsage().getUsed();
+			}
+		}
+
+		System.out.println("--------------------");
+		System.out.println(DataManager.findAllByType(DataType.ITEM).size() + " items and "
+				+ DataManager.findAllByType(DataType.MONSTER).size() + " monsters in " + files + " files");
+		System.out.println("Load: " + time / 1000000 + " ms");
+		System.out.println("Peak heap: " + (peak - heapBefore) / 1024 + " KB above the " + heapBefore / 1024
+				+ " KB before loading");
+
+		new File(DataCache.FILENAME).delete();
+		for (File f : dir.listFiles()) {
+			f.delete();
+		}
+		dir.delete();
+	}
+
+	private static long heapUsed() {
+		long used = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				used += pool.getUsage().getUsed();
+			}
+		}
+		return used;
+	}
+
+	private static void generate(File dir, int items, int monsters, int files) throws FileNotFoundException {
+		PrintStream lst = new PrintStream(new File(dir, "files.lst"));
+
+		for (int f = 0; f < files; f++) {
+			String name = "content" + f + ".xml";
+			lst.println(name);
+
+			PrintStream out = new PrintStream(new File(dir, name));
+			out.println("<?xml version=\"1.0\" encoding=\"utf-8\"?>");
+			out.println("<info>");
+			for (int i = f; i < items; i += files) {
+				out.println("  <item name=\"item_gen" + i + "\" caption=\"Sword " + i
+						+ "\" modelID=\"modelID_sword\" attachPoint=\"mainhand\" class=\"Weapon\" price=\""
+						+ (10 + i % 90) + "\" rangeType=\"melee\">");
+				out.println("    <attack maxDmg=\"" + (4 + i % 7) + "\" minDmg=\"3\" cooldown=\"1\">");
+				out.println("      <scale maxDmg=\"2\" minDmg=\"1\" cooldown=\"0\" />");
+				out.println("    </attack>");
+				out.println("    <stats str=\"" + i % 5 + "\" agi=\"" + i % 3 + "\" />");
+				out.println("    <bag w=\"1\" h=\"3\" image=\"bag_sword.png\" />");
+				out.println("  </item>");
+			}
+			for (int i = f; i < monsters; i += files) {
+				out.println("  <monster name=\"monster_gen" + i + "\" modelID=\"modelID_devildog\" caption=\"Devil Dog "
+						+ i + "\" ai=\"ZombieAI\" speed=\"8\" lootTable=\"lootTable_gen\" npctype=\"melee\" "
+						+ "npcquality=\"normal\" mindmg=\"1\" maxdmg=\"3\">");
+				out.println("    <collision w=\"3\" h=\"3\" />");
+				out.println("    <placement chance=\"0\" countMin=\"0\" countMax=\"0\" />");
+				out.println("    <stats agi=\"15\" vit=\"5\" str=\"10\" lifeSteal=\"3\" bonusHit=\"" + i % 30
+						+ "\"></stats>");
+				out.println("    <skills skills=\"Offensive Test Skill 1\"/>");
+				out.println("  </monster>");
+			}
+			if (f == 0) {
+				out.println("  <lootTable name=\"lootTable_gen\">");
+				for (int i = 0; i < Math.min(items, 100); i++) {
+					out.println("    <entry item=\"item_gen" + i + "\" chance=\"5\" />");
+				}
+				out.println("  </lootTable>");
+			}
+			out.println("</info>");
+			out.close();
+		}
+
+		lst.close();
+	}
+}
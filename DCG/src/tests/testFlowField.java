@@ -0,0 +1,191 @@
+/**
+ * Runs a group of monsters after a wandering player on a pathing map with
+ * scattered walls, the way BoidUnit asks for flow paths: every round each
+ * unit points the group's FlowField at the player and walks it, then takes a
+ * few steps along its path. The units stand on the map with their own ids,
+ * as they do in the game.
+ *
+ * Prints the spots the field expanded per request, how often it was built
+ * and how many requests got no path.
+ *
+ * Usage: testFlowField [rounds] [seed]
+ */
+
+package tests;
+
+import java.util.LinkedList;
+import java.util.Random;
+
+import map.PathingGrid;
+import ai.FlowField;
+
+import com.jme.math.Vector2f;
+
+import engine.World;
+import entities.Entity;
+
+public class testFlowField {
+
+	private static final int SIZE = 200;
+	private static final int WALLS = 400;
+	private static final int UNITS = 20;
+	private static final int FIRST_ID = 100;
+	private static final int PLAYER_ID = 2;
+	private static final boolean[][] FOOTPRINT = {{true, true}, {true, true}};
+	// Spots the player and the units move per round
+	private static final int PLAYER_STEPS = 2;
+	private static final int UNIT_STEPS = 3;
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+		Random rnd = new Random(seed);
+
+		PathingGrid live = new PathingGrid(SIZE, SIZE);
+		for (int i = 0; i < WALLS; i++) {
+			int x = rnd.nextInt(SIZE);
+			int y = rnd.nextInt(SIZE);
+			int length = rnd.nextInt(12);
+			for (int k = 0; k < length && x + k < SIZE; k++) {
+				live.set(x + k, y, -1);
+			}
+		}
+
+		int[] player = freeSpotNear(live, 150, 150, PLAYER_ID);
+		place(live, player, PLAYER_ID);
+		int[][] units = new int[UNITS][];
+		for (int u = 0; u < UNITS; u++) {
+			units[u] = freeSpotNear(live, 30 + rnd.nextInt(30), 30 + rnd.nextInt(30), FIRST_ID + u);
+			place(live, units[u], FIRST_ID + u);
+		}
+
+		FlowField field = null;
+		long expanded = 0;
+		long time = 0;
+		int requests = 0;
+		int builds = 0;
+		int noPath = 0;
+
+		for (int r = 0; r < rounds; r++) {
+			unplace(live, player, PLAYER_ID);
+			wander(live, player, PLAYER_ID, rnd);
+			place(live, player, PLAYER_ID);
+
+			PathingGrid snapshot = live.snapshot();
+			Vector2f goal = new Vector2f(World.pathingToWorld(player[0]), World.pathingToWorld(player[1]));
+			if (field == null) {
+				field = FlowField.acquire(snapshot);
+			}
+
+			for (int u = 0; u < UNITS; u++) {
+				int id = FIRST_ID + u;
+				Vector2f from = new Vector2f(World.pathingToWorld(units[u][0]), World.pathingToWorld(units[u][1]));
+
+				long start = System.nanoTime();
+				int before = field.getExpansions();
+				field.setGoal(snapshot, goal, FOOTPRINT, id, PLAYER_ID);
+				int seeded = field.getExpansions();
+				LinkedList<Vector2f> path = field.pathFrom(from);
+				time += System.nanoTime() - start;
+
+				// The count starts again from nothing when the field is built
+				if (seeded < before || (seeded == 0 && r + u > 0)) {
+					builds++;
+				}
+				expanded += field.getExpansions() - seeded;
+				requests++;
+
+				if (path == null) {
+					noPath++;
+				} else {
+					unplace(live, units[u], id);
+					walk(live, units[u], id, path.getFirst());
+					place(live, units[u], id);
+				}
+			}
+		}
+		FlowField.release(field);
+
+		System.out.println("--------------------");
+		System.out.println(rounds + " rounds, " + requests + " requests, " + builds + " builds, " + noPath
+				+ " without a path");
+		System.out.println("Expanded per request: " + expanded / requests + ", " + time / requests / 1000 + " us");
+	}
+
+	/**
+	 * Moves the player up to PLAYER_STEPS steps, each to a neighbouring spot
+	 * its footprint fits on.
+	 */
+	private static void wander(PathingGrid pmap, int[] pos, int id, Random rnd) {
+		for (int t = 0; t < PLAYER_STEPS; t++) {
+			int x = Math.max(0, Math.min(SIZE - 1, pos[0] + rnd.nextInt(3) - 1));
+			int y = Math.max(0, Math.min(SIZE - 1, pos[1] + rnd.nextInt(3) - 1));
+			if (Entity.walkablePathSpot(x, y, FOOTPRINT, pmap, id, 0)) {
+				pos[0] = x;
+				pos[1] = y;
+			}
+		}
+	}
+
+	/**
+	 * Moves a unit up to UNIT_STEPS steps towards the first point of its
+	 * path, stopping where its footprint does not fit.
+	 */
+	private static void walk(PathingGrid pmap, int[] pos, int id, Vector2f to) {
+		int tx = World.worldToPathing(to.x);
+		int ty = World.worldToPathing(to.y);
+		for (int t = 0; t < UNIT_STEPS && (pos[0] != tx || pos[1] != ty); t++) {
+			int x = pos[0];
+			int y = pos[1];
+			if (Math.abs(tx - x) >= Math.abs(ty - y)) {
+				x += tx > x ? 1 : -1;
+			} else {
+				y += ty > y ? 1 : -1;
+			}
+			if (!Entity.walkablePathSpot(x, y, FOOTPRINT, pmap, id, 0)) {
+				break;
+			}
+			pos[0] = x;
+			pos[1] = y;
+		}
+	}
+
+	private static int[] freeSpotNear(PathingGrid pmap, int x, int y, int id) {
+		for (int r = 0; r < SIZE; r++) {
+			for (int dx = -r; dx <= r; dx++) {
+				for (int dy = -r; dy <= r; dy++) {
+					if (Entity.walkablePathSpot(x + dx, y + dy, FOOTPRINT, pmap, id, 0)) {
+						return new int[]{x + dx, y + dy};
+					}
+				}
+			}
+		}
+		throw new IllegalStateException("No free spot on the map");
+	}
+
+	// Marks the spots of the footprint as taken by the entity, or frees them,
+	// placed as Entity.walkablePathSpot places them
+
+	private static void place(PathingGrid pmap, int[] pos, int id) {
+		mark(pmap, pos, 0, -id);
+	}
+
+	private static void unplace(PathingGrid pmap, int[] pos, int id) {
+		mark(pmap, pos, -id, 0);
+	}
+
+	private static void mark(PathingGrid pmap, int[] pos, int from, int to) {
+		int sx = World.worldToPathing(pos[0] - ((float) (FOOTPRINT.length - 1) * World.PATHING_BLOCKSIZE) / 2);
+		int sy = World.worldToPathing(pos[1] - ((float) (FOOTPRINT[0].length - 1) * World.PATHING_BLOCKSIZE) / 2);
+		for (int x = 0; x < FOOTPRINT.length; x++) {
+			for (int y = 0; y < FOOTPRINT[0].length; y++) {
+				if (pmap.get(sx + x, sy + y) == from && pmap.contains(sx + x, sy + y)) {
+					pmap.set(sx + x, sy + y, to);
+				}
+			}
+		}
+	}
+}
@@ -46,8 +46,7 @@ public class testItemGen {
 
 		System.out.println("--------------------");
 
-		DataNode lootTable = DataManager.findByNameAndType(DataType.LOOT_TABLE, "lootTable_all");
-		LinkedList<Item> t = Item.generateFromLootTable(lootTable, 0, m);
+		LinkedList<Item> t = Item.generateFromLootTable(DataManager.getLootTable("lootTable_all"), 0, m);
 
 		System.out.println(t);
 	}
@@ -0,0 +1,241 @@
+/**
+ * Used for comparing Jump Point Search against plain A* in AStarSearch.
+ * Runs headless on pathing maps laid out like the generated levels from
+ * level 16 and up (the level 20 style), with monsters standing in the rooms,
+ * and prints expanded nodes and time per search, and how many searches found
+ * paths of different lengths.
+ *
+ * Usage: testJumpPointSearch [seed]
+ */
+
+package tests;
+
+import java.util.Random;
+
+import map.PathingGrid;
+import ai.AStarSearch;
+import ai.AStarSearch.Status;
+
+import com.jme.math.Vector2f;
+
+import engine.World;
+
+public class testJumpPointSearch {
+
+	private static final int MAPS = 5;
+	private static final int SEARCHES_PER_MAP = 200;
+	private static final int SECTOR_SIZE = 10;
+	private static final int MIN_ROOM_SIZE = 6;
+	private static final int TOTAL_ROOM_SPACE = 300;
+	// The ids of the monsters standing on the map start here
+	private static final int MONSTER_IDS = 100;
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		Random rnd = new Random(args.length > 0 ? Long.parseLong(args[0]) : 20);
+
+		boolean[][] small = makeFootprint(1);
+		boolean[][] monster = makeFootprint(3);
+
+		for (int m = 0; m < MAPS; m++) {
+			PathingGrid pmap = generatePathingMap(rnd);
+			System.out.println("Map " + m + ": " + pmap.getWidth() + "x" + pmap.getHeight() + " pathing cells");
+
+			compare(pmap, small, rnd, "1x1");
+			compare(pmap, monster, rnd, "3x3");
+		}
+	}
+
+	private static void compare(PathingGrid pmap, boolean[][] footprint, Random rnd, String label) {
+		AStarSearch search = AStarSearch.acquire(pmap);
+
+		long[] time = new long[2];
+		long[] expanded = new long[2];
+		int searches = 0;
+		int mismatches = 0;
+		int gaveUp = 0;
+
+		// Warm up both variants before timing
+		for (int i = 0; i < 20; i++) {
+			Vector2f a = randomSpot(pmap, rnd);
+			Vector2f b = randomSpot(pmap, rnd);
+			search.begin(pmap, a, b, footprint, 1, 0, false);
+			search.run();
+			search.begin(pmap, a, b, footprint, 1, 0, true);
+			search.run();
+		}
+
+		for (int i = 0; i < SEARCHES_PER_MAP; i++) {
+			Vector2f a = randomSpot(pmap, rnd);
+			Vector2f b = randomSpot(pmap, rnd);
+			int[] cost = new int[2];
+			boolean limit = false;
+
+			for (int v = 0; v < 2; v++) {
+				long t = System.nanoTime();
+				search.begin(pmap, a, b, footprint, 1, 0, v == 1);
+				Status s = search.run();
+				time[v] += System.nanoTime() - t;
+				expanded[v] += search.getIterations();
+				cost[v] = s == Status.FOUND ? search.getPathCost() : -1;
+				if (v == 0 && s == Status.FAILED && search.getIterations() >= search.getMaxIterations()) {
+					limit = true;
+				}
+			}
+
+			if (limit) {
+				// Far searches around monsters can take A* more iterations
+				// than it is allowed, which says nothing about the paths
+				gaveUp++;
+			} else if (cost[0] != cost[1]) {
+				mismatches++;
+			}
+			searches++;
+		}
+
+		AStarSearch.release(search);
+
+		System.out.println("  " + label + " A*:  " + expanded[0] / searches + " expanded, "
+				+ String.format("%1$.3f", 1e-6 * time[0] / searches) + " ms");
+		System.out.println("  " + label + " JPS: " + expanded[1] / searches + " expanded, "
+				+ String.format("%1$.3f", 1e-6 * time[1] / searches) + " ms");
+		if (gaveUp > 0) {
+			System.out.println("  " + label + " A* stopped at its iteration limit in " + gaveUp + " searches");
+		}
+		if (mismatches > 0) {
+			System.out.println("  " + label + " WARNING: " + mismatches + " searches differed in path length");
+		}
+	}
+
+	private static boolean[][] makeFootprint(int size) {
+		boolean[][] fp = new boolean[size][size];
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				fp[x][y] = true;
+			}
+		}
+		return fp;
+	}
+
+	private static Vector2f randomSpot(PathingGrid pmap, Random rnd) {
+		while (true) {
+			int x = rnd.nextInt(pmap.getWidth());
+			int y = rnd.nextInt(pmap.getHeight());
+			if (pmap.get(x, y) == 0) {
+				return new Vector2f(World.pathingToWorld(x), World.pathingToWorld(y));
+			}
+		}
+	}
+
+	/**
+	 * Lays out rooms in sectors and joins them with corridors the same way
+	 * Map does for the deep levels, then marks walls and a few obstacles the
+	 * way rebuildPathingMap does.
+	 */
+	private static PathingGrid generatePathingMap(Random rnd) {
+		int[][] rooms = new int[1000][];
+		int numRooms = 0;
+		int totalSize = 0;
+		int count = 0;
+		int w = 1;
+		int h = 1;
+		int sx = 0;
+		int sy = 0;
+
+		while (totalSize < TOTAL_ROOM_SPACE) {
+			if (rnd.nextInt(100) < 50) {
+				int x0 = sx * SECTOR_SIZE + rnd.nextInt(SECTOR_SIZE - MIN_ROOM_SIZE + 1);
+				int x1 = x0 + MIN_ROOM_SIZE + rnd.nextInt(sx * SECTOR_SIZE + SECTOR_SIZE - x0 - MIN_ROOM_SIZE + 1) - 1;
+				int y0 = sy * SECTOR_SIZE + rnd.nextInt(SECTOR_SIZE - MIN_ROOM_SIZE + 1);
+				int y1 = y0 + MIN_ROOM_SIZE + rnd.nextInt(sy * SECTOR_SIZE + SECTOR_SIZE - y0 - MIN_ROOM_SIZE + 1) - 1;
+				rooms[numRooms++] = new int[]{x0, y0, x1, y1};
+				totalSize += (x1 - x0) * (y1 - y0);
+			}
+			if (count == sx) {
+				count++;
+				sx = 0;
+				sy = count;
+			} else {
+				sx++;
+				sy--;
+			}
+			w = Math.max(w, (sx + 1) * SECTOR_SIZE);
+			h = Math.max(h, (sy + 1) * SECTOR_SIZE);
+		}
+		w += 2;
+		h += 2;
+
+		boolean[][] floor = new boolean[w][h];
+		for (int r = 0; r < numRooms; r++) {
+			for (int x = rooms[r][0]; x <= rooms[r][2]; x++) {
+				for (int y = rooms[r][1]; y <= rooms[r][3]; y++) {
+					floor[x][y] = true;
+				}
+			}
+		}
+
+		// One corridor from every room to the previous one, x or y first
+		for (int r = 1; r < numRooms; r++) {
+			int x = (rooms[r][0] + rooms[r][2]) / 2;
+			int y = (rooms[r][1] + rooms[r][3]) / 2;
+			int tx = (rooms[r - 1][0] + rooms[r - 1][2]) / 2;
+			int ty = (rooms[r - 1][1] + rooms[r - 1][3]) / 2;
+			boolean xFirst = rnd.nextBoolean();
+			while (x != tx || y != ty) {
+				if ((xFirst && x != tx) || y == ty) {
+					x += x < tx ? 1 : -1;
+				} else {
+					y += y < ty ? 1 : -1;
+				}
+				floor[x][y] = true;
+			}
+		}
+
+		int g = World.PATHING_GRANULARITY;
+		PathingGrid pmap = new PathingGrid(w * g, h * g);
+		for (int x = 0; x < w; x++) {
+			for (int y = 0; y < h; y++) {
+				if (!floor[x][y]) {
+					for (int i = x * g - 1; i < (x + 1) * g + 1; i++) {
+						for (int j = y * g - 1; j < (y + 1) * g + 1; j++) {
+							if (pmap.contains(i, j)) {
+								pmap.set(i, j, -1);
+							}
+						}
+					}
+				}
+			}
+		}
+
+		// Doodad sized obstacles scattered in the rooms, and monsters
+		// standing on the spots of their footprints
+		for (int i = 0; i < numRooms * 5; i++) {
+			int x = rnd.nextInt(pmap.getWidth() - 3);
+			int y = rnd.nextInt(pmap.getHeight() - 3);
+			if (pmap.get(x, y) == 0) {
+				for (int ox = 0; ox < 3; ox++) {
+					for (int oy = 0; oy < 3; oy++) {
+						pmap.set(x + ox, y + oy, -1);
+					}
+				}
+			}
+		}
+		for (int i = 0; i < numRooms * 3; i++) {
+			int x = rnd.nextInt(pmap.getWidth() - 3);
+			int y = rnd.nextInt(pmap.getHeight() - 3);
+			if (pmap.get(x, y) == 0) {
+				for (int ox = 0; ox < 3; ox++) {
+					for (int oy = 0; oy < 3; oy++) {
+						if (pmap.get(x + ox, y + oy) == 0) {
+							pmap.set(x + ox, y + oy, -(MONSTER_IDS + i));
+						}
+					}
+				}
+			}
+		}
+
+		return pmap;
+	}
+}
@@ -0,0 +1,190 @@
+/**
+ * Checks Map.lineOfWalk, Map.lineOfSight and Map.lineOfAttack against a
+ * reference that samples the line finely and tests every pathing spot or
+ * tile it lands in, on levels 1, 5, 10, 15 and 20 generated from fixed seeds.
+ * Prints the number of lines where the answers differ, which should be none
+ * apart from lines passing within a sample of a corner, and how many differ
+ * from the old lineOfWalk that sampled every 1/20 unit. Also checks that
+ * Entity.walkablePathSpot gives the same answers with the clearance map as
+ * without, which should never differ.
+ *
+ * Usage: testLineOfWalk [seed]
+ */
+
+package tests;
+
+import java.util.Random;
+
+import map.Map;
+import map.PathingGrid;
+
+import com.jme.math.Vector2f;
+
+import engine.Game;
+import engine.SimulationRunner;
+import engine.SimulationTimer;
+import engine.World;
+import entities.Entity;
+import entities.Entity.EntitySubtype;
+import entities.actors.Player;
+
+public class testLineOfWalk {
+
+	private static final int[] LEVELS = {1, 5, 10, 15, 20};
+	private static final int LINES = 5000;
+	private static final float LINE_LENGTH = 30f;
+	// Reference samples per unit of line
+	private static final int SAMPLES = 1000;
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		long seed = args.length > 0 ? Long.parseLong(args[0]) : 1;
+
+		SimulationRunner.initHeadless();
+		Game.setTimer(new SimulationTimer());
+
+		for (int level : LEVELS) {
+			World w = new World(seed + level);
+			Map map = w.getMap(level);
+			map.generateMap();
+
+			Player player = new Player(map, "Test player");
+			Entity monster = player;
+			for (Entity e : map.getAllRoomActors()) {
+				if (e.isSubtype(EntitySubtype.MONSTER)) {
+					monster = e;
+					break;
+				}
+			}
+
+			System.out.println("Level " + level + ": " + map.getWidth() + "x" + map.getHeight() + " tiles");
+			check(map, player, monster, new Random(seed));
+		}
+	}
+
+	private static void check(Map map, Entity player, Entity monster, Random rnd) {
+		PathingGrid pmap = map.getPathingMap();
+		int[] walk = new int[2];
+		int[] walkOld = new int[2];
+		int[] spot = new int[2];
+		int sight = 0;
+		int attack = 0;
+
+		for (int i = 0; i < LINES; i++) {
+			Vector2f a = randomSpot(pmap, rnd);
+			Vector2f b = new Vector2f(a.x + (rnd.nextFloat() * 2 - 1) * LINE_LENGTH, a.y + (rnd.nextFloat() * 2 - 1)
+					* LINE_LENGTH);
+
+			for (int e = 0; e < 2; e++) {
+				Entity ent = e == 0 ? player : monster;
+				boolean got = map.lineOfWalk(a, b, ent);
+				if (got != sampledLineOfWalk(a, b, ent.getFootprint(), pmap, ent.getId())) {
+					walk[e]++;
+				}
+				if (got != oldLineOfWalk(a, b, ent.getFootprint(), pmap, ent.getId())) {
+					walkOld[e]++;
+				}
+
+				// Around the entity's own spot, where it covers itself
+				int px = World.worldToPathing(ent.getPosition().x) + rnd.nextInt(9) - 4;
+				int py = World.worldToPathing(ent.getPosition().y) + rnd.nextInt(9) - 4;
+				if (ent.walkablePathSpot(px, py) != Entity.walkablePathSpot(px, py, ent.getFootprint(), pmap, ent
+						.getId(), 0)) {
+					spot[e]++;
+				}
+			}
+
+			if (map.lineOfSight(a, b) != sampledLineOfSight(a, b, pmap)) {
+				sight++;
+			}
+			if (map.lineOfAttack(a, b) != sampledLineOfAttack(map, a, b)) {
+				attack++;
+			}
+		}
+
+		System.out.println("  lineOfWalk 1x1: " + walk[0] + " of " + LINES + " differ (" + walkOld[0]
+				+ " from old sampling)");
+		System.out.println("  lineOfWalk " + monster.getFootprint().length + "x" + monster.getFootprint()[0].length
+				+ ": " + walk[1] + " of " + LINES + " differ (" + walkOld[1] + " from old sampling)");
+		System.out.println("  walkablePathSpot: " + spot[0] + " and " + spot[1] + " of " + LINES + " differ");
+		System.out.println("  lineOfSight: " + sight + " of " + LINES + " differ");
+		System.out.println("  lineOfAttack: " + attack + " of " + LINES + " differ");
+	}
+
+	private static boolean sampledLineOfWalk(Vector2f a, Vector2f b, boolean[][] footprint, PathingGrid pmap,
+			int entId) {
+		int n = samples(a, b);
+		for (int k = 0; k <= n; k++) {
+			double t = (double) k / n;
+			int x = (int) Math.floor(b.x + (a.x - b.x) * t);
+			int y = (int) Math.floor(b.y + (a.y - b.y) * t);
+			if (!Entity.walkablePathSpot(x, y, footprint, pmap, entId, 0)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean sampledLineOfSight(Vector2f a, Vector2f b, PathingGrid pmap) {
+		int n = samples(a, b);
+		for (int k = 0; k <= n; k++) {
+			double t = (double) k / n;
+			int x = (int) Math.floor(b.x + (a.x - b.x) * t);
+			int y = (int) Math.floor(b.y + (a.y - b.y) * t);
+			if (Map.getPathingValue(x, y, pmap) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean sampledLineOfAttack(Map map, Vector2f a, Vector2f b) {
+		int n = samples(a, b);
+		for (int k = 0; k <= n; k++) {
+			double t = (double) k / n;
+			int x = (int) Math.floor(b.x + (a.x - b.x) * t);
+			int y = (int) Math.floor(b.y + (a.y - b.y) * t);
+			if (map.getRoom(x / World.PATHING_GRANULARITY, y / World.PATHING_GRANULARITY) == null) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The lineOfWalk this replaced, stepping 1/20 unit at a time.
+	 */
+	private static boolean oldLineOfWalk(Vector2f a, Vector2f b, boolean[][] footprint, PathingGrid pmap,
+			int entId) {
+		Vector2f stepV = new Vector2f(a.x - b.x, a.y - b.y);
+		float l = stepV.length();
+		stepV.normalizeLocal().divideLocal(20f);
+		Vector2f p = new Vector2f(b.x, b.y);
+
+		for (float t = 0; t < l; t += stepV.length()) {
+			p.addLocal(stepV);
+			if (!Entity.walkablePathSpot(World.worldToPathing(p.x), World.worldToPathing(p.y), footprint, pmap, entId,
+					0)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int samples(Vector2f a, Vector2f b) {
+		return Math.max(1, (int) (a.distance(b) * SAMPLES));
+	}
+
+	private static Vector2f randomSpot(PathingGrid pmap, Random rnd) {
+		while (true) {
+			int x = rnd.nextInt(pmap.getWidth());
+			int y = rnd.nextInt(pmap.getHeight());
+			if (pmap.get(x, y) == 0) {
+				return new Vector2f(World.pathingToWorld(x) + rnd.nextFloat() - 0.5f, World.pathingToWorld(y)
+						+ rnd.nextFloat() - 0.5f);
+			}
+		}
+	}
+}
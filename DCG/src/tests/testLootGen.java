@@ -0,0 +1,92 @@
+/**
+ * Times the loot of a whole dungeon: the layouts of levels 1 to 20 are made,
+ * and for every room the loot tables of the monsters and doodads the room
+ * would place are rolled, as the rooms do when they are populated. The pass
+ * is made once to warm up and then timed a number of times, and the number
+ * of items made per second is printed.
+ *
+ * Usage: testLootGen [passes] [seed]
+ */
+
+package tests;
+
+import infostore.DataManager;
+import infostore.DoodadRecord;
+import infostore.MonsterRecord;
+
+import map.AbstractRoom;
+import map.Map;
+import map.Room;
+
+import engine.Game;
+import engine.RandomStream;
+import engine.SimulationRunner;
+import engine.SimulationTimer;
+import engine.World;
+import entities.items.Item;
+
+public class testLootGen {
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		int passes = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+
+		SimulationRunner.initHeadless();
+		Game.setTimer(new SimulationTimer());
+
+		World w = new World(seed);
+		for (int level = 1; level < World.LEVELS; level++) {
+			w.getMap(level).generateLayout();
+		}
+
+		lootPass(w, new RandomStream(seed));
+
+		RandomStream rnd = new RandomStream(seed);
+		int items = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < passes; i++) {
+			items += lootPass(w, rnd);
+		}
+		long time = System.nanoTime() - start;
+
+		System.out.println("--------------------");
+		System.out.println(items / passes + " items in a pass, " + passes + " passes in " + time / 1000000 + " ms");
+		System.out.println((long) (items / (time / 1e9)) + " items per second");
+	}
+
+	private static int lootPass(World w, RandomStream rnd) {
+		int items = 0;
+
+		for (int level = 1; level < World.LEVELS; level++) {
+			Map map = w.getMap(level);
+			for (AbstractRoom room : map.getRooms()) {
+				for (DoodadRecord rec : DataManager.getDoodads()) {
+					if (rec.isPlaced() && rnd.roll100(rec.getPlacementChance())) {
+						int count = rnd.getRndInt(rec.getPlacementCountMin(), rec.getPlacementCountMax())
+								* room.getSize() / 9;
+						for (int c = 0; c < count; c++) {
+							items += Item.generateFromLootTable(rec.getLootTable(), 20, map).size();
+						}
+					}
+				}
+
+				if (room.getClass().equals(Room.class) && room != map.getEntrance() && room != map.getExit()) {
+					for (MonsterRecord rec : DataManager.getMonsters()) {
+						if (rnd.roll100(rec.getPlacementChance())) {
+							int count = rnd.getRndInt(rec.getPlacementCountMin(), rec.getPlacementCountMax())
+									* room.getSize() / 9;
+							for (int c = 0; c < count; c++) {
+								items += Item.generateFromLootTable(rec.getLootTable(), 0, map).size();
+							}
+						}
+					}
+				}
+			}
+		}
+
+		return items;
+	}
+}
@@ -0,0 +1,83 @@
+/**
+ * Prints the heap a level takes with its loot kept as descriptors, as the
+ * rooms now leave it, and how much more it takes with all the loot made into
+ * items, as the rooms did before. Each level of 1 to 20 is generated in a
+ * world of its own, which is let go before the next.
+ *
+ * Usage: testLootHeap [seed]
+ */
+
+package tests;
+
+import java.util.LinkedList;
+
+import map.Map;
+
+import engine.Game;
+import engine.SimulationRunner;
+import engine.SimulationTimer;
+import engine.World;
+import entities.Entity;
+import entities.actors.Actor;
+import entities.doodads.Doodad;
+import entities.items.Item;
+import entities.items.ItemDescriptor;
+
+public class testLootHeap {
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		long seed = args.length > 0 ? Long.parseLong(args[0]) : 1;
+
+		SimulationRunner.initHeadless();
+		Game.setTimer(new SimulationTimer());
+
+		long totalLevels = 0;
+		long totalItems = 0;
+		for (int level = 1; level < World.LEVELS; level++) {
+			long empty = heapUsed();
+
+			World w = new World(seed);
+			Map map = w.getMap(level);
+			map.generateMap();
+			long descriptors = heapUsed() - empty;
+
+			LinkedList<Item> items = new LinkedList<Item>();
+			for (Entity e : map.getAllRoomEntities()) {
+				LinkedList<ItemDescriptor> loot = null;
+				if (e instanceof Doodad) {
+					loot = ((Doodad) e).getLoot();
+				} else if (e instanceof Actor) {
+					loot = ((Actor) e).getLoot();
+				}
+				if (loot != null) {
+					for (ItemDescriptor d : loot) {
+						items.add(d.materialize(w));
+					}
+				}
+			}
+			long materialized = heapUsed() - empty;
+
+			// The items are used after the heap is taken, so they are kept
+			// until then
+			System.out.println("Level " + level + ": " + items.size() + " items of loot, " + descriptors / 1024
+					+ " KB as descriptors, " + materialized / 1024 + " KB as items");
+			totalLevels += descriptors;
+			totalItems += materialized;
+		}
+
+		System.out.println("--------------------");
+		System.out.println("All levels: " + totalLevels / 1024 + " KB as descriptors, " + totalItems / 1024
+				+ " KB as items");
+	}
+
+	private static long heapUsed() {
+		Runtime rt = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return rt.totalMemory() - rt.freeMemory();
+	}
+}
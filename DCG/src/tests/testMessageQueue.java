@@ -0,0 +1,177 @@
+/**
+ * Used for comparing the ring buffer MTMessageQueue against the synchronized
+ * linked list queue it replaced. A producer thread adds messages on channel B
+ * and a consumer thread takes them off, either one at a time or by draining,
+ * and the messages per second are printed. The same is then done on a single
+ * thread in batches, which leaves out the thread hand-over and so shows the
+ * cost of the queues themselves on machines with few cores. Also checks that
+ * every message arrives once and in order.
+ */
+
+package tests;
+
+import java.util.LinkedList;
+
+import threadMessaging.MTMessage;
+import threadMessaging.MTMessageConsumer;
+import threadMessaging.MTMessageQueue;
+import threadMessaging.MTMessage.MessageType;
+
+public class testMessageQueue {
+
+	private static final int MESSAGES = 5000000;
+	private static final int ROUNDS = 3;
+	// The producer waits when this many messages are queued, so neither
+	// queue grows without bounds and the ring never overflows
+	private static final int CAPACITY = 1024;
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		// The messages are made up front, so only the queues are timed
+		MTMessage[] msgs = new MTMessage[MESSAGES];
+		for (int i = 0; i < MESSAGES; i++) {
+			msgs[i] = new MTMessage(MessageType.TEST, (Integer) i);
+		}
+
+		for (int r = 0; r < ROUNDS; r++) {
+			System.out.println("Round " + r);
+			report("  synchronized list", runOld(msgs));
+			report("  ring, nextB      ", runRing(msgs, false));
+			report("  ring, drainB     ", runRing(msgs, true));
+			report("  synchronized list, one thread", runOldBatched(msgs));
+			report("  ring, one thread             ", runRingBatched(msgs));
+		}
+	}
+
+	private static void report(String label, long nanos) {
+		System.out.println(label + ": " + String.format("%1$.1f", MESSAGES / (nanos * 1e-9) / 1e6) + " M msgs/s");
+	}
+
+	private static long runOld(final MTMessage[] msgs) throws InterruptedException {
+		final OldQueue q = new OldQueue();
+
+		Thread producer = new Thread() {
+			public void run() {
+				for (MTMessage m : msgs) {
+					while (q.sizeB() >= CAPACITY) {
+						Thread.yield();
+					}
+					q.addB(m);
+				}
+			}
+		};
+
+		long t = System.nanoTime();
+		producer.start();
+		int expect = 0;
+		while (expect < msgs.length) {
+			if (q.hasNextB()) {
+				expect = check(q.nextB(), expect);
+			}
+		}
+		producer.join();
+		return System.nanoTime() - t;
+	}
+
+	private static long runRing(final MTMessage[] msgs, boolean drain) throws InterruptedException {
+		final MTMessageQueue q = new MTMessageQueue(CAPACITY);
+
+		Thread producer = new Thread() {
+			public void run() {
+				for (MTMessage m : msgs) {
+					while (q.sizeB() >= CAPACITY) {
+						Thread.yield();
+					}
+					q.addB(m);
+				}
+			}
+		};
+
+		final int[] expect = new int[1];
+		MTMessageConsumer consumer = new MTMessageConsumer() {
+			public void consume(MTMessage msg) {
+				expect[0] = check(msg, expect[0]);
+			}
+		};
+
+		long t = System.nanoTime();
+		producer.start();
+		while (expect[0] < msgs.length) {
+			if (drain) {
+				q.drainB(consumer);
+			} else if (q.hasNextB()) {
+				consumer.consume(q.nextB());
+			}
+		}
+		producer.join();
+		return System.nanoTime() - t;
+	}
+
+	private static long runOldBatched(MTMessage[] msgs) {
+		OldQueue q = new OldQueue();
+
+		long t = System.nanoTime();
+		int expect = 0;
+		for (int i = 0; i < msgs.length; i += CAPACITY) {
+			for (int j = i; j < Math.min(i + CAPACITY, msgs.length); j++) {
+				q.addB(msgs[j]);
+			}
+			while (q.hasNextB()) {
+				expect = check(q.nextB(), expect);
+			}
+		}
+		return System.nanoTime() - t;
+	}
+
+	private static long runRingBatched(MTMessage[] msgs) {
+		MTMessageQueue q = new MTMessageQueue(CAPACITY);
+
+		final int[] expect = new int[1];
+		MTMessageConsumer consumer = new MTMessageConsumer() {
+			public void consume(MTMessage msg) {
+				expect[0] = check(msg, expect[0]);
+			}
+		};
+
+		long t = System.nanoTime();
+		for (int i = 0; i < msgs.length; i += CAPACITY) {
+			for (int j = i; j < Math.min(i + CAPACITY, msgs.length); j++) {
+				q.addB(msgs[j]);
+			}
+			q.drainB(consumer);
+		}
+		return System.nanoTime() - t;
+	}
+
+	private static int check(MTMessage msg, int expect) {
+		if ((Integer) msg.obj != expect) {
+			throw new IllegalStateException("Expected message " + expect + ", got " + msg.obj);
+		}
+		return expect + 1;
+	}
+
+	/**
+	 * The queue as it was before, channel B only.
+	 */
+	private static class OldQueue {
+		private LinkedList<MTMessage> queueB = new LinkedList<MTMessage>();
+
+		public synchronized int sizeB() {
+			return this.queueB.size();
+		}
+
+		public synchronized boolean hasNextB() {
+			return this.queueB.size() > 0;
+		}
+
+		public synchronized MTMessage nextB() {
+			return this.queueB.poll();
+		}
+
+		public synchronized void addB(MTMessage obj) {
+			this.queueB.offer(obj);
+		}
+	}
+}
@@ -0,0 +1,236 @@
+/**
+ * Benchmarks the pathing code on generated levels, for measuring pathing
+ * changes before and after. Runs headless on levels 1, 5, 10, 15 and 20
+ * generated from fixed seeds, and for each of AStarSearch, PathService,
+ * Map.lineOfWalk, Map.lineOfSight, Map.rebuildPathingMap and
+ * Entity.walkablePathSpot prints the time and bytes allocated per call, and
+ * the nodes expanded per search where there is a search.
+ *
+ * Allocation is read from the JVM's per-thread counter, which is only there
+ * on HotSpot, and is left out elsewhere.
+ *
+ * Usage: testPathingBenchmark [seed]
+ */
+
+package tests;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import map.Map;
+import map.PathingGrid;
+import ai.AStarSearch;
+import ai.PathRequest;
+import ai.PathService;
+
+import com.jme.math.Vector2f;
+
+import engine.Game;
+import engine.SimulationRunner;
+import engine.SimulationTimer;
+import engine.World;
+import entities.Entity;
+import entities.Entity.EntitySubtype;
+import entities.actors.Player;
+
+public class testPathingBenchmark {
+
+	private static final int[] LEVELS = {1, 5, 10, 15, 20};
+	private static final int PAIRS = 64;
+	// Longest line tested by the line of walk and sight benchmarks
+	private static final float LINE_LENGTH = 30f;
+	private static final long MIN_TIME = 500000000L;
+	private static final int WARMUP = 20;
+
+	private static abstract class Benchmark {
+		String name;
+
+		Benchmark(String name) {
+			this.name = name;
+		}
+
+		abstract void run(int i);
+	}
+
+	private static com.sun.management.ThreadMXBean allocBean;
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		long seed = args.length > 0 ? Long.parseLong(args[0]) : 1;
+
+		if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean) {
+			allocBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		}
+
+		SimulationRunner.initHeadless();
+		Game.setTimer(new SimulationTimer());
+
+		for (int level : LEVELS) {
+			World w = new World(seed + level);
+			Map map = w.getMap(level);
+			map.generateMap();
+
+			Player player = new Player(map, "Benchmark player");
+			Entity monster = player;
+			for (Entity e : map.getAllRoomActors()) {
+				if (e.isSubtype(EntitySubtype.MONSTER)) {
+					monster = e;
+					break;
+				}
+			}
+
+			System.out.println("Level " + level + ": " + map.getWidth() + "x" + map.getHeight()
+					+ " tiles, pathing grid " + map.getPathingMap().getMemoryBytes() / 1024 + " KB");
+			benchmarkLevel(map, player, monster, new Random(seed));
+		}
+	}
+
+	private static void benchmarkLevel(final Map map, final Player player, final Entity monster, Random rnd) {
+		final PathingGrid pmap = map.getPathingMap();
+		final Vector2f[] from = new Vector2f[PAIRS];
+		final Vector2f[] to = new Vector2f[PAIRS];
+		final Vector2f[] lineTo = new Vector2f[PAIRS];
+		final int[] spots = new int[PAIRS * 2];
+
+		for (int i = 0; i < PAIRS; i++) {
+			from[i] = randomSpot(pmap, rnd);
+			to[i] = randomSpot(pmap, rnd);
+			lineTo[i] = new Vector2f(from[i].x + (rnd.nextFloat() * 2 - 1) * LINE_LENGTH, from[i].y
+					+ (rnd.nextFloat() * 2 - 1) * LINE_LENGTH);
+			spots[i * 2] = rnd.nextInt(pmap.getWidth());
+			spots[i * 2 + 1] = rnd.nextInt(pmap.getHeight());
+		}
+
+		final PathService service = new PathService(new PathService.MapSource() {
+			public PathingGrid getPathingMap(int level) {
+				return pmap;
+			}
+		});
+
+		measure(new Benchmark("AStarSearch 1x1") {
+			void run(int i) {
+				find(pmap, from[i % PAIRS], to[i % PAIRS], player);
+			}
+		}, expanded(pmap, from, to, player));
+		measure(new Benchmark("AStarSearch " + monster.getFootprint().length + "x" + monster.getFootprint()[0].length) {
+			void run(int i) {
+				find(pmap, from[i % PAIRS], to[i % PAIRS], monster);
+			}
+		}, expanded(pmap, from, to, monster));
+		measure(new Benchmark("PathService") {
+			void run(int i) {
+				PathRequest req = service.submit(new PathRequest(map.getLevel(), from[i % PAIRS], to[i % PAIRS], player
+						.getFootprint(), player.getId(), 0), true);
+				while (!req.isDone()) {
+					service.work(null);
+				}
+			}
+		}, null);
+		measure(new Benchmark("Map.lineOfWalk") {
+			void run(int i) {
+				map.lineOfWalk(from[i % PAIRS], lineTo[i % PAIRS], player);
+			}
+		}, null);
+		measure(new Benchmark("Map.lineOfSight") {
+			void run(int i) {
+				map.lineOfSight(from[i % PAIRS], lineTo[i % PAIRS]);
+			}
+		}, null);
+		measure(new Benchmark("Map.rebuildPathingMap") {
+			void run(int i) {
+				map.rebuildPathingMap();
+			}
+		}, null);
+		measure(new Benchmark("Entity.walkablePathSpot") {
+			void run(int i) {
+				int s = (i % PAIRS) * 2;
+				Entity.walkablePathSpot(spots[s], spots[s + 1], monster.getFootprint(), pmap, monster.getId(), 0);
+			}
+		}, null);
+	}
+
+	/**
+	 * Runs the benchmark until it has taken at least MIN_TIME, doubling the
+	 * number of calls each time, and prints the figures of the last run.
+	 */
+	private static void measure(Benchmark b, int[] expanded) {
+		for (int i = 0; i < WARMUP; i++) {
+			b.run(i);
+		}
+
+		int calls = 1;
+		while (true) {
+			long bytes = allocatedBytes();
+			long t = System.nanoTime();
+			for (int i = 0; i < calls; i++) {
+				b.run(i);
+			}
+			t = System.nanoTime() - t;
+			bytes = allocatedBytes() - bytes;
+
+			if (t >= MIN_TIME || calls >= 1 << 24) {
+				String line = "  " + b.name + ": " + String.format("%1$.0f", (double) t / calls) + " ns/op";
+				if (allocBean != null) {
+					line += ", " + bytes / calls + " B/op";
+				}
+				if (expanded != null) {
+					long sum = 0;
+					for (int e : expanded) {
+						sum += e;
+					}
+					line += ", " + sum / expanded.length + " expanded/op";
+				}
+				System.out.println(line);
+				return;
+			}
+			calls *= 2;
+		}
+	}
+
+	/**
+	 * Finds and builds a path the way the PathService does, without the
+	 * queue and the checks for cancellation.
+	 */
+	private static void find(PathingGrid pmap, Vector2f from, Vector2f to, Entity ent) {
+		AStarSearch search = AStarSearch.acquire(pmap);
+		search.begin(pmap, from, to, ent.getFootprint(), ent.getId(), 0);
+		search.run();
+		search.buildPath(from);
+		AStarSearch.release(search);
+	}
+
+	/**
+	 * The nodes expanded by the search find does for each pair, found up
+	 * front so that it is not part of the timing.
+	 */
+	private static int[] expanded(PathingGrid pmap, Vector2f[] from, Vector2f[] to, Entity ent) {
+		AStarSearch search = AStarSearch.acquire(pmap);
+		int[] expanded = new int[from.length];
+		for (int i = 0; i < from.length; i++) {
+			search.begin(pmap, from[i], to[i], ent.getFootprint(), ent.getId(), 0);
+			search.run();
+			expanded[i] = search.getIterations();
+		}
+		AStarSearch.release(search);
+		return expanded;
+	}
+
+	private static long allocatedBytes() {
+		if (allocBean == null) {
+			return 0;
+		}
+		return allocBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	private static Vector2f randomSpot(PathingGrid pmap, Random rnd) {
+		while (true) {
+			int x = rnd.nextInt(pmap.getWidth());
+			int y = rnd.nextInt(pmap.getHeight());
+			if (pmap.get(x, y) == 0) {
+				return new Vector2f(World.pathingToWorld(x), World.pathingToWorld(y));
+			}
+		}
+	}
+}
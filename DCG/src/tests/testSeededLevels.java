@@ -0,0 +1,140 @@
+/**
+ * Checks that the layout of a level only depends on the seed of the world and
+ * the level: two worlds with the same seed make their levels in opposite
+ * order, with rolls taken from the other streams in between, and the pathing
+ * maps of each level are compared spot by spot. The worlds then fill their
+ * levels in opposite order, one rolling loot as drops and purchases do in
+ * between, and the loot of the doodads and monsters of each room is compared.
+ *
+ * Usage: testSeededLevels [seed]
+ */
+
+package tests;
+
+import java.util.LinkedList;
+
+import map.AbstractRoom;
+import map.Map;
+import map.PathingGrid;
+
+import engine.Game;
+import engine.SimulationRunner;
+import engine.SimulationTimer;
+import engine.World;
+import entities.Entity;
+import entities.actors.Actor;
+import entities.doodads.Doodad;
+import entities.items.Item;
+import entities.items.ItemDescriptor;
+
+public class testSeededLevels {
+
+	private static final int[] LEVELS = {1, 4, 9, 13, 19};
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		long seed = args.length > 0 ? Long.parseLong(args[0]) : 1;
+
+		SimulationRunner.initHeadless();
+		Game.setTimer(new SimulationTimer());
+
+		World a = new World(seed);
+		World b = new World(seed);
+
+		for (int i = 0; i < LEVELS.length; i++) {
+			a.getMap(LEVELS[i]).generateLayout();
+			a.getCombatRnd().getRndInt(0, 99);
+			a.getRndInt(0, 99);
+		}
+		for (int i = LEVELS.length - 1; i >= 0; i--) {
+			b.getLootRnd().getRndInt(0, 99);
+			b.getMap(LEVELS[i]).generateLayout();
+		}
+
+		int failed = 0;
+		for (int level : LEVELS) {
+			Map ma = a.getMap(level);
+			Map mb = b.getMap(level);
+			int diff = compare(ma.getPathingMap(), mb.getPathingMap());
+			System.out.println("Level " + level + ": " + ma.getWidth() + "x" + ma.getHeight() + " and "
+					+ mb.getWidth() + "x" + mb.getHeight() + " tiles, " + diff + " spots differ");
+			if (diff != 0) {
+				failed++;
+			}
+		}
+
+		for (int i = 0; i < LEVELS.length; i++) {
+			a.getMap(LEVELS[i]).generateMap();
+			a.getCombatRnd().getRndInt(0, 99);
+		}
+		for (int i = LEVELS.length - 1; i >= 0; i--) {
+			Item.getRndQuality(0, b);
+			b.getLootRnd().nextLong();
+			b.getMap(LEVELS[i]).generateMap();
+		}
+
+		for (int level : LEVELS) {
+			LinkedList<AbstractRoom> ra = a.getMap(level).getRooms();
+			LinkedList<AbstractRoom> rb = b.getMap(level).getRooms();
+			int loot = 0;
+			int diff = 0;
+			for (int r = 0; r < Math.min(ra.size(), rb.size()); r++) {
+				LinkedList<String> la = loot(ra.get(r));
+				LinkedList<String> lb = loot(rb.get(r));
+				loot += la.size();
+				if (!la.equals(lb)) {
+					diff++;
+				}
+			}
+			System.out.println("Level " + level + ": " + loot + " items of loot in " + ra.size() + " rooms, " + diff
+					+ " rooms differ");
+			if (diff != 0 || ra.size() != rb.size()) {
+				failed++;
+			}
+		}
+
+		System.out.println(failed == 0 ? "All levels match" : failed + " levels differ");
+	}
+
+	/**
+	 * The loot carried by the doodads and monsters of a room, in the order
+	 * they were put in the room.
+	 */
+	private static LinkedList<String> loot(AbstractRoom room) {
+		LinkedList<Entity> all = new LinkedList<Entity>(room.getEntities());
+		all.addAll(room.getActors());
+
+		LinkedList<String> result = new LinkedList<String>();
+		for (Entity e : all) {
+			LinkedList<ItemDescriptor> loot = null;
+			if (e instanceof Doodad) {
+				loot = ((Doodad) e).getLoot();
+			} else if (e instanceof Actor) {
+				loot = ((Actor) e).getLoot();
+			}
+			if (loot != null) {
+				for (ItemDescriptor d : loot) {
+					result.add(d + " " + d.getSeed());
+				}
+			}
+		}
+		return result;
+	}
+
+	private static int compare(PathingGrid a, PathingGrid b) {
+		if (a.getWidth() != b.getWidth() || a.getHeight() != b.getHeight()) {
+			return -1;
+		}
+		int diff = 0;
+		for (int x = 0; x < a.getWidth(); x++) {
+			for (int y = 0; y < a.getHeight(); y++) {
+				if (a.get(x, y) != b.get(x, y)) {
+					diff++;
+				}
+			}
+		}
+		return diff;
+	}
+}
@@ -6,15 +6,17 @@ package threadMessaging;
 
 public class MTMessage {
 	public enum MessageType {
-		TEST, CURPOS, PATHLIST, STATE, FINDPATH, PATHMAP, ENTID, FOOTPRINT, MAPLEVEL, KILL, TARGETID, SEARCHEDPATH, SENDSTAT, AISTAT
+		TEST, STATE, PATHMAP, KILL, SENDSTAT, AISTAT, PATHDELTA, PATHRESYNC
 	};
 
 	public MTMessage.MessageType type;
 	public Object obj;
+	public long sentTime;
 
 	public MTMessage(MTMessage.MessageType type, Object obj) {
 		this.type = type;
 		this.obj = obj;
+		this.sentTime = System.nanoTime();
 	}
 
 	@Override
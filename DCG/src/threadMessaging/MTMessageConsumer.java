@@ -0,0 +1,8 @@
+/**
+ * Receives the messages drained from a channel of an MTMessageQueue.
+ */
+package threadMessaging;
+
+public interface MTMessageConsumer {
+	public void consume(MTMessage msg);
+}
@@ -2,42 +2,222 @@
  * Thread-safe none-blocking two-way message queue Intended to be used between
  * two classes residing in different threads, in both directions. Supports
  * adding and polling of messages on two channels, A and B.
+ * 
+ * Each channel is a lock-free ring buffer with one producer and one consumer
+ * thread. Messages that do not fit in a full ring wait in a locked overflow
+ * list behind it. The producer moves them into the ring on its next add, and
+ * the consumer takes them from the list once it has emptied the ring, so they
+ * arrive even if the producer adds nothing more.
  */
 package threadMessaging;
 
 import java.util.LinkedList;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class MTMessageQueue {
 
-	private LinkedList<MTMessage> queueA, queueB;
+	public static final int DEFAULT_CAPACITY = 64;
+
+	private Ring queueA, queueB;
 
 	public MTMessageQueue() {
-		this.queueA = new LinkedList<MTMessage>();
-		this.queueB = new LinkedList<MTMessage>();
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity
+	 *            Size of each ring, rounded up to a power of two
+	 */
+	public MTMessageQueue(int capacity) {
+		this.queueA = new Ring(capacity);
+		this.queueB = new Ring(capacity);
 	}
 
-	public synchronized boolean hasNextA() {
+	public boolean hasNextA() {
 		return this.queueA.size() > 0;
 	}
 
-	public synchronized MTMessage nextA() {
+	public MTMessage nextA() {
 		return this.queueA.poll();
 	}
 
-	public synchronized void addA(MTMessage obj) {
-		this.queueA.offer(obj);
+	public void addA(MTMessage obj) {
+		this.queueA.add(obj);
 	}
 
-	public synchronized boolean hasNextB() {
+	public int drainA(MTMessageConsumer consumer) {
+		return this.queueA.drain(consumer);
+	}
+
+	public boolean hasNextB() {
 		return this.queueB.size() > 0;
 	}
 
-	public synchronized MTMessage nextB() {
+	public MTMessage nextB() {
 		return this.queueB.poll();
 	}
 
-	public synchronized void addB(MTMessage obj) {
-		this.queueB.offer(obj);
+	public int sizeB() {
+		return this.queueB.size();
+	}
+
+	public void addB(MTMessage obj) {
+		this.queueB.add(obj);
+	}
+
+	/**
+	 * Hands every message waiting on channel B to the consumer, in order.
+	 * 
+	 * @return The number of messages handed over
+	 */
+	public int drainB(MTMessageConsumer consumer) {
+		return this.queueB.drain(consumer);
+	}
+
+	/**
+	 * The number of messages added to channel A while its ring was full.
+	 */
+	public int getOverflowsA() {
+		return this.queueA.overflows;
+	}
+
+	public int getOverflowsB() {
+		return this.queueB.overflows;
+	}
+
+	/**
+	 * The most messages that have been waiting on channel A at once.
+	 */
+	public int getHighWaterA() {
+		return this.queueA.highWater;
+	}
+
+	public int getHighWaterB() {
+		return this.queueB.highWater;
+	}
+
+	private static class Ring {
+		private final MTMessage[] buf;
+		private final int mask;
+		// Next slot to read, only advanced by the consumer
+		private final AtomicLong head = new AtomicLong();
+		// Next slot to write, only advanced by the producer
+		private final AtomicLong tail = new AtomicLong();
+		// Messages behind the ring, in order. Only touched holding its lock.
+		private final LinkedList<MTMessage> overflow = new LinkedList<MTMessage>();
+		// The size of the overflow, so the lock is only taken when it is used
+		private volatile int overflowSize;
+		private volatile int overflows;
+		private volatile int highWater;
+
+		Ring(int capacity) {
+			int size = 1;
+			while (size < capacity) {
+				size <<= 1;
+			}
+			this.buf = new MTMessage[size];
+			this.mask = size - 1;
+		}
+
+		int size() {
+			return (int) (this.tail.get() - this.head.get()) + this.overflowSize;
+		}
+
+		void add(MTMessage msg) {
+			// Only the producer adds to the overflow, so while it is empty
+			// the message can go straight into the ring
+			if (this.overflowSize > 0 || !offer(msg)) {
+				synchronized (this.overflow) {
+					// Keep the order: anything already waiting goes in first
+					while (!this.overflow.isEmpty() && offer(this.overflow.peek())) {
+						this.overflow.poll();
+					}
+					if (!this.overflow.isEmpty() || !offer(msg)) {
+						this.overflow.offer(msg);
+						this.overflows++;
+					}
+					this.overflowSize = this.overflow.size();
+				}
+			}
+
+			int waiting = size();
+			if (waiting > this.highWater) {
+				this.highWater = waiting;
+			}
+		}
+
+		/**
+		 * Takes the first message of the overflow, if the ring is empty, as
+		 * everything in the ring was added before the overflow.
+		 */
+		private MTMessage pollOverflow() {
+			if (this.overflowSize == 0) {
+				return null;
+			}
+			synchronized (this.overflow) {
+				if (this.head.get() != this.tail.get()) {
+					return null;
+				}
+				MTMessage msg = this.overflow.poll();
+				this.overflowSize = this.overflow.size();
+				return msg;
+			}
+		}
+
+		private boolean offer(MTMessage msg) {
+			long t = this.tail.get();
+			if (t - this.head.get() == this.buf.length) {
+				return false;
+			}
+			this.buf[(int) t & this.mask] = msg;
+			// Publishes the slot to the consumer
+			this.tail.lazySet(t + 1);
+			return true;
+		}
+
+		MTMessage poll() {
+			long h = this.head.get();
+			if (h == this.tail.get()) {
+				return pollOverflow();
+			}
+			int i = (int) h & this.mask;
+			MTMessage msg = this.buf[i];
+			this.buf[i] = null;
+			this.head.lazySet(h + 1);
+			return msg;
+		}
+
+		int drain(MTMessageConsumer consumer) {
+			int n = 0;
+			while (true) {
+				long h = this.head.get();
+				long t = this.tail.get();
+				while (h != t) {
+					int i = (int) h & this.mask;
+					MTMessage msg = this.buf[i];
+					this.buf[i] = null;
+					h++;
+					// Free the slot before handing the message on, so the
+					// producer can refill while the consumer works
+					this.head.lazySet(h);
+					consumer.consume(msg);
+					n++;
+					if (h == t) {
+						t = this.tail.get();
+					}
+				}
+
+				MTMessage msg = pollOverflow();
+				if (msg != null) {
+					consumer.consume(msg);
+					n++;
+				} else if (this.head.get() == this.tail.get()) {
+					// The producer may have moved the overflow into the ring
+					// meanwhile, which is read on the next pass
+					return n;
+				}
+			}
+		}
 	}
 
 }
@@ -1,22 +1,30 @@
 /**
  * A special message payload used for returning status from the AI thread.
- * Does nothing but group a number of variables.
+ * Does nothing but group a number of variables, with one Worker entry for
+ * each thread of the AI worker pool.
  */
 package threadMessaging;
 
 public class MTMsgAIStat {
 	private float cps;
 	private float cpsavg;
-	private int cells;
+	private int queuedPaths;
 	private int pathingMaps;
 	private boolean liveFlag;
+	private int replans;
+	private long replanExpansions;
+	private Worker[] workers;
 
-	public MTMsgAIStat(float cps, float cpsavg, int cells, int pathingMaps, boolean liveFlag) {
+	public MTMsgAIStat(float cps, float cpsavg, int queuedPaths, int pathingMaps, boolean liveFlag, int replans,
+			long replanExpansions, Worker[] workers) {
 		this.cps = cps;
 		this.cpsavg = cpsavg;
-		this.cells = cells;
+		this.queuedPaths = queuedPaths;
 		this.pathingMaps = pathingMaps;
 		this.liveFlag = liveFlag;
+		this.replans = replans;
+		this.replanExpansions = replanExpansions;
+		this.workers = workers;
 	}
 
 	public int getPathingMaps() {
@@ -35,8 +43,76 @@ public class MTMsgAIStat {
 		return cpsavg;
 	}
 
-	public int getCells() {
-		return cells;
+	/**
+	 * The number of path requests waiting in the PathService.
+	 */
+	public int getQueuedPaths() {
+		return queuedPaths;
 	}
 
+	/**
+	 * The number of chases replanned incrementally.
+	 */
+	public int getReplans() {
+		return replans;
+	}
+
+	/**
+	 * The number of pathing spots expanded by all those replans.
+	 */
+	public long getReplanExpansions() {
+		return replanExpansions;
+	}
+
+	public Worker[] getWorkers() {
+		return workers;
+	}
+
+	public static class Worker {
+		private float cps;
+		private int queueDepth;
+		private int requests;
+		private float latencyP50, latencyP90, latencyP99;
+
+		public Worker(float cps, int queueDepth, int requests, float latencyP50, float latencyP90, float latencyP99) {
+			this.cps = cps;
+			this.queueDepth = queueDepth;
+			this.requests = requests;
+			this.latencyP50 = latencyP50;
+			this.latencyP90 = latencyP90;
+			this.latencyP99 = latencyP99;
+		}
+
+		public float getCps() {
+			return cps;
+		}
+
+		/**
+		 * Path requests left to do when this worker last took one, counting
+		 * the one it took, or 0 if there was none.
+		 */
+		public int getQueueDepth() {
+			return queueDepth;
+		}
+
+		public int getRequests() {
+			return requests;
+		}
+
+		/**
+		 * Path latencies are in ms, from the request was sent until the path
+		 * was ready.
+		 */
+		public float getLatencyP50() {
+			return latencyP50;
+		}
+
+		public float getLatencyP90() {
+			return latencyP90;
+		}
+
+		public float getLatencyP99() {
+			return latencyP99;
+		}
+	}
 }
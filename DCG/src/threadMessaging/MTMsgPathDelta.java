@@ -0,0 +1,42 @@
+/**
+ * The message payload carrying the changes made to a pathing map since the
+ * last one was sent. The changes are runs of equal values down a column,
+ * packed as (x, y, length, value) in the runs array. The versions tell the
+ * AI thread whether its copy of the map is the one the changes apply to.
+ */
+package threadMessaging;
+
+public class MTMsgPathDelta {
+	private int level;
+	private int fromVersion;
+	private int toVersion;
+	private int[] runs;
+
+	public MTMsgPathDelta(int level, int fromVersion, int toVersion, int[] runs) {
+		this.level = level;
+		this.fromVersion = fromVersion;
+		this.toVersion = toVersion;
+		this.runs = runs;
+	}
+
+	public int getLevel() {
+		return level;
+	}
+
+	public int getFromVersion() {
+		return fromVersion;
+	}
+
+	public int getToVersion() {
+		return toVersion;
+	}
+
+	public int[] getRuns() {
+		return runs;
+	}
+
+	public int getNumRuns() {
+		return runs.length / 4;
+	}
+
+}
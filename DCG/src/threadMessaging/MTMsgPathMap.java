@@ -1,23 +1,33 @@
 /**
- * The message payload returned from the AI thread when a pathfinding has
- * completed.
+ * The message payload carrying a pathing map to the AI thread. The map is
+ * a snapshot from Map.getPathingSnapshot(), so it is never written to and
+ * can be read by any number of AI workers without locking. The version
+ * tells snapshots of the same level apart.
  */
 package threadMessaging;
 
+import map.PathingGrid;
+
 public class MTMsgPathMap {
-	private int[][] map;
+	private PathingGrid map;
 	private int level;
+	private int version;
 
-	public MTMsgPathMap(int level, int[][] map) {
-		this.map = (int[][]) map.clone();
+	public MTMsgPathMap(int level, int version, PathingGrid map) {
+		this.map = map;
 		this.level = level;
+		this.version = version;
 	}
 
 	public int getLevel() {
 		return level;
 	}
 
-	public int[][] getMap() {
+	public int getVersion() {
+		return version;
+	}
+
+	public PathingGrid getMap() {
 		return map;
 	}
 